@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2016 Cisco Systems, Inc. and others. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.opendaylight.groupbasedpolicy.renderer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+import javax.annotation.Nullable;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * 128-bit fingerprint of content. Fingerprint of an entry is created by {@link Builder} as
+ * MurmurHash3 of canonical encoding of values of the entry. Fingerprint of a set of entries is a
+ * sum of fingerprints of the entries so it does not depend on order of entries and can be
+ * maintained incrementally by {@link #plus(ContentFingerprint)} and
+ * {@link #minus(ContentFingerprint)} when an entry is added or removed.
+ * <p>
+ * Canonical encoding of a value is its string representation which contains all fields of
+ * binding DTOs. Equivalent content always has the same fingerprint. Different content has the
+ * same fingerprint only if 128-bit hashes of different encodings collide, it is not a
+ * cryptographic hash though.
+ */
+final class ContentFingerprint {
+
+    static final ContentFingerprint EMPTY = new ContentFingerprint(0, 0);
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+    private static final byte NULL_TAG = 0;
+    private static final byte VALUE_TAG = 1;
+    private static final byte BOOLEAN_TAG = 2;
+    private static final byte UNORDERED_TAG = 3;
+    private static final byte FINGERPRINT_TAG = 4;
+
+    private final long high;
+    private final long low;
+
+    private ContentFingerprint(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    private ContentFingerprint(byte[] hash) {
+        ByteBuffer buffer = ByteBuffer.wrap(hash).order(ByteOrder.LITTLE_ENDIAN);
+        this.high = buffer.getLong();
+        this.low = buffer.getLong();
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    ContentFingerprint plus(ContentFingerprint other) {
+        return new ContentFingerprint(high + other.high, low + other.low);
+    }
+
+    ContentFingerprint minus(ContentFingerprint other) {
+        return new ContentFingerprint(high - other.high, low - other.low);
+    }
+
+    /**
+     * Creates fingerprint of an entry from its values. Values are hashed in order in which they
+     * are added. Each value is tagged and its encoding is length-prefixed so a sequence of values
+     * cannot have the same encoding as a different sequence.
+     */
+    static final class Builder {
+
+        private final Hasher hasher = HASH_FUNCTION.newHasher();
+
+        private Builder() {}
+
+        Builder add(@Nullable Object value) {
+            putValue(hasher, value);
+            return this;
+        }
+
+        Builder add(boolean value) {
+            hasher.putByte(BOOLEAN_TAG).putBoolean(value);
+            return this;
+        }
+
+        /**
+         * Adds values of a collection regardless of their order.
+         */
+        Builder addUnordered(@Nullable Collection<?> values) {
+            if (values == null) {
+                hasher.putByte(NULL_TAG);
+                return this;
+            }
+            ContentFingerprint sum = EMPTY;
+            for (Object value : values) {
+                Hasher valueHasher = HASH_FUNCTION.newHasher();
+                putValue(valueHasher, value);
+                sum = sum.plus(new ContentFingerprint(valueHasher.hash().asBytes()));
+            }
+            hasher.putByte(UNORDERED_TAG).putInt(values.size()).putLong(sum.high).putLong(sum.low);
+            return this;
+        }
+
+        Builder add(@Nullable ContentFingerprint fingerprint) {
+            if (fingerprint == null) {
+                hasher.putByte(NULL_TAG);
+                return this;
+            }
+            hasher.putByte(FINGERPRINT_TAG).putLong(fingerprint.high).putLong(fingerprint.low);
+            return this;
+        }
+
+        ContentFingerprint build() {
+            return new ContentFingerprint(hasher.hash().asBytes());
+        }
+
+        private static void putValue(Hasher hasher, @Nullable Object value) {
+            if (value == null) {
+                hasher.putByte(NULL_TAG);
+                return;
+            }
+            byte[] encoding = value.toString().getBytes(StandardCharsets.UTF_8);
+            hasher.putByte(VALUE_TAG).putInt(encoding.length).putBytes(encoding);
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (high ^ (high >>> 32) ^ low ^ (low >>> 32));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        ContentFingerprint other = (ContentFingerprint) obj;
+        return high == other.high && low == other.low;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", high, low);
+    }
+
+}
@@ -8,9 +8,11 @@
 
 package org.opendaylight.groupbasedpolicy.renderer;
 
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 import javax.annotation.Nullable;
 
@@ -193,6 +195,124 @@ class DtoEquivalenceUtils {
         return equalsForwardingByTenantLists(a.getForwardingByTenant(), b.getForwardingByTenant());
     }
 
+    static Set<AddressEndpointKey> diffAddressEpByKey(Map<AddressEndpointKey, AddressEndpoint> o1,
+            Map<AddressEndpointKey, AddressEndpoint> o2) {
+        return diffDtoMapsByEquivalence(o1, o2, ADDR_EP_EQ);
+    }
+
+    static Set<ContainmentEndpointKey> diffContainmentEpByKey(Map<ContainmentEndpointKey, ContainmentEndpoint> o1,
+            Map<ContainmentEndpointKey, ContainmentEndpoint> o2) {
+        return diffDtoMapsByEquivalence(o1, o2, CONT_EP_EQ);
+    }
+
+    static Set<AddressEndpointKey> diffAddrEpLocByAddrEpKey(Map<AddressEndpointKey, AddressEndpointLocation> o1,
+            Map<AddressEndpointKey, AddressEndpointLocation> o2) {
+        return diffDtoMapsByEquivalence(o1, o2, ADDR_EP_LOC_EQ);
+    }
+
+    static Set<ContainmentEndpointKey> diffContEpLocByContEpKey(
+            Map<ContainmentEndpointKey, ContainmentEndpointLocation> o1,
+            Map<ContainmentEndpointKey, ContainmentEndpointLocation> o2) {
+        return diffDtoMapsByEquivalence(o1, o2, CONT_EP_LOC_EQ);
+    }
+
+    /**
+     * @return IDs of tenants whose forwarding was created, removed or changed
+     */
+    static Set<TenantId> diffForwardingByTenant(@Nullable Forwarding a, @Nullable Forwarding b) {
+        Map<TenantId, ForwardingByTenant> aMap = indexForwardingByTenant(a);
+        Map<TenantId, ForwardingByTenant> bMap = indexForwardingByTenant(b);
+        return diffDtoMapsByEquivalence(aMap, bMap, FWD_BY_TENANT_EQ);
+    }
+
+    private static Map<TenantId, ForwardingByTenant> indexForwardingByTenant(@Nullable Forwarding forwarding) {
+        if (forwarding == null || forwarding.getForwardingByTenant() == null) {
+            return ImmutableMap.of();
+        }
+        return Maps.uniqueIndex(forwarding.getForwardingByTenant(), FORWARDING_BY_TENANT_TO_TENANT_ID);
+    }
+
+    /**
+     * Fingerprints below are consistent with equivalences above - equivalent DTOs have the same
+     * fingerprint. Lists compared regardless of order are fingerprinted regardless of order.
+     */
+    static ContentFingerprint fingerprint(AddressEndpoint ep) {
+        ContentFingerprint.Builder builder = ContentFingerprint.builder()
+            .add(ep.getKey())
+            .add(ep.getParentEndpointChoice())
+            .addUnordered(ep.getChildEndpoint());
+        return addCommonEndpointFields(builder, ep).build();
+    }
+
+    static ContentFingerprint fingerprint(ContainmentEndpoint ep) {
+        ContentFingerprint.Builder builder =
+                ContentFingerprint.builder().add(ep.getKey()).addUnordered(ep.getChildEndpoint());
+        return addCommonEndpointFields(builder, ep).build();
+    }
+
+    static ContentFingerprint fingerprint(AddressEndpointLocation epLoc) {
+        ContentFingerprint.Builder builder =
+                ContentFingerprint.builder().add(epLoc.getKey()).add(epLoc.getAbsoluteLocation());
+        return addRelativeLocations(builder, epLoc.getRelativeLocations()).build();
+    }
+
+    static ContentFingerprint fingerprint(ContainmentEndpointLocation epLoc) {
+        ContentFingerprint.Builder builder = ContentFingerprint.builder().add(epLoc.getKey());
+        return addRelativeLocations(builder, epLoc.getRelativeLocations()).build();
+    }
+
+    static ContentFingerprint fingerprint(ForwardingByTenant fwdByTenant) {
+        return ContentFingerprint.builder()
+            .add(fwdByTenant.getKey())
+            .addUnordered(fwdByTenant.getForwardingContext())
+            .addUnordered(fwdByTenant.getNetworkDomain())
+            .build();
+    }
+
+    static ContentFingerprint fingerprint(@Nullable Forwarding forwarding) {
+        if (forwarding == null) {
+            return ContentFingerprint.builder().add(false).build();
+        }
+        List<ForwardingByTenant> fwdByTenants = forwarding.getForwardingByTenant();
+        if (fwdByTenants == null) {
+            return ContentFingerprint.builder().add(true).add(false).build();
+        }
+        ContentFingerprint fwdByTenantsFingerprint = ContentFingerprint.EMPTY;
+        for (ForwardingByTenant fwdByTenant : fwdByTenants) {
+            fwdByTenantsFingerprint = fwdByTenantsFingerprint.plus(fingerprint(fwdByTenant));
+        }
+        return ContentFingerprint.builder().add(true).add(true).add(fwdByTenantsFingerprint).build();
+    }
+
+    private static ContentFingerprint.Builder addCommonEndpointFields(ContentFingerprint.Builder builder,
+            CommonEndpointFields fields) {
+        return builder.add(fields.getNetworkContainment())
+            .add(fields.getTenant())
+            .add(fields.getTimestamp())
+            .addUnordered(fields.getCondition())
+            .addUnordered(fields.getEndpointGroup());
+    }
+
+    private static ContentFingerprint.Builder addRelativeLocations(ContentFingerprint.Builder builder,
+            @Nullable RelativeLocations relLocs) {
+        if (relLocs == null) {
+            return builder.add(false);
+        }
+        return builder.add(true).addUnordered(relLocs.getExternalLocation()).addUnordered(relLocs.getInternalLocation());
+    }
+
+    /**
+     * @return keys which are only in one of the maps or whose values are not equivalent
+     */
+    private static <K, V> Set<K> diffDtoMapsByEquivalence(Map<K, V> o1, Map<K, V> o2, Equivalence<V> eq) {
+        MapDifference<K, V> diff = Maps.difference(o1, o2, eq);
+        Set<K> result = new HashSet<>();
+        result.addAll(diff.entriesOnlyOnLeft().keySet());
+        result.addAll(diff.entriesOnlyOnRight().keySet());
+        result.addAll(diff.entriesDiffering().keySet());
+        return result;
+    }
+
     private static boolean equalsCommonEndpointFields(CommonEndpointFields a, CommonEndpointFields b) {
         if (!Objects.equals(a.getNetworkContainment(), b.getNetworkContainment())) {
             return false;
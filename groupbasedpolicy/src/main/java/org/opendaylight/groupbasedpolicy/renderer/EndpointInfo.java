@@ -8,7 +8,16 @@
 
 package org.opendaylight.groupbasedpolicy.renderer;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nullable;
 
 import org.opendaylight.groupbasedpolicy.dto.EpgKey;
 import org.opendaylight.groupbasedpolicy.dto.EpgKeyDto;
@@ -18,69 +27,148 @@ import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpo
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.endpoints.containment.endpoints.ContainmentEndpoint;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.endpoints.containment.endpoints.ContainmentEndpointKey;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.common.rev140421.EndpointGroupId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.common.rev140421.TenantId;
 
 import com.google.common.base.Optional;
-import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.ImmutableSet.Builder;
-import com.google.common.collect.ImmutableSetMultimap;
 
+/**
+ * Index of endpoints by key and by endpoint group. The index is built from whole
+ * {@link Endpoints} container and can be updated in place by changes of single endpoints. Reads
+ * can be done concurrently with updates.
+ * <p>
+ * Original values of endpoints changed since last {@link #clearChanges()} are remembered so
+ * changes can be resolved without comparing whole index with a previous one. Content
+ * fingerprint of the index is maintained with each change so two indexes can be compared in
+ * constant time.
+ */
 public class EndpointInfo {
 
-    private final ImmutableMap<AddressEndpointKey, AddressEndpoint> addressEpByKey;
-    private final ImmutableMap<ContainmentEndpointKey, ContainmentEndpoint> containmentEpByKey;
-    private final ImmutableSetMultimap<EpgKey, AddressEndpointKey> addressEpsByEpg;
-    private final ImmutableSetMultimap<EpgKey, ContainmentEndpointKey> containmentEpsByEpg;
+    private final Map<AddressEndpointKey, AddressEndpoint> addressEpByKey = new ConcurrentHashMap<>();
+    private final Map<ContainmentEndpointKey, ContainmentEndpoint> containmentEpByKey = new ConcurrentHashMap<>();
+    private final Map<EpgKey, Set<AddressEndpointKey>> addressEpsByEpg = new ConcurrentHashMap<>();
+    private final Map<EpgKey, Set<ContainmentEndpointKey>> containmentEpsByEpg = new ConcurrentHashMap<>();
+    private final Map<AddressEndpointKey, Optional<AddressEndpoint>> originalAddressEpByKey = new HashMap<>();
+    private final Map<ContainmentEndpointKey, Optional<ContainmentEndpoint>> originalContainmentEpByKey =
+            new HashMap<>();
+    private ContentFingerprint fingerprint = ContentFingerprint.EMPTY;
 
     public EndpointInfo(Endpoints endpoints) {
-        if (endpoints.getAddressEndpoints() == null || endpoints.getAddressEndpoints().getAddressEndpoint() == null) {
-            addressEpByKey = ImmutableMap.of();
-            addressEpsByEpg = ImmutableSetMultimap.of();
-        } else {
-            com.google.common.collect.ImmutableMap.Builder<AddressEndpointKey, AddressEndpoint> addressEpsByKeyBuilder =
-                    ImmutableMap.builder();
-            com.google.common.collect.ImmutableSetMultimap.Builder<EpgKey, AddressEndpointKey> addressEpsByEpgBuilder =
-                    ImmutableSetMultimap.builder();
-            com.google.common.collect.ImmutableMultimap.Builder<Set<EpgKey>, AddressEndpointKey> addressEpsByEpgsBuilder =
-                    ImmutableMultimap.builder();
+        if (endpoints.getAddressEndpoints() != null && endpoints.getAddressEndpoints().getAddressEndpoint() != null) {
             for (AddressEndpoint ep : endpoints.getAddressEndpoints().getAddressEndpoint()) {
-                addressEpsByKeyBuilder.put(ep.getKey(), ep);
-                Builder<EpgKey> epgsBuilder = ImmutableSet.builder();
-                for (EndpointGroupId epgId : ep.getEndpointGroup()) {
-                    EpgKey epgKey = new EpgKeyDto(epgId, ep.getTenant());
-                    addressEpsByEpgBuilder.put(epgKey, ep.getKey());
-                    epgsBuilder.add(epgKey);
-                }
-                addressEpsByEpgsBuilder.put(epgsBuilder.build(), ep.getKey());
+                putAddressEp(ep);
             }
-            addressEpByKey = addressEpsByKeyBuilder.build();
-            addressEpsByEpg = addressEpsByEpgBuilder.build();
-        }
-        if (endpoints.getContainmentEndpoints() == null
-                || endpoints.getContainmentEndpoints().getContainmentEndpoint() == null) {
-            containmentEpByKey = ImmutableMap.of();
-            containmentEpsByEpg = ImmutableSetMultimap.of();
-        } else {
-            com.google.common.collect.ImmutableSetMultimap.Builder<EpgKey, ContainmentEndpointKey> containmentEpsByEpgBuilder =
-                    ImmutableSetMultimap.builder();
-            com.google.common.collect.ImmutableMap.Builder<ContainmentEndpointKey, ContainmentEndpoint> containmentEpsByKeyBuilder =
-                    ImmutableMap.builder();
-            com.google.common.collect.ImmutableMultimap.Builder<Set<EpgKey>, ContainmentEndpointKey> containmentEpsByEpgsBuilder =
-                    ImmutableMultimap.builder();
+        }
+        if (endpoints.getContainmentEndpoints() != null
+                && endpoints.getContainmentEndpoints().getContainmentEndpoint() != null) {
             for (ContainmentEndpoint ep : endpoints.getContainmentEndpoints().getContainmentEndpoint()) {
-                containmentEpsByKeyBuilder.put(ep.getKey(), ep);
-                Builder<EpgKey> epgsBuilder = ImmutableSet.builder();
-                for (EndpointGroupId epgId : ep.getEndpointGroup()) {
-                    EpgKey epgKey = new EpgKeyDto(epgId, ep.getTenant());
-                    containmentEpsByEpgBuilder.put(epgKey, ep.getKey());
-                    epgsBuilder.add(epgKey);
+                putContainmentEp(ep);
+            }
+        }
+    }
+
+    /**
+     * Updates the index with a change of single address endpoint.
+     *
+     * @param key key of changed endpoint
+     * @param ep endpoint after change or {@code null} if the endpoint was removed
+     */
+    public synchronized void addressEndpointUpdated(AddressEndpointKey key, @Nullable AddressEndpoint ep) {
+        AddressEndpoint originalEp = removeAddressEp(key);
+        if (!originalAddressEpByKey.containsKey(key)) {
+            originalAddressEpByKey.put(key, Optional.fromNullable(originalEp));
+        }
+        if (ep != null) {
+            putAddressEp(ep);
+        }
+    }
+
+    /**
+     * Updates the index with a change of single containment endpoint.
+     *
+     * @param key key of changed endpoint
+     * @param ep endpoint after change or {@code null} if the endpoint was removed
+     */
+    public synchronized void containmentEndpointUpdated(ContainmentEndpointKey key,
+            @Nullable ContainmentEndpoint ep) {
+        ContainmentEndpoint originalEp = removeContainmentEp(key);
+        if (!originalContainmentEpByKey.containsKey(key)) {
+            originalContainmentEpByKey.put(key, Optional.fromNullable(originalEp));
+        }
+        if (ep != null) {
+            putContainmentEp(ep);
+        }
+    }
+
+    private void putAddressEp(AddressEndpoint ep) {
+        addressEpByKey.put(ep.getKey(), ep);
+        fingerprint = fingerprint.plus(DtoEquivalenceUtils.fingerprint(ep));
+        for (EpgKey epgKey : toEpgKeys(ep.getEndpointGroup(), ep.getTenant())) {
+            Set<AddressEndpointKey> eps = addressEpsByEpg.get(epgKey);
+            if (eps == null) {
+                eps = Collections.newSetFromMap(new ConcurrentHashMap<AddressEndpointKey, Boolean>());
+                addressEpsByEpg.put(epgKey, eps);
+            }
+            eps.add(ep.getKey());
+        }
+    }
+
+    private AddressEndpoint removeAddressEp(AddressEndpointKey key) {
+        AddressEndpoint ep = addressEpByKey.remove(key);
+        if (ep != null) {
+            fingerprint = fingerprint.minus(DtoEquivalenceUtils.fingerprint(ep));
+            for (EpgKey epgKey : toEpgKeys(ep.getEndpointGroup(), ep.getTenant())) {
+                Set<AddressEndpointKey> eps = addressEpsByEpg.get(epgKey);
+                if (eps != null) {
+                    eps.remove(key);
+                    if (eps.isEmpty()) {
+                        addressEpsByEpg.remove(epgKey);
+                    }
+                }
+            }
+        }
+        return ep;
+    }
+
+    private void putContainmentEp(ContainmentEndpoint ep) {
+        containmentEpByKey.put(ep.getKey(), ep);
+        fingerprint = fingerprint.plus(DtoEquivalenceUtils.fingerprint(ep));
+        for (EpgKey epgKey : toEpgKeys(ep.getEndpointGroup(), ep.getTenant())) {
+            Set<ContainmentEndpointKey> eps = containmentEpsByEpg.get(epgKey);
+            if (eps == null) {
+                eps = Collections.newSetFromMap(new ConcurrentHashMap<ContainmentEndpointKey, Boolean>());
+                containmentEpsByEpg.put(epgKey, eps);
+            }
+            eps.add(ep.getKey());
+        }
+    }
+
+    private ContainmentEndpoint removeContainmentEp(ContainmentEndpointKey key) {
+        ContainmentEndpoint ep = containmentEpByKey.remove(key);
+        if (ep != null) {
+            fingerprint = fingerprint.minus(DtoEquivalenceUtils.fingerprint(ep));
+            for (EpgKey epgKey : toEpgKeys(ep.getEndpointGroup(), ep.getTenant())) {
+                Set<ContainmentEndpointKey> eps = containmentEpsByEpg.get(epgKey);
+                if (eps != null) {
+                    eps.remove(key);
+                    if (eps.isEmpty()) {
+                        containmentEpsByEpg.remove(epgKey);
+                    }
                 }
-                containmentEpsByEpgsBuilder.put(epgsBuilder.build(), ep.getKey());
             }
-            containmentEpByKey = containmentEpsByKeyBuilder.build();
-            containmentEpsByEpg = containmentEpsByEpgBuilder.build();
         }
+        return ep;
+    }
+
+    private static Set<EpgKey> toEpgKeys(@Nullable List<EndpointGroupId> epgIds, TenantId tenantId) {
+        if (epgIds == null) {
+            return Collections.emptySet();
+        }
+        Set<EpgKey> result = new HashSet<>();
+        for (EndpointGroupId epgId : epgIds) {
+            result.add(new EpgKeyDto(epgId, tenantId));
+        }
+        return result;
     }
 
     public Optional<AddressEndpoint> getEndpoint(AddressEndpointKey key) {
@@ -92,20 +180,111 @@ public class EndpointInfo {
     }
 
     public ImmutableSet<AddressEndpointKey> findAddressEpsWithEpg(EpgKey epg) {
-        return addressEpsByEpg.get(epg);
+        Set<AddressEndpointKey> eps = addressEpsByEpg.get(toEpgKeyDto(epg));
+        return eps == null ? ImmutableSet.<AddressEndpointKey>of() : ImmutableSet.copyOf(eps);
     }
 
     public ImmutableSet<ContainmentEndpointKey> findContainmentEpsWithEpg(EpgKey epg) {
-        return containmentEpsByEpg.get(epg);
+        Set<ContainmentEndpointKey> eps = containmentEpsByEpg.get(toEpgKeyDto(epg));
+        return eps == null ? ImmutableSet.<ContainmentEndpointKey>of() : ImmutableSet.copyOf(eps);
+    }
+
+    private static EpgKey toEpgKeyDto(EpgKey epg) {
+        if (epg instanceof EpgKeyDto) {
+            return epg;
+        }
+        return new EpgKeyDto(epg.getEpgId(), epg.getTenantId());
+    }
+
+    /**
+     * @return endpoint as it was before the first change since last {@link #clearChanges()}
+     */
+    Optional<AddressEndpoint> getOriginalEndpoint(AddressEndpointKey key) {
+        synchronized (this) {
+            Optional<AddressEndpoint> originalEp = originalAddressEpByKey.get(key);
+            if (originalEp != null) {
+                return originalEp;
+            }
+        }
+        return getEndpoint(key);
+    }
+
+    /**
+     * @return containment endpoint as it was before the first change since last
+     *         {@link #clearChanges()}
+     */
+    Optional<ContainmentEndpoint> getOriginalContainmentEndpoint(ContainmentEndpointKey key) {
+        synchronized (this) {
+            Optional<ContainmentEndpoint> originalEp = originalContainmentEpByKey.get(key);
+            if (originalEp != null) {
+                return originalEp;
+            }
+        }
+        return getContainmentEndpoint(key);
+    }
+
+    /**
+     * @return keys of address endpoints which differ from their original values
+     */
+    synchronized Set<AddressEndpointKey> getChangedAddressEps() {
+        Set<AddressEndpointKey> result = new HashSet<>();
+        for (Entry<AddressEndpointKey, Optional<AddressEndpoint>> entry : originalAddressEpByKey.entrySet()) {
+            if (!DtoEquivalenceUtils.ADDR_EP_EQ.equivalent(entry.getValue().orNull(),
+                    addressEpByKey.get(entry.getKey()))) {
+                result.add(entry.getKey());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return keys of containment endpoints which differ from their original values
+     */
+    synchronized Set<ContainmentEndpointKey> getChangedContainmentEps() {
+        Set<ContainmentEndpointKey> result = new HashSet<>();
+        for (Entry<ContainmentEndpointKey, Optional<ContainmentEndpoint>> entry : originalContainmentEpByKey
+            .entrySet()) {
+            if (!DtoEquivalenceUtils.CONT_EP_EQ.equivalent(entry.getValue().orNull(),
+                    containmentEpByKey.get(entry.getKey()))) {
+                result.add(entry.getKey());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return {@code true} if any endpoint was changed since last {@link #clearChanges()}
+     */
+    synchronized boolean hasChanges() {
+        return !originalAddressEpByKey.isEmpty() || !originalContainmentEpByKey.isEmpty();
+    }
+
+    /**
+     * Current content of the index becomes original content for resolving of next changes.
+     */
+    synchronized void clearChanges() {
+        originalAddressEpByKey.clear();
+        originalContainmentEpByKey.clear();
+    }
+
+    /**
+     * @return fingerprint of current content of the index
+     */
+    synchronized ContentFingerprint getFingerprint() {
+        return fingerprint;
+    }
+
+    Map<AddressEndpointKey, AddressEndpoint> getAddressEpByKey() {
+        return Collections.unmodifiableMap(addressEpByKey);
+    }
+
+    Map<ContainmentEndpointKey, ContainmentEndpoint> getContainmentEpByKey() {
+        return Collections.unmodifiableMap(containmentEpByKey);
     }
 
     @Override
     public int hashCode() {
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + ((addressEpByKey == null) ? 0 : addressEpByKey.hashCode());
-        result = prime * result + ((containmentEpByKey == null) ? 0 : containmentEpByKey.hashCode());
-        return result;
+        return getFingerprint().hashCode();
     }
 
     @Override
@@ -8,8 +8,16 @@
 
 package org.opendaylight.groupbasedpolicy.renderer;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nullable;
 
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.EndpointLocations;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.endpoint.locations.AddressEndpointLocation;
@@ -24,44 +32,127 @@ import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpo
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.has.relative.location.relative.locations.InternalLocation;
 import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
 
-import com.google.common.base.Function;
 import com.google.common.base.Optional;
-import com.google.common.collect.FluentIterable;
-import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.ImmutableSet;
 
+/**
+ * Index of endpoint locations by endpoint key and by absolute node location. The index is built
+ * from whole {@link EndpointLocations} container and can be updated in place by changes of single
+ * endpoint locations. Reads can be done concurrently with updates.
+ * <p>
+ * Original values of locations changed since last {@link #clearChanges()} are remembered so
+ * changes can be resolved without comparing whole index with a previous one. Content
+ * fingerprint of the index is maintained with each change so two indexes can be compared in
+ * constant time.
+ */
 public class EndpointLocationInfo {
 
-    private final ImmutableMultimap<InstanceIdentifier<?>, AddressEndpointLocation> endpointsByAbsNodeLocation;
-    private final ImmutableMap<AddressEndpointKey, AddressEndpointLocation> addrEpLocByAddrEpKey;
-    private final ImmutableMap<ContainmentEndpointKey, ContainmentEndpointLocation> contEpLocByContEpKey;
+    private final Map<InstanceIdentifier<?>, Set<AddressEndpointKey>> endpointsByAbsNodeLocation =
+            new ConcurrentHashMap<>();
+    private final Map<AddressEndpointKey, AddressEndpointLocation> addrEpLocByAddrEpKey = new ConcurrentHashMap<>();
+    private final Map<ContainmentEndpointKey, ContainmentEndpointLocation> contEpLocByContEpKey =
+            new ConcurrentHashMap<>();
+    private final Map<AddressEndpointKey, Optional<AddressEndpointLocation>> originalAddrEpLocByAddrEpKey =
+            new HashMap<>();
+    private final Map<ContainmentEndpointKey, Optional<ContainmentEndpointLocation>> originalContEpLocByContEpKey =
+            new HashMap<>();
+    private ContentFingerprint fingerprint = ContentFingerprint.EMPTY;
 
     public EndpointLocationInfo(EndpointLocations epLocations) {
         List<AddressEndpointLocation> addressEndpointLocations = epLocations.getAddressEndpointLocation();
-        endpointsByAbsNodeLocation =
-                EndpointLocationUtils.resolveEndpointsByAbsoluteNodeLocation(addressEndpointLocations);
-        if (addressEndpointLocations == null) {
-            addrEpLocByAddrEpKey = ImmutableMap.of();
-        } else {
-            com.google.common.collect.ImmutableMap.Builder<AddressEndpointKey, AddressEndpointLocation> adrEpLocByAdrEpKeyBuilder =
-                    ImmutableMap.builder();
+        if (addressEndpointLocations != null) {
             for (AddressEndpointLocation adrEpLoc : addressEndpointLocations) {
-                adrEpLocByAdrEpKeyBuilder.put(toAdrEpKey(adrEpLoc.getKey()), adrEpLoc);
+                putAddrEpLoc(toAdrEpKey(adrEpLoc.getKey()), adrEpLoc);
             }
-            addrEpLocByAddrEpKey = adrEpLocByAdrEpKeyBuilder.build();
         }
         List<ContainmentEndpointLocation> containmentEndpointLocations = epLocations.getContainmentEndpointLocation();
-        if (containmentEndpointLocations == null) {
-            contEpLocByContEpKey = ImmutableMap.of();
-        } else {
-            com.google.common.collect.ImmutableMap.Builder<ContainmentEndpointKey, ContainmentEndpointLocation> contEpLocBycontEpKeyBuilder =
-                    ImmutableMap.builder();
+        if (containmentEndpointLocations != null) {
             for (ContainmentEndpointLocation contEpLoc : containmentEndpointLocations) {
-                contEpLocBycontEpKeyBuilder.put(toContEpKey(contEpLoc.getKey()), contEpLoc);
+                putContEpLoc(toContEpKey(contEpLoc.getKey()), contEpLoc);
+            }
+        }
+    }
+
+    /**
+     * Updates the index with a change of single address endpoint location.
+     *
+     * @param key key of changed location
+     * @param adrEpLoc location after change or {@code null} if the location was removed
+     */
+    public synchronized void addressEndpointLocationUpdated(AddressEndpointLocationKey key,
+            @Nullable AddressEndpointLocation adrEpLoc) {
+        AddressEndpointKey adrEpKey = toAdrEpKey(key);
+        AddressEndpointLocation originalAdrEpLoc = removeAddrEpLoc(adrEpKey);
+        if (!originalAddrEpLocByAddrEpKey.containsKey(adrEpKey)) {
+            originalAddrEpLocByAddrEpKey.put(adrEpKey, Optional.fromNullable(originalAdrEpLoc));
+        }
+        if (adrEpLoc != null) {
+            putAddrEpLoc(adrEpKey, adrEpLoc);
+        }
+    }
+
+    /**
+     * Updates the index with a change of single containment endpoint location.
+     *
+     * @param key key of changed location
+     * @param contEpLoc location after change or {@code null} if the location was removed
+     */
+    public synchronized void containmentEndpointLocationUpdated(ContainmentEndpointLocationKey key,
+            @Nullable ContainmentEndpointLocation contEpLoc) {
+        ContainmentEndpointKey contEpKey = toContEpKey(key);
+        ContainmentEndpointLocation originalContEpLoc = removeContEpLoc(contEpKey);
+        if (!originalContEpLocByContEpKey.containsKey(contEpKey)) {
+            originalContEpLocByContEpKey.put(contEpKey, Optional.fromNullable(originalContEpLoc));
+        }
+        if (contEpLoc != null) {
+            putContEpLoc(contEpKey, contEpLoc);
+        }
+    }
+
+    private void putAddrEpLoc(AddressEndpointKey adrEpKey, AddressEndpointLocation adrEpLoc) {
+        addrEpLocByAddrEpKey.put(adrEpKey, adrEpLoc);
+        fingerprint = fingerprint.plus(DtoEquivalenceUtils.fingerprint(adrEpLoc));
+        Optional<InstanceIdentifier<?>> potentialAbsNodeLoc = EndpointLocationUtils.resolveAbsoluteNodeLocation(adrEpLoc);
+        if (potentialAbsNodeLoc.isPresent()) {
+            Set<AddressEndpointKey> eps = endpointsByAbsNodeLocation.get(potentialAbsNodeLoc.get());
+            if (eps == null) {
+                eps = Collections.newSetFromMap(new ConcurrentHashMap<AddressEndpointKey, Boolean>());
+                endpointsByAbsNodeLocation.put(potentialAbsNodeLoc.get(), eps);
+            }
+            eps.add(adrEpKey);
+        }
+    }
+
+    private AddressEndpointLocation removeAddrEpLoc(AddressEndpointKey adrEpKey) {
+        AddressEndpointLocation adrEpLoc = addrEpLocByAddrEpKey.remove(adrEpKey);
+        if (adrEpLoc != null) {
+            fingerprint = fingerprint.minus(DtoEquivalenceUtils.fingerprint(adrEpLoc));
+            Optional<InstanceIdentifier<?>> potentialAbsNodeLoc =
+                    EndpointLocationUtils.resolveAbsoluteNodeLocation(adrEpLoc);
+            if (potentialAbsNodeLoc.isPresent()) {
+                Set<AddressEndpointKey> eps = endpointsByAbsNodeLocation.get(potentialAbsNodeLoc.get());
+                if (eps != null) {
+                    eps.remove(adrEpKey);
+                    if (eps.isEmpty()) {
+                        endpointsByAbsNodeLocation.remove(potentialAbsNodeLoc.get());
+                    }
+                }
             }
-            contEpLocByContEpKey = contEpLocBycontEpKeyBuilder.build();
         }
+        return adrEpLoc;
+    }
+
+    private void putContEpLoc(ContainmentEndpointKey contEpKey, ContainmentEndpointLocation contEpLoc) {
+        contEpLocByContEpKey.put(contEpKey, contEpLoc);
+        fingerprint = fingerprint.plus(DtoEquivalenceUtils.fingerprint(contEpLoc));
+    }
+
+    private ContainmentEndpointLocation removeContEpLoc(ContainmentEndpointKey contEpKey) {
+        ContainmentEndpointLocation contEpLoc = contEpLocByContEpKey.remove(contEpKey);
+        if (contEpLoc != null) {
+            fingerprint = fingerprint.minus(DtoEquivalenceUtils.fingerprint(contEpLoc));
+        }
+        return contEpLoc;
     }
 
     public Optional<AddressEndpointLocation> getAdressEndpointLocation(AddressEndpointKey epKey) {
@@ -72,31 +163,83 @@ public class EndpointLocationInfo {
         return Optional.fromNullable(contEpLocByContEpKey.get(contEpKey));
     }
 
-    private AddressEndpointKey toAdrEpKey(AddressEndpointLocationKey adrEpLocKey) {
+    private static AddressEndpointKey toAdrEpKey(AddressEndpointLocationKey adrEpLocKey) {
         return new AddressEndpointKey(adrEpLocKey.getAddress(), adrEpLocKey.getAddressType(),
                 adrEpLocKey.getContextId(), adrEpLocKey.getContextType());
     }
 
-    private ContainmentEndpointKey toContEpKey(ContainmentEndpointLocationKey contEpLocKey) {
+    private static ContainmentEndpointKey toContEpKey(ContainmentEndpointLocationKey contEpLocKey) {
         return new ContainmentEndpointKey(contEpLocKey.getContextId(), contEpLocKey.getContextType());
     }
 
+    Map<AddressEndpointKey, AddressEndpointLocation> getAddrEpLocByAddrEpKey() {
+        return Collections.unmodifiableMap(addrEpLocByAddrEpKey);
+    }
+
+    Map<ContainmentEndpointKey, ContainmentEndpointLocation> getContEpLocByContEpKey() {
+        return Collections.unmodifiableMap(contEpLocByContEpKey);
+    }
+
+    /**
+     * @return keys of address endpoints whose locations differ from their original values
+     */
+    synchronized Set<AddressEndpointKey> getChangedAddrEpLocs() {
+        Set<AddressEndpointKey> result = new HashSet<>();
+        for (Entry<AddressEndpointKey, Optional<AddressEndpointLocation>> entry : originalAddrEpLocByAddrEpKey
+            .entrySet()) {
+            if (!DtoEquivalenceUtils.ADDR_EP_LOC_EQ.equivalent(entry.getValue().orNull(),
+                    addrEpLocByAddrEpKey.get(entry.getKey()))) {
+                result.add(entry.getKey());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return keys of containment endpoints whose locations differ from their original values
+     */
+    synchronized Set<ContainmentEndpointKey> getChangedContEpLocs() {
+        Set<ContainmentEndpointKey> result = new HashSet<>();
+        for (Entry<ContainmentEndpointKey, Optional<ContainmentEndpointLocation>> entry : originalContEpLocByContEpKey
+            .entrySet()) {
+            if (!DtoEquivalenceUtils.CONT_EP_LOC_EQ.equivalent(entry.getValue().orNull(),
+                    contEpLocByContEpKey.get(entry.getKey()))) {
+                result.add(entry.getKey());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return {@code true} if any location was changed since last {@link #clearChanges()}
+     */
+    synchronized boolean hasChanges() {
+        return !originalAddrEpLocByAddrEpKey.isEmpty() || !originalContEpLocByContEpKey.isEmpty();
+    }
+
+    /**
+     * Current content of the index becomes original content for resolving of next changes.
+     */
+    synchronized void clearChanges() {
+        originalAddrEpLocByAddrEpKey.clear();
+        originalContEpLocByContEpKey.clear();
+    }
+
+    /**
+     * @return fingerprint of current content of the index
+     */
+    synchronized ContentFingerprint getFingerprint() {
+        return fingerprint;
+    }
+
     public Set<InstanceIdentifier<?>> getAllAbsoluteNodeLocations() {
-        return endpointsByAbsNodeLocation.keySet();
+        return ImmutableSet.copyOf(endpointsByAbsNodeLocation.keySet());
     }
 
     public ImmutableSet<AddressEndpointKey> getAddressEpsWithAbsoluteNodeLocation(
             InstanceIdentifier<?> realNodeLocation) {
-        return FluentIterable.from(endpointsByAbsNodeLocation.get(realNodeLocation))
-            .transform(new Function<AddressEndpointLocation, AddressEndpointKey>() {
-
-                @Override
-                public AddressEndpointKey apply(AddressEndpointLocation epLoc) {
-                    return new AddressEndpointKey(epLoc.getAddress(), epLoc.getAddressType(), epLoc.getContextId(),
-                            epLoc.getContextType());
-                }
-            })
-            .toSet();
+        Set<AddressEndpointKey> eps = endpointsByAbsNodeLocation.get(realNodeLocation);
+        return eps == null ? ImmutableSet.<AddressEndpointKey>of() : ImmutableSet.copyOf(eps);
     }
 
     public boolean hasAbsoluteLocation(AddressEndpointKey adrEpKey) {
@@ -149,11 +292,7 @@ public class EndpointLocationInfo {
 
     @Override
     public int hashCode() {
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + ((addrEpLocByAddrEpKey == null) ? 0 : addrEpLocByAddrEpKey.hashCode());
-        result = prime * result + ((contEpLocByContEpKey == null) ? 0 : contEpLocByContEpKey.hashCode());
-        return result;
+        return getFingerprint().hashCode();
     }
 
     @Override
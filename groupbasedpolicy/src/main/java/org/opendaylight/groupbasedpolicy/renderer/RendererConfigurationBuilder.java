@@ -8,18 +8,24 @@
 
 package org.opendaylight.groupbasedpolicy.renderer;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.FluentIterable;
-import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableTable;
-import com.google.common.collect.Table;
+import com.google.common.collect.SetMultimap;
+import com.google.common.primitives.Ints;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -42,6 +48,8 @@ import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.r
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.RendererName;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.has.rule.group.with.renderer.endpoint.participation.RuleGroupWithRendererEndpointParticipation;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.has.rule.group.with.renderer.endpoint.participation.RuleGroupWithRendererEndpointParticipationBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.EndpointGroupPolicies;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.EndpointGroupPoliciesBuilder;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.Endpoints;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.EndpointsBuilder;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.RendererEndpoints;
@@ -50,6 +58,10 @@ import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.r
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.RendererForwardingBuilder;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.RuleGroups;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.RuleGroupsBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.endpoint.group.policies.EndpointGroupPolicy;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.endpoint.group.policies.EndpointGroupPolicyBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.endpoint.group.policies.endpoint.group.policy.EndpointGroupPolicyRuleGroup;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.endpoint.group.policies.endpoint.group.policy.EndpointGroupPolicyRuleGroupBuilder;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.endpoints.AddressEndpointWithLocation;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.endpoints.AddressEndpointWithLocationBuilder;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.endpoints.ContainmentEndpointWithLocation;
@@ -74,66 +86,346 @@ import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.r
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.renderer.forwarding.renderer.forwarding.by.tenant.RendererNetworkDomainBuilder;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.rule.groups.RuleGroup;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.rule.groups.RuleGroupBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.resolved.policy.rev150828.resolved.policies.ResolvedPolicy;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.resolved.policy.rev150828.resolved.policies.ResolvedPolicyKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.resolved.policy.rev150828.resolved.policies.resolved.policy.PolicyRuleGroupWithEndpointConstraints;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.resolved.policy.rev150828.resolved.policies.resolved.policy.policy.rule.group.with.endpoint.constraints.PolicyRuleGroup;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.resolved.policy.rev150828.resolved.policies.resolved.policy.policy.rule.group.with.endpoint.constraints.PolicyRuleGroupKey;
 import org.opendaylight.yangtools.yang.binding.Augmentation;
 import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
 
+/**
+ * Collects policies between renderer endpoints and their peers and builds renderer configuration
+ * from them.
+ * <p>
+ * Endpoint and rule-group keys are interned to small int ids and policies are stored by the ids
+ * in int-indexed structures. A rule group together with participation of the renderer endpoint
+ * is encoded to a single int. Generated binding objects are created only when renderer endpoints
+ * are built, therefore the builder stays compact even when the number of policies grows with
+ * square of number of endpoints.
+ * <p>
+ * For renderers which support it, the builder collects policy in compact endpoint-group form
+ * instead. Policy between endpoint groups is kept once together with renderer endpoints and peer
+ * endpoints, see {@link #addEndpointGroupPolicy(RendererEndpointKey, ResolvedPolicy, EndpointPolicyParticipation)}.
+ */
 public class RendererConfigurationBuilder {
 
-    private final Table<RendererEndpointKey, PeerEndpointKey, Set<RuleGroupWithRendererEndpointParticipation>> policiesByEpAndPeerEp =
-            HashBasedTable.create();
-    private final Table<RendererEndpointKey, PeerExternalEndpointKey, Set<RuleGroupWithRendererEndpointParticipation>> policiesByEpAndPeerExtEp =
-            HashBasedTable.create();
-    private final Table<RendererEndpointKey, PeerExternalContainmentEndpointKey, Set<RuleGroupWithRendererEndpointParticipation>> policiesByEpAndPeerExtCtxEp =
-            HashBasedTable.create();
-    private final Set<AddressEndpointKey> adrEpKeys = new HashSet<>();
-    private final Set<ContainmentEndpointKey> contEpKeys = new HashSet<>();
-    private final Set<PolicyRuleGroupKey> policyRuleGrpKeys = new HashSet<>();
+    private static final int INITIAL_CAPACITY = 4;
+    private static final int[] NO_CODES = new int[0];
+    private static final EndpointPolicyParticipation[] PARTICIPATIONS = EndpointPolicyParticipation.values();
+
+    // keys are counted so that they can be released when a renderer endpoint is removed
+    private final KeyInterner<AddressEndpointKey> adrEpKeys = new KeyInterner<>();
+    private final KeyInterner<ContainmentEndpointKey> contEpKeys = new KeyInterner<>();
+    private final KeyInterner<PolicyRuleGroupKey> policyRuleGrpKeys = new KeyInterner<>();
+    // indexed by id of address endpoint key of renderer endpoint
+    private RendererEpPolicies[] policiesByRendererEpId = new RendererEpPolicies[INITIAL_CAPACITY];
+    private int rendererEpCount;
+    // equal rule-group code arrays are shared by all peers; arrays are counted so that they can be
+    // released when no peer references them
+    private final Map<List<Integer>, CanonicalCodes> canonicalCodes = new HashMap<>();
+
+    private final boolean endpointGroupPolicyForm;
+    // policy in endpoint-group form
+    private final Set<AddressEndpointKey> epgPolicyRendererEpKeys = new LinkedHashSet<>();
+    private final Map<ResolvedPolicyKey, ResolvedPolicy> epgPolicyByKey = new LinkedHashMap<>();
+    private final SetMultimap<ResolvedPolicyKey, EndpointPolicyParticipation> epgPolicyParticipations =
+            HashMultimap.create();
+    private final Set<AddressEndpointKey> epgPolicyPeerAdrEpKeys = new LinkedHashSet<>();
+    private final Set<ContainmentEndpointKey> epgPolicyPeerContEpKeys = new LinkedHashSet<>();
+
+    public RendererConfigurationBuilder() {
+        this(false);
+    }
+
+    /**
+     * @param endpointGroupPolicyForm if {@code true} policy is collected in endpoint-group form by
+     *        {@link #addEndpointGroupPolicy(RendererEndpointKey, ResolvedPolicy, EndpointPolicyParticipation)};
+     *        otherwise policy is collected as peers of renderer endpoints by {@code add} methods
+     */
+    RendererConfigurationBuilder(boolean endpointGroupPolicyForm) {
+        this.endpointGroupPolicyForm = endpointGroupPolicyForm;
+    }
+
+    /**
+     * Assigns small int ids to keys and counts references to them. When the last reference to a
+     * key is released the key is forgotten and its id is reused for another key.
+     */
+    private static final class KeyInterner<K> {
+
+        private final Map<K, Integer> idByKey = new HashMap<>();
+        private final List<K> keyById = new ArrayList<>();
+        private int[] refCounts = new int[INITIAL_CAPACITY];
+        private int[] freeIds = new int[INITIAL_CAPACITY];
+        private int freeIdCount;
+
+        int intern(K key) {
+            Integer id = idByKey.get(key);
+            if (id != null) {
+                return id;
+            }
+            int newId;
+            if (freeIdCount > 0) {
+                newId = freeIds[--freeIdCount];
+                keyById.set(newId, key);
+            } else {
+                newId = keyById.size();
+                keyById.add(key);
+                refCounts = ensureCapacity(refCounts, newId + 1);
+            }
+            idByKey.put(key, newId);
+            return newId;
+        }
+
+        /**
+         * @return id of the key or {@code -1} if the key is not interned
+         */
+        int getId(K key) {
+            Integer id = idByKey.get(key);
+            return id == null ? -1 : id;
+        }
+
+        K getKey(int id) {
+            return keyById.get(id);
+        }
+
+        void retain(int id) {
+            refCounts[id]++;
+        }
+
+        void release(int id) {
+            if (--refCounts[id] == 0) {
+                idByKey.remove(keyById.set(id, null));
+                freeIds = ensureCapacity(freeIds, freeIdCount + 1);
+                freeIds[freeIdCount++] = id;
+            }
+        }
+
+        /**
+         * @return upper bound of ids
+         */
+        int capacity() {
+            return keyById.size();
+        }
+
+        ImmutableSet<K> getKeys() {
+            ImmutableSet.Builder<K> keys = ImmutableSet.builder();
+            for (K key : keyById) {
+                if (key != null) {
+                    keys.add(key);
+                }
+            }
+            return keys.build();
+        }
+    }
+
+    private static final class CanonicalCodes {
+
+        private final int[] codes;
+        private int refCount;
+
+        private CanonicalCodes(int[] codes) {
+            this.codes = codes;
+        }
+    }
+
+    private static final class RendererEpPolicies {
+
+        private PeerPolicies peerEps;
+        private PeerPolicies peerExtEps;
+        private PeerPolicies peerExtContEps;
+    }
+
+    /**
+     * Peers of one renderer endpoint with rule-group codes. Peers are kept in order in which they
+     * were added. Position of a peer is found by peer id in an open-addressing hash index. Code
+     * arrays are canonical and never modified.
+     */
+    private static final class PeerPolicies {
+
+        private int[] peerIds = new int[INITIAL_CAPACITY];
+        private int[][] ruleGrpCodes = new int[INITIAL_CAPACITY][];
+        // position of peer + 1, 0 marks empty slot; at most half of slots is used
+        private int[] positionIndex = new int[INITIAL_CAPACITY * 2];
+        private int size;
+
+        int indexOf(int peerId) {
+            int mask = positionIndex.length - 1;
+            for (int slot = slot(peerId, mask); positionIndex[slot] != 0; slot = (slot + 1) & mask) {
+                int position = positionIndex[slot] - 1;
+                if (peerIds[position] == peerId) {
+                    return position;
+                }
+            }
+            return -1;
+        }
+
+        int addPeer(int peerId) {
+            if (size == peerIds.length) {
+                peerIds = Arrays.copyOf(peerIds, size * 2);
+                ruleGrpCodes = Arrays.copyOf(ruleGrpCodes, size * 2);
+                positionIndex = new int[size * 4];
+                for (int position = 0; position < size; position++) {
+                    index(position);
+                }
+            }
+            int position = size++;
+            peerIds[position] = peerId;
+            ruleGrpCodes[position] = NO_CODES;
+            index(position);
+            return position;
+        }
+
+        private void index(int position) {
+            int mask = positionIndex.length - 1;
+            int slot = slot(peerIds[position], mask);
+            while (positionIndex[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            positionIndex[slot] = position + 1;
+        }
+
+        private static int slot(int peerId, int mask) {
+            int hash = peerId * 0x9E3779B9;
+            return (hash ^ (hash >>> 16)) & mask;
+        }
+    }
 
     public void add(RendererEndpointKey rendererEpKey, PeerEndpointKey peerEpKey, PolicyRuleGroupKey ruleGrpKey,
             EndpointPolicyParticipation rendererEpParticipation) {
-        Set<RuleGroupWithRendererEndpointParticipation> ruleGrpWithRendererEpParticipation =
-                policiesByEpAndPeerEp.get(rendererEpKey, peerEpKey);
-        if (ruleGrpWithRendererEpParticipation == null) {
-            ruleGrpWithRendererEpParticipation = new HashSet<>();
-            policiesByEpAndPeerEp.put(rendererEpKey, peerEpKey, ruleGrpWithRendererEpParticipation);
-            adrEpKeys.add(AddressEndpointUtils.fromRendererEpKey(rendererEpKey));
-            adrEpKeys.add(AddressEndpointUtils.fromPeerEpKey(peerEpKey));
+        int rendererEpId = adrEpKeys.intern(AddressEndpointUtils.fromRendererEpKey(rendererEpKey));
+        int peerId = adrEpKeys.intern(AddressEndpointUtils.fromPeerEpKey(peerEpKey));
+        RendererEpPolicies rendererEpPolicies = resolveRendererEpPolicies(rendererEpId);
+        if (rendererEpPolicies.peerEps == null) {
+            rendererEpPolicies.peerEps = new PeerPolicies();
         }
-        policyRuleGrpKeys.add(ruleGrpKey);
-        ruleGrpWithRendererEpParticipation
-            .add(toRuleGroupWithRendererEndpointParticipation(ruleGrpKey, rendererEpParticipation));
+        addPolicy(rendererEpId, rendererEpPolicies.peerEps, peerId, adrEpKeys, ruleGrpKey, rendererEpParticipation);
     }
 
     public void add(RendererEndpointKey rendererEpKey, PeerExternalEndpointKey peerExtEpKey,
             PolicyRuleGroupKey ruleGrpKey, EndpointPolicyParticipation rendererEpParticipation) {
-        Set<RuleGroupWithRendererEndpointParticipation> ruleGrpWithRendererEpParticipation =
-                policiesByEpAndPeerExtEp.get(rendererEpKey, peerExtEpKey);
-        if (ruleGrpWithRendererEpParticipation == null) {
-            ruleGrpWithRendererEpParticipation = new HashSet<>();
-            policiesByEpAndPeerExtEp.put(rendererEpKey, peerExtEpKey, ruleGrpWithRendererEpParticipation);
-            adrEpKeys.add(AddressEndpointUtils.fromRendererEpKey(rendererEpKey));
-            adrEpKeys.add(AddressEndpointUtils.fromPeerExtEpKey(peerExtEpKey));
+        int rendererEpId = adrEpKeys.intern(AddressEndpointUtils.fromRendererEpKey(rendererEpKey));
+        int peerId = adrEpKeys.intern(AddressEndpointUtils.fromPeerExtEpKey(peerExtEpKey));
+        RendererEpPolicies rendererEpPolicies = resolveRendererEpPolicies(rendererEpId);
+        if (rendererEpPolicies.peerExtEps == null) {
+            rendererEpPolicies.peerExtEps = new PeerPolicies();
         }
-        policyRuleGrpKeys.add(ruleGrpKey);
-        ruleGrpWithRendererEpParticipation
-            .add(toRuleGroupWithRendererEndpointParticipation(ruleGrpKey, rendererEpParticipation));
+        addPolicy(rendererEpId, rendererEpPolicies.peerExtEps, peerId, adrEpKeys, ruleGrpKey,
+                rendererEpParticipation);
     }
 
     public void add(RendererEndpointKey rendererEpKey, PeerExternalContainmentEndpointKey peerExtContainmentEpKey,
             PolicyRuleGroupKey ruleGrpKey, EndpointPolicyParticipation rendererEpParticipation) {
-        Set<RuleGroupWithRendererEndpointParticipation> ruleGrpWithRendererEpParticipation =
-                policiesByEpAndPeerExtCtxEp.get(rendererEpKey, peerExtContainmentEpKey);
-        if (ruleGrpWithRendererEpParticipation == null) {
-            ruleGrpWithRendererEpParticipation = new HashSet<>();
-            policiesByEpAndPeerExtCtxEp.put(rendererEpKey, peerExtContainmentEpKey, ruleGrpWithRendererEpParticipation);
-            adrEpKeys.add(AddressEndpointUtils.fromRendererEpKey(rendererEpKey));
-            contEpKeys.add(ContainmentEndpointUtils.fromPeerExtContEpKey(peerExtContainmentEpKey));
+        int rendererEpId = adrEpKeys.intern(AddressEndpointUtils.fromRendererEpKey(rendererEpKey));
+        int peerId = contEpKeys.intern(ContainmentEndpointUtils.fromPeerExtContEpKey(peerExtContainmentEpKey));
+        RendererEpPolicies rendererEpPolicies = resolveRendererEpPolicies(rendererEpId);
+        if (rendererEpPolicies.peerExtContEps == null) {
+            rendererEpPolicies.peerExtContEps = new PeerPolicies();
+        }
+        addPolicy(rendererEpId, rendererEpPolicies.peerExtContEps, peerId, contEpKeys, ruleGrpKey,
+                rendererEpParticipation);
+    }
+
+    private RendererEpPolicies resolveRendererEpPolicies(int rendererEpId) {
+        if (rendererEpId >= policiesByRendererEpId.length) {
+            policiesByRendererEpId = Arrays.copyOf(policiesByRendererEpId,
+                    Math.max(rendererEpId + 1, policiesByRendererEpId.length * 2));
+        }
+        RendererEpPolicies rendererEpPolicies = policiesByRendererEpId[rendererEpId];
+        if (rendererEpPolicies == null) {
+            rendererEpPolicies = new RendererEpPolicies();
+            policiesByRendererEpId[rendererEpId] = rendererEpPolicies;
+            rendererEpCount++;
+        }
+        return rendererEpPolicies;
+    }
+
+    private void addPolicy(int rendererEpId, PeerPolicies peerPolicies, int peerId, KeyInterner<?> peerKeys,
+            PolicyRuleGroupKey ruleGrpKey, EndpointPolicyParticipation rendererEpParticipation) {
+        int ruleGrpId = policyRuleGrpKeys.intern(ruleGrpKey);
+        int code = ruleGrpId * PARTICIPATIONS.length + rendererEpParticipation.ordinal();
+        int position = peerPolicies.indexOf(peerId);
+        if (position < 0) {
+            position = peerPolicies.addPeer(peerId);
+            adrEpKeys.retain(rendererEpId);
+            peerKeys.retain(peerId);
         }
-        policyRuleGrpKeys.add(ruleGrpKey);
-        ruleGrpWithRendererEpParticipation
-            .add(toRuleGroupWithRendererEndpointParticipation(ruleGrpKey, rendererEpParticipation));
+        int[] codes = peerPolicies.ruleGrpCodes[position];
+        if (Ints.contains(codes, code)) {
+            return;
+        }
+        int[] newCodes = Arrays.copyOf(codes, codes.length + 1);
+        newCodes[codes.length] = code;
+        peerPolicies.ruleGrpCodes[position] = retainCodes(newCodes);
+        releaseCodes(codes);
+        policyRuleGrpKeys.retain(ruleGrpId);
+    }
+
+    private int[] retainCodes(int[] codes) {
+        List<Integer> key = Ints.asList(codes);
+        CanonicalCodes canonical = canonicalCodes.get(key);
+        if (canonical == null) {
+            canonical = new CanonicalCodes(codes);
+            canonicalCodes.put(key, canonical);
+        }
+        canonical.refCount++;
+        return canonical.codes;
+    }
+
+    private void releaseCodes(int[] codes) {
+        if (codes.length == 0) {
+            return;
+        }
+        List<Integer> key = Ints.asList(codes);
+        CanonicalCodes canonical = canonicalCodes.get(key);
+        if (canonical != null && --canonical.refCount == 0) {
+            canonicalCodes.remove(key);
+        }
+    }
+
+    @VisibleForTesting
+    int getCanonicalCodesCount() {
+        return canonicalCodes.size();
+    }
+
+    public boolean isEndpointGroupPolicyForm() {
+        return endpointGroupPolicyForm;
+    }
+
+    /**
+     * Adds policy between endpoint groups in endpoint-group form. The policy is kept only once for
+     * all renderer endpoints in its endpoint groups.
+     *
+     * @param rendererEpKey renderer endpoint in an endpoint group of the policy
+     * @param policy policy between endpoint group of the renderer endpoint and peer endpoint group
+     * @param rendererEpParticipation participation of the renderer endpoint in the policy
+     * @return {@code true} if the policy was not added with the participation yet, therefore
+     *         endpoints of the peer endpoint group have to be added as peers
+     */
+    public boolean addEndpointGroupPolicy(RendererEndpointKey rendererEpKey, ResolvedPolicy policy,
+            EndpointPolicyParticipation rendererEpParticipation) {
+        Preconditions.checkState(endpointGroupPolicyForm, "Policy is not collected in endpoint-group form.");
+        epgPolicyRendererEpKeys.add(AddressEndpointUtils.fromRendererEpKey(rendererEpKey));
+        if (!epgPolicyByKey.containsKey(policy.getKey())) {
+            epgPolicyByKey.put(policy.getKey(), policy);
+        }
+        return epgPolicyParticipations.put(policy.getKey(), rendererEpParticipation);
+    }
+
+    /**
+     * Adds endpoint from a peer endpoint group of a policy in endpoint-group form.
+     */
+    public void addEndpointGroupPolicyPeer(AddressEndpointKey peerAdrEpKey) {
+        Preconditions.checkState(endpointGroupPolicyForm, "Policy is not collected in endpoint-group form.");
+        epgPolicyPeerAdrEpKeys.add(peerAdrEpKey);
+    }
+
+    /**
+     * Adds containment endpoint from a peer endpoint group of a policy in endpoint-group form.
+     */
+    public void addEndpointGroupPolicyPeer(ContainmentEndpointKey peerContEpKey) {
+        Preconditions.checkState(endpointGroupPolicyForm, "Policy is not collected in endpoint-group form.");
+        epgPolicyPeerContEpKeys.add(peerContEpKey);
     }
 
     public static RuleGroupWithRendererEndpointParticipation toRuleGroupWithRendererEndpointParticipation(
@@ -145,102 +437,324 @@ public class RendererConfigurationBuilder {
             .build();
     }
 
+    private RuleGroupWithRendererEndpointParticipation toRuleGroupWithRendererEndpointParticipation(int code) {
+        return toRuleGroupWithRendererEndpointParticipation(
+                policyRuleGrpKeys.getKey(code / PARTICIPATIONS.length), PARTICIPATIONS[code % PARTICIPATIONS.length]);
+    }
+
+    private ImmutableSet<RuleGroupWithRendererEndpointParticipation> toRuleGroupSet(int[] codes) {
+        ImmutableSet.Builder<RuleGroupWithRendererEndpointParticipation> ruleGrps = ImmutableSet.builder();
+        for (int code : codes) {
+            ruleGrps.add(toRuleGroupWithRendererEndpointParticipation(code));
+        }
+        return ruleGrps.build();
+    }
+
+    /**
+     * Creates a copy of policies with peer endpoints. Intended for inspection and tests, the
+     * configuration is built by {@link #buildRendererEndpoints()}.
+     */
     public ImmutableTable<RendererEndpointKey, PeerEndpointKey, Set<RuleGroupWithRendererEndpointParticipation>> getPoliciesByEpAndPeerEp() {
-        return ImmutableTable.copyOf(policiesByEpAndPeerEp);
+        ImmutableTable.Builder<RendererEndpointKey, PeerEndpointKey, Set<RuleGroupWithRendererEndpointParticipation>> table =
+                ImmutableTable.builder();
+        for (int rendererEpId = 0; rendererEpId < policiesByRendererEpId.length; rendererEpId++) {
+            RendererEpPolicies rendererEpPolicies = policiesByRendererEpId[rendererEpId];
+            if (rendererEpPolicies == null || rendererEpPolicies.peerEps == null) {
+                continue;
+            }
+            RendererEndpointKey rendererEpKey = AddressEndpointUtils.toRendererEpKey(adrEpKeys.getKey(rendererEpId));
+            PeerPolicies peers = rendererEpPolicies.peerEps;
+            for (int position = 0; position < peers.size; position++) {
+                table.put(rendererEpKey, AddressEndpointUtils.toPeerEpKey(adrEpKeys.getKey(peers.peerIds[position])),
+                        toRuleGroupSet(peers.ruleGrpCodes[position]));
+            }
+        }
+        return table.build();
     }
 
+    /**
+     * Creates a copy of policies with peer external endpoints. Intended for inspection and tests,
+     * the configuration is built by {@link #buildRendererEndpoints()}.
+     */
     public ImmutableTable<RendererEndpointKey, PeerExternalEndpointKey, Set<RuleGroupWithRendererEndpointParticipation>> getPoliciesByEpAndPeerExtEp() {
-        return ImmutableTable.copyOf(policiesByEpAndPeerExtEp);
+        ImmutableTable.Builder<RendererEndpointKey, PeerExternalEndpointKey, Set<RuleGroupWithRendererEndpointParticipation>> table =
+                ImmutableTable.builder();
+        for (int rendererEpId = 0; rendererEpId < policiesByRendererEpId.length; rendererEpId++) {
+            RendererEpPolicies rendererEpPolicies = policiesByRendererEpId[rendererEpId];
+            if (rendererEpPolicies == null || rendererEpPolicies.peerExtEps == null) {
+                continue;
+            }
+            RendererEndpointKey rendererEpKey = AddressEndpointUtils.toRendererEpKey(adrEpKeys.getKey(rendererEpId));
+            PeerPolicies peers = rendererEpPolicies.peerExtEps;
+            for (int position = 0; position < peers.size; position++) {
+                table.put(rendererEpKey,
+                        AddressEndpointUtils.toPeerExtEpKey(adrEpKeys.getKey(peers.peerIds[position])),
+                        toRuleGroupSet(peers.ruleGrpCodes[position]));
+            }
+        }
+        return table.build();
     }
 
+    /**
+     * Creates a copy of policies with peer external containment endpoints. Intended for inspection
+     * and tests, the configuration is built by {@link #buildRendererEndpoints()}.
+     */
     public ImmutableTable<RendererEndpointKey, PeerExternalContainmentEndpointKey, Set<RuleGroupWithRendererEndpointParticipation>> getPoliciesByEpAndPeerExtConEp() {
-        return ImmutableTable.copyOf(policiesByEpAndPeerExtCtxEp);
+        ImmutableTable.Builder<RendererEndpointKey, PeerExternalContainmentEndpointKey, Set<RuleGroupWithRendererEndpointParticipation>> table =
+                ImmutableTable.builder();
+        for (int rendererEpId = 0; rendererEpId < policiesByRendererEpId.length; rendererEpId++) {
+            RendererEpPolicies rendererEpPolicies = policiesByRendererEpId[rendererEpId];
+            if (rendererEpPolicies == null || rendererEpPolicies.peerExtContEps == null) {
+                continue;
+            }
+            RendererEndpointKey rendererEpKey = AddressEndpointUtils.toRendererEpKey(adrEpKeys.getKey(rendererEpId));
+            PeerPolicies peers = rendererEpPolicies.peerExtContEps;
+            for (int position = 0; position < peers.size; position++) {
+                table.put(rendererEpKey,
+                        ContainmentEndpointUtils.toPeerExtContEpKey(contEpKeys.getKey(peers.peerIds[position])),
+                        toRuleGroupSet(peers.ruleGrpCodes[position]));
+            }
+        }
+        return table.build();
     }
 
     public ImmutableSet<AddressEndpointKey> getAddressEndpointKeys() {
-        return ImmutableSet.copyOf(adrEpKeys);
+        if (endpointGroupPolicyForm) {
+            return ImmutableSet.<AddressEndpointKey>builder()
+                .addAll(epgPolicyRendererEpKeys)
+                .addAll(epgPolicyPeerAdrEpKeys)
+                .build();
+        }
+        return adrEpKeys.getKeys();
     }
 
     public ImmutableSet<ContainmentEndpointKey> getContainmentEndpointKeys() {
-        return ImmutableSet.copyOf(contEpKeys);
+        if (endpointGroupPolicyForm) {
+            return ImmutableSet.copyOf(epgPolicyPeerContEpKeys);
+        }
+        return contEpKeys.getKeys();
     }
 
     public ImmutableSet<PolicyRuleGroupKey> getPolicyRuleGroupKeys() {
-        return ImmutableSet.copyOf(policyRuleGrpKeys);
+        if (endpointGroupPolicyForm) {
+            ImmutableSet.Builder<PolicyRuleGroupKey> ruleGrpKeys = ImmutableSet.builder();
+            for (ResolvedPolicy policy : epgPolicyByKey.values()) {
+                for (PolicyRuleGroup ruleGrp : getPolicyRuleGroups(policy)) {
+                    ruleGrpKeys.add(ruleGrp.getKey());
+                }
+            }
+            return ruleGrpKeys.build();
+        }
+        return policyRuleGrpKeys.getKeys();
     }
 
+    private static List<PolicyRuleGroup> getPolicyRuleGroups(ResolvedPolicy policy) {
+        List<PolicyRuleGroup> ruleGrps = new ArrayList<>();
+        if (policy.getPolicyRuleGroupWithEndpointConstraints() == null) {
+            return ruleGrps;
+        }
+        for (PolicyRuleGroupWithEndpointConstraints ruleGrpsWithEpConstraints : policy
+            .getPolicyRuleGroupWithEndpointConstraints()) {
+            if (ruleGrpsWithEpConstraints.getPolicyRuleGroup() != null) {
+                ruleGrps.addAll(ruleGrpsWithEpConstraints.getPolicyRuleGroup());
+            }
+        }
+        return ruleGrps;
+    }
+
+    public boolean isEmpty() {
+        if (endpointGroupPolicyForm) {
+            return epgPolicyRendererEpKeys.isEmpty();
+        }
+        return rendererEpCount == 0;
+    }
+
+    /**
+     * Removes all policies where the given endpoint is renderer endpoint. Endpoint and rule-group keys
+     * which are not referenced by other policies are released.
+     *
+     * Not supported in endpoint-group form where policy is not kept per renderer endpoint.
+     *
+     * @param rendererEpKey renderer endpoint to remove
+     * @return {@code true} if at least one policy was removed
+     */
+    public boolean removeRendererEndpoint(RendererEndpointKey rendererEpKey) {
+        Preconditions.checkState(!endpointGroupPolicyForm, "Renderer endpoint cannot be removed in endpoint-group form.");
+        int rendererEpId = adrEpKeys.getId(AddressEndpointUtils.fromRendererEpKey(rendererEpKey));
+        if (rendererEpId < 0 || rendererEpId >= policiesByRendererEpId.length
+                || policiesByRendererEpId[rendererEpId] == null) {
+            return false;
+        }
+        RendererEpPolicies rendererEpPolicies = policiesByRendererEpId[rendererEpId];
+        policiesByRendererEpId[rendererEpId] = null;
+        rendererEpCount--;
+        releasePolicies(rendererEpId, rendererEpPolicies.peerEps, adrEpKeys);
+        releasePolicies(rendererEpId, rendererEpPolicies.peerExtEps, adrEpKeys);
+        releasePolicies(rendererEpId, rendererEpPolicies.peerExtContEps, contEpKeys);
+        return true;
+    }
+
+    private void releasePolicies(int rendererEpId, @Nullable PeerPolicies peerPolicies, KeyInterner<?> peerKeys) {
+        if (peerPolicies == null) {
+            return;
+        }
+        for (int position = 0; position < peerPolicies.size; position++) {
+            adrEpKeys.release(rendererEpId);
+            peerKeys.release(peerPolicies.peerIds[position]);
+            for (int code : peerPolicies.ruleGrpCodes[position]) {
+                policyRuleGrpKeys.release(code / PARTICIPATIONS.length);
+            }
+            releaseCodes(peerPolicies.ruleGrpCodes[position]);
+        }
+    }
+
+    /**
+     * Builds renderer endpoint with all its peers.
+     *
+     * @param rendererEpKey renderer endpoint
+     * @return absent if there is no policy for the renderer endpoint
+     */
+    public Optional<RendererEndpoint> buildRendererEndpoint(RendererEndpointKey rendererEpKey) {
+        if (endpointGroupPolicyForm) {
+            if (!epgPolicyRendererEpKeys.contains(AddressEndpointUtils.fromRendererEpKey(rendererEpKey))) {
+                return Optional.absent();
+            }
+            return Optional.of(new RendererEndpointBuilder().setKey(rendererEpKey).build());
+        }
+        int rendererEpId = adrEpKeys.getId(AddressEndpointUtils.fromRendererEpKey(rendererEpKey));
+        if (rendererEpId < 0 || rendererEpId >= policiesByRendererEpId.length
+                || policiesByRendererEpId[rendererEpId] == null) {
+            return Optional.absent();
+        }
+        return Optional.of(
+                buildRendererEndpoint(rendererEpKey, policiesByRendererEpId[rendererEpId], new BindingCache()));
+    }
+
+    /**
+     * Builds renderer endpoints. Renderer endpoints do not contain peers in endpoint-group form.
+     */
     public @Nonnull RendererEndpoints buildRendererEndpoints() {
-        Map<RendererEndpointKey, RendererEndpointBuilder> rendererEpBuilderByKey = new HashMap<>();
-        for (RendererEndpointKey rendererEpKey : policiesByEpAndPeerEp.rowKeySet()) {
-            RendererEndpointBuilder rendererEpBuilder =
-                    resolveRendererEndpointBuilder(rendererEpKey, rendererEpBuilderByKey);
-            List<PeerEndpoint> peerEps =
-                    toListPeerEndpoint(policiesByEpAndPeerEp.row(rendererEpKey));
-            rendererEpBuilder.setPeerEndpoint(peerEps);
-            rendererEpBuilderByKey.put(rendererEpKey, rendererEpBuilder);
-        }
-        for (RendererEndpointKey rendererEpKey : policiesByEpAndPeerExtEp.rowKeySet()) {
-            RendererEndpointBuilder rendererEpBuilder =
-                    resolveRendererEndpointBuilder(rendererEpKey, rendererEpBuilderByKey);
-            List<PeerExternalEndpoint> peerExtEps =
-                    toListPeerExternalEndpoint(policiesByEpAndPeerExtEp.row(rendererEpKey));
-            rendererEpBuilder.setPeerExternalEndpoint(peerExtEps);
-            rendererEpBuilderByKey.put(rendererEpKey, rendererEpBuilder);
-        }
-        for (RendererEndpointKey rendererEpKey : policiesByEpAndPeerExtCtxEp.rowKeySet()) {
-            RendererEndpointBuilder rendererEpBuilder =
-                    resolveRendererEndpointBuilder(rendererEpKey, rendererEpBuilderByKey);
-            List<PeerExternalContainmentEndpoint> peerExtContEps =
-                    toListPeerExternalContainmentEndpoint(policiesByEpAndPeerExtCtxEp.row(rendererEpKey));
-            rendererEpBuilder.setPeerExternalContainmentEndpoint(peerExtContEps);
-            rendererEpBuilderByKey.put(rendererEpKey, rendererEpBuilder);
-        }
-        List<RendererEndpoint> rendererEps = new ArrayList<>();
-        for (RendererEndpointBuilder builder : rendererEpBuilderByKey.values()) {
-            rendererEps.add(builder.build());
+        if (endpointGroupPolicyForm) {
+            List<RendererEndpoint> rendererEps = new ArrayList<>(epgPolicyRendererEpKeys.size());
+            for (AddressEndpointKey rendererAdrEpKey : epgPolicyRendererEpKeys) {
+                rendererEps.add(new RendererEndpointBuilder()
+                    .setKey(AddressEndpointUtils.toRendererEpKey(rendererAdrEpKey)).build());
+            }
+            return new RendererEndpointsBuilder().setRendererEndpoint(rendererEps).build();
+        }
+        BindingCache bindingCache = new BindingCache();
+        List<RendererEndpoint> rendererEps = new ArrayList<>(rendererEpCount);
+        for (int rendererEpId = 0; rendererEpId < policiesByRendererEpId.length; rendererEpId++) {
+            RendererEpPolicies rendererEpPolicies = policiesByRendererEpId[rendererEpId];
+            if (rendererEpPolicies != null) {
+                RendererEndpointKey rendererEpKey =
+                        AddressEndpointUtils.toRendererEpKey(adrEpKeys.getKey(rendererEpId));
+                rendererEps.add(buildRendererEndpoint(rendererEpKey, rendererEpPolicies, bindingCache));
+            }
         }
         return new RendererEndpointsBuilder().setRendererEndpoint(rendererEps).build();
     }
 
-    private static RendererEndpointBuilder resolveRendererEndpointBuilder(RendererEndpointKey rendererEpKey,
-            Map<RendererEndpointKey, RendererEndpointBuilder> rendererEpBuilderByKey) {
-        RendererEndpointBuilder rendererEpBuilder = rendererEpBuilderByKey.get(rendererEpKey);
-        if (rendererEpBuilder == null) {
-            rendererEpBuilder = new RendererEndpointBuilder();
-            rendererEpBuilder.setKey(rendererEpKey);
+    private RendererEndpoint buildRendererEndpoint(RendererEndpointKey rendererEpKey,
+            RendererEpPolicies rendererEpPolicies, BindingCache bindingCache) {
+        RendererEndpointBuilder rendererEpBuilder = new RendererEndpointBuilder().setKey(rendererEpKey);
+        if (rendererEpPolicies.peerEps != null) {
+            rendererEpBuilder.setPeerEndpoint(toListPeerEndpoint(rendererEpPolicies.peerEps, bindingCache));
+        }
+        if (rendererEpPolicies.peerExtEps != null) {
+            rendererEpBuilder
+                .setPeerExternalEndpoint(toListPeerExternalEndpoint(rendererEpPolicies.peerExtEps, bindingCache));
+        }
+        if (rendererEpPolicies.peerExtContEps != null) {
+            rendererEpBuilder.setPeerExternalContainmentEndpoint(
+                    toListPeerExternalContainmentEndpoint(rendererEpPolicies.peerExtContEps, bindingCache));
+        }
+        return rendererEpBuilder.build();
+    }
+
+    /**
+     * Binding objects created while building renderer endpoints. Binding objects are immutable so
+     * one instance per key is shared by all renderer endpoints referencing the key.
+     */
+    private final class BindingCache {
+
+        private final PeerEndpointKey[] peerEpKeys = new PeerEndpointKey[adrEpKeys.capacity()];
+        private final PeerExternalEndpointKey[] peerExtEpKeys = new PeerExternalEndpointKey[adrEpKeys.capacity()];
+        private final PeerExternalContainmentEndpointKey[] peerExtContEpKeys =
+                new PeerExternalContainmentEndpointKey[contEpKeys.capacity()];
+        private final RuleGroupWithRendererEndpointParticipation[] ruleGrpsByCode =
+                new RuleGroupWithRendererEndpointParticipation[policyRuleGrpKeys.capacity() * PARTICIPATIONS.length];
+        // code arrays are canonical so equal rule groups of different peers map to the same list
+        private final Map<int[], List<RuleGroupWithRendererEndpointParticipation>> ruleGrpListByCodes =
+                new IdentityHashMap<>();
+
+        PeerEndpointKey getPeerEpKey(int peerId) {
+            PeerEndpointKey peerEpKey = peerEpKeys[peerId];
+            if (peerEpKey == null) {
+                peerEpKey = AddressEndpointUtils.toPeerEpKey(adrEpKeys.getKey(peerId));
+                peerEpKeys[peerId] = peerEpKey;
+            }
+            return peerEpKey;
+        }
+
+        PeerExternalEndpointKey getPeerExtEpKey(int peerId) {
+            PeerExternalEndpointKey peerExtEpKey = peerExtEpKeys[peerId];
+            if (peerExtEpKey == null) {
+                peerExtEpKey = AddressEndpointUtils.toPeerExtEpKey(adrEpKeys.getKey(peerId));
+                peerExtEpKeys[peerId] = peerExtEpKey;
+            }
+            return peerExtEpKey;
+        }
+
+        PeerExternalContainmentEndpointKey getPeerExtContEpKey(int peerId) {
+            PeerExternalContainmentEndpointKey peerExtContEpKey = peerExtContEpKeys[peerId];
+            if (peerExtContEpKey == null) {
+                peerExtContEpKey = ContainmentEndpointUtils.toPeerExtContEpKey(contEpKeys.getKey(peerId));
+                peerExtContEpKeys[peerId] = peerExtContEpKey;
+            }
+            return peerExtContEpKey;
+        }
+
+        List<RuleGroupWithRendererEndpointParticipation> getRuleGroups(int[] codes) {
+            List<RuleGroupWithRendererEndpointParticipation> ruleGrps = ruleGrpListByCodes.get(codes);
+            if (ruleGrps == null) {
+                ImmutableList.Builder<RuleGroupWithRendererEndpointParticipation> builder = ImmutableList.builder();
+                for (int code : codes) {
+                    RuleGroupWithRendererEndpointParticipation ruleGrp = ruleGrpsByCode[code];
+                    if (ruleGrp == null) {
+                        ruleGrp = toRuleGroupWithRendererEndpointParticipation(code);
+                        ruleGrpsByCode[code] = ruleGrp;
+                    }
+                    builder.add(ruleGrp);
+                }
+                ruleGrps = builder.build();
+                ruleGrpListByCodes.put(codes, ruleGrps);
+            }
+            return ruleGrps;
         }
-        return rendererEpBuilder;
     }
 
-    private static List<PeerEndpoint> toListPeerEndpoint(
-            Map<PeerEndpointKey, Set<RuleGroupWithRendererEndpointParticipation>> policiesByPeerEp) {
-        List<PeerEndpoint> peerEps = new ArrayList<>();
-        for (Entry<PeerEndpointKey, Set<RuleGroupWithRendererEndpointParticipation>> entry : policiesByPeerEp
-            .entrySet()) {
-            PeerEndpointKey peerEpKey = entry.getKey();
-            PeerEndpointKey peerEndpointKey = new PeerEndpointKey(peerEpKey.getAddress(),
-                    peerEpKey.getAddressType(), peerEpKey.getContextId(), peerEpKey.getContextType());
+    private static List<PeerEndpoint> toListPeerEndpoint(PeerPolicies peerPolicies, BindingCache bindingCache) {
+        List<PeerEndpoint> peerEps = new ArrayList<>(peerPolicies.size);
+        for (int position = 0; position < peerPolicies.size; position++) {
             PeerEndpoint peerEndpoint =
-                    new PeerEndpointBuilder().setKey(peerEndpointKey)
-                        .setRuleGroupWithRendererEndpointParticipation(new ArrayList<>(entry.getValue()))
+                    new PeerEndpointBuilder().setKey(bindingCache.getPeerEpKey(peerPolicies.peerIds[position]))
+                        .setRuleGroupWithRendererEndpointParticipation(
+                                bindingCache.getRuleGroups(peerPolicies.ruleGrpCodes[position]))
                         .build();
             peerEps.add(peerEndpoint);
         }
         return peerEps;
     }
 
-    private static List<PeerExternalEndpoint> toListPeerExternalEndpoint(
-            Map<PeerExternalEndpointKey, Set<RuleGroupWithRendererEndpointParticipation>> policiesByPeerExtEp) {
-        List<PeerExternalEndpoint> peerExtEps = new ArrayList<>();
-        for (Entry<PeerExternalEndpointKey, Set<RuleGroupWithRendererEndpointParticipation>> entry : policiesByPeerExtEp
-            .entrySet()) {
-            PeerExternalEndpointKey peerEpKey = entry.getKey();
-            PeerExternalEndpointKey peerExternalEpKey =
-                    new PeerExternalEndpointKey(peerEpKey.getAddress(), peerEpKey.getAddressType(),
-                            peerEpKey.getContextId(), peerEpKey.getContextType());
+    private static List<PeerExternalEndpoint> toListPeerExternalEndpoint(PeerPolicies peerPolicies,
+            BindingCache bindingCache) {
+        List<PeerExternalEndpoint> peerExtEps = new ArrayList<>(peerPolicies.size);
+        for (int position = 0; position < peerPolicies.size; position++) {
             PeerExternalEndpoint peerExternalEp =
-                    new PeerExternalEndpointBuilder().setKey(peerExternalEpKey)
-                        .setRuleGroupWithRendererEndpointParticipation(new ArrayList<>(entry.getValue()))
+                    new PeerExternalEndpointBuilder().setKey(bindingCache.getPeerExtEpKey(peerPolicies.peerIds[position]))
+                        .setRuleGroupWithRendererEndpointParticipation(
+                                bindingCache.getRuleGroups(peerPolicies.ruleGrpCodes[position]))
                         .build();
             peerExtEps.add(peerExternalEp);
         }
@@ -248,23 +762,62 @@ public class RendererConfigurationBuilder {
     }
 
     private static List<PeerExternalContainmentEndpoint> toListPeerExternalContainmentEndpoint(
-            Map<PeerExternalContainmentEndpointKey, Set<RuleGroupWithRendererEndpointParticipation>> policiesByPeerExtContEp) {
-        List<PeerExternalContainmentEndpoint> peerExtContEps = new ArrayList<>();
-        for (Entry<PeerExternalContainmentEndpointKey, Set<RuleGroupWithRendererEndpointParticipation>> entry : policiesByPeerExtContEp
-            .entrySet()) {
-            PeerExternalContainmentEndpointKey peerEpKey = entry.getKey();
-            PeerExternalContainmentEndpointKey peerExternalContEpKey =
-                    new PeerExternalContainmentEndpointKey(peerEpKey.getContextId(),
-                            peerEpKey.getContextType());
-            PeerExternalContainmentEndpoint peerExternalContEp =
-                    new PeerExternalContainmentEndpointBuilder().setKey(peerExternalContEpKey)
-                        .setRuleGroupWithRendererEndpointParticipation(new ArrayList<>(entry.getValue()))
-                        .build();
+            PeerPolicies peerPolicies, BindingCache bindingCache) {
+        List<PeerExternalContainmentEndpoint> peerExtContEps = new ArrayList<>(peerPolicies.size);
+        for (int position = 0; position < peerPolicies.size; position++) {
+            PeerExternalContainmentEndpoint peerExternalContEp = new PeerExternalContainmentEndpointBuilder()
+                .setKey(bindingCache.getPeerExtContEpKey(peerPolicies.peerIds[position]))
+                .setRuleGroupWithRendererEndpointParticipation(
+                        bindingCache.getRuleGroups(peerPolicies.ruleGrpCodes[position]))
+                .build();
             peerExtContEps.add(peerExternalContEp);
         }
         return peerExtContEps;
     }
 
+    private static int[] ensureCapacity(int[] array, int minCapacity) {
+        if (minCapacity <= array.length) {
+            return array;
+        }
+        return Arrays.copyOf(array, Math.max(minCapacity, array.length * 2));
+    }
+
+    /**
+     * @return policies in endpoint-group form or {@code null} if policy is not collected in this
+     *         form
+     */
+    public @Nullable EndpointGroupPolicies buildEndpointGroupPolicies() {
+        if (!endpointGroupPolicyForm) {
+            return null;
+        }
+        List<EndpointGroupPolicy> epgPolicies = new ArrayList<>(epgPolicyByKey.size());
+        for (ResolvedPolicy policy : epgPolicyByKey.values()) {
+            Set<PolicyRuleGroupKey> ruleGrpKeys = new LinkedHashSet<>();
+            for (PolicyRuleGroup ruleGrp : getPolicyRuleGroups(policy)) {
+                ruleGrpKeys.add(ruleGrp.getKey());
+            }
+            List<EndpointGroupPolicyRuleGroup> epgPolicyRuleGrps = new ArrayList<>(ruleGrpKeys.size());
+            for (PolicyRuleGroupKey ruleGrpKey : ruleGrpKeys) {
+                epgPolicyRuleGrps.add(new EndpointGroupPolicyRuleGroupBuilder().setTenantId(ruleGrpKey.getTenantId())
+                    .setContractId(ruleGrpKey.getContractId())
+                    .setSubjectName(ruleGrpKey.getSubjectName())
+                    .build());
+            }
+            EndpointGroupPolicyBuilder epgPolicyBuilder =
+                    new EndpointGroupPolicyBuilder().setConsumerTenantId(policy.getConsumerTenantId())
+                        .setConsumerEpgId(policy.getConsumerEpgId())
+                        .setProviderTenantId(policy.getProviderTenantId())
+                        .setProviderEpgId(policy.getProviderEpgId())
+                        .setEndpointGroupPolicyRuleGroup(epgPolicyRuleGrps);
+            if (policy.getExternalImplicitGroup() != null) {
+                epgPolicyBuilder.setExternalImplicitGroup(EndpointGroupPolicy.ExternalImplicitGroup
+                    .forValue(policy.getExternalImplicitGroup().getIntValue()));
+            }
+            epgPolicies.add(epgPolicyBuilder.build());
+        }
+        return new EndpointGroupPoliciesBuilder().setEndpointGroupPolicy(epgPolicies).build();
+    }
+
     public Endpoints buildEndoints(EndpointInfo epInfo, EndpointLocationInfo epLocInfo,
             Map<InstanceIdentifier<?>, RendererName> rendererByNode, Set<EndpointAugmentor> augmentors) {
         List<AddressEndpointWithLocation> epsWithLoc =
@@ -281,16 +834,22 @@ public class RendererConfigurationBuilder {
             Map<InstanceIdentifier<?>, RendererName> rendererByNode, Set<EndpointAugmentor> augmentors) {
         List<AddressEndpointWithLocation> result = new ArrayList<>();
         for (AddressEndpointKey epKey : epKeys) {
-            Optional<AddressEndpoint> potentialEp = epInfo.getEndpoint(epKey);
-            Preconditions.checkArgument(potentialEp.isPresent());
-            Optional<AddressEndpointLocation> potentionalEpLoc = epLocInfo.getAdressEndpointLocation(epKey);
-            Preconditions.checkArgument(potentionalEpLoc.isPresent());
-            RendererName rendererName = resolveRendererName(potentionalEpLoc.get(), rendererByNode);
-            result.add(createEpWithLoc(potentialEp.get(), potentionalEpLoc.get(), rendererName, augmentors));
+            result.add(buildAddressEndpointWithLocation(epKey, epInfo, epLocInfo, rendererByNode, augmentors));
         }
         return result;
     }
 
+    public static AddressEndpointWithLocation buildAddressEndpointWithLocation(AddressEndpointKey epKey,
+            EndpointInfo epInfo, EndpointLocationInfo epLocInfo,
+            Map<InstanceIdentifier<?>, RendererName> rendererByNode, Set<EndpointAugmentor> augmentors) {
+        Optional<AddressEndpoint> potentialEp = epInfo.getEndpoint(epKey);
+        Preconditions.checkArgument(potentialEp.isPresent());
+        Optional<AddressEndpointLocation> potentionalEpLoc = epLocInfo.getAdressEndpointLocation(epKey);
+        Preconditions.checkArgument(potentionalEpLoc.isPresent());
+        RendererName rendererName = resolveRendererName(potentionalEpLoc.get(), rendererByNode);
+        return createEpWithLoc(potentialEp.get(), potentionalEpLoc.get(), rendererName, augmentors);
+    }
+
     private static RendererName resolveRendererName(AddressEndpointLocation epLoc,
             Map<InstanceIdentifier<?>, RendererName> rendererByNode) {
         Optional<InstanceIdentifier<?>> potentialAbsNodeLoc = EndpointLocationUtils.resolveAbsoluteNodeLocation(epLoc);
@@ -331,16 +890,22 @@ public class RendererConfigurationBuilder {
             EndpointInfo epInfo, EndpointLocationInfo epLocInfo, Set<EndpointAugmentor> augmentors) {
         List<ContainmentEndpointWithLocation> result = new ArrayList<>();
         for (ContainmentEndpointKey contEpKey : contEpKeys) {
-            Optional<ContainmentEndpoint> potentialContEp = epInfo.getContainmentEndpoint(contEpKey);
-            Preconditions.checkArgument(potentialContEp.isPresent());
-            Optional<ContainmentEndpointLocation> potentialContEpLoc =
-                    epLocInfo.getContainmentEndpointLocation(contEpKey);
-            Preconditions.checkArgument(potentialContEpLoc.isPresent());
-            result.add(createContEpWithLoc(potentialContEp.get(), potentialContEpLoc.get(), augmentors));
+            result.add(buildContainmentEndpointWithLocation(contEpKey, epInfo, epLocInfo, augmentors));
         }
         return result;
     }
 
+    public static ContainmentEndpointWithLocation buildContainmentEndpointWithLocation(
+            ContainmentEndpointKey contEpKey, EndpointInfo epInfo, EndpointLocationInfo epLocInfo,
+            Set<EndpointAugmentor> augmentors) {
+        Optional<ContainmentEndpoint> potentialContEp = epInfo.getContainmentEndpoint(contEpKey);
+        Preconditions.checkArgument(potentialContEp.isPresent());
+        Optional<ContainmentEndpointLocation> potentialContEpLoc =
+                epLocInfo.getContainmentEndpointLocation(contEpKey);
+        Preconditions.checkArgument(potentialContEpLoc.isPresent());
+        return createContEpWithLoc(potentialContEp.get(), potentialContEpLoc.get(), augmentors);
+    }
+
     private static ContainmentEndpointWithLocation createContEpWithLoc(ContainmentEndpoint contEp,
             ContainmentEndpointLocation contEpLoc, Set<EndpointAugmentor> augmentors) {
         ContainmentEndpointWithLocationBuilder contEpWithLoc = new ContainmentEndpointWithLocationBuilder()
@@ -372,14 +937,18 @@ public class RendererConfigurationBuilder {
             ResolvedPolicyInfo policyInfo) {
         List<RuleGroup> result = new ArrayList<>();
         for (PolicyRuleGroupKey policyRuleGrpKey : policyRuleGrpKeys) {
-            Optional<PolicyRuleGroup> potentialPolicyRuleGrp = policyInfo.getPolicyRuleGroup(policyRuleGrpKey);
-            Preconditions.checkArgument(potentialPolicyRuleGrp.isPresent());
-            result.add(createRuleGroup(potentialPolicyRuleGrp.get()));
+            result.add(buildRuleGroup(policyRuleGrpKey, policyInfo));
         }
         return result;
     }
 
-    private RuleGroup createRuleGroup(PolicyRuleGroup policyRuleGrp) {
+    public static RuleGroup buildRuleGroup(PolicyRuleGroupKey policyRuleGrpKey, ResolvedPolicyInfo policyInfo) {
+        Optional<PolicyRuleGroup> potentialPolicyRuleGrp = policyInfo.getPolicyRuleGroup(policyRuleGrpKey);
+        Preconditions.checkArgument(potentialPolicyRuleGrp.isPresent());
+        return createRuleGroup(potentialPolicyRuleGrp.get());
+    }
+
+    private static RuleGroup createRuleGroup(PolicyRuleGroup policyRuleGrp) {
         return new RuleGroupBuilder().setTenantId(policyRuleGrp.getTenantId())
             .setContractId(policyRuleGrp.getContractId())
             .setSubjectName(policyRuleGrp.getSubjectName())
@@ -405,7 +974,7 @@ public class RendererConfigurationBuilder {
         return result;
     }
 
-    private static RendererForwardingByTenant resolveRendererForwardingByTenant(ForwardingByTenant fwdByTenant,
+    public static RendererForwardingByTenant resolveRendererForwardingByTenant(ForwardingByTenant fwdByTenant,
             Set<NetworkDomainAugmentor> augmentors) {
         List<RendererForwardingContext> rendererForwardingContexts =
                 resolveRendererForwardingContexts(fwdByTenant.getForwardingContext());
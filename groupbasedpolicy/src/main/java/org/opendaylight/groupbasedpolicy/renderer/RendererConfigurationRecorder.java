@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2016 Cisco Systems, Inc. and others. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.opendaylight.groupbasedpolicy.renderer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.endpoints.address.endpoints.AddressEndpointKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.endpoints.containment.endpoints.ContainmentEndpointKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.EndpointPolicyParticipation;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.renderer.endpoints.RendererEndpointKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.renderer.endpoints.renderer.endpoint.PeerEndpointKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.renderer.endpoints.renderer.endpoint.PeerExternalContainmentEndpointKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.renderer.endpoints.renderer.endpoint.PeerExternalEndpointKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.resolved.policy.rev150828.resolved.policies.ResolvedPolicy;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.resolved.policy.rev150828.resolved.policies.ResolvedPolicyKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.resolved.policy.rev150828.resolved.policies.resolved.policy.policy.rule.group.with.endpoint.constraints.PolicyRuleGroupKey;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.SetMultimap;
+
+/**
+ * Records policies in order in which they are added so they can be added to
+ * {@link RendererConfigurationBuilder} later. Policies of different node locations can be resolved
+ * in parallel into separate recorders and replayed to one builder in the same order as if they
+ * were resolved serially, therefore the builder ends up in the same state.
+ * <p>
+ * Only {@code add} methods are recorded, the recorder itself stays empty. In endpoint-group form
+ * the recorder remembers which policies were added to report newly added ones the same way as the
+ * builder does.
+ */
+class RendererConfigurationRecorder extends RendererConfigurationBuilder {
+
+    private final List<RecordedPolicy> policies = new ArrayList<>();
+    private final SetMultimap<ResolvedPolicyKey, EndpointPolicyParticipation> epgPolicyParticipations =
+            HashMultimap.create();
+
+    RendererConfigurationRecorder() {
+        this(false);
+    }
+
+    RendererConfigurationRecorder(boolean endpointGroupPolicyForm) {
+        super(endpointGroupPolicyForm);
+    }
+
+    private static final class RecordedPolicy {
+
+        private final RendererEndpointKey rendererEpKey;
+        private final Object peerKey;
+        private final PolicyRuleGroupKey ruleGrpKey;
+        private final EndpointPolicyParticipation rendererEpParticipation;
+
+        private RecordedPolicy(RendererEndpointKey rendererEpKey, Object peerKey, PolicyRuleGroupKey ruleGrpKey,
+                EndpointPolicyParticipation rendererEpParticipation) {
+            this.rendererEpKey = rendererEpKey;
+            this.peerKey = peerKey;
+            this.ruleGrpKey = ruleGrpKey;
+            this.rendererEpParticipation = rendererEpParticipation;
+        }
+    }
+
+    @Override
+    public void add(RendererEndpointKey rendererEpKey, PeerEndpointKey peerEpKey, PolicyRuleGroupKey ruleGrpKey,
+            EndpointPolicyParticipation rendererEpParticipation) {
+        policies.add(new RecordedPolicy(rendererEpKey, peerEpKey, ruleGrpKey, rendererEpParticipation));
+    }
+
+    @Override
+    public void add(RendererEndpointKey rendererEpKey, PeerExternalEndpointKey peerExtEpKey,
+            PolicyRuleGroupKey ruleGrpKey, EndpointPolicyParticipation rendererEpParticipation) {
+        policies.add(new RecordedPolicy(rendererEpKey, peerExtEpKey, ruleGrpKey, rendererEpParticipation));
+    }
+
+    @Override
+    public void add(RendererEndpointKey rendererEpKey, PeerExternalContainmentEndpointKey peerExtContainmentEpKey,
+            PolicyRuleGroupKey ruleGrpKey, EndpointPolicyParticipation rendererEpParticipation) {
+        policies.add(new RecordedPolicy(rendererEpKey, peerExtContainmentEpKey, ruleGrpKey, rendererEpParticipation));
+    }
+
+    @Override
+    public boolean addEndpointGroupPolicy(RendererEndpointKey rendererEpKey, ResolvedPolicy policy,
+            EndpointPolicyParticipation rendererEpParticipation) {
+        policies.add(new RecordedPolicy(rendererEpKey, policy, null, rendererEpParticipation));
+        return epgPolicyParticipations.put(policy.getKey(), rendererEpParticipation);
+    }
+
+    @Override
+    public void addEndpointGroupPolicyPeer(AddressEndpointKey peerAdrEpKey) {
+        policies.add(new RecordedPolicy(null, peerAdrEpKey, null, null));
+    }
+
+    @Override
+    public void addEndpointGroupPolicyPeer(ContainmentEndpointKey peerContEpKey) {
+        policies.add(new RecordedPolicy(null, peerContEpKey, null, null));
+    }
+
+    /**
+     * Adds recorded policies to the builder in order in which they were recorded.
+     */
+    void replay(RendererConfigurationBuilder rendererConfigBuilder) {
+        for (RecordedPolicy policy : policies) {
+            if (policy.peerKey instanceof PeerEndpointKey) {
+                rendererConfigBuilder.add(policy.rendererEpKey, (PeerEndpointKey) policy.peerKey, policy.ruleGrpKey,
+                        policy.rendererEpParticipation);
+            } else if (policy.peerKey instanceof PeerExternalEndpointKey) {
+                rendererConfigBuilder.add(policy.rendererEpKey, (PeerExternalEndpointKey) policy.peerKey,
+                        policy.ruleGrpKey, policy.rendererEpParticipation);
+            } else if (policy.peerKey instanceof PeerExternalContainmentEndpointKey) {
+                rendererConfigBuilder.add(policy.rendererEpKey, (PeerExternalContainmentEndpointKey) policy.peerKey,
+                        policy.ruleGrpKey, policy.rendererEpParticipation);
+            } else if (policy.peerKey instanceof ResolvedPolicy) {
+                rendererConfigBuilder.addEndpointGroupPolicy(policy.rendererEpKey, (ResolvedPolicy) policy.peerKey,
+                        policy.rendererEpParticipation);
+            } else if (policy.peerKey instanceof AddressEndpointKey) {
+                rendererConfigBuilder.addEndpointGroupPolicyPeer((AddressEndpointKey) policy.peerKey);
+            } else {
+                rendererConfigBuilder.addEndpointGroupPolicyPeer((ContainmentEndpointKey) policy.peerKey);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2016 Cisco Systems, Inc. and others. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.opendaylight.groupbasedpolicy.renderer;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import org.opendaylight.groupbasedpolicy.dto.ConsEpgKey;
+import org.opendaylight.groupbasedpolicy.dto.EpgKeyDto;
+import org.opendaylight.groupbasedpolicy.dto.ProvEpgKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.endpoints.address.endpoints.AddressEndpoint;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.endpoints.address.endpoints.AddressEndpointKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.endpoints.containment.endpoints.ContainmentEndpoint;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.endpoints.containment.endpoints.ContainmentEndpointKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.common.rev140421.EndpointGroupId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.common.rev140421.TenantId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.forwarding.rev160427.Forwarding;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.resolved.policy.rev150828.resolved.policies.ResolvedPolicy;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.resolved.policy.rev150828.resolved.policies.resolved.policy.policy.rule.group.with.endpoint.constraints.PolicyRuleGroup;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.resolved.policy.rev150828.resolved.policies.resolved.policy.policy.rule.group.with.endpoint.constraints.PolicyRuleGroupKey;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.MapDifference;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.collect.Table.Cell;
+
+/**
+ * Changes between two states of inputs used for creating renderer configuration. Endpoints,
+ * endpoint locations, resolved policies and forwarding are compared in order to find out which
+ * renderer endpoints and which parts of renderer configuration need to be recomputed.
+ */
+class RendererInputChanges {
+
+    private final EndpointInfo oldEpInfo;
+    private final EndpointInfo newEpInfo;
+    private final ResolvedPolicyInfo oldPolicyInfo;
+    private final ResolvedPolicyInfo newPolicyInfo;
+    private final Set<AddressEndpointKey> changedAddressEps = new HashSet<>();
+    private final Set<ContainmentEndpointKey> changedContainmentEps = new HashSet<>();
+    private final Set<EpgKeyDto> changedEpgs = new HashSet<>();
+    private final Set<PolicyRuleGroupKey> changedRuleGroups;
+    private final Set<TenantId> changedForwardingTenants;
+
+    RendererInputChanges(EndpointInfo oldEpInfo, EndpointLocationInfo oldEpLocInfo, ResolvedPolicyInfo oldPolicyInfo,
+            @Nullable Forwarding oldForwarding, EndpointInfo newEpInfo, EndpointLocationInfo newEpLocInfo,
+            ResolvedPolicyInfo newPolicyInfo, @Nullable Forwarding newForwarding) {
+        this.oldEpInfo = oldEpInfo;
+        this.newEpInfo = newEpInfo;
+        this.oldPolicyInfo = oldPolicyInfo;
+        this.newPolicyInfo = newPolicyInfo;
+        // indexes updated in place remember their changes since the old state was dispatched
+        changedAddressEps.addAll(oldEpInfo.getChangedAddressEps());
+        changedContainmentEps.addAll(oldEpInfo.getChangedContainmentEps());
+        if (oldEpInfo != newEpInfo) {
+            changedAddressEps.addAll(
+                    DtoEquivalenceUtils.diffAddressEpByKey(oldEpInfo.getAddressEpByKey(), newEpInfo.getAddressEpByKey()));
+            changedContainmentEps.addAll(DtoEquivalenceUtils.diffContainmentEpByKey(oldEpInfo.getContainmentEpByKey(),
+                    newEpInfo.getContainmentEpByKey()));
+            changedAddressEps.addAll(newEpInfo.getChangedAddressEps());
+            changedContainmentEps.addAll(newEpInfo.getChangedContainmentEps());
+        }
+        changedAddressEps.addAll(oldEpLocInfo.getChangedAddrEpLocs());
+        changedContainmentEps.addAll(oldEpLocInfo.getChangedContEpLocs());
+        if (oldEpLocInfo != newEpLocInfo) {
+            changedAddressEps.addAll(DtoEquivalenceUtils.diffAddrEpLocByAddrEpKey(oldEpLocInfo.getAddrEpLocByAddrEpKey(),
+                    newEpLocInfo.getAddrEpLocByAddrEpKey()));
+            changedContainmentEps.addAll(DtoEquivalenceUtils.diffContEpLocByContEpKey(
+                    oldEpLocInfo.getContEpLocByContEpKey(), newEpLocInfo.getContEpLocByContEpKey()));
+            changedAddressEps.addAll(newEpLocInfo.getChangedAddrEpLocs());
+            changedContainmentEps.addAll(newEpLocInfo.getChangedContEpLocs());
+        }
+        for (AddressEndpointKey adrEpKey : changedAddressEps) {
+            addEpgsOfAddressEp(oldEpInfo.getOriginalEndpoint(adrEpKey));
+            addEpgsOfAddressEp(newEpInfo.getEndpoint(adrEpKey));
+        }
+        for (ContainmentEndpointKey contEpKey : changedContainmentEps) {
+            addEpgsOfContainmentEp(oldEpInfo.getOriginalContainmentEndpoint(contEpKey));
+            addEpgsOfContainmentEp(newEpInfo.getContainmentEndpoint(contEpKey));
+        }
+        if (oldPolicyInfo != newPolicyInfo) {
+            addEpgsOfChangedPolicies();
+            changedRuleGroups = diffKeys(oldPolicyInfo.getPolicyRuleGrpByKey(), newPolicyInfo.getPolicyRuleGrpByKey());
+        } else {
+            changedRuleGroups = new HashSet<>();
+        }
+        changedForwardingTenants = DtoEquivalenceUtils.diffForwardingByTenant(oldForwarding, newForwarding);
+    }
+
+    private void addEpgsOfAddressEp(Optional<AddressEndpoint> potentialAdrEp) {
+        if (potentialAdrEp.isPresent()) {
+            addEpgs(potentialAdrEp.get().getEndpointGroup(), potentialAdrEp.get().getTenant());
+        }
+    }
+
+    private void addEpgsOfContainmentEp(Optional<ContainmentEndpoint> potentialContEp) {
+        if (potentialContEp.isPresent()) {
+            addEpgs(potentialContEp.get().getEndpointGroup(), potentialContEp.get().getTenant());
+        }
+    }
+
+    private void addEpgs(@Nullable List<EndpointGroupId> epgIds, TenantId tenantId) {
+        if (epgIds == null) {
+            return;
+        }
+        for (EndpointGroupId epgId : epgIds) {
+            changedEpgs.add(new EpgKeyDto(epgId, tenantId));
+        }
+    }
+
+    private void addEpgsOfChangedPolicies() {
+        Set<Cell<ConsEpgKey, ProvEpgKey, ResolvedPolicy>> oldCells = oldPolicyInfo.getPolicyByEpgs().cellSet();
+        Set<Cell<ConsEpgKey, ProvEpgKey, ResolvedPolicy>> newCells = newPolicyInfo.getPolicyByEpgs().cellSet();
+        for (Cell<ConsEpgKey, ProvEpgKey, ResolvedPolicy> cell : Sets.symmetricDifference(oldCells, newCells)) {
+            changedEpgs.add(new EpgKeyDto(cell.getRowKey().getEpgId(), cell.getRowKey().getTenantId()));
+            changedEpgs.add(new EpgKeyDto(cell.getColumnKey().getEpgId(), cell.getColumnKey().getTenantId()));
+        }
+    }
+
+    private static Set<PolicyRuleGroupKey> diffKeys(Map<PolicyRuleGroupKey, PolicyRuleGroup> o1,
+            Map<PolicyRuleGroupKey, PolicyRuleGroup> o2) {
+        MapDifference<PolicyRuleGroupKey, PolicyRuleGroup> diff = Maps.difference(o1, o2);
+        Set<PolicyRuleGroupKey> result = new HashSet<>();
+        result.addAll(diff.entriesOnlyOnLeft().keySet());
+        result.addAll(diff.entriesOnlyOnRight().keySet());
+        result.addAll(diff.entriesDiffering().keySet());
+        return result;
+    }
+
+    /**
+     * Renderer endpoints whose configuration could be changed. These are changed endpoints
+     * themselves and all endpoints from endpoint groups which are (or were) in a policy with
+     * an endpoint group of a changed endpoint or with an endpoint group of a changed policy.
+     *
+     * @return keys of address endpoints which need to be recomputed as renderer endpoints
+     */
+    Set<AddressEndpointKey> resolveAffectedRendererEndpoints() {
+        Set<AddressEndpointKey> result = new HashSet<>(changedAddressEps);
+        Set<EpgKeyDto> peerEpgs = new HashSet<>();
+        for (EpgKeyDto changedEpg : changedEpgs) {
+            addPeers(changedEpg, oldPolicyInfo, peerEpgs);
+            addPeers(changedEpg, newPolicyInfo, peerEpgs);
+        }
+        for (EpgKeyDto peerEpg : peerEpgs) {
+            result.addAll(oldEpInfo.findAddressEpsWithEpg(peerEpg));
+            result.addAll(newEpInfo.findAddressEpsWithEpg(peerEpg));
+        }
+        return result;
+    }
+
+    private static void addPeers(EpgKeyDto epg, ResolvedPolicyInfo policyInfo, Set<EpgKeyDto> peerEpgs) {
+        for (ConsEpgKey consPeer : policyInfo.findConsumerPeers(epg)) {
+            peerEpgs.add(new EpgKeyDto(consPeer.getEpgId(), consPeer.getTenantId()));
+        }
+        for (ProvEpgKey provPeer : policyInfo.findProviderPeers(epg)) {
+            peerEpgs.add(new EpgKeyDto(provPeer.getEpgId(), provPeer.getTenantId()));
+        }
+    }
+
+    boolean isAddressEndpointChanged(AddressEndpointKey adrEpKey) {
+        return changedAddressEps.contains(adrEpKey);
+    }
+
+    boolean isContainmentEndpointChanged(ContainmentEndpointKey contEpKey) {
+        return changedContainmentEps.contains(contEpKey);
+    }
+
+    boolean isRuleGroupChanged(PolicyRuleGroupKey ruleGrpKey) {
+        return changedRuleGroups.contains(ruleGrpKey);
+    }
+
+    Set<TenantId> getChangedForwardingTenants() {
+        return changedForwardingTenants;
+    }
+
+    boolean isEmpty() {
+        return changedAddressEps.isEmpty() && changedContainmentEps.isEmpty() && changedEpgs.isEmpty()
+                && changedRuleGroups.isEmpty() && changedForwardingTenants.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "RendererInputChanges [changedAddressEps=" + changedAddressEps.size() + ", changedContainmentEps="
+                + changedContainmentEps.size() + ", changedEpgs=" + changedEpgs + ", changedRuleGroups="
+                + changedRuleGroups.size() + ", changedForwardingTenants=" + changedForwardingTenants + "]";
+    }
+}
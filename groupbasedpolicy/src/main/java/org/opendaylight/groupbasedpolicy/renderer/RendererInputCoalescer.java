@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2016 Cisco Systems, Inc. and others. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.opendaylight.groupbasedpolicy.renderer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.EndpointLocations;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.Endpoints;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.endpoint.locations.AddressEndpointLocation;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.endpoint.locations.AddressEndpointLocationKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.endpoint.locations.ContainmentEndpointLocation;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.endpoint.locations.ContainmentEndpointLocationKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.endpoints.address.endpoints.AddressEndpoint;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.endpoints.address.endpoints.AddressEndpointKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.endpoints.containment.endpoints.ContainmentEndpoint;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.endpoints.containment.endpoints.ContainmentEndpointKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.forwarding.rev160427.Forwarding;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.Renderers;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.resolved.policy.rev150828.ResolvedPolicies;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Optional;
+
+/**
+ * Coalesces updates of inputs for {@link RendererManager}. An update of whole input container
+ * replaces pending update of the same kind; changes of single endpoints and locations are merged
+ * by key so only the latest change of each entry is kept. Pending updates are
+ * handed over to {@link RendererManager} in one batch by a single thread when the oldest pending
+ * update is older than max delay or when number of pending updates reaches max batch size.
+ */
+class RendererInputCoalescer implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RendererInputCoalescer.class);
+
+    private final RendererManager rendererManager;
+    private final ScheduledExecutorService executor;
+    private final long maxDelayMillis;
+    private final int maxBatchSize;
+    private final AtomicLong receivedEvents = new AtomicLong();
+    private final AtomicLong processedBatches = new AtomicLong();
+    private final AtomicLong coalescedEvents = new AtomicLong();
+
+    private PendingInputs pendingInputs = new PendingInputs();
+    private ScheduledFuture<?> scheduledFlush;
+
+    /**
+     * Inputs collected during one window. A flag is set for each kind of input which was updated
+     * because the updated value itself can be {@code null} when the container was deleted. Changes
+     * of single endpoints and locations are applied after the whole container; an update of whole
+     * container replaces changes received before it.
+     */
+    static final class PendingInputs {
+
+        private int eventCount;
+        private boolean endpointsUpdated;
+        private Endpoints endpoints;
+        private final Map<AddressEndpointKey, Optional<AddressEndpoint>> addressEpChanges = new HashMap<>();
+        private final Map<ContainmentEndpointKey, Optional<ContainmentEndpoint>> containmentEpChanges =
+                new HashMap<>();
+        private boolean endpointLocationsUpdated;
+        private EndpointLocations endpointLocations;
+        private final Map<AddressEndpointLocationKey, Optional<AddressEndpointLocation>> addressEpLocChanges =
+                new HashMap<>();
+        private final Map<ContainmentEndpointLocationKey, Optional<ContainmentEndpointLocation>> containmentEpLocChanges =
+                new HashMap<>();
+        private boolean resolvedPoliciesUpdated;
+        private ResolvedPolicies resolvedPolicies;
+        private boolean forwardingUpdated;
+        private Forwarding forwarding;
+        private boolean renderersUpdated;
+        private Renderers renderers;
+
+        boolean isEndpointsUpdated() {
+            return endpointsUpdated;
+        }
+
+        Endpoints getEndpoints() {
+            return endpoints;
+        }
+
+        boolean isEndpointLocationsUpdated() {
+            return endpointLocationsUpdated;
+        }
+
+        EndpointLocations getEndpointLocations() {
+            return endpointLocations;
+        }
+
+        Map<AddressEndpointKey, Optional<AddressEndpoint>> getAddressEpChanges() {
+            return addressEpChanges;
+        }
+
+        Map<ContainmentEndpointKey, Optional<ContainmentEndpoint>> getContainmentEpChanges() {
+            return containmentEpChanges;
+        }
+
+        Map<AddressEndpointLocationKey, Optional<AddressEndpointLocation>> getAddressEpLocChanges() {
+            return addressEpLocChanges;
+        }
+
+        Map<ContainmentEndpointLocationKey, Optional<ContainmentEndpointLocation>> getContainmentEpLocChanges() {
+            return containmentEpLocChanges;
+        }
+
+        boolean isResolvedPoliciesUpdated() {
+            return resolvedPoliciesUpdated;
+        }
+
+        ResolvedPolicies getResolvedPolicies() {
+            return resolvedPolicies;
+        }
+
+        boolean isForwardingUpdated() {
+            return forwardingUpdated;
+        }
+
+        Forwarding getForwarding() {
+            return forwarding;
+        }
+
+        boolean isRenderersUpdated() {
+            return renderersUpdated;
+        }
+
+        Renderers getRenderers() {
+            return renderers;
+        }
+
+        int getEventCount() {
+            return eventCount;
+        }
+    }
+
+    RendererInputCoalescer(RendererManager rendererManager, ScheduledExecutorService executor, long maxDelayMillis,
+            int maxBatchSize) {
+        checkArgument(maxDelayMillis > 0, "Max delay must be positive: %s", maxDelayMillis);
+        checkArgument(maxBatchSize > 0, "Max batch size must be positive: %s", maxBatchSize);
+        this.rendererManager = checkNotNull(rendererManager);
+        this.executor = checkNotNull(executor);
+        this.maxDelayMillis = maxDelayMillis;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    synchronized void endpointsUpdated(@Nullable Endpoints endpoints) {
+        pendingInputs.endpointsUpdated = true;
+        pendingInputs.endpoints = endpoints;
+        pendingInputs.addressEpChanges.clear();
+        pendingInputs.containmentEpChanges.clear();
+        eventReceived();
+    }
+
+    synchronized void endpointsChanged(Map<AddressEndpointKey, Optional<AddressEndpoint>> adrEpChanges,
+            Map<ContainmentEndpointKey, Optional<ContainmentEndpoint>> contEpChanges) {
+        pendingInputs.addressEpChanges.putAll(adrEpChanges);
+        pendingInputs.containmentEpChanges.putAll(contEpChanges);
+        eventReceived();
+    }
+
+    synchronized void endpointLocationsUpdated(@Nullable EndpointLocations epLocations) {
+        pendingInputs.endpointLocationsUpdated = true;
+        pendingInputs.endpointLocations = epLocations;
+        pendingInputs.addressEpLocChanges.clear();
+        pendingInputs.containmentEpLocChanges.clear();
+        eventReceived();
+    }
+
+    synchronized void endpointLocationsChanged(
+            Map<AddressEndpointLocationKey, Optional<AddressEndpointLocation>> adrEpLocChanges,
+            Map<ContainmentEndpointLocationKey, Optional<ContainmentEndpointLocation>> contEpLocChanges) {
+        pendingInputs.addressEpLocChanges.putAll(adrEpLocChanges);
+        pendingInputs.containmentEpLocChanges.putAll(contEpLocChanges);
+        eventReceived();
+    }
+
+    synchronized void resolvedPoliciesUpdated(@Nullable ResolvedPolicies resolvedPolicies) {
+        pendingInputs.resolvedPoliciesUpdated = true;
+        pendingInputs.resolvedPolicies = resolvedPolicies;
+        eventReceived();
+    }
+
+    synchronized void forwardingUpdated(@Nullable Forwarding forwarding) {
+        pendingInputs.forwardingUpdated = true;
+        pendingInputs.forwarding = forwarding;
+        eventReceived();
+    }
+
+    synchronized void renderersUpdated(@Nullable Renderers renderers) {
+        pendingInputs.renderersUpdated = true;
+        pendingInputs.renderers = renderers;
+        eventReceived();
+    }
+
+    private void eventReceived() {
+        receivedEvents.incrementAndGet();
+        pendingInputs.eventCount++;
+        if (pendingInputs.eventCount >= maxBatchSize) {
+            if (scheduledFlush != null) {
+                scheduledFlush.cancel(false);
+            }
+            scheduledFlush = executor.schedule(new FlushTask(), 0, TimeUnit.MILLISECONDS);
+        } else if (scheduledFlush == null) {
+            scheduledFlush = executor.schedule(new FlushTask(), maxDelayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized PendingInputs takePendingInputs() {
+        PendingInputs result = pendingInputs;
+        pendingInputs = new PendingInputs();
+        scheduledFlush = null;
+        return result;
+    }
+
+    private class FlushTask implements Runnable {
+
+        @Override
+        public void run() {
+            PendingInputs inputs = takePendingInputs();
+            if (inputs.eventCount == 0) {
+                return;
+            }
+            processedBatches.incrementAndGet();
+            coalescedEvents.addAndGet(inputs.eventCount - 1);
+            LOG.trace("Processing {} coalesced input events", inputs.eventCount);
+            try {
+                rendererManager.inputsUpdated(inputs);
+            } catch (Exception e) {
+                LOG.error("Failed to process {} input events", inputs.eventCount, e);
+            }
+        }
+    }
+
+    /**
+     * @return number of all received input events
+     */
+    long getReceivedEvents() {
+        return receivedEvents.get();
+    }
+
+    /**
+     * @return number of batches handed over to {@link RendererManager}
+     */
+    long getProcessedBatches() {
+        return processedBatches.get();
+    }
+
+    /**
+     * @return number of input events which were merged into a batch with other events and did not
+     *         cause processing on their own
+     */
+    long getCoalescedEvents() {
+        return coalescedEvents.get();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+}
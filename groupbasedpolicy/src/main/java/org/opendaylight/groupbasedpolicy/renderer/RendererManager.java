@@ -17,20 +17,35 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.collect.FluentIterable;
+import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableCollection;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.opendaylight.controller.md.sal.binding.api.DataBroker;
 import org.opendaylight.controller.md.sal.binding.api.WriteTransaction;
 import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
 import org.opendaylight.groupbasedpolicy.base_endpoint.EndpointAugmentorRegistryImpl;
 import org.opendaylight.groupbasedpolicy.dto.ConsEpgKey;
+import org.opendaylight.groupbasedpolicy.dto.EpgKey;
 import org.opendaylight.groupbasedpolicy.dto.EpgKeyDto;
 import org.opendaylight.groupbasedpolicy.dto.ProvEpgKey;
 import org.opendaylight.groupbasedpolicy.forwarding.NetworkDomainAugmentorRegistryImpl;
@@ -40,14 +55,23 @@ import org.opendaylight.groupbasedpolicy.renderer.listener.ForwardingListener;
 import org.opendaylight.groupbasedpolicy.renderer.listener.RenderersListener;
 import org.opendaylight.groupbasedpolicy.renderer.listener.ResolvedPoliciesListener;
 import org.opendaylight.groupbasedpolicy.util.DataStoreHelper;
+import org.opendaylight.groupbasedpolicy.util.IidFactory;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.EndpointLocations;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.EndpointLocationsBuilder;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.Endpoints;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.EndpointsBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.endpoint.locations.AddressEndpointLocation;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.endpoint.locations.AddressEndpointLocationKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.endpoint.locations.ContainmentEndpointLocation;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.endpoint.locations.ContainmentEndpointLocationKey;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.endpoints.address.endpoints.AddressEndpoint;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.endpoints.address.endpoints.AddressEndpointKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.endpoints.containment.endpoints.ContainmentEndpoint;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.endpoints.containment.endpoints.ContainmentEndpointKey;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.common.rev140421.EndpointGroupId;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.common.rev140421.TenantId;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.forwarding.rev160427.Forwarding;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.forwarding.rev160427.forwarding.ForwardingByTenant;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.EndpointPolicyParticipation;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.RendererName;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.Renderers;
@@ -62,15 +86,25 @@ import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.r
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.RendererEndpoints;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.RendererForwarding;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.RuleGroups;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.endpoints.AddressEndpointWithLocation;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.endpoints.AddressEndpointWithLocationKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.endpoints.ContainmentEndpointWithLocation;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.endpoints.ContainmentEndpointWithLocationKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.renderer.endpoints.RendererEndpoint;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.renderer.endpoints.RendererEndpointKey;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.renderer.endpoints.renderer.endpoint.PeerEndpointKey;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.renderer.endpoints.renderer.endpoint.PeerExternalContainmentEndpointKey;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.renderer.endpoints.renderer.endpoint.PeerExternalEndpointKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.renderer.forwarding.RendererForwardingByTenant;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.renderer.forwarding.RendererForwardingByTenantKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.rule.groups.RuleGroup;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.rule.groups.RuleGroupKey;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.resolved.policy.rev150828.ResolvedPolicies;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.resolved.policy.rev150828.resolved.policies.ResolvedPolicy;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.resolved.policy.rev150828.resolved.policies.ResolvedPolicy.ExternalImplicitGroup;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.resolved.policy.rev150828.resolved.policies.resolved.policy.PolicyRuleGroupWithEndpointConstraints;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.resolved.policy.rev150828.resolved.policies.resolved.policy.policy.rule.group.with.endpoint.constraints.PolicyRuleGroup;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.resolved.policy.rev150828.resolved.policies.resolved.policy.policy.rule.group.with.endpoint.constraints.PolicyRuleGroupKey;
 import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -79,15 +113,42 @@ public class RendererManager implements AutoCloseable {
 
     private static final Logger LOG = LoggerFactory.getLogger(RendererManager.class);
 
+    private static final long STALE_DISPATCH_RETRY_DELAY_MILLIS = 1000;
     private static long version = 0;
 
     private final DataBroker dataProvider;
     private final NetworkDomainAugmentorRegistryImpl netDomainAugmentorRegistry;
     private final EndpointAugmentorRegistryImpl epAugmentorRegistry;
     private final Set<RendererName> processingRenderers = new HashSet<>();
+    /*
+     * Renderers which were busy when a version was created and need to receive the latest
+     * configuration as soon as they acknowledge their version
+     */
+    private final Set<RendererName> staleRenderers = new HashSet<>();
+    private final Map<RendererName, RendererVersionState> versionStateByRendererName = new HashMap<>();
     private InputState currentState = new InputState();
     private InputState configuredState;
     private boolean currentVersionHasConfig = false;
+    private final boolean incrementalMode;
+    private boolean fingerprintVerification = false;
+    /*
+     * Builders of configuration dispatched in current version, used only in incremental mode
+     */
+    private Map<RendererName, RendererConfigurationBuilder> configuredBuilderByRendererName;
+    /*
+     * Configuration dispatched in current version, used only if incremental mode is disabled
+     */
+    private Map<RendererName, Optional<Configuration>> configuredConfigByRendererName;
+    private final RendererInputCoalescer inputCoalescer;
+    /**
+     * Executor for retries of failed dispatching to stale renderers, created on first failure
+     */
+    private ScheduledExecutorService retryExecutor;
+    private ScheduledFuture<?> staleDispatchRetry;
+    /*
+     * Pool for building of configuration in parallel, null if configuration is built serially
+     */
+    private final ForkJoinPool configBuildingPool;
 
     private final EndpointsListener endpointsListener;
     private final EndpointLocationsListener endpointLocationsListener;
@@ -101,7 +162,23 @@ public class RendererManager implements AutoCloseable {
         private EndpointInfo epInfo;
         private EndpointLocationInfo epLocInfo;
         private Forwarding forwarding;
+        private ContentFingerprint forwardingFingerprint = DtoEquivalenceUtils.fingerprint((Forwarding) null);
         private Map<InstanceIdentifier<?>, RendererName> rendererByNode = new HashMap<>();
+        // renderers which receive policy in endpoint-group form
+        private Set<RendererName> epgPolicyRenderers = ImmutableSet.of();
+        /*
+         * Fingerprint of inputs at the time when this copy was created. Endpoint indexes are
+         * updated in place so their current fingerprint cannot be used for a copy.
+         */
+        private ContentFingerprint copiedFingerprint;
+        /*
+         * Content of endpoint indexes at the time when this copy was created, kept only if
+         * fingerprints are verified
+         */
+        private Map<AddressEndpointKey, AddressEndpoint> copiedAddressEpByKey;
+        private Map<ContainmentEndpointKey, ContainmentEndpoint> copiedContainmentEpByKey;
+        private Map<AddressEndpointKey, AddressEndpointLocation> copiedAddrEpLocByAddrEpKey;
+        private Map<ContainmentEndpointKey, ContainmentEndpointLocation> copiedContEpLocByContEpKey;
 
         private boolean isValid() {
             if (rendererByNode.isEmpty() || policyInfo == null || epInfo == null || epLocInfo == null
@@ -111,63 +188,94 @@ public class RendererManager implements AutoCloseable {
             return true;
         }
 
-        private InputState createCopy() {
+        private void setForwarding(@Nullable Forwarding forwarding) {
+            this.forwarding = forwarding;
+            this.forwardingFingerprint = DtoEquivalenceUtils.fingerprint(forwarding);
+        }
+
+        /**
+         * @param withContent if {@code true} the copy keeps content of endpoint indexes so it can
+         *        be compared by {@link #hasSameContent(InputState)}
+         */
+        private InputState createCopy(boolean withContent) {
             InputState copy = new InputState();
             copy.policyInfo = this.policyInfo;
             copy.epInfo = this.epInfo;
             copy.epLocInfo = this.epLocInfo;
             copy.forwarding = this.forwarding;
+            copy.forwardingFingerprint = this.forwardingFingerprint;
             copy.rendererByNode = ImmutableMap.copyOf(rendererByNode);
+            copy.epgPolicyRenderers = epgPolicyRenderers;
+            copy.copiedFingerprint = getFingerprint();
+            if (withContent) {
+                if (epInfo != null) {
+                    copy.copiedAddressEpByKey = ImmutableMap.copyOf(epInfo.getAddressEpByKey());
+                    copy.copiedContainmentEpByKey = ImmutableMap.copyOf(epInfo.getContainmentEpByKey());
+                }
+                if (epLocInfo != null) {
+                    copy.copiedAddrEpLocByAddrEpKey = ImmutableMap.copyOf(epLocInfo.getAddrEpLocByAddrEpKey());
+                    copy.copiedContEpLocByContEpKey = ImmutableMap.copyOf(epLocInfo.getContEpLocByContEpKey());
+                }
+            }
             return copy;
         }
 
-        @Override
-        public int hashCode() {
-            final int prime = 31;
-            int result = 1;
-            result = prime * result + ((epInfo == null) ? 0 : epInfo.hashCode());
-            result = prime * result + ((epLocInfo == null) ? 0 : epLocInfo.hashCode());
-            result = prime * result + ((forwarding == null) ? 0 : forwarding.hashCode());
-            result = prime * result + ((policyInfo == null) ? 0 : policyInfo.hashCode());
-            result = prime * result + ((rendererByNode == null) ? 0 : rendererByNode.hashCode());
-            return result;
+        /**
+         * Fingerprint of endpoints, endpoint locations, resolved policies and forwarding. Renderers
+         * are not part of the fingerprint and need to be compared directly.
+         */
+        private ContentFingerprint getFingerprint() {
+            if (copiedFingerprint != null) {
+                return copiedFingerprint;
+            }
+            return ContentFingerprint.builder()
+                .add(epInfo == null ? null : epInfo.getFingerprint())
+                .add(epLocInfo == null ? null : epLocInfo.getFingerprint())
+                .add(policyInfo == null ? null : policyInfo.getFingerprint())
+                .add(forwardingFingerprint)
+                .build();
         }
 
-        @Override
-        public boolean equals(Object obj) {
-            if (this == obj)
-                return true;
-            if (obj == null)
-                return false;
-            if (getClass() != obj.getClass())
-                return false;
-            InputState other = (InputState) obj;
-            if (epInfo == null) {
-                if (other.epInfo != null)
-                    return false;
-            } else if (!epInfo.equals(other.epInfo))
+        private boolean hasCopiedContent() {
+            return (epInfo == null || copiedAddressEpByKey != null)
+                    && (epLocInfo == null || copiedAddrEpLocByAddrEpKey != null);
+        }
+
+        /**
+         * Deep comparison of current inputs with a copy created with content.
+         */
+        private boolean hasSameContent(InputState copy) {
+            if ((epInfo == null) != (copy.epInfo == null) || (epLocInfo == null) != (copy.epLocInfo == null)) {
                 return false;
-            if (epLocInfo == null) {
-                if (other.epLocInfo != null)
-                    return false;
-            } else if (!epLocInfo.equals(other.epLocInfo))
+            }
+            if (epInfo != null && (!DtoEquivalenceUtils.equalsAddressEpByKey(epInfo.getAddressEpByKey(),
+                    copy.copiedAddressEpByKey)
+                    || !DtoEquivalenceUtils.equalsContainmentEpByKey(epInfo.getContainmentEpByKey(),
+                            copy.copiedContainmentEpByKey))) {
                 return false;
-            if (forwarding == null) {
-                if (other.forwarding != null)
-                    return false;
-            } else if (!DtoEquivalenceUtils.equalsForwarding(forwarding, other.forwarding))
+            }
+            if (epLocInfo != null && (!DtoEquivalenceUtils.equalsAddrEpLocByAddrEpKey(
+                    epLocInfo.getAddrEpLocByAddrEpKey(), copy.copiedAddrEpLocByAddrEpKey)
+                    || !DtoEquivalenceUtils.equalsContEpLocByContEpKey(epLocInfo.getContEpLocByContEpKey(),
+                            copy.copiedContEpLocByContEpKey))) {
                 return false;
-            if (policyInfo == null) {
-                if (other.policyInfo != null)
-                    return false;
-            } else if (!policyInfo.equals(other.policyInfo))
+            }
+            if (!Objects.equals(policyInfo, copy.policyInfo)) {
                 return false;
-            if (rendererByNode == null) {
-                if (other.rendererByNode != null)
-                    return false;
-            } else if (!rendererByNode.equals(other.rendererByNode))
+            }
+            if (!DtoEquivalenceUtils.equalsForwarding(forwarding, copy.forwarding)) {
                 return false;
-            return true;
+            }
+            return rendererByNode.equals(copy.rendererByNode) && epgPolicyRenderers.equals(copy.epgPolicyRenderers);
+        }
+
+        private void clearChanges() {
+            if (epInfo != null) {
+                epInfo.clearChanges();
+            }
+            if (epLocInfo != null) {
+                epLocInfo.clearChanges();
+            }
         }
 
         @Override
@@ -181,6 +289,59 @@ public class RendererManager implements AutoCloseable {
 
     public RendererManager(DataBroker dataProvider, NetworkDomainAugmentorRegistryImpl netDomainAugmentorRegistry,
                            EndpointAugmentorRegistryImpl epAugmentorRegistry) {
+        this(dataProvider, netDomainAugmentorRegistry, epAugmentorRegistry, false);
+    }
+
+    /**
+     * @param incrementalMode if {@code true} only renderer endpoints affected by a change are
+     *        recomputed and written to renderers; otherwise whole configuration for all renderers
+     *        is recomputed and written on each change
+     */
+    public RendererManager(DataBroker dataProvider, NetworkDomainAugmentorRegistryImpl netDomainAugmentorRegistry,
+                           EndpointAugmentorRegistryImpl epAugmentorRegistry, boolean incrementalMode) {
+        this(dataProvider, netDomainAugmentorRegistry, epAugmentorRegistry, incrementalMode, 0, 0);
+    }
+
+    /**
+     * @see #RendererManager(DataBroker, NetworkDomainAugmentorRegistryImpl, EndpointAugmentorRegistryImpl,
+     *      boolean, long, int, int)
+     */
+    public RendererManager(DataBroker dataProvider, NetworkDomainAugmentorRegistryImpl netDomainAugmentorRegistry,
+                           EndpointAugmentorRegistryImpl epAugmentorRegistry, boolean incrementalMode,
+                           long coalescingMaxDelayMillis, int coalescingMaxBatchSize) {
+        this(dataProvider, netDomainAugmentorRegistry, epAugmentorRegistry, incrementalMode, coalescingMaxDelayMillis,
+                coalescingMaxBatchSize, 1);
+    }
+
+    /**
+     * @param incrementalMode see {@link #RendererManager(DataBroker, NetworkDomainAugmentorRegistryImpl,
+     *        EndpointAugmentorRegistryImpl, boolean)}
+     * @param coalescingMaxDelayMillis if positive, input updates are coalesced and processed at most
+     *        after this delay from the first pending update; otherwise each update is processed
+     *        immediately
+     * @param coalescingMaxBatchSize pending updates are processed immediately when their number
+     *        reaches this size; used only if coalescing is enabled
+     * @param configBuildingParallelism if greater than 1, configuration of renderers is built in
+     *        parallel by at most this number of threads; otherwise it is built by the thread
+     *        processing input updates
+     */
+    public RendererManager(DataBroker dataProvider, NetworkDomainAugmentorRegistryImpl netDomainAugmentorRegistry,
+                           EndpointAugmentorRegistryImpl epAugmentorRegistry, boolean incrementalMode,
+                           long coalescingMaxDelayMillis, int coalescingMaxBatchSize, int configBuildingParallelism) {
+        this.incrementalMode = incrementalMode;
+        if (configBuildingParallelism > 1) {
+            configBuildingPool = new ForkJoinPool(configBuildingParallelism);
+        } else {
+            configBuildingPool = null;
+        }
+        if (coalescingMaxDelayMillis > 0) {
+            inputCoalescer = new RendererInputCoalescer(this,
+                    Executors.newSingleThreadScheduledExecutor(
+                            new ThreadFactoryBuilder().setNameFormat("gbp-renderer-manager-%d").setDaemon(true).build()),
+                    coalescingMaxDelayMillis, coalescingMaxBatchSize);
+        } else {
+            inputCoalescer = null;
+        }
         this.dataProvider = checkNotNull(dataProvider);
         this.netDomainAugmentorRegistry = checkNotNull(netDomainAugmentorRegistry);
         this.epAugmentorRegistry = checkNotNull(epAugmentorRegistry);
@@ -191,27 +352,154 @@ public class RendererManager implements AutoCloseable {
         renderersListener = new RenderersListener(this, dataProvider);
     }
 
-    public synchronized void endpointsUpdated(final Endpoints endpoints) {
-        currentState.epInfo = new EndpointInfo(endpoints);
-        processState();
+    public void endpointsUpdated(final Endpoints endpoints) {
+        if (inputCoalescer != null) {
+            inputCoalescer.endpointsUpdated(endpoints);
+            return;
+        }
+        synchronized (this) {
+            currentState.epInfo = new EndpointInfo(endpoints);
+            processState();
+        }
     }
 
-    public synchronized void endpointLocationsUpdated(final EndpointLocations epLocations) {
-        currentState.epLocInfo = new EndpointLocationInfo(epLocations);
-        processState();
+    /**
+     * Applies changes of single endpoints to the current endpoint index.
+     *
+     * @param adrEpChanges address endpoints after change; absent if the endpoint was removed
+     * @param contEpChanges containment endpoints after change; absent if the endpoint was removed
+     */
+    public void endpointsChanged(final Map<AddressEndpointKey, Optional<AddressEndpoint>> adrEpChanges,
+            final Map<ContainmentEndpointKey, Optional<ContainmentEndpoint>> contEpChanges) {
+        if (inputCoalescer != null) {
+            inputCoalescer.endpointsChanged(adrEpChanges, contEpChanges);
+            return;
+        }
+        synchronized (this) {
+            applyEndpointChanges(adrEpChanges, contEpChanges);
+            processState();
+        }
     }
 
-    public synchronized void resolvedPoliciesUpdated(final ResolvedPolicies resolvedPolicies) {
-        currentState.policyInfo = new ResolvedPolicyInfo(resolvedPolicies);
-        processState();
+    private void applyEndpointChanges(Map<AddressEndpointKey, Optional<AddressEndpoint>> adrEpChanges,
+            Map<ContainmentEndpointKey, Optional<ContainmentEndpoint>> contEpChanges) {
+        if (currentState.epInfo == null) {
+            currentState.epInfo = new EndpointInfo(new EndpointsBuilder().build());
+        }
+        for (Entry<AddressEndpointKey, Optional<AddressEndpoint>> change : adrEpChanges.entrySet()) {
+            currentState.epInfo.addressEndpointUpdated(change.getKey(), change.getValue().orNull());
+        }
+        for (Entry<ContainmentEndpointKey, Optional<ContainmentEndpoint>> change : contEpChanges.entrySet()) {
+            currentState.epInfo.containmentEndpointUpdated(change.getKey(), change.getValue().orNull());
+        }
+    }
+
+    public void endpointLocationsUpdated(final EndpointLocations epLocations) {
+        if (inputCoalescer != null) {
+            inputCoalescer.endpointLocationsUpdated(epLocations);
+            return;
+        }
+        synchronized (this) {
+            currentState.epLocInfo = new EndpointLocationInfo(epLocations);
+            processState();
+        }
+    }
+
+    /**
+     * Applies changes of single endpoint locations to the current endpoint location index.
+     *
+     * @param adrEpLocChanges address endpoint locations after change; absent if the location was
+     *        removed
+     * @param contEpLocChanges containment endpoint locations after change; absent if the location
+     *        was removed
+     */
+    public void endpointLocationsChanged(
+            final Map<AddressEndpointLocationKey, Optional<AddressEndpointLocation>> adrEpLocChanges,
+            final Map<ContainmentEndpointLocationKey, Optional<ContainmentEndpointLocation>> contEpLocChanges) {
+        if (inputCoalescer != null) {
+            inputCoalescer.endpointLocationsChanged(adrEpLocChanges, contEpLocChanges);
+            return;
+        }
+        synchronized (this) {
+            applyEndpointLocationChanges(adrEpLocChanges, contEpLocChanges);
+            processState();
+        }
+    }
+
+    private void applyEndpointLocationChanges(
+            Map<AddressEndpointLocationKey, Optional<AddressEndpointLocation>> adrEpLocChanges,
+            Map<ContainmentEndpointLocationKey, Optional<ContainmentEndpointLocation>> contEpLocChanges) {
+        if (currentState.epLocInfo == null) {
+            currentState.epLocInfo = new EndpointLocationInfo(new EndpointLocationsBuilder().build());
+        }
+        for (Entry<AddressEndpointLocationKey, Optional<AddressEndpointLocation>> change : adrEpLocChanges
+            .entrySet()) {
+            currentState.epLocInfo.addressEndpointLocationUpdated(change.getKey(), change.getValue().orNull());
+        }
+        for (Entry<ContainmentEndpointLocationKey, Optional<ContainmentEndpointLocation>> change : contEpLocChanges
+            .entrySet()) {
+            currentState.epLocInfo.containmentEndpointLocationUpdated(change.getKey(), change.getValue().orNull());
+        }
+    }
+
+    public void resolvedPoliciesUpdated(final ResolvedPolicies resolvedPolicies) {
+        if (inputCoalescer != null) {
+            inputCoalescer.resolvedPoliciesUpdated(resolvedPolicies);
+            return;
+        }
+        synchronized (this) {
+            currentState.policyInfo = new ResolvedPolicyInfo(resolvedPolicies);
+            processState();
+        }
+    }
+
+    public void forwardingUpdated(final Forwarding forwarding) {
+        if (inputCoalescer != null) {
+            inputCoalescer.forwardingUpdated(forwarding);
+            return;
+        }
+        synchronized (this) {
+            currentState.setForwarding(forwarding);
+            processState();
+        }
+    }
+
+    public void renderersUpdated(final Renderers renderersCont) {
+        if (inputCoalescer != null) {
+            inputCoalescer.renderersUpdated(renderersCont);
+            return;
+        }
+        synchronized (this) {
+            updateRenderers(renderersCont);
+            processState();
+        }
     }
 
-    public synchronized void forwardingUpdated(final Forwarding forwarding) {
-        currentState.forwarding = forwarding;
+    /**
+     * Applies all coalesced input updates and processes the resulting state once.
+     */
+    synchronized void inputsUpdated(RendererInputCoalescer.PendingInputs inputs) {
+        if (inputs.isEndpointsUpdated()) {
+            currentState.epInfo = new EndpointInfo(inputs.getEndpoints());
+        }
+        applyEndpointChanges(inputs.getAddressEpChanges(), inputs.getContainmentEpChanges());
+        if (inputs.isEndpointLocationsUpdated()) {
+            currentState.epLocInfo = new EndpointLocationInfo(inputs.getEndpointLocations());
+        }
+        applyEndpointLocationChanges(inputs.getAddressEpLocChanges(), inputs.getContainmentEpLocChanges());
+        if (inputs.isResolvedPoliciesUpdated()) {
+            currentState.policyInfo = new ResolvedPolicyInfo(inputs.getResolvedPolicies());
+        }
+        if (inputs.isForwardingUpdated()) {
+            currentState.setForwarding(inputs.getForwarding());
+        }
+        if (inputs.isRenderersUpdated()) {
+            updateRenderers(inputs.getRenderers());
+        }
         processState();
     }
 
-    public synchronized void renderersUpdated(final Renderers renderersCont) {
+    private void updateRenderers(final Renderers renderersCont) {
         ImmutableMultimap<InstanceIdentifier<?>, RendererName> renderersByNode =
                 RendererUtils.resolveRenderersByNodes(renderersCont.getRenderer());
         currentState.rendererByNode = new HashMap<>();
@@ -220,71 +508,524 @@ public class RendererManager implements AutoCloseable {
             // only first renderer is used
             currentState.rendererByNode.put(nodePath, renderers.asList().get(0));
         }
+        ImmutableSet.Builder<RendererName> epgPolicyRenderers = ImmutableSet.builder();
+        if (renderersCont.getRenderer() != null) {
+            for (Renderer renderer : renderersCont.getRenderer()) {
+                if (renderer.getCapabilities() != null
+                        && Boolean.TRUE.equals(renderer.getCapabilities().isSupportsEndpointGroupPolicies())) {
+                    epgPolicyRenderers.add(renderer.getName());
+                }
+            }
+        }
+        currentState.epgPolicyRenderers = epgPolicyRenderers.build();
         if (!processingRenderers.isEmpty()) {
-            LOG.debug("Waiting for renderers. Version {} needs to be processed by renderers: {}", version,
-                    processingRenderers);
+            LOG.debug("Waiting for renderers. Renderers {} need to process dispatched versions.", processingRenderers);
             ImmutableMap<RendererName, Renderer> rendererByName =
                     RendererUtils.resolveRendererByName(renderersCont.getRenderer());
-            for (RendererName configuredRenderer : processingRenderers) {
+            for (RendererName configuredRenderer : ImmutableSet.copyOf(processingRenderers)) {
                 Renderer renderer = rendererByName.get(configuredRenderer);
+                if (renderer == null) {
+                    LOG.debug("Renderer {} was removed while processing its version.", configuredRenderer.getValue());
+                    processingRenderers.remove(configuredRenderer);
+                    staleRenderers.remove(configuredRenderer);
+                    versionStateByRendererName.remove(configuredRenderer);
+                    continue;
+                }
+                RendererVersionState versionState = versionStateByRendererName.get(configuredRenderer);
+                long dispatchedVersion = versionState.dispatchedVersion;
                 RendererPolicy rendererPolicy = renderer.getRendererPolicy();
                 if (rendererPolicy != null && rendererPolicy.getVersion() != null
-                        && renderer.getRendererPolicy().getVersion().equals(version)) {
+                        && renderer.getRendererPolicy().getVersion().equals(dispatchedVersion)) {
                     processingRenderers.remove(configuredRenderer);
+                    versionState.acknowledged();
                     Status status = rendererPolicy.getStatus();
                     if (status != null && status.getUnconfiguredEndpoints() != null
                             && status.getUnconfiguredEndpoints().getUnconfiguredRendererEndpoint() != null
                             && !status.getUnconfiguredEndpoints().getUnconfiguredRendererEndpoint().isEmpty()) {
                         LOG.warn("Renderer {} did not configure policy with version {} successfully. \n{}",
-                                configuredRenderer.getValue(), version, status);
+                                configuredRenderer.getValue(), dispatchedVersion, status);
                     } else {
-                        LOG.debug("Renderer {} configured policy with version {} successfully.",
-                                configuredRenderer.getValue(), version);
+                        LOG.debug("Renderer {} configured policy with version {} successfully in {} ms.",
+                                configuredRenderer.getValue(), dispatchedVersion,
+                                TimeUnit.NANOSECONDS.toMillis(versionState.lastAckLatencyNanos));
                     }
                 }
             }
         }
-        processState();
     }
 
+    /**
+     * Inputs are compared by their fingerprints in constant time. If fingerprint verification is
+     * enabled, inputs are compared also by their content and a mismatch is logged.
+     *
+     * @return {@code true} if current inputs are the same as inputs of configured version
+     */
+    private boolean isCurrentStateConfigured() {
+        if (configuredState == null) {
+            return false;
+        }
+        boolean sameFingerprint = currentState.getFingerprint().equals(configuredState.getFingerprint())
+                && currentState.rendererByNode.equals(configuredState.rendererByNode)
+                && currentState.epgPolicyRenderers.equals(configuredState.epgPolicyRenderers);
+        if (fingerprintVerification && configuredState.hasCopiedContent()) {
+            boolean sameContent = currentState.hasSameContent(configuredState);
+            if (sameFingerprint != sameContent) {
+                LOG.error("Fingerprints of inputs do not match their content. Same fingerprint: {}, same content: {}"
+                        + ", current fingerprint: {}, configured fingerprint: {}", sameFingerprint, sameContent,
+                        currentState.getFingerprint(), configuredState.getFingerprint());
+            }
+            return sameContent;
+        }
+        return sameFingerprint;
+    }
+
+    /**
+     * Each renderer has its own version pipeline. A renderer which acknowledged its version
+     * receives a new version immediately. A renderer which is still processing its version is
+     * skipped and receives the latest configuration once it acknowledges its version.
+     */
     private void processState() {
-        if (!processingRenderers.isEmpty()) {
-            LOG.debug("Waiting for renderers. Version {} needs to be processed by renderers: {}", version,
-                    processingRenderers);
+        if (isCurrentStateConfigured()) {
+            LOG.trace("Nothing was changed in config for renderers {}", currentState);
+            dispatchToStaleRenderers();
             return;
         }
-        if (currentState.equals(configuredState)) {
-            LOG.trace("Nothing was changed in config for renderers {}", currentState);
+        if (!processingRenderers.isEmpty()) {
+            LOG.debug("Renderers {} are processing previous versions and will receive version {} later.",
+                    processingRenderers, version + 1);
+        }
+        if (canProcessIncrementally()) {
+            processStateIncrementally();
             return;
         }
+        Set<RendererName> busyRenderers = ImmutableSet.copyOf(processingRenderers);
         Map<RendererName, RendererConfigurationBuilder> rendererConfigBuilderByRendererName =
                 createRendererConfigBuilders();
         Set<RendererName> rendererNames = new HashSet<>(currentState.rendererByNode.values());
+        Map<RendererName, Optional<Configuration>> configsByRendererName =
+                createConfigurations(rendererNames, rendererConfigBuilderByRendererName);
         boolean newVersionHasConfig = false;
-        Map<RendererName, Optional<Configuration>> configsByRendererName = new HashMap<>();
-        for (RendererName rendererName : rendererNames) {
-            RendererConfigurationBuilder rendererPolicyBuilder = rendererConfigBuilderByRendererName.get(rendererName);
-            Optional<Configuration> potentialConfig = createConfiguration(rendererPolicyBuilder);
+        for (Optional<Configuration> potentialConfig : configsByRendererName.values()) {
             if (potentialConfig.isPresent()) {
                 newVersionHasConfig = true;
             }
-            configsByRendererName.put(rendererName, potentialConfig);
         }
         if (newVersionHasConfig || currentVersionHasConfig) {
             version++;
-            if (!writeRenderersConfigs(configsByRendererName)) {
+            boolean dispatched;
+            if (busyRenderers.isEmpty() && staleRenderers.isEmpty()) {
+                dispatched = writeRenderersConfigs(configsByRendererName);
+            } else {
+                dispatched = writeReadyRenderersConfigs(configsByRendererName, busyRenderers);
+            }
+            if (!dispatched) {
                 LOG.warn("Version {} was not dispatched successfully. Previous version is valid until next update.",
                         version);
-                for (RendererName rendererName : rendererConfigBuilderByRendererName.keySet()) {
-                    processingRenderers.remove(rendererName);
-                }
                 version--;
                 return;
             } else {
                 currentVersionHasConfig = newVersionHasConfig;
-                configuredState = currentState.createCopy();
+                currentState.clearChanges();
+                configuredState = currentState.createCopy(fingerprintVerification);
+                if (incrementalMode) {
+                    configuredBuilderByRendererName = rendererConfigBuilderByRendererName;
+                } else {
+                    configuredConfigByRendererName = configsByRendererName;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes configuration of current version only to renderers which are not busy. Busy
+     * renderers are marked as stale.
+     */
+    private boolean writeReadyRenderersConfigs(Map<RendererName, Optional<Configuration>> configsByRendererName,
+            Set<RendererName> busyRenderers) {
+        WriteTransaction wTx = dataProvider.newWriteOnlyTransaction();
+        Set<RendererName> readyRenderers = new HashSet<>();
+        for (Entry<RendererName, Optional<Configuration>> entry : configsByRendererName.entrySet()) {
+            RendererName rendererName = entry.getKey();
+            if (busyRenderers.contains(rendererName)) {
+                staleRenderers.add(rendererName);
+                continue;
+            }
+            writeRendererConfig(rendererName, entry.getValue(), wTx);
+            readyRenderers.add(rendererName);
+        }
+        if (!DataStoreHelper.submitToDs(wTx)) {
+            return false;
+        }
+        for (RendererName rendererName : readyRenderers) {
+            markDispatched(rendererName);
+        }
+        staleRenderers.removeAll(readyRenderers);
+        return true;
+    }
+
+    /**
+     * Renderers which skipped some versions because they were busy receive configuration of the
+     * current version when they are not busy anymore. If the configuration cannot be written, the
+     * renderers stay stale and dispatching is retried after
+     * {@link #STALE_DISPATCH_RETRY_DELAY_MILLIS}.
+     */
+    private void dispatchToStaleRenderers() {
+        Set<RendererName> rendererNames = new HashSet<>(currentState.rendererByNode.values());
+        staleRenderers.retainAll(rendererNames);
+        Set<RendererName> readyStaleRenderers = Sets.difference(staleRenderers, processingRenderers).immutableCopy();
+        if (readyStaleRenderers.isEmpty()) {
+            return;
+        }
+        WriteTransaction wTx = dataProvider.newWriteOnlyTransaction();
+        for (RendererName rendererName : readyStaleRenderers) {
+            writeRendererConfig(rendererName, resolveConfiguredConfig(rendererName), wTx);
+        }
+        if (!DataStoreHelper.submitToDs(wTx)) {
+            LOG.warn("Version {} was not dispatched successfully to renderers {}. Retrying in {} ms.", version,
+                    readyStaleRenderers, STALE_DISPATCH_RETRY_DELAY_MILLIS);
+            scheduleStaleDispatchRetry();
+            return;
+        }
+        for (RendererName rendererName : readyStaleRenderers) {
+            markDispatched(rendererName);
+        }
+        staleRenderers.removeAll(readyStaleRenderers);
+    }
+
+    private void scheduleStaleDispatchRetry() {
+        if (staleDispatchRetry != null && !staleDispatchRetry.isDone()) {
+            return;
+        }
+        if (retryExecutor == null) {
+            retryExecutor = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("gbp-renderer-manager-retry-%d").setDaemon(true).build());
+        }
+        staleDispatchRetry = retryExecutor.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                retryDispatchToStaleRenderers();
+            }
+        }, STALE_DISPATCH_RETRY_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @VisibleForTesting
+    synchronized void retryDispatchToStaleRenderers() {
+        dispatchToStaleRenderers();
+    }
+
+    private Optional<Configuration> resolveConfiguredConfig(RendererName rendererName) {
+        if (configuredBuilderByRendererName != null) {
+            return createConfiguration(configuredBuilderByRendererName.get(rendererName));
+        }
+        if (configuredConfigByRendererName != null && configuredConfigByRendererName.containsKey(rendererName)) {
+            return configuredConfigByRendererName.get(rendererName);
+        }
+        return Optional.absent();
+    }
+
+    /**
+     * Incremental processing is possible only if there is a dispatched version which was created
+     * from valid input and the set of renderers and their nodes was not changed.
+     */
+    private boolean canProcessIncrementally() {
+        return incrementalMode && configuredBuilderByRendererName != null && configuredState != null
+                && configuredState.isValid() && currentState.isValid()
+                && configuredState.rendererByNode.equals(currentState.rendererByNode)
+                && configuredState.epgPolicyRenderers.equals(currentState.epgPolicyRenderers);
+    }
+
+    /**
+     * Recomputes only renderer endpoints affected by changes between configured and current state.
+     * Affected parts of configuration are written per renderer and per entry; version of each
+     * renderer is advanced. Policy in endpoint-group form is not kept per renderer endpoint,
+     * therefore configuration of renderers receiving it is created again and written whole.
+     */
+    private void processStateIncrementally() {
+        RendererInputChanges changes = new RendererInputChanges(configuredState.epInfo, configuredState.epLocInfo,
+                configuredState.policyInfo, configuredState.forwarding, currentState.epInfo, currentState.epLocInfo,
+                currentState.policyInfo, currentState.forwarding);
+        LOG.debug("Processing changes incrementally: {}", changes);
+        Map<RendererName, RendererConfigurationBuilder> builderByRendererName =
+                configuredBuilderByRendererName;
+        Set<RendererName> rendererNames = new HashSet<>(currentState.rendererByNode.values());
+        Map<RendererName, RendererConfigSnapshot> snapshotByRendererName = new HashMap<>();
+        for (RendererName rendererName : rendererNames) {
+            if (currentState.epgPolicyRenderers.contains(rendererName)) {
+                builderByRendererName.remove(rendererName);
+                continue;
+            }
+            snapshotByRendererName.put(rendererName,
+                    new RendererConfigSnapshot(builderByRendererName.get(rendererName)));
+        }
+
+        SetMultimap<RendererName, RendererEndpointKey> touchedRendererEpsByRendererName = HashMultimap.create();
+        Set<AddressEndpointKey> affectedRendererEps = changes.resolveAffectedRendererEndpoints();
+        for (AddressEndpointKey adrEpKey : affectedRendererEps) {
+            RendererEndpointKey rendererEpKey = AddressEndpointUtils.toRendererEpKey(adrEpKey);
+            for (Entry<RendererName, RendererConfigurationBuilder> entry : builderByRendererName.entrySet()) {
+                if (entry.getValue().removeRendererEndpoint(rendererEpKey)) {
+                    touchedRendererEpsByRendererName.put(entry.getKey(), rendererEpKey);
+                }
+            }
+            Optional<AddressEndpoint> potentialAdrEp = currentState.epInfo.getEndpoint(adrEpKey);
+            Optional<AddressEndpointLocation> potentialAdrEpLoc =
+                    currentState.epLocInfo.getAdressEndpointLocation(adrEpKey);
+            if (!potentialAdrEp.isPresent() || !potentialAdrEpLoc.isPresent()) {
+                continue;
+            }
+            Optional<InstanceIdentifier<?>> potentialAbsNodeLoc =
+                    EndpointLocationUtils.resolveAbsoluteNodeLocation(potentialAdrEpLoc.get());
+            if (!potentialAbsNodeLoc.isPresent()) {
+                continue;
+            }
+            RendererName rendererName = currentState.rendererByNode.get(potentialAbsNodeLoc.get());
+            if (rendererName == null) {
+                LOG.trace("Renderer does not exist for EP with location: {}", potentialAbsNodeLoc.get());
+                continue;
+            }
+            if (currentState.epgPolicyRenderers.contains(rendererName)) {
+                continue;
+            }
+            RendererConfigurationBuilder rendererConfigBuilder = builderByRendererName.get(rendererName);
+            if (rendererConfigBuilder == null) {
+                rendererConfigBuilder = new RendererConfigurationBuilder();
+                builderByRendererName.put(rendererName, rendererConfigBuilder);
+            }
+            resolveRendererConfigForEndpoint(potentialAdrEp.get(), rendererConfigBuilder);
+            touchedRendererEpsByRendererName.put(rendererName, rendererEpKey);
+        }
+
+        for (RendererName rendererName : rendererNames) {
+            if (currentState.epgPolicyRenderers.contains(rendererName)) {
+                RendererConfigurationBuilder rendererConfigBuilder = createEndpointGroupPolicyConfigBuilder(rendererName);
+                if (!rendererConfigBuilder.isEmpty()) {
+                    builderByRendererName.put(rendererName, rendererConfigBuilder);
+                }
+            }
+        }
+
+        version++;
+        Set<RendererName> busyRenderers = ImmutableSet.copyOf(processingRenderers);
+        Set<RendererName> dispatchedRenderers = new HashSet<>();
+        WriteTransaction wTx = dataProvider.newWriteOnlyTransaction();
+        boolean newVersionHasConfig = false;
+        for (RendererName rendererName : rendererNames) {
+            RendererConfigurationBuilder rendererConfigBuilder = builderByRendererName.get(rendererName);
+            RendererConfigSnapshot snapshot = snapshotByRendererName.get(rendererName);
+            if (busyRenderers.contains(rendererName)) {
+                if (rendererConfigBuilder != null && !rendererConfigBuilder.isEmpty()) {
+                    newVersionHasConfig = true;
+                }
+                staleRenderers.add(rendererName);
+                continue;
+            }
+            boolean stale = staleRenderers.contains(rendererName);
+            if (stale || snapshot == null || rendererConfigBuilder == null || rendererConfigBuilder.isEmpty()
+                    || snapshot.isEmpty()) {
+                Optional<Configuration> potentialConfig = createConfiguration(rendererConfigBuilder);
+                if (potentialConfig.isPresent()) {
+                    newVersionHasConfig = true;
+                }
+                writeRendererConfig(rendererName, potentialConfig, wTx);
+            } else {
+                newVersionHasConfig = true;
+                wTx.merge(LogicalDatastoreType.CONFIGURATION, IidFactory.rendererPolicyIid(rendererName),
+                        new RendererPolicyBuilder().setVersion(version).build());
+                writeRendererConfigChanges(rendererName, rendererConfigBuilder, snapshot, changes,
+                        touchedRendererEpsByRendererName.get(rendererName), wTx);
+            }
+            dispatchedRenderers.add(rendererName);
+        }
+        if (!DataStoreHelper.submitToDs(wTx)) {
+            LOG.warn("Version {} was not dispatched successfully. Configuration will be recomputed on next update.",
+                    version);
+            // in-memory builders were already changed therefore next version has to be created from scratch
+            configuredBuilderByRendererName = null;
+            configuredState = null;
+            version--;
+            return;
+        }
+        for (RendererName rendererName : dispatchedRenderers) {
+            markDispatched(rendererName);
+        }
+        staleRenderers.removeAll(dispatchedRenderers);
+        currentVersionHasConfig = newVersionHasConfig;
+        currentState.clearChanges();
+        configuredState = currentState.createCopy(fingerprintVerification);
+    }
+
+    private void writeRendererConfig(RendererName rendererName, Optional<Configuration> potentialConfig,
+            WriteTransaction wTx) {
+        RendererPolicyBuilder rendererPolicyBuilder = new RendererPolicyBuilder().setVersion(version);
+        if (potentialConfig.isPresent()) {
+            rendererPolicyBuilder.setConfiguration(potentialConfig.get());
+        }
+        wTx.put(LogicalDatastoreType.CONFIGURATION, IidFactory.rendererPolicyIid(rendererName),
+                rendererPolicyBuilder.build(), true);
+        LOG.debug("Created configuration for renderer {} with version {}", rendererName.getValue(), version);
+    }
+
+    private void writeRendererConfigChanges(RendererName rendererName,
+            RendererConfigurationBuilder rendererConfigBuilder, RendererConfigSnapshot snapshot,
+            RendererInputChanges changes, Set<RendererEndpointKey> touchedRendererEps, WriteTransaction wTx) {
+        for (RendererEndpointKey rendererEpKey : touchedRendererEps) {
+            Optional<RendererEndpoint> potentialRendererEp = rendererConfigBuilder.buildRendererEndpoint(rendererEpKey);
+            if (potentialRendererEp.isPresent()) {
+                wTx.put(LogicalDatastoreType.CONFIGURATION,
+                        IidFactory.rendererEndpointIid(rendererName, rendererEpKey), potentialRendererEp.get());
+            } else {
+                wTx.delete(LogicalDatastoreType.CONFIGURATION,
+                        IidFactory.rendererEndpointIid(rendererName, rendererEpKey));
+            }
+        }
+
+        Set<AddressEndpointKey> adrEpKeys = rendererConfigBuilder.getAddressEndpointKeys();
+        for (AddressEndpointKey adrEpKey : Sets.difference(snapshot.adrEpKeys, adrEpKeys)) {
+            wTx.delete(LogicalDatastoreType.CONFIGURATION,
+                    IidFactory.addressEndpointWithLocationIid(rendererName, toAdrEpWithLocKey(adrEpKey)));
+        }
+        for (AddressEndpointKey adrEpKey : adrEpKeys) {
+            if (!snapshot.adrEpKeys.contains(adrEpKey) || changes.isAddressEndpointChanged(adrEpKey)) {
+                AddressEndpointWithLocation adrEpWithLoc = RendererConfigurationBuilder.buildAddressEndpointWithLocation(
+                        adrEpKey, currentState.epInfo, currentState.epLocInfo, currentState.rendererByNode,
+                        epAugmentorRegistry.getEndpointAugmentors());
+                wTx.put(LogicalDatastoreType.CONFIGURATION,
+                        IidFactory.addressEndpointWithLocationIid(rendererName, adrEpWithLoc.getKey()), adrEpWithLoc);
+            }
+        }
+
+        Set<ContainmentEndpointKey> contEpKeys = rendererConfigBuilder.getContainmentEndpointKeys();
+        for (ContainmentEndpointKey contEpKey : Sets.difference(snapshot.contEpKeys, contEpKeys)) {
+            wTx.delete(LogicalDatastoreType.CONFIGURATION,
+                    IidFactory.containmentEndpointWithLocationIid(rendererName, toContEpWithLocKey(contEpKey)));
+        }
+        for (ContainmentEndpointKey contEpKey : contEpKeys) {
+            if (!snapshot.contEpKeys.contains(contEpKey) || changes.isContainmentEndpointChanged(contEpKey)) {
+                ContainmentEndpointWithLocation contEpWithLoc =
+                        RendererConfigurationBuilder.buildContainmentEndpointWithLocation(contEpKey,
+                                currentState.epInfo, currentState.epLocInfo,
+                                epAugmentorRegistry.getEndpointAugmentors());
+                wTx.put(LogicalDatastoreType.CONFIGURATION,
+                        IidFactory.containmentEndpointWithLocationIid(rendererName, contEpWithLoc.getKey()),
+                        contEpWithLoc);
+            }
+        }
+
+        Set<PolicyRuleGroupKey> ruleGrpKeys = rendererConfigBuilder.getPolicyRuleGroupKeys();
+        for (PolicyRuleGroupKey ruleGrpKey : Sets.difference(snapshot.ruleGrpKeys, ruleGrpKeys)) {
+            wTx.delete(LogicalDatastoreType.CONFIGURATION,
+                    IidFactory.ruleGroupIid(rendererName, toRuleGroupKey(ruleGrpKey)));
+        }
+        for (PolicyRuleGroupKey ruleGrpKey : ruleGrpKeys) {
+            if (!snapshot.ruleGrpKeys.contains(ruleGrpKey) || changes.isRuleGroupChanged(ruleGrpKey)) {
+                RuleGroup ruleGroup = RendererConfigurationBuilder.buildRuleGroup(ruleGrpKey, currentState.policyInfo);
+                wTx.put(LogicalDatastoreType.CONFIGURATION,
+                        IidFactory.ruleGroupIid(rendererName, ruleGroup.getKey()), ruleGroup);
+            }
+        }
+
+        Map<TenantId, ForwardingByTenant> fwdByTenantId = new HashMap<>();
+        if (currentState.forwarding != null && currentState.forwarding.getForwardingByTenant() != null) {
+            for (ForwardingByTenant fwdByTenant : currentState.forwarding.getForwardingByTenant()) {
+                fwdByTenantId.put(fwdByTenant.getTenantId(), fwdByTenant);
+            }
+        }
+        for (TenantId tenantId : changes.getChangedForwardingTenants()) {
+            ForwardingByTenant fwdByTenant = fwdByTenantId.get(tenantId);
+            if (fwdByTenant == null) {
+                wTx.delete(LogicalDatastoreType.CONFIGURATION, IidFactory.rendererForwardingByTenantIid(rendererName,
+                        new RendererForwardingByTenantKey(tenantId)));
+            } else {
+                RendererForwardingByTenant rendererFwdByTenant = RendererConfigurationBuilder
+                    .resolveRendererForwardingByTenant(fwdByTenant, netDomainAugmentorRegistry.getNetworkDomainAugmentors());
+                wTx.put(LogicalDatastoreType.CONFIGURATION,
+                        IidFactory.rendererForwardingByTenantIid(rendererName, rendererFwdByTenant.getKey()),
+                        rendererFwdByTenant);
             }
         }
+        LOG.debug("Updated {} renderer endpoints of renderer {} with version {}", touchedRendererEps.size(),
+                rendererName.getValue(), version);
+    }
+
+    /**
+     * Has to be called only after configuration of the current version was successfully written
+     * to the renderer.
+     */
+    private void markDispatched(RendererName rendererName) {
+        processingRenderers.add(rendererName);
+        RendererVersionState versionState = versionStateByRendererName.get(rendererName);
+        if (versionState == null) {
+            versionState = new RendererVersionState();
+            versionStateByRendererName.put(rendererName, versionState);
+        }
+        versionState.dispatched(version);
+    }
+
+    private static AddressEndpointWithLocationKey toAdrEpWithLocKey(AddressEndpointKey adrEpKey) {
+        return new AddressEndpointWithLocationKey(adrEpKey.getAddress(), adrEpKey.getAddressType(),
+                adrEpKey.getContextId(), adrEpKey.getContextType());
+    }
+
+    private static ContainmentEndpointWithLocationKey toContEpWithLocKey(ContainmentEndpointKey contEpKey) {
+        return new ContainmentEndpointWithLocationKey(contEpKey.getContextId(), contEpKey.getContextType());
+    }
+
+    private static RuleGroupKey toRuleGroupKey(PolicyRuleGroupKey policyRuleGrpKey) {
+        return new RuleGroupKey(policyRuleGrpKey.getContractId(), policyRuleGrpKey.getSubjectName(),
+                policyRuleGrpKey.getTenantId());
+    }
+
+    /**
+     * Versions dispatched to and acknowledged by a renderer
+     */
+    private static final class RendererVersionState {
+
+        private long dispatchedVersion;
+        private long dispatchTimeNanos;
+        private long acknowledgedVersion;
+        private long lastAckLatencyNanos;
+        private long maxAckLatencyNanos;
+
+        private void dispatched(long version) {
+            dispatchedVersion = version;
+            dispatchTimeNanos = System.nanoTime();
+        }
+
+        private void acknowledged() {
+            acknowledgedVersion = dispatchedVersion;
+            lastAckLatencyNanos = System.nanoTime() - dispatchTimeNanos;
+            maxAckLatencyNanos = Math.max(maxAckLatencyNanos, lastAckLatencyNanos);
+        }
+    }
+
+    /**
+     * Keys referenced by configuration of a renderer before changes are applied
+     */
+    private static final class RendererConfigSnapshot {
+
+        private final Set<AddressEndpointKey> adrEpKeys;
+        private final Set<ContainmentEndpointKey> contEpKeys;
+        private final Set<PolicyRuleGroupKey> ruleGrpKeys;
+        private final boolean empty;
+
+        private RendererConfigSnapshot(@Nullable RendererConfigurationBuilder rendererConfigBuilder) {
+            if (rendererConfigBuilder == null) {
+                adrEpKeys = ImmutableSet.of();
+                contEpKeys = ImmutableSet.of();
+                ruleGrpKeys = ImmutableSet.of();
+                empty = true;
+            } else {
+                adrEpKeys = rendererConfigBuilder.getAddressEndpointKeys();
+                contEpKeys = rendererConfigBuilder.getContainmentEndpointKeys();
+                ruleGrpKeys = rendererConfigBuilder.getPolicyRuleGroupKeys();
+                empty = rendererConfigBuilder.isEmpty();
+            }
+        }
+
+        private boolean isEmpty() {
+            return empty;
+        }
     }
 
     private boolean writeRenderersConfigs(Map<RendererName, Optional<Configuration>> configsByRendererName) {
@@ -300,13 +1041,18 @@ public class RendererManager implements AutoCloseable {
                 rendererPolicy = new RendererPolicyBuilder().setVersion(version).build();
             }
             renderers.add(new RendererBuilder().setName(rendererName).setRendererPolicy(rendererPolicy).build());
-            processingRenderers.add(rendererName);
             LOG.debug("Created configuration for renderer {} with version {}", rendererName.getValue(), version);
         }
         WriteTransaction wTx = dataProvider.newWriteOnlyTransaction();
         wTx.put(LogicalDatastoreType.CONFIGURATION, InstanceIdentifier.create(Renderers.class),
                 new RenderersBuilder().setRenderer(renderers).build());
-        return DataStoreHelper.submitToDs(wTx);
+        if (!DataStoreHelper.submitToDs(wTx)) {
+            return false;
+        }
+        for (RendererName rendererName : configsByRendererName.keySet()) {
+            markDispatched(rendererName);
+        }
+        return true;
     }
 
     /**
@@ -320,6 +1066,9 @@ public class RendererManager implements AutoCloseable {
         if (!currentState.isValid()) {
             return Collections.emptyMap();
         }
+        if (configBuildingPool != null) {
+            return createRendererConfigBuildersInParallel();
+        }
         Map<RendererName, RendererConfigurationBuilder> rendererConfigBuilderByRendererName = new HashMap<>();
         for (InstanceIdentifier<?> absEpLocation : currentState.epLocInfo.getAllAbsoluteNodeLocations()) {
             RendererName rendererName = currentState.rendererByNode.get(absEpLocation);
@@ -327,25 +1076,166 @@ public class RendererManager implements AutoCloseable {
                 LOG.trace("Renderer does not exist for EP with location: {}", absEpLocation);
                 continue;
             }
-            RendererConfigurationBuilder rendererConfigBuilder = rendererConfigBuilderByRendererName.get(rendererName);
-            if (rendererConfigBuilder == null) {
-                rendererConfigBuilder = new RendererConfigurationBuilder();
-                rendererConfigBuilderByRendererName.put(rendererName, rendererConfigBuilder);
+            RendererConfigurationBuilder rendererConfigBuilder =
+                    resolveRendererConfigBuilder(rendererName, rendererConfigBuilderByRendererName);
+            resolveRendererConfigForNodeLocation(absEpLocation, rendererConfigBuilder);
+        }
+        return rendererConfigBuilderByRendererName;
+    }
+
+    /**
+     * Policies of each node location are resolved in parallel and recorded. Recorded policies are
+     * added to builders in the same order as node locations are processed serially so builders end
+     * up in the same state as if they were created by the serial path.
+     */
+    private Map<RendererName, RendererConfigurationBuilder> createRendererConfigBuildersInParallel() {
+        List<InstanceIdentifier<?>> absEpLocations = new ArrayList<>();
+        List<ForkJoinTask<RendererConfigurationRecorder>> recorderTasks = new ArrayList<>();
+        for (final InstanceIdentifier<?> absEpLocation : currentState.epLocInfo.getAllAbsoluteNodeLocations()) {
+            if (!currentState.rendererByNode.containsKey(absEpLocation)) {
+                LOG.trace("Renderer does not exist for EP with location: {}", absEpLocation);
+                continue;
             }
-            for (AddressEndpointKey rendererAdrEpKey : currentState.epLocInfo
-                    .getAddressEpsWithAbsoluteNodeLocation(absEpLocation)) {
-                Optional<AddressEndpoint> potentialAddressEp = currentState.epInfo.getEndpoint(rendererAdrEpKey);
-                if (!potentialAddressEp.isPresent()) {
-                    LOG.trace("Endpoint does not exist but has location: {}", rendererAdrEpKey);
-                    continue;
+            absEpLocations.add(absEpLocation);
+            recorderTasks.add(configBuildingPool.submit(new Callable<RendererConfigurationRecorder>() {
+
+                @Override
+                public RendererConfigurationRecorder call() {
+                    RendererConfigurationRecorder recorder = new RendererConfigurationRecorder(
+                            currentState.epgPolicyRenderers.contains(currentState.rendererByNode.get(absEpLocation)));
+                    resolveRendererConfigForNodeLocation(absEpLocation, recorder);
+                    return recorder;
                 }
-                AddressEndpoint rendererAdrEp = potentialAddressEp.get();
-                resolveRendererConfigForEndpoint(rendererAdrEp, rendererConfigBuilder);
-            }
+            }));
+        }
+        Map<RendererName, RendererConfigurationBuilder> rendererConfigBuilderByRendererName = new HashMap<>();
+        for (int i = 0; i < absEpLocations.size(); i++) {
+            RendererName rendererName = currentState.rendererByNode.get(absEpLocations.get(i));
+            RendererConfigurationBuilder rendererConfigBuilder =
+                    resolveRendererConfigBuilder(rendererName, rendererConfigBuilderByRendererName);
+            recorderTasks.get(i).join().replay(rendererConfigBuilder);
         }
         return rendererConfigBuilderByRendererName;
     }
 
+    private RendererConfigurationBuilder resolveRendererConfigBuilder(RendererName rendererName,
+            Map<RendererName, RendererConfigurationBuilder> rendererConfigBuilderByRendererName) {
+        RendererConfigurationBuilder rendererConfigBuilder = rendererConfigBuilderByRendererName.get(rendererName);
+        if (rendererConfigBuilder == null) {
+            rendererConfigBuilder =
+                    new RendererConfigurationBuilder(currentState.epgPolicyRenderers.contains(rendererName));
+            rendererConfigBuilderByRendererName.put(rendererName, rendererConfigBuilder);
+        }
+        return rendererConfigBuilder;
+    }
+
+    /**
+     * Creates builder with policy in endpoint-group form for all node locations of the renderer.
+     */
+    private RendererConfigurationBuilder createEndpointGroupPolicyConfigBuilder(RendererName rendererName) {
+        RendererConfigurationBuilder rendererConfigBuilder = new RendererConfigurationBuilder(true);
+        for (InstanceIdentifier<?> absEpLocation : currentState.epLocInfo.getAllAbsoluteNodeLocations()) {
+            if (rendererName.equals(currentState.rendererByNode.get(absEpLocation))) {
+                resolveRendererConfigForNodeLocation(absEpLocation, rendererConfigBuilder);
+            }
+        }
+        return rendererConfigBuilder;
+    }
+
+    private void resolveRendererConfigForNodeLocation(InstanceIdentifier<?> absEpLocation,
+            RendererConfigurationBuilder rendererConfigBuilder) {
+        for (AddressEndpointKey rendererAdrEpKey : currentState.epLocInfo
+            .getAddressEpsWithAbsoluteNodeLocation(absEpLocation)) {
+            Optional<AddressEndpoint> potentialAddressEp = currentState.epInfo.getEndpoint(rendererAdrEpKey);
+            if (!potentialAddressEp.isPresent()) {
+                LOG.trace("Endpoint does not exist but has location: {}", rendererAdrEpKey);
+                continue;
+            }
+            AddressEndpoint rendererAdrEp = potentialAddressEp.get();
+            resolveRendererConfigForEndpoint(rendererAdrEp, rendererConfigBuilder);
+        }
+    }
+
+    /**
+     * Configurations of renderers are created in parallel if parallel building is enabled. The
+     * result map is filled in the same order as by the serial path.
+     */
+    private Map<RendererName, Optional<Configuration>> createConfigurations(Set<RendererName> rendererNames,
+            Map<RendererName, RendererConfigurationBuilder> rendererConfigBuilderByRendererName) {
+        Map<RendererName, Optional<Configuration>> configsByRendererName = new HashMap<>();
+        if (configBuildingPool == null) {
+            for (RendererName rendererName : rendererNames) {
+                configsByRendererName.put(rendererName,
+                        createConfiguration(rendererConfigBuilderByRendererName.get(rendererName)));
+            }
+            return configsByRendererName;
+        }
+        Map<RendererName, ForkJoinTask<Optional<Configuration>>> configTaskByRendererName = new HashMap<>();
+        for (RendererName rendererName : rendererNames) {
+            configTaskByRendererName.put(rendererName, configBuildingPool
+                .submit(new CreateConfigurationTask(rendererConfigBuilderByRendererName.get(rendererName))));
+        }
+        for (RendererName rendererName : rendererNames) {
+            configsByRendererName.put(rendererName, configTaskByRendererName.get(rendererName).join());
+        }
+        return configsByRendererName;
+    }
+
+    /**
+     * Parallel variant of {@link RendererManager#createConfiguration(RendererConfigurationBuilder)}.
+     * Renderer endpoints are built first, endpoints and rule groups are then built in parallel
+     * with forwarding. Only renderer endpoints are built from policy tables of the builder which
+     * are not safe for concurrent reads.
+     */
+    private class CreateConfigurationTask extends RecursiveTask<Optional<Configuration>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final RendererConfigurationBuilder rendererPolicyBuilder;
+
+        private CreateConfigurationTask(@Nullable RendererConfigurationBuilder rendererPolicyBuilder) {
+            this.rendererPolicyBuilder = rendererPolicyBuilder;
+        }
+
+        @Override
+        protected Optional<Configuration> compute() {
+            if (rendererPolicyBuilder == null) {
+                return Optional.absent();
+            }
+            RendererEndpoints rendererEndpoints = rendererPolicyBuilder.buildRendererEndpoints();
+            if (isRendererEndpointsEmpty(rendererEndpoints)) {
+                return Optional.absent();
+            }
+            ForkJoinTask<org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.Endpoints> endpointsTask =
+                    ForkJoinTask.adapt(
+                            new Callable<org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.Endpoints>() {
+
+                                @Override
+                                public org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.Endpoints call() {
+                                    return rendererPolicyBuilder.buildEndoints(currentState.epInfo,
+                                            currentState.epLocInfo, currentState.rendererByNode,
+                                            epAugmentorRegistry.getEndpointAugmentors());
+                                }
+                            })
+                        .fork();
+            ForkJoinTask<RuleGroups> ruleGroupsTask = ForkJoinTask.adapt(new Callable<RuleGroups>() {
+
+                @Override
+                public RuleGroups call() {
+                    return rendererPolicyBuilder.buildRuluGroups(currentState.policyInfo);
+                }
+            }).fork();
+            RendererForwarding rendererForwarding = rendererPolicyBuilder.buildRendererForwarding(
+                    currentState.forwarding, netDomainAugmentorRegistry.getNetworkDomainAugmentors());
+            return Optional.of(new ConfigurationBuilder().setRendererEndpoints(rendererEndpoints)
+                .setEndpointGroupPolicies(rendererPolicyBuilder.buildEndpointGroupPolicies())
+                .setEndpoints(endpointsTask.join())
+                .setRuleGroups(ruleGroupsTask.join())
+                .setRendererForwarding(rendererForwarding)
+                .build());
+        }
+    }
+
     private Optional<Configuration> createConfiguration(@Nullable RendererConfigurationBuilder rendererPolicyBuilder) {
         if (rendererPolicyBuilder == null) {
             return Optional.absent();
@@ -356,6 +1246,7 @@ public class RendererManager implements AutoCloseable {
             return Optional.absent();
         }
         configBuilder.setRendererEndpoints(rendererEndpoints);
+        configBuilder.setEndpointGroupPolicies(rendererPolicyBuilder.buildEndpointGroupPolicies());
 
         org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.Endpoints endpoints =
                 rendererPolicyBuilder.buildEndoints(currentState.epInfo, currentState.epLocInfo,
@@ -390,6 +1281,11 @@ public class RendererManager implements AutoCloseable {
             for (ConsEpgKey consPeerEpg : consPeerEpgs) {
                 Optional<ResolvedPolicy> potentialPolicy = currentState.policyInfo.findPolicy(consPeerEpg, rendererEpg);
                 ResolvedPolicy policy = potentialPolicy.get();
+                if (rendererPolicyBuilder.isEndpointGroupPolicyForm()) {
+                    resolveEndpointGroupPolicy(rendererEpKey, consPeerEpg, policy,
+                            EndpointPolicyParticipation.PROVIDER, rendererPolicyBuilder);
+                    continue;
+                }
                 ImmutableSet<AddressEndpointKey> consPeerAdrEps =
                         currentState.epInfo.findAddressEpsWithEpg(consPeerEpg);
                 resolveRendererPolicyBetweenEpAndPeers(rendererEpKey, consPeerAdrEps, policy,
@@ -403,6 +1299,11 @@ public class RendererManager implements AutoCloseable {
             for (ProvEpgKey provPeerEpg : provPeerEpgs) {
                 Optional<ResolvedPolicy> potentialPolicy = currentState.policyInfo.findPolicy(rendererEpg, provPeerEpg);
                 ResolvedPolicy policy = potentialPolicy.get();
+                if (rendererPolicyBuilder.isEndpointGroupPolicyForm()) {
+                    resolveEndpointGroupPolicy(rendererEpKey, provPeerEpg, policy,
+                            EndpointPolicyParticipation.CONSUMER, rendererPolicyBuilder);
+                    continue;
+                }
                 ImmutableSet<AddressEndpointKey> provPeerAdrEps =
                         currentState.epInfo.findAddressEpsWithEpg(provPeerEpg);
                 resolveRendererPolicyBetweenEpAndPeers(rendererEpKey, provPeerAdrEps, policy,
@@ -415,6 +1316,38 @@ public class RendererManager implements AutoCloseable {
         }
     }
 
+    /**
+     * Policy in endpoint-group form is added once per policy and participation. Peers are added
+     * only when the policy is added for the first time with the participation; they are filtered
+     * by the same rules as peers of renderer endpoints.
+     */
+    private void resolveEndpointGroupPolicy(RendererEndpointKey rendererEpKey, EpgKey peerEpg,
+            ResolvedPolicy policy, EndpointPolicyParticipation rendererEpParticipation,
+            RendererConfigurationBuilder rendererPolicyBuilder) {
+        if (isRendererEpInEig(policy, rendererEpParticipation)) {
+            LOG.info("Renderer EP cannot be in EIG therefore it is ignored: {}", rendererEpKey);
+            LOG.debug("Renderer EP participation: {}, Policy: {}", rendererEpParticipation, policy);
+            return;
+        }
+        if (!rendererPolicyBuilder.addEndpointGroupPolicy(rendererEpKey, policy, rendererEpParticipation)) {
+            return;
+        }
+        boolean peersInEig = policy.getExternalImplicitGroup() != null;
+        for (AddressEndpointKey peerAdrEpKey : currentState.epInfo.findAddressEpsWithEpg(peerEpg)) {
+            if (peersInEig ? currentState.epLocInfo.hasRelativeLocation(peerAdrEpKey)
+                    : currentState.epLocInfo.hasAbsoluteLocation(peerAdrEpKey)) {
+                rendererPolicyBuilder.addEndpointGroupPolicyPeer(peerAdrEpKey);
+            }
+        }
+        if (peersInEig) {
+            for (ContainmentEndpointKey peerContEpKey : currentState.epInfo.findContainmentEpsWithEpg(peerEpg)) {
+                if (currentState.epLocInfo.hasRelativeLocation(peerContEpKey)) {
+                    rendererPolicyBuilder.addEndpointGroupPolicyPeer(peerContEpKey);
+                }
+            }
+        }
+    }
+
     private void resolveRendererPolicyBetweenEpAndContPeers(RendererEndpointKey rendererEpKey,
                                                             Set<ContainmentEndpointKey> peerContEps, ResolvedPolicy policy,
                                                             EndpointPolicyParticipation rendererEpParticipation, RendererConfigurationBuilder rendererPolicyBuilder) {
@@ -534,8 +1467,76 @@ public class RendererManager implements AutoCloseable {
         version = 0;
     }
 
+    /**
+     * Debug mode. If enabled, fingerprints of inputs are cross-checked against a deep comparison
+     * of inputs and a mismatch is logged as an error. Content of inputs is copied on each
+     * dispatched version so it should not be enabled in production.
+     */
+    public synchronized void setFingerprintVerification(boolean fingerprintVerification) {
+        this.fingerprintVerification = fingerprintVerification;
+    }
+
+    /**
+     * @return number of versions by which the last version acknowledged by the renderer is behind
+     *         the current version
+     */
+    public synchronized long getVersionLag(RendererName rendererName) {
+        RendererVersionState versionState = versionStateByRendererName.get(rendererName);
+        return versionState == null ? version : version - versionState.acknowledgedVersion;
+    }
+
+    /**
+     * @return time in milliseconds between dispatching of a version to the renderer and its last
+     *         acknowledgement
+     */
+    public synchronized long getLastAckLatencyMillis(RendererName rendererName) {
+        RendererVersionState versionState = versionStateByRendererName.get(rendererName);
+        return versionState == null ? 0 : TimeUnit.NANOSECONDS.toMillis(versionState.lastAckLatencyNanos);
+    }
+
+    /**
+     * @return the longest time in milliseconds the renderer needed to acknowledge a version
+     */
+    public synchronized long getMaxAckLatencyMillis(RendererName rendererName) {
+        RendererVersionState versionState = versionStateByRendererName.get(rendererName);
+        return versionState == null ? 0 : TimeUnit.NANOSECONDS.toMillis(versionState.maxAckLatencyNanos);
+    }
+
+    /**
+     * @return number of input updates which were merged with other updates and did not cause
+     *         processing on their own; always {@code 0} if coalescing is disabled
+     */
+    public long getCoalescedEventsCount() {
+        return inputCoalescer == null ? 0 : inputCoalescer.getCoalescedEvents();
+    }
+
+    /**
+     * @return number of all input updates received while coalescing is enabled
+     */
+    public long getReceivedEventsCount() {
+        return inputCoalescer == null ? 0 : inputCoalescer.getReceivedEvents();
+    }
+
+    /**
+     * @return number of coalesced batches of input updates which were processed
+     */
+    public long getProcessedBatchesCount() {
+        return inputCoalescer == null ? 0 : inputCoalescer.getProcessedBatches();
+    }
+
     @Override
     public void close() {
+        if (inputCoalescer != null) {
+            inputCoalescer.close();
+        }
+        if (configBuildingPool != null) {
+            configBuildingPool.shutdownNow();
+        }
+        synchronized (this) {
+            if (retryExecutor != null) {
+                retryExecutor.shutdownNow();
+            }
+        }
         try {
             endpointsListener.close();
             endpointLocationsListener.close();
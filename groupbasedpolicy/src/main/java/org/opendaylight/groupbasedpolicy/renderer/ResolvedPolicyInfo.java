@@ -8,6 +8,7 @@
 
 package org.opendaylight.groupbasedpolicy.renderer;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -29,6 +30,7 @@ public class ResolvedPolicyInfo {
 
     private final ImmutableTable<ConsEpgKey, ProvEpgKey, ResolvedPolicy> policyByEpgs;
     private final Map<PolicyRuleGroupKey, PolicyRuleGroup> policyRuleGrpByKey = new HashMap<>();
+    private ContentFingerprint fingerprint = ContentFingerprint.EMPTY;
 
     public ResolvedPolicyInfo(ResolvedPolicies resolvedPolicies) {
         if (resolvedPolicies.getResolvedPolicy() == null) {
@@ -40,6 +42,7 @@ public class ResolvedPolicyInfo {
                         new EpgKeyDto(resolvedPolicy.getConsumerEpgId(), resolvedPolicy.getConsumerTenantId()),
                         new EpgKeyDto(resolvedPolicy.getProviderEpgId(), resolvedPolicy.getProviderTenantId()),
                         resolvedPolicy);
+                fingerprint = fingerprint.plus(ContentFingerprint.builder().add(resolvedPolicy).build());
                 for (PolicyRuleGroupWithEndpointConstraints ruleGrpWithEpConstraints : resolvedPolicy
                     .getPolicyRuleGroupWithEndpointConstraints()) {
                     for (PolicyRuleGroup ruleGrp : ruleGrpWithEpConstraints.getPolicyRuleGroup()) {
@@ -67,4 +70,36 @@ public class ResolvedPolicyInfo {
         return Optional.fromNullable(policyByEpgs.get(consKey, provKey));
     }
 
+    ImmutableTable<ConsEpgKey, ProvEpgKey, ResolvedPolicy> getPolicyByEpgs() {
+        return policyByEpgs;
+    }
+
+    Map<PolicyRuleGroupKey, PolicyRuleGroup> getPolicyRuleGrpByKey() {
+        return Collections.unmodifiableMap(policyRuleGrpByKey);
+    }
+
+    /**
+     * @return fingerprint of resolved policies
+     */
+    ContentFingerprint getFingerprint() {
+        return fingerprint;
+    }
+
+    @Override
+    public int hashCode() {
+        return fingerprint.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        ResolvedPolicyInfo other = (ResolvedPolicyInfo) obj;
+        return policyByEpgs.equals(other.policyByEpgs);
+    }
+
 }
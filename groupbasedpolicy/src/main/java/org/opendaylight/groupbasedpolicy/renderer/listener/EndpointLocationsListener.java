@@ -8,6 +8,9 @@
 
 package org.opendaylight.groupbasedpolicy.renderer.listener;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.opendaylight.controller.md.sal.binding.api.DataBroker;
 import org.opendaylight.controller.md.sal.binding.api.DataObjectModification;
 import org.opendaylight.controller.md.sal.binding.api.DataTreeIdentifier;
@@ -15,8 +18,15 @@ import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
 import org.opendaylight.groupbasedpolicy.renderer.RendererManager;
 import org.opendaylight.groupbasedpolicy.util.DataTreeChangeHandler;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.EndpointLocations;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.endpoint.locations.AddressEndpointLocation;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.endpoint.locations.AddressEndpointLocationKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.endpoint.locations.ContainmentEndpointLocation;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.endpoint.locations.ContainmentEndpointLocationKey;
+import org.opendaylight.yangtools.yang.binding.DataObject;
 import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
 
+import com.google.common.base.Optional;
+
 public class EndpointLocationsListener extends DataTreeChangeHandler<EndpointLocations> implements AutoCloseable {
 
     private final RendererManager rendererManager;
@@ -40,10 +50,28 @@ public class EndpointLocationsListener extends DataTreeChangeHandler<EndpointLoc
         rendererManager.endpointLocationsUpdated(rootNode.getDataAfter());
     }
 
+    /**
+     * Only changed endpoint locations are passed to {@link RendererManager}.
+     */
     @Override
     protected void onSubtreeModified(DataObjectModification<EndpointLocations> rootNode,
             InstanceIdentifier<EndpointLocations> rootIdentifier) {
-        rendererManager.endpointLocationsUpdated(rootNode.getDataAfter());
+        Map<AddressEndpointLocationKey, Optional<AddressEndpointLocation>> adrEpLocChanges = new HashMap<>();
+        Map<ContainmentEndpointLocationKey, Optional<ContainmentEndpointLocation>> contEpLocChanges = new HashMap<>();
+        for (DataObjectModification<? extends DataObject> epLocModif : rootNode.getModifiedChildren()) {
+            if (AddressEndpointLocation.class.equals(epLocModif.getDataType())) {
+                AddressEndpointLocation epLocBefore = (AddressEndpointLocation) epLocModif.getDataBefore();
+                AddressEndpointLocation epLocAfter = (AddressEndpointLocation) epLocModif.getDataAfter();
+                AddressEndpointLocationKey key = epLocAfter != null ? epLocAfter.getKey() : epLocBefore.getKey();
+                adrEpLocChanges.put(key, Optional.fromNullable(epLocAfter));
+            } else if (ContainmentEndpointLocation.class.equals(epLocModif.getDataType())) {
+                ContainmentEndpointLocation epLocBefore = (ContainmentEndpointLocation) epLocModif.getDataBefore();
+                ContainmentEndpointLocation epLocAfter = (ContainmentEndpointLocation) epLocModif.getDataAfter();
+                ContainmentEndpointLocationKey key = epLocAfter != null ? epLocAfter.getKey() : epLocBefore.getKey();
+                contEpLocChanges.put(key, Optional.fromNullable(epLocAfter));
+            }
+        }
+        rendererManager.endpointLocationsChanged(adrEpLocChanges, contEpLocChanges);
     }
 
 }
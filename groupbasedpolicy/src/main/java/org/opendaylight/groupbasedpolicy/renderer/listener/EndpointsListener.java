@@ -8,15 +8,26 @@
 
 package org.opendaylight.groupbasedpolicy.renderer.listener;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.opendaylight.controller.md.sal.binding.api.DataBroker;
 import org.opendaylight.controller.md.sal.binding.api.DataObjectModification;
+import org.opendaylight.controller.md.sal.binding.api.DataObjectModification.ModificationType;
 import org.opendaylight.controller.md.sal.binding.api.DataTreeIdentifier;
 import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
 import org.opendaylight.groupbasedpolicy.renderer.RendererManager;
 import org.opendaylight.groupbasedpolicy.util.DataTreeChangeHandler;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.Endpoints;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.endpoints.address.endpoints.AddressEndpoint;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.endpoints.address.endpoints.AddressEndpointKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.endpoints.containment.endpoints.ContainmentEndpoint;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.endpoints.containment.endpoints.ContainmentEndpointKey;
+import org.opendaylight.yangtools.yang.binding.DataObject;
 import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
 
+import com.google.common.base.Optional;
+
 public class EndpointsListener extends DataTreeChangeHandler<Endpoints> implements AutoCloseable {
 
     private final RendererManager rendererManager;
@@ -37,10 +48,35 @@ public class EndpointsListener extends DataTreeChangeHandler<Endpoints> implemen
         rendererManager.endpointsUpdated(rootNode.getDataAfter());
     }
 
+    /**
+     * Only changed endpoints are passed to {@link RendererManager} if lists of endpoints were
+     * modified. Whole {@link Endpoints} are passed if a list was written or deleted.
+     */
     @Override
     protected void onSubtreeModified(DataObjectModification<Endpoints> rootNode,
             InstanceIdentifier<Endpoints> rootIdentifier) {
-        rendererManager.endpointsUpdated(rootNode.getDataAfter());
+        Map<AddressEndpointKey, Optional<AddressEndpoint>> adrEpChanges = new HashMap<>();
+        Map<ContainmentEndpointKey, Optional<ContainmentEndpoint>> contEpChanges = new HashMap<>();
+        for (DataObjectModification<? extends DataObject> epsModif : rootNode.getModifiedChildren()) {
+            if (epsModif.getModificationType() != ModificationType.SUBTREE_MODIFIED) {
+                rendererManager.endpointsUpdated(rootNode.getDataAfter());
+                return;
+            }
+            for (DataObjectModification<? extends DataObject> epModif : epsModif.getModifiedChildren()) {
+                if (AddressEndpoint.class.equals(epModif.getDataType())) {
+                    AddressEndpoint epBefore = (AddressEndpoint) epModif.getDataBefore();
+                    AddressEndpoint epAfter = (AddressEndpoint) epModif.getDataAfter();
+                    AddressEndpointKey key = epAfter != null ? epAfter.getKey() : epBefore.getKey();
+                    adrEpChanges.put(key, Optional.fromNullable(epAfter));
+                } else if (ContainmentEndpoint.class.equals(epModif.getDataType())) {
+                    ContainmentEndpoint epBefore = (ContainmentEndpoint) epModif.getDataBefore();
+                    ContainmentEndpoint epAfter = (ContainmentEndpoint) epModif.getDataAfter();
+                    ContainmentEndpointKey key = epAfter != null ? epAfter.getKey() : epBefore.getKey();
+                    contEpChanges.put(key, Optional.fromNullable(epAfter));
+                }
+            }
+        }
+        rendererManager.endpointsChanged(adrEpChanges, contEpChanges);
     }
 
 }
@@ -7,9 +7,14 @@
  */
 package org.opendaylight.groupbasedpolicy.resolver;
 
-import java.util.Collection;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -39,11 +44,14 @@ import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.common.rev
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.policy.rev140421.Tenants;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.policy.rev140421.tenants.Tenant;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.policy.rev140421.tenants.tenant.Policy;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.policy.rev140421.tenants.tenant.policy.ContractRef;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.policy.rev140421.tenants.tenant.policy.SubjectFeatureInstances;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.policy.rev140421.tenants.tenant.policy.subject.feature.instances.ActionInstance;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.policy.rev140421.tenants.tenant.policy.subject.feature.instances.ClassifierInstance;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.resolved.policy.rev150828.ResolvedPolicies;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.resolved.policy.rev150828.ResolvedPoliciesBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.resolved.policy.rev150828.resolved.policies.ResolvedPolicy;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.resolved.policy.rev150828.resolved.policies.ResolvedPolicyKey;
 import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -76,6 +84,12 @@ public class PolicyResolver implements PolicyValidatorRegistry, AutoCloseable {
 
     protected final ConcurrentMap<TenantId, IndexedTenant> resolvedTenants;
 
+    /*
+     * Resolved policies written to OPER DS, indexed by consumer and provider tenant
+     */
+    private final Map<ResolvedPolicyKey, ResolvedPolicy> resolvedPolicyByKey = new HashMap<>();
+    private final SetMultimap<TenantId, ResolvedPolicyKey> resolvedPolicyKeysByTenant = HashMultimap.create();
+
     private PolicyChangeListener tenantChangeListener;
 
     /*
@@ -132,7 +146,7 @@ public class PolicyResolver implements PolicyValidatorRegistry, AutoCloseable {
     }
 
     @VisibleForTesting
-    void updateTenant(final TenantId tenantId, final Tenant unresolvedTenant) {
+    synchronized void updateTenant(final TenantId tenantId, final Tenant unresolvedTenant) {
         if (dataProvider == null) {
             LOG.error("Tenant {} will not be resolved because because dataProvider is NULL", tenantId.getValue());
             return;
@@ -143,8 +157,9 @@ public class PolicyResolver implements PolicyValidatorRegistry, AutoCloseable {
             resolvedTenants.remove(tenantId);
             ReadWriteTransaction rwTx = dataProvider.newReadWriteTransaction();
             DataStoreHelper.removeIfExists(LogicalDatastoreType.OPERATIONAL, IidFactory.tenantIid(tenantId), rwTx);
-            updateResolvedPolicy(rwTx);
+            ResolvedPolicyUpdate update = updateResolvedPolicy(tenantId, rwTx);
             if (DataStoreHelper.submitToDs(rwTx)) {
+                update.apply();
                 LOG.debug("Removed resolved tenant {} and wrote resolved policies to Datastore.", tenantId.getValue());
             } else {
                 LOG.error("Failed to remove resolved tenant {} and to write resolved policies to Datastore.",
@@ -158,8 +173,9 @@ public class PolicyResolver implements PolicyValidatorRegistry, AutoCloseable {
                 resolvedTenants.put(tenantId, new IndexedTenant(resolvedTenant));
                 WriteTransaction wTx = dataProvider.newWriteOnlyTransaction();
                 wTx.put(LogicalDatastoreType.OPERATIONAL, IidFactory.tenantIid(tenantId), resolvedTenant, true);
-                updateResolvedPolicy(wTx);
+                ResolvedPolicyUpdate update = updateResolvedPolicy(tenantId, wTx);
                 if (DataStoreHelper.submitToDs(wTx)) {
+                    update.apply();
                     LOG.debug("Wrote resolved tenant {} and resolved policies to Datastore.", tenantId.getValue());
                 } else {
                     LOG.error("Failed to write resolved tenant {} and resolved policies to Datastore.",
@@ -169,25 +185,131 @@ public class PolicyResolver implements PolicyValidatorRegistry, AutoCloseable {
         }
     }
 
-    private void updateResolvedPolicy(WriteTransaction wTx) {
-        Set<IndexedTenant> indexedTenants = getIndexedTenants(resolvedTenants.values());
+    /**
+     * Recomputes only the resolved policies related to the changed tenant. Contracts are matched
+     * within a tenant or across tenants referenced by {@link ContractRef}, so it is sufficient to
+     * resolve the changed tenant together with the tenants reachable from it through contract
+     * references or through previously resolved cross-tenant policies. Changed entries are written
+     * one by one and stale entries are deleted, the rest of {@link ResolvedPolicies} is untouched.
+     * Cached resolved policies are not changed until the returned update is applied, which has to
+     * be done only after the transaction is successfully submitted.
+     *
+     * @param changedTenantId tenant which was updated or removed
+     * @param wTx transaction where the changes are written
+     * @return update of cached resolved policies
+     */
+    private synchronized ResolvedPolicyUpdate updateResolvedPolicy(TenantId changedTenantId, WriteTransaction wTx) {
+        Set<TenantId> affectedTenantIds = findAffectedTenants(changedTenantId);
+        Set<IndexedTenant> indexedTenants = new HashSet<>();
+        for (TenantId affectedTenantId : affectedTenantIds) {
+            IndexedTenant indexedTenant = resolvedTenants.get(affectedTenantId);
+            if (indexedTenant != null) {
+                indexedTenants.add(indexedTenant);
+            }
+        }
         Table<EgKey, EgKey, org.opendaylight.groupbasedpolicy.dto.Policy> policyMap =
                 PolicyResolverUtils.resolvePolicy(indexedTenants);
-        ResolvedPolicies resolvedPolicies =
-                new ResolvedPoliciesBuilder().setResolvedPolicy(PolicyInfoUtils.buildResolvedPolicy(policyMap, resolvedTenants)).build();
+        List<ResolvedPolicy> newResolvedPolicies = PolicyInfoUtils.buildResolvedPolicy(policyMap, resolvedTenants);
+
+        Set<ResolvedPolicyKey> staleKeys = new HashSet<>();
+        for (TenantId affectedTenantId : affectedTenantIds) {
+            staleKeys.addAll(resolvedPolicyKeysByTenant.get(affectedTenantId));
+        }
+        wTx.merge(LogicalDatastoreType.OPERATIONAL, IidFactory.resolvedPoliciesIid(),
+                new ResolvedPoliciesBuilder().build(), true);
+        List<ResolvedPolicy> writtenPolicies = new ArrayList<>();
+        for (ResolvedPolicy resolvedPolicy : newResolvedPolicies) {
+            ResolvedPolicyKey key = resolvedPolicy.getKey();
+            staleKeys.remove(key);
+            if (!resolvedPolicy.equals(resolvedPolicyByKey.get(key))) {
+                // put is used instead of merge in order to not keep removed rule groups of the entry
+                wTx.put(LogicalDatastoreType.OPERATIONAL, IidFactory.resolvedPolicyIid(key), resolvedPolicy, true);
+                writtenPolicies.add(resolvedPolicy);
+            }
+        }
+        for (ResolvedPolicyKey staleKey : staleKeys) {
+            wTx.delete(LogicalDatastoreType.OPERATIONAL, IidFactory.resolvedPolicyIid(staleKey));
+        }
+        LOG.debug("Change in tenant {} affected tenants {}: {} resolved policies written, {} removed",
+                changedTenantId.getValue(), affectedTenantIds, writtenPolicies.size(), staleKeys.size());
+        return new ResolvedPolicyUpdate(writtenPolicies, staleKeys);
+    }
+
+    /**
+     * Resolved policies written to and removed from OPER DS in one transaction
+     */
+    private final class ResolvedPolicyUpdate {
 
-        wTx.put(LogicalDatastoreType.OPERATIONAL, InstanceIdentifier.builder(ResolvedPolicies.class).build(),
-                resolvedPolicies, true);
+        private final List<ResolvedPolicy> writtenPolicies;
+        private final Set<ResolvedPolicyKey> removedKeys;
+
+        private ResolvedPolicyUpdate(List<ResolvedPolicy> writtenPolicies, Set<ResolvedPolicyKey> removedKeys) {
+            this.writtenPolicies = writtenPolicies;
+            this.removedKeys = removedKeys;
+        }
+
+        /**
+         * Applies the update to cached resolved policies
+         */
+        private void apply() {
+            synchronized (PolicyResolver.this) {
+                for (ResolvedPolicy resolvedPolicy : writtenPolicies) {
+                    ResolvedPolicyKey key = resolvedPolicy.getKey();
+                    resolvedPolicyByKey.put(key, resolvedPolicy);
+                    resolvedPolicyKeysByTenant.put(key.getConsumerTenantId(), key);
+                    resolvedPolicyKeysByTenant.put(key.getProviderTenantId(), key);
+                }
+                for (ResolvedPolicyKey removedKey : removedKeys) {
+                    resolvedPolicyByKey.remove(removedKey);
+                    resolvedPolicyKeysByTenant.remove(removedKey.getConsumerTenantId(), removedKey);
+                    resolvedPolicyKeysByTenant.remove(removedKey.getProviderTenantId(), removedKey);
+                }
+            }
+        }
     }
 
-    private Set<IndexedTenant> getIndexedTenants(Collection<IndexedTenant> tenantCtxs) {
-        Set<IndexedTenant> result = new HashSet<>();
-        for (IndexedTenant tenant : tenantCtxs) {
-            if (tenant != null) {
-                result.add(tenant);
+    /**
+     * Tenants reachable from the given tenant through contract references (in both directions) and
+     * through already resolved cross-tenant policies.
+     */
+    private Set<TenantId> findAffectedTenants(TenantId tenantId) {
+        Set<TenantId> affectedTenantIds = new HashSet<>();
+        Deque<TenantId> toVisit = new ArrayDeque<>();
+        toVisit.add(tenantId);
+        while (!toVisit.isEmpty()) {
+            TenantId current = toVisit.poll();
+            if (!affectedTenantIds.add(current)) {
+                continue;
             }
+            for (ResolvedPolicyKey key : resolvedPolicyKeysByTenant.get(current)) {
+                toVisit.add(key.getConsumerTenantId());
+                toVisit.add(key.getProviderTenantId());
+            }
+            IndexedTenant currentTenant = resolvedTenants.get(current);
+            if (currentTenant != null) {
+                for (ContractRef contractRef : getContractRefs(currentTenant)) {
+                    if (contractRef.getTenantId() != null) {
+                        toVisit.add(contractRef.getTenantId());
+                    }
+                }
+            }
+            for (IndexedTenant otherTenant : resolvedTenants.values()) {
+                for (ContractRef contractRef : getContractRefs(otherTenant)) {
+                    if (current.equals(contractRef.getTenantId())) {
+                        toVisit.add(otherTenant.getTenant().getId());
+                    }
+                }
+            }
+        }
+        return affectedTenantIds;
+    }
+
+    private static List<ContractRef> getContractRefs(IndexedTenant indexedTenant) {
+        Policy policy = indexedTenant.getTenant().getPolicy();
+        if (policy == null || policy.getContractRef() == null) {
+            return Collections.emptyList();
         }
-        return result;
+        return policy.getContractRef();
     }
 
     @VisibleForTesting
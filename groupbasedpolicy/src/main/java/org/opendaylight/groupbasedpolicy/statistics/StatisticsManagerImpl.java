@@ -9,11 +9,20 @@
 package org.opendaylight.groupbasedpolicy.statistics;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nullable;
 
 import org.opendaylight.controller.md.sal.binding.api.DataBroker;
 import org.opendaylight.controller.md.sal.binding.api.ReadOnlyTransaction;
@@ -22,8 +31,6 @@ import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
 import org.opendaylight.groupbasedpolicy.api.StatisticsManager;
 import org.opendaylight.groupbasedpolicy.util.DataStoreHelper;
 import org.opendaylight.groupbasedpolicy.util.IidFactory;
-import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.yang.types.rev130715.MacAddress;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.common.rev140421.L2BridgeDomainId;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.common.rev140421.TenantId;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.statistics.rev151215.statistic.records.StatRecords;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.statistics.rev151215.statistic.records.StatRecordsBuilder;
@@ -51,30 +58,108 @@ import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Function;
 import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 
+/**
+ * Statistic records are kept in a ring buffer of fixed capacity. Each written record gets the next
+ * record ID from a monotonically increasing sequence and takes the slot of the ring given by the
+ * ID. The oldest record in the slot is replaced in memory and deleted from OPERATIONAL datastore,
+ * therefore the statistics store does not grow with history. Records already present in the
+ * statistics store are loaded to the ring on startup.
+ * <p>
+ * Counters of retained records are pre-aggregated per EP pair, EPG pair and rule. After the
+ * transaction with written records is committed, the written records are added to the counters
+ * and the replaced records are subtracted from them, so {@link #readStats()} only copies the
+ * counters and its cost depends on number of aggregated entries, not on number of written records.
+ * Counters of an EP pair are updated atomically by {@link ConcurrentHashMap#compute} and counters
+ * which are not referenced by any retained record are removed, so the counters do not grow with
+ * history either.
+ */
 public class StatisticsManagerImpl implements StatisticsManager, AutoCloseable {
 
     private static final Logger LOG = LoggerFactory.getLogger(StatisticsManagerImpl.class);
-    private static long recordKey = 0;
-    private DataBroker dataBroker;
+    public static final int DEFAULT_RECORD_CAPACITY = 10000;
+    private final DataBroker dataBroker;
+    private final AtomicLong recordSequence = new AtomicLong();
+    private final AtomicReferenceArray<StatisticRecord> retainedRecords;
+    private final ConcurrentMap<EpToEpStatisticKey, EpToEpCounters> countersByEpKey = new ConcurrentHashMap<>();
 
     public StatisticsManagerImpl(DataBroker broker) {
+        this(broker, DEFAULT_RECORD_CAPACITY);
+    }
+
+    /**
+     * @param recordCapacity maximum number of retained statistic records
+     */
+    public StatisticsManagerImpl(DataBroker broker, int recordCapacity) {
+        Preconditions.checkArgument(recordCapacity > 0, "Record capacity must be positive: %s", recordCapacity);
         this.dataBroker = broker;
+        this.retainedRecords = new AtomicReferenceArray<>(recordCapacity);
         inicializeStatistics();
     }
 
     private void inicializeStatistics() {
         InstanceIdentifier<StatisticsStore> statsIID = InstanceIdentifier.builder(StatisticsStore.class).build();
+        ReadOnlyTransaction rtx = dataBroker.newReadOnlyTransaction();
+        Optional<StatisticsStore> potentialStore =
+                DataStoreHelper.readFromDs(LogicalDatastoreType.OPERATIONAL, statsIID, rtx);
+        rtx.close();
         WriteTransaction wtx = dataBroker.newWriteOnlyTransaction();
         LOG.debug("Initalizing statistics");
-        wtx.put(LogicalDatastoreType.OPERATIONAL, statsIID, new StatisticsStoreBuilder().build());
+        if (potentialStore.isPresent() && potentialStore.get().getStatisticRecord() != null) {
+            loadRecords(potentialStore.get().getStatisticRecord(), wtx);
+        } else {
+            wtx.put(LogicalDatastoreType.OPERATIONAL, statsIID, new StatisticsStoreBuilder().build());
+        }
         wtx.submit();
     }
 
+    /**
+     * Loads records from statistics store to the ring and to the counters. Records which do not fit
+     * to the ring are deleted from datastore.
+     */
+    private void loadRecords(List<StatisticRecord> records, WriteTransaction wtx) {
+        List<StatisticRecord> sortedRecords = new ArrayList<>(records);
+        Collections.sort(sortedRecords, new Comparator<StatisticRecord>() {
+
+            @Override
+            public int compare(StatisticRecord record1, StatisticRecord record2) {
+                return Long.compare(getRecordId(record1), getRecordId(record2));
+            }
+        });
+        for (StatisticRecord statRecord : sortedRecords) {
+            int slot = (int) (getRecordId(statRecord) % retainedRecords.length());
+            StatisticRecord replacedRecord = retainedRecords.getAndSet(slot, statRecord);
+            if (replacedRecord != null) {
+                accumulate(replacedRecord, -1);
+                wtx.delete(LogicalDatastoreType.OPERATIONAL, IidFactory.statisticRecordIid(replacedRecord.getKey()));
+            }
+            accumulate(statRecord, 1);
+        }
+        if (!sortedRecords.isEmpty()) {
+            recordSequence.set(getRecordId(sortedRecords.get(sortedRecords.size() - 1)) + 1);
+        }
+        LOG.debug("Loaded {} statistic records", sortedRecords.size());
+    }
+
+    private static long getRecordId(StatisticRecord statRecord) {
+        return statRecord.getKey().getRecordId().getValue();
+    }
+
+    /**
+     * Writes are serialized so each record replaced in the ring is deleted from datastore by
+     * exactly one transaction.
+     */
     @Override
-    public boolean writeStat(StatRecords record) {
+    public synchronized boolean writeStat(StatRecords record) {
         WriteTransaction wtx = dataBroker.newWriteOnlyTransaction();
+        // written records by ring slot; a record replaced by a later record of this write is not retained
+        final Map<Integer, StatisticRecord> writtenRecordBySlot = new HashMap<>();
         for (EpToEpStatistic epStats : record.getEpToEpStatistic()) {
             SrcEndpointBuilder srcBuilder = new SrcEndpointBuilder();
             DstEndpointBuilder dstBuilder = new DstEndpointBuilder();
@@ -85,7 +170,9 @@ public class StatisticsManagerImpl implements StatisticsManager, AutoCloseable {
                     .setL2Context(epStats.getDstL2c())
                     .setTenant(epStats.getDstTenant());
             for (EpEpgToEpEpgStatistic epgStats : epStats.getEpEpgToEpEpgStatistic()) {
-                StatisticRecordKey key = new StatisticRecordKey(new RecordId(recordKey++));
+                long recordId = recordSequence.getAndIncrement();
+                int slot = (int) (recordId % retainedRecords.length());
+                StatisticRecordKey key = new StatisticRecordKey(new RecordId(recordId));
                 StatisticRecord statRecord;
                 srcBuilder.setEndpointGroup(epgStats.getSrcEpg());
                 dstBuilder.setEndpointGroup(epgStats.getDstEpg());
@@ -106,135 +193,134 @@ public class StatisticsManagerImpl implements StatisticsManager, AutoCloseable {
 
                 }
                 statRecord = new StatisticRecordBuilder().setKey(key)
-                        .setRecordId(new RecordId(recordKey))
                         .setTimestamp(epStats.getTimestamp())
                         .setSrcEndpoint(srcBuilder.build())
                         .setDstEndpoint(dstBuilder.build())
                         .setStatistic(statisticList)
                         .build();
 
+                StatisticRecord replacedRecord = writtenRecordBySlot.get(slot);
+                if (replacedRecord == null) {
+                    replacedRecord = retainedRecords.get(slot);
+                }
+                if (replacedRecord != null) {
+                    wtx.delete(LogicalDatastoreType.OPERATIONAL,
+                            IidFactory.statisticRecordIid(replacedRecord.getKey()));
+                }
+                writtenRecordBySlot.put(slot, statRecord);
+
                 InstanceIdentifier<StatisticRecord> statIID = IidFactory.statisticRecordIid(key);
                 LOG.debug("Writing statistics to datastore: {}", statRecord);
                 wtx.put(LogicalDatastoreType.OPERATIONAL, statIID, statRecord, true);
             }
         }
-        return DataStoreHelper.submitToDs(wtx);
+        // counters are updated only when the records are stored
+        ListenableFuture<Void> countersUpdatedFuture = Futures.transform(wtx.submit(), new Function<Void, Void>() {
+
+            @Override
+            public Void apply(Void input) {
+                for (Entry<Integer, StatisticRecord> writtenRecord : writtenRecordBySlot.entrySet()) {
+                    StatisticRecord replacedRecord =
+                            retainedRecords.getAndSet(writtenRecord.getKey(), writtenRecord.getValue());
+                    if (replacedRecord != null) {
+                        accumulate(replacedRecord, -1);
+                    }
+                    accumulate(writtenRecord.getValue(), 1);
+                }
+                return null;
+            }
+        });
+        try {
+            countersUpdatedFuture.get();
+            return true;
+        } catch (InterruptedException | ExecutionException e) {
+            LOG.warn("Transaction commit failed to DS.", e);
+            return false;
+        }
+    }
+
+    /**
+     * Adds counts of the record to counters if sign is 1 or subtracts them if sign is -1.
+     */
+    private void accumulate(StatisticRecord statRecord, int sign) {
+        EpToEpStatisticKey epKey = new EpToEpStatisticKey(statRecord.getDstEndpoint().getL2Context(),
+                statRecord.getDstEndpoint().getMacAddress(), statRecord.getSrcEndpoint().getL2Context(),
+                statRecord.getSrcEndpoint().getMacAddress());
+        EpEpgToEpEpgStatisticKey epgKey = new EpEpgToEpEpgStatisticKey(
+                statRecord.getDstEndpoint().getEndpointGroup(), statRecord.getSrcEndpoint().getEndpointGroup());
+        if (sign > 0) {
+            countersByEpKey.compute(epKey, (key, epCounters) -> {
+                EpToEpCounters counters = epCounters == null ? new EpToEpCounters(statRecord) : epCounters;
+                counters.accumulate(epgKey, statRecord.getStatistic(), sign);
+                return counters.isEmpty() ? null : counters;
+            });
+        } else {
+            countersByEpKey.computeIfPresent(epKey, (key, epCounters) -> {
+                epCounters.accumulate(epgKey, statRecord.getStatistic(), sign);
+                return epCounters.isEmpty() ? null : epCounters;
+            });
+        }
     }
 
+    /**
+     * @return statistics aggregated from retained records
+     */
     @Override
     public StatRecords readStats() {
-        InstanceIdentifier<StatisticsStore> statsIID = InstanceIdentifier.builder(StatisticsStore.class).build();
-        ReadOnlyTransaction rtx = dataBroker.newReadOnlyTransaction();
         LOG.debug("Reading statistics");
-        Optional<StatisticsStore> storeOpt = Optional.absent();
-        try {
-            storeOpt = rtx.read(LogicalDatastoreType.OPERATIONAL, statsIID).get();
-        } catch (InterruptedException | ExecutionException e) {
-            LOG.error("Exception thrown on reading from Datastore: {}", e.getMessage());
-            return null;
-        }
-        if (storeOpt.isPresent()) {
-            StatisticsStore store = storeOpt.get();
-            Map<EpToEpStatisticKey, EpToEpStatisticBuilder> map = new HashMap<>();
-            for (StatisticRecord storeStat : store.getStatisticRecord()) {
-                MacAddress srcMac = storeStat.getSrcEndpoint().getMacAddress();
-                MacAddress dstMac = storeStat.getDstEndpoint().getMacAddress();
-                L2BridgeDomainId srcL2C = storeStat.getSrcEndpoint().getL2Context();
-                L2BridgeDomainId dstL2C = storeStat.getDstEndpoint().getL2Context();
-                TenantId srcTenant = storeStat.getSrcEndpoint().getTenant();
-                TenantId dstTenant = storeStat.getDstEndpoint().getTenant();
-                EpToEpStatisticKey epKey = new EpToEpStatisticKey(dstL2C, dstMac, srcL2C, srcMac);
-                EpEpgToEpEpgStatisticKey epgKey = new EpEpgToEpEpgStatisticKey(
-                        storeStat.getDstEndpoint().getEndpointGroup(), storeStat.getSrcEndpoint().getEndpointGroup());
-                EpToEpStatisticBuilder epStat = map.get(epKey);
-                if (epStat == null) {
-                    // eptoep combination doesnt exist
-                    epStat = new EpToEpStatisticBuilder();
-                    epStat.setKey(epKey)
-                        .setSrcMacAddress(srcMac)
-                        .setSrcL2c(srcL2C)
-                        .setSrcTenant(storeStat.getSrcEndpoint().getTenant())
-                        .setDstMacAddress(dstMac)
-                        .setDstL2c(dstL2C)
-                        .setDstTenant(storeStat.getDstEndpoint().getTenant());
-                }
+        List<EpToEpStatistic> epList = new ArrayList<>();
+        for (Entry<EpToEpStatisticKey, EpToEpCounters> epEntry : countersByEpKey.entrySet()) {
+            EpToEpCounters epCounters = epEntry.getValue();
+            List<EpEpgToEpEpgStatistic> epgList = new ArrayList<>();
+            for (Entry<EpEpgToEpEpgStatisticKey, ConcurrentMap<MatchedRuleStatisticKey, RuleCounters>> epgEntry : epCounters.ruleCountersByEpgKey
+                .entrySet()) {
                 List<MatchedRuleStatistic> ruleStatList = new ArrayList<>();
-                for(Statistic statistic : storeStat.getStatistic())
-                {
-                    MatchedRuleStatisticBuilder statBuilder = new MatchedRuleStatisticBuilder()
-                            .setKey(new MatchedRuleStatisticKey(statistic.getContract()
-                                    ,statistic.getRule()
-                                    ,statistic.getSubject()))
-                            .setContract(statistic.getContract())
-                            .setSubject(statistic.getSubject())
-                            .setMatchedRule(statistic.getRule())
-                            .setAction(statistic.getAction())
-                            .setClassifier(statistic.getClassifier())
-                            .setByteCount(statistic.getByteCount())
-                            .setPacketCount(statistic.getPacketCount());
-                    ruleStatList.add(statBuilder.build());
+                for (Entry<MatchedRuleStatisticKey, RuleCounters> ruleEntry : epgEntry.getValue().entrySet()) {
+                    RuleCounters ruleCounters = ruleEntry.getValue();
+                    if (ruleCounters.records.sum() <= 0) {
+                        // all records of the rule were replaced
+                        continue;
+                    }
+                    Statistic statistic = ruleCounters.statistic;
+                    ruleStatList.add(new MatchedRuleStatisticBuilder().setKey(ruleEntry.getKey())
+                        .setContract(statistic.getContract())
+                        .setSubject(statistic.getSubject())
+                        .setMatchedRule(statistic.getRule())
+                        .setAction(statistic.getAction())
+                        .setClassifier(statistic.getClassifier())
+                        .setByteCount(ruleCounters.byteCount.sum())
+                        .setPacketCount(ruleCounters.packetCount.sum())
+                        .build());
                 }
-                EpEpgToEpEpgStatisticBuilder epgtoepgBuilder = new EpEpgToEpEpgStatisticBuilder();
-                epgtoepgBuilder.setKey(epgKey)
-                    .setSrcEpg(storeStat.getSrcEndpoint().getEndpointGroup())
-                    .setDstEpg(storeStat.getDstEndpoint().getEndpointGroup())
-                    .setMatchedRuleStatistic(ruleStatList);
-                epStat.setEpEpgToEpEpgStatistic(
-                        addIfNotExists(epgtoepgBuilder, epStat.getEpEpgToEpEpgStatistic()));
-                map.put(epKey, epStat);
+                if (ruleStatList.isEmpty()) {
+                    continue;
+                }
+                epgList.add(new EpEpgToEpEpgStatisticBuilder().setKey(epgEntry.getKey())
+                    .setSrcEpg(epgEntry.getKey().getSrcEpg())
+                    .setDstEpg(epgEntry.getKey().getDstEpg())
+                    .setMatchedRuleStatistic(ruleStatList)
+                    .build());
             }
-            List<EpToEpStatistic> epList = new ArrayList<>();
-            for (EpToEpStatisticBuilder statBuilder : map.values()) {
-                epList.add(statBuilder.build());
+            if (epgList.isEmpty()) {
+                continue;
             }
-            StatRecordsBuilder statStore = new StatRecordsBuilder();
-            statStore.setEpToEpStatistic(epList);
-            return statStore.build();
+            EpToEpStatisticKey epKey = epEntry.getKey();
+            epList.add(new EpToEpStatisticBuilder().setKey(epKey)
+                .setSrcMacAddress(epKey.getSrcMacAddress())
+                .setSrcL2c(epKey.getSrcL2c())
+                .setSrcTenant(epCounters.srcTenant)
+                .setDstMacAddress(epKey.getDstMacAddress())
+                .setDstL2c(epKey.getDstL2c())
+                .setDstTenant(epCounters.dstTenant)
+                .setEpEpgToEpEpgStatistic(epgList)
+                .build());
         }
-        LOG.debug("Statistics store empty");
-        return null;
+        return new StatRecordsBuilder().setEpToEpStatistic(epList).build();
     }
 
-    private List<EpEpgToEpEpgStatistic> addIfNotExists(EpEpgToEpEpgStatisticBuilder stat,
-            List<EpEpgToEpEpgStatistic> list) {
-        if ( list == null ) {
-            list = new ArrayList<>();
-        } else {
-            Iterator<EpEpgToEpEpgStatistic> iterator = list.iterator();
-            while (iterator.hasNext()) {
-                EpEpgToEpEpgStatistic epgStat = iterator.next();
-                if (stat.getKey().equals(epgStat.getKey())) {
-                    List<MatchedRuleStatistic> newMatches = new ArrayList<>();
-                    Iterator<MatchedRuleStatistic> iteratorNew = stat.getMatchedRuleStatistic().iterator();
-                    while(iteratorNew.hasNext()) {
-                        MatchedRuleStatistic newStat = iteratorNew.next();
-                        Iterator<MatchedRuleStatistic> iteratorOld = epgStat.getMatchedRuleStatistic().iterator();
-                        boolean matched = false;
-                        while(iteratorOld.hasNext()) {
-                            MatchedRuleStatistic oldStat = iteratorOld.next();
-                            if(oldStat.getKey().equals(newStat.getKey())) {
-                                MatchedRuleStatistic newRuleStat = new MatchedRuleStatisticBuilder(oldStat)
-                                        .setByteCount(sumNullableValues(oldStat.getByteCount(), newStat.getByteCount()))
-                                        .setPacketCount(sumNullableValues(oldStat.getPacketCount(), newStat.getPacketCount()))
-                                        .build();
-                                newMatches.add(newRuleStat);
-                                matched = true;
-                            } else {
-                                newMatches.add(oldStat);
-                            }
-                        }
-                        if (!matched) {
-                            newMatches.add(newStat);
-                        }
-                    }
-                    stat.setMatchedRuleStatistic(newMatches);
-                    iterator.remove();
-                    break;
-                }
-            }
-        }
-        list.add(stat.build());
-        return list;
+    @VisibleForTesting
+    int getCountersSize() {
+        return countersByEpKey.size();
     }
 
     public Long sumNullableValues (Long... x ) {
@@ -249,8 +335,79 @@ public class StatisticsManagerImpl implements StatisticsManager, AutoCloseable {
 
     @Override
     public void close() {
-        // TODO Auto-generated method stub
+        countersByEpKey.clear();
+    }
+
+    private static final class EpToEpCounters {
+
+        private final TenantId srcTenant;
+        private final TenantId dstTenant;
+        private final ConcurrentMap<EpEpgToEpEpgStatisticKey, ConcurrentMap<MatchedRuleStatisticKey, RuleCounters>> ruleCountersByEpgKey =
+                new ConcurrentHashMap<>();
+
+        private EpToEpCounters(StatisticRecord statRecord) {
+            this.srcTenant = statRecord.getSrcEndpoint().getTenant();
+            this.dstTenant = statRecord.getDstEndpoint().getTenant();
+        }
+
+        /**
+         * Has to be called only while the entry of the EP pair is locked. Counters of rules and
+         * EPG pairs without any retained record are removed.
+         */
+        private void accumulate(EpEpgToEpEpgStatisticKey epgKey, @Nullable List<Statistic> statistics, int sign) {
+            if (statistics == null) {
+                return;
+            }
+            ConcurrentMap<MatchedRuleStatisticKey, RuleCounters> ruleCountersByKey = ruleCountersByEpgKey.get(epgKey);
+            if (ruleCountersByKey == null) {
+                if (sign < 0) {
+                    return;
+                }
+                ruleCountersByKey = new ConcurrentHashMap<>();
+                ruleCountersByEpgKey.put(epgKey, ruleCountersByKey);
+            }
+            for (Statistic statistic : statistics) {
+                MatchedRuleStatisticKey ruleKey =
+                        new MatchedRuleStatisticKey(statistic.getContract(), statistic.getRule(), statistic.getSubject());
+                RuleCounters ruleCounters = ruleCountersByKey.get(ruleKey);
+                if (ruleCounters == null) {
+                    if (sign < 0) {
+                        continue;
+                    }
+                    ruleCounters = new RuleCounters();
+                    ruleCountersByKey.put(ruleKey, ruleCounters);
+                }
+                if (sign > 0) {
+                    ruleCounters.statistic = statistic;
+                }
+                ruleCounters.records.add(sign);
+                ruleCounters.byteCount.add(sign * nullToZero(statistic.getByteCount()));
+                ruleCounters.packetCount.add(sign * nullToZero(statistic.getPacketCount()));
+                if (ruleCounters.records.sum() <= 0) {
+                    ruleCountersByKey.remove(ruleKey);
+                }
+            }
+            if (ruleCountersByKey.isEmpty()) {
+                ruleCountersByEpgKey.remove(epgKey);
+            }
+        }
+
+        private boolean isEmpty() {
+            return ruleCountersByEpgKey.isEmpty();
+        }
+
+        private static long nullToZero(@Nullable Long value) {
+            return value == null ? 0 : value;
+        }
+    }
+
+    private static final class RuleCounters {
 
+        private final LongAdder records = new LongAdder();
+        private final LongAdder byteCount = new LongAdder();
+        private final LongAdder packetCount = new LongAdder();
+        // last added statistic of the rule, source of rule attributes
+        private volatile Statistic statistic;
     }
 
 }
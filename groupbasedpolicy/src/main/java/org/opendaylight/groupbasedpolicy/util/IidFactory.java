@@ -104,6 +104,21 @@ import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.r
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.RendererKey;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.Capabilities;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.Interests;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.RendererPolicy;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.Configuration;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.RendererEndpoints;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.RendererForwarding;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.RuleGroups;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.endpoints.AddressEndpointWithLocation;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.endpoints.AddressEndpointWithLocationKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.endpoints.ContainmentEndpointWithLocation;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.endpoints.ContainmentEndpointWithLocationKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.renderer.endpoints.RendererEndpoint;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.renderer.endpoints.RendererEndpointKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.renderer.forwarding.RendererForwardingByTenant;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.renderer.forwarding.RendererForwardingByTenantKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.rule.groups.RuleGroup;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.rule.groups.RuleGroupKey;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.capabilities.SupportedActionDefinition;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.capabilities.SupportedClassifierDefinition;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.interests.FollowedTenants;
@@ -111,6 +126,9 @@ import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.r
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.interests.followed.tenants.FollowedTenantKey;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.interests.followed.tenants.followed.tenant.FollowedEndpointGroup;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.interests.followed.tenants.followed.tenant.FollowedEndpointGroupKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.resolved.policy.rev150828.ResolvedPolicies;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.resolved.policy.rev150828.resolved.policies.ResolvedPolicy;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.resolved.policy.rev150828.resolved.policies.ResolvedPolicyKey;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.statistics.store.rev151215.StatisticsStore;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.statistics.store.rev151215.statistics.store.StatisticRecord;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.statistics.store.rev151215.statistics.store.StatisticRecordKey;
@@ -378,10 +396,89 @@ public class IidFactory {
         return InstanceIdentifier.builder(Renderers.class).child(Renderer.class, new RendererKey(rendererName)).build();
     }
 
+    public static InstanceIdentifier<RendererPolicy> rendererPolicyIid(RendererName rendererName) {
+        return InstanceIdentifier.builder(Renderers.class)
+            .child(Renderer.class, new RendererKey(rendererName))
+            .child(RendererPolicy.class)
+            .build();
+    }
+
+    public static InstanceIdentifier<Configuration> rendererConfigurationIid(RendererName rendererName) {
+        return InstanceIdentifier.builder(Renderers.class)
+            .child(Renderer.class, new RendererKey(rendererName))
+            .child(RendererPolicy.class)
+            .child(Configuration.class)
+            .build();
+    }
+
+    public static InstanceIdentifier<RendererEndpoint> rendererEndpointIid(RendererName rendererName,
+            RendererEndpointKey rendererEndpointKey) {
+        return InstanceIdentifier.builder(Renderers.class)
+            .child(Renderer.class, new RendererKey(rendererName))
+            .child(RendererPolicy.class)
+            .child(Configuration.class)
+            .child(RendererEndpoints.class)
+            .child(RendererEndpoint.class, rendererEndpointKey)
+            .build();
+    }
+
+    public static InstanceIdentifier<AddressEndpointWithLocation> addressEndpointWithLocationIid(
+            RendererName rendererName, AddressEndpointWithLocationKey addrEpWithLocKey) {
+        return InstanceIdentifier.builder(Renderers.class)
+            .child(Renderer.class, new RendererKey(rendererName))
+            .child(RendererPolicy.class)
+            .child(Configuration.class)
+            .child(org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.Endpoints.class)
+            .child(AddressEndpointWithLocation.class, addrEpWithLocKey)
+            .build();
+    }
+
+    public static InstanceIdentifier<ContainmentEndpointWithLocation> containmentEndpointWithLocationIid(
+            RendererName rendererName, ContainmentEndpointWithLocationKey contEpWithLocKey) {
+        return InstanceIdentifier.builder(Renderers.class)
+            .child(Renderer.class, new RendererKey(rendererName))
+            .child(RendererPolicy.class)
+            .child(Configuration.class)
+            .child(org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.Endpoints.class)
+            .child(ContainmentEndpointWithLocation.class, contEpWithLocKey)
+            .build();
+    }
+
+    public static InstanceIdentifier<RuleGroup> ruleGroupIid(RendererName rendererName, RuleGroupKey ruleGroupKey) {
+        return InstanceIdentifier.builder(Renderers.class)
+            .child(Renderer.class, new RendererKey(rendererName))
+            .child(RendererPolicy.class)
+            .child(Configuration.class)
+            .child(RuleGroups.class)
+            .child(RuleGroup.class, ruleGroupKey)
+            .build();
+    }
+
+    public static InstanceIdentifier<RendererForwardingByTenant> rendererForwardingByTenantIid(
+            RendererName rendererName, RendererForwardingByTenantKey rendererForwardingByTenantKey) {
+        return InstanceIdentifier.builder(Renderers.class)
+            .child(Renderer.class, new RendererKey(rendererName))
+            .child(RendererPolicy.class)
+            .child(Configuration.class)
+            .child(RendererForwarding.class)
+            .child(RendererForwardingByTenant.class, rendererForwardingByTenantKey)
+            .build();
+    }
+
     public static InstanceIdentifier<Renderers> renderersIid() {
         return InstanceIdentifier.builder(Renderers.class).build();
     }
 
+    public static InstanceIdentifier<ResolvedPolicies> resolvedPoliciesIid() {
+        return InstanceIdentifier.builder(ResolvedPolicies.class).build();
+    }
+
+    public static InstanceIdentifier<ResolvedPolicy> resolvedPolicyIid(ResolvedPolicyKey resolvedPolicyKey) {
+        return InstanceIdentifier.builder(ResolvedPolicies.class)
+            .child(ResolvedPolicy.class, resolvedPolicyKey)
+            .build();
+    }
+
     public static InstanceIdentifier<ExternalImplicitGroup> externalImplicitGroupIid(TenantId tenantId,
             EndpointGroupId epgId) {
         return InstanceIdentifier.builder(Tenants.class)
@@ -8,7 +8,9 @@
 
 package org.opendaylight.groupbasedpolicy.renderer;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.util.HashMap;
@@ -40,6 +42,9 @@ import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.common.rev
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.common.rev140421.TenantId;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.forwarding.rev160427.AddressType;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.forwarding.rev160427.ContextType;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.forwarding.rev160427.Forwarding;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.forwarding.rev160427.ForwardingBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.forwarding.rev160427.forwarding.ForwardingByTenant;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.forwarding.rev160427.forwarding.ForwardingByTenantBuilder;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.forwarding.rev160427.forwarding.forwarding.by.tenant.ForwardingContext;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.forwarding.rev160427.forwarding.forwarding.by.tenant.ForwardingContextBuilder;
@@ -147,6 +152,58 @@ public class DtoEquivalenceUtilsTest {
         assertFalse(DtoEquivalenceUtils.ADDR_EP_EQ.equivalent(epA.build(), epB.build()));
     }
 
+    @Test
+    public void testFingerprint_addressEndpoint() {
+        AddressEndpointBuilder epA = new AddressEndpointBuilder().setContextType(ContextType.class)
+            .setContextId(new ContextId("ctx1"))
+            .setAddressType(AddressType.class)
+            .setAddress("adr1_1")
+            .setEndpointGroup(ImmutableList.of(new EndpointGroupId("epg1"), new EndpointGroupId("epg2")));
+        AddressEndpointBuilder epA_reorderedEpgs = new AddressEndpointBuilder(epA.build())
+            .setEndpointGroup(ImmutableList.of(new EndpointGroupId("epg2"), new EndpointGroupId("epg1")));
+        AddressEndpointBuilder epA_epg = new AddressEndpointBuilder(epA.build())
+            .setEndpointGroup(ImmutableList.of(new EndpointGroupId("epg1")));
+        AddressEndpointBuilder epA_timestamp = new AddressEndpointBuilder(epA.build()).setTimestamp(1L);
+
+        assertEquals(DtoEquivalenceUtils.fingerprint(epA.build()),
+                DtoEquivalenceUtils.fingerprint(epA_reorderedEpgs.build()));
+        assertNotEquals(DtoEquivalenceUtils.fingerprint(epA.build()), DtoEquivalenceUtils.fingerprint(epA_epg.build()));
+        assertNotEquals(DtoEquivalenceUtils.fingerprint(epA.build()),
+                DtoEquivalenceUtils.fingerprint(epA_timestamp.build()));
+    }
+
+    @Test
+    public void testFingerprint_sameHashCodeDifferentContent() {
+        // "Aa" and "BB" have the same hashCode
+        EndpointGroupId epgAa = new EndpointGroupId("Aa");
+        EndpointGroupId epgBB = new EndpointGroupId("BB");
+        assertEquals(epgAa.hashCode(), epgBB.hashCode());
+
+        assertNotEquals(ContentFingerprint.builder().add(epgAa).build(),
+                ContentFingerprint.builder().add(epgBB).build());
+        assertNotEquals(ContentFingerprint.builder().addUnordered(ImmutableList.of(epgAa)).build(),
+                ContentFingerprint.builder().addUnordered(ImmutableList.of(epgBB)).build());
+    }
+
+    @Test
+    public void testFingerprint_forwarding() {
+        ForwardingByTenant fwdByTenant1 = new ForwardingByTenantBuilder().setTenantId(new TenantId("tenant1")).build();
+        ForwardingByTenant fwdByTenant2 = new ForwardingByTenantBuilder().setTenantId(new TenantId("tenant2")).build();
+
+        assertEquals(
+                DtoEquivalenceUtils.fingerprint(
+                        new ForwardingBuilder().setForwardingByTenant(ImmutableList.of(fwdByTenant1, fwdByTenant2))
+                            .build()),
+                DtoEquivalenceUtils.fingerprint(
+                        new ForwardingBuilder().setForwardingByTenant(ImmutableList.of(fwdByTenant2, fwdByTenant1))
+                            .build()));
+        assertNotEquals(DtoEquivalenceUtils.fingerprint((Forwarding) null),
+                DtoEquivalenceUtils.fingerprint(new ForwardingBuilder().build()));
+        assertNotEquals(DtoEquivalenceUtils.fingerprint(new ForwardingBuilder().build()),
+                DtoEquivalenceUtils.fingerprint(
+                        new ForwardingBuilder().setForwardingByTenant(ImmutableList.<ForwardingByTenant>of()).build()));
+    }
+
     @Test
     public void test_CONT_EP_EQ() {
         ContainmentEndpointBuilder epA =
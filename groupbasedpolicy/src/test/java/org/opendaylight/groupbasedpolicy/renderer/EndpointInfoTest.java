@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2016 Cisco Systems, Inc. and others. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.opendaylight.groupbasedpolicy.renderer;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.opendaylight.groupbasedpolicy.dto.EpgKeyDto;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.EndpointsBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.endpoints.AddressEndpointsBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.endpoints.address.endpoints.AddressEndpoint;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.common.rev140421.EndpointGroupId;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+public class EndpointInfoTest {
+
+    private static final EndpointGroupId EPG_BLUE = new EndpointGroupId("blue_epg");
+    private static final EndpointGroupId EPG_PURPLE = new EndpointGroupId("purple_epg");
+    private static final EpgKeyDto EPG_KEY_BLUE = new EpgKeyDto(EPG_BLUE, TestDataFactory.TENANT_ID);
+    private static final EpgKeyDto EPG_KEY_PURPLE = new EpgKeyDto(EPG_PURPLE, TestDataFactory.TENANT_ID);
+
+    @Test
+    public void testAddressEndpointUpdated_indexesUpdatedAndChangesRemembered() {
+        AddressEndpoint ep1 = TestDataFactory.defaultAdrEp("adr_1", EPG_BLUE).build();
+        AddressEndpoint ep2 = TestDataFactory.defaultAdrEp("adr_2", EPG_BLUE).build();
+        EndpointInfo epInfo = new EndpointInfo(new EndpointsBuilder()
+            .setAddressEndpoints(new AddressEndpointsBuilder().setAddressEndpoint(ImmutableList.of(ep1, ep2)).build())
+            .build());
+        Assert.assertEquals(ImmutableSet.of(ep1.getKey(), ep2.getKey()), epInfo.findAddressEpsWithEpg(EPG_KEY_BLUE));
+        Assert.assertFalse(epInfo.hasChanges());
+
+        AddressEndpoint movedEp1 = TestDataFactory.defaultAdrEp("adr_1", EPG_PURPLE).build();
+        epInfo.addressEndpointUpdated(ep1.getKey(), movedEp1);
+        epInfo.addressEndpointUpdated(ep2.getKey(), null);
+
+        Assert.assertEquals(ImmutableSet.of(), epInfo.findAddressEpsWithEpg(EPG_KEY_BLUE));
+        Assert.assertEquals(ImmutableSet.of(ep1.getKey()), epInfo.findAddressEpsWithEpg(EPG_KEY_PURPLE));
+        Assert.assertEquals(movedEp1, epInfo.getEndpoint(ep1.getKey()).get());
+        Assert.assertFalse(epInfo.getEndpoint(ep2.getKey()).isPresent());
+        Assert.assertTrue(epInfo.hasChanges());
+        Assert.assertEquals(ImmutableSet.of(ep1.getKey(), ep2.getKey()), epInfo.getChangedAddressEps());
+        Assert.assertEquals(ep1, epInfo.getOriginalEndpoint(ep1.getKey()).get());
+        Assert.assertEquals(ep2, epInfo.getOriginalEndpoint(ep2.getKey()).get());
+
+        epInfo.clearChanges();
+        Assert.assertFalse(epInfo.hasChanges());
+        Assert.assertEquals(movedEp1, epInfo.getOriginalEndpoint(ep1.getKey()).get());
+    }
+
+    @Test
+    public void testGetFingerprint_sameAsFingerprintOfIndexWithSameContent() {
+        AddressEndpoint ep1 = TestDataFactory.defaultAdrEp("adr_1", EPG_BLUE).build();
+        AddressEndpoint ep2 = TestDataFactory.defaultAdrEp("adr_2", EPG_BLUE).build();
+        EndpointInfo epInfo = new EndpointInfo(new EndpointsBuilder()
+            .setAddressEndpoints(new AddressEndpointsBuilder().setAddressEndpoint(ImmutableList.of(ep1)).build())
+            .build());
+        EndpointInfo expectedEpInfo = new EndpointInfo(new EndpointsBuilder()
+            .setAddressEndpoints(new AddressEndpointsBuilder().setAddressEndpoint(ImmutableList.of(ep2, ep1)).build())
+            .build());
+        ContentFingerprint originalFingerprint = epInfo.getFingerprint();
+
+        epInfo.addressEndpointUpdated(ep2.getKey(), ep2);
+        Assert.assertEquals(expectedEpInfo.getFingerprint(), epInfo.getFingerprint());
+
+        epInfo.addressEndpointUpdated(ep2.getKey(), null);
+        Assert.assertEquals(originalFingerprint, epInfo.getFingerprint());
+    }
+
+    @Test
+    public void testAddressEndpointUpdated_revertedChangeIsNotReported() {
+        AddressEndpoint ep1 = TestDataFactory.defaultAdrEp("adr_1", EPG_BLUE).build();
+        EndpointInfo epInfo = new EndpointInfo(new EndpointsBuilder()
+            .setAddressEndpoints(new AddressEndpointsBuilder().setAddressEndpoint(ImmutableList.of(ep1)).build())
+            .build());
+
+        epInfo.addressEndpointUpdated(ep1.getKey(), null);
+        epInfo.addressEndpointUpdated(ep1.getKey(), ep1);
+
+        Assert.assertTrue(epInfo.getChangedAddressEps().isEmpty());
+        Assert.assertEquals(ImmutableSet.of(ep1.getKey()), epInfo.findAddressEpsWithEpg(EPG_KEY_BLUE));
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2016 Cisco Systems, Inc. and others. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.opendaylight.groupbasedpolicy.renderer;
+
+import java.util.concurrent.TimeUnit;
+
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.common.rev140421.ContractId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.common.rev140421.EndpointGroupId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.common.rev140421.SubjectName;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.EndpointPolicyParticipation;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.RendererEndpoints;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.renderer.endpoints.RendererEndpointKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.renderer.endpoints.renderer.endpoint.PeerEndpointKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.resolved.policy.rev150828.resolved.policies.resolved.policy.policy.rule.group.with.endpoint.constraints.PolicyRuleGroupKey;
+
+import com.google.common.base.Stopwatch;
+
+/**
+ * Measures time and retained heap of {@link RendererConfigurationBuilder} for a full mesh of
+ * endpoints where every endpoint is a peer of every other endpoint via two rule groups. It is not
+ * run as a part of the build.
+ * <p>
+ * Usage: {@code RendererConfigurationBuilderBenchmark [endpoint-count]}, the default is 5000
+ * endpoints. A full mesh of 5000 endpoints needs a few GB of heap to build the renderer endpoints.
+ */
+public class RendererConfigurationBuilderBenchmark {
+
+    private static final EndpointGroupId EPG = new EndpointGroupId("epg");
+    private static final PolicyRuleGroupKey RULE_GRP_1 =
+            new PolicyRuleGroupKey(new ContractId("contract"), new SubjectName("subject_1"), TestDataFactory.TENANT_ID);
+    private static final PolicyRuleGroupKey RULE_GRP_2 =
+            new PolicyRuleGroupKey(new ContractId("contract"), new SubjectName("subject_2"), TestDataFactory.TENANT_ID);
+
+    public static void main(String[] args) {
+        int epCount = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        RendererEndpointKey[] rendererEpKeys = new RendererEndpointKey[epCount];
+        PeerEndpointKey[] peerEpKeys = new PeerEndpointKey[epCount];
+        for (int i = 0; i < epCount; i++) {
+            rendererEpKeys[i] = AddressEndpointUtils
+                .toRendererEpKey(TestDataFactory.defaultAdrEp("10.0." + (i / 256) + "." + (i % 256), EPG).build().getKey());
+            peerEpKeys[i] = AddressEndpointUtils.toPeerEpKey(AddressEndpointUtils.fromRendererEpKey(rendererEpKeys[i]));
+        }
+
+        long heapBefore = usedHeap();
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        RendererConfigurationBuilder builder = new RendererConfigurationBuilder();
+        for (int i = 0; i < epCount; i++) {
+            for (int j = 0; j < epCount; j++) {
+                if (i != j) {
+                    builder.add(rendererEpKeys[i], peerEpKeys[j], RULE_GRP_1, EndpointPolicyParticipation.CONSUMER);
+                    builder.add(rendererEpKeys[i], peerEpKeys[j], RULE_GRP_2, EndpointPolicyParticipation.PROVIDER);
+                }
+            }
+        }
+        long addMillis = stopwatch.elapsed(TimeUnit.MILLISECONDS);
+        long builderHeap = usedHeap() - heapBefore;
+        System.out.printf("%d endpoints, %d policies added in %d ms, builder retains %d MB%n", epCount,
+                2L * epCount * (epCount - 1), addMillis, builderHeap >> 20);
+
+        stopwatch.reset().start();
+        RendererEndpoints rendererEps = builder.buildRendererEndpoints();
+        long buildMillis = stopwatch.elapsed(TimeUnit.MILLISECONDS);
+        long configHeap = usedHeap() - heapBefore - builderHeap;
+        System.out.printf("%d renderer endpoints built in %d ms, configuration retains %d MB%n",
+                rendererEps.getRendererEndpoint().size(), buildMillis, configHeap >> 20);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2016 Cisco Systems, Inc. and others. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.opendaylight.groupbasedpolicy.renderer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.endpoints.address.endpoints.AddressEndpointKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.common.rev140421.ContractId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.common.rev140421.EndpointGroupId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.common.rev140421.SubjectName;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.EndpointPolicyParticipation;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.RendererEndpoints;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.renderer.endpoints.RendererEndpoint;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.renderer.endpoints.renderer.endpoint.PeerEndpoint;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.resolved.policy.rev150828.resolved.policies.resolved.policy.policy.rule.group.with.endpoint.constraints.PolicyRuleGroupKey;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+public class RendererConfigurationBuilderTest {
+
+    private static final EndpointGroupId EPG_BLUE = new EndpointGroupId("blue_epg");
+    private static final PolicyRuleGroupKey RULE_GRP_1 = new PolicyRuleGroupKey(new ContractId("contract_1"),
+            new SubjectName("subject_1"), TestDataFactory.TENANT_ID);
+    private static final PolicyRuleGroupKey RULE_GRP_2 = new PolicyRuleGroupKey(new ContractId("contract_1"),
+            new SubjectName("subject_2"), TestDataFactory.TENANT_ID);
+
+    @Test
+    public void testRemoveRendererEndpoint_unreferencedKeysReleased() {
+        AddressEndpointKey ep1 = TestDataFactory.defaultAdrEp("adr_1", EPG_BLUE).build().getKey();
+        AddressEndpointKey ep2 = TestDataFactory.defaultAdrEp("adr_2", EPG_BLUE).build().getKey();
+        AddressEndpointKey ep3 = TestDataFactory.defaultAdrEp("adr_3", EPG_BLUE).build().getKey();
+        RendererConfigurationBuilder builder = new RendererConfigurationBuilder();
+        builder.add(AddressEndpointUtils.toRendererEpKey(ep1), AddressEndpointUtils.toPeerEpKey(ep2), RULE_GRP_1,
+                EndpointPolicyParticipation.CONSUMER);
+        builder.add(AddressEndpointUtils.toRendererEpKey(ep2), AddressEndpointUtils.toPeerEpKey(ep1), RULE_GRP_2,
+                EndpointPolicyParticipation.PROVIDER);
+
+        Assert.assertTrue(builder.removeRendererEndpoint(AddressEndpointUtils.toRendererEpKey(ep1)));
+        Assert.assertFalse(builder.removeRendererEndpoint(AddressEndpointUtils.toRendererEpKey(ep1)));
+        Assert.assertEquals(ImmutableSet.of(ep1, ep2), builder.getAddressEndpointKeys());
+        Assert.assertEquals(ImmutableSet.of(RULE_GRP_2), builder.getPolicyRuleGroupKeys());
+
+        Assert.assertTrue(builder.removeRendererEndpoint(AddressEndpointUtils.toRendererEpKey(ep2)));
+        Assert.assertTrue(builder.isEmpty());
+        Assert.assertTrue(builder.getAddressEndpointKeys().isEmpty());
+        Assert.assertTrue(builder.getPolicyRuleGroupKeys().isEmpty());
+
+        // released ids are reused for new keys
+        builder.add(AddressEndpointUtils.toRendererEpKey(ep3), AddressEndpointUtils.toPeerEpKey(ep1), RULE_GRP_1,
+                EndpointPolicyParticipation.CONSUMER);
+        Assert.assertEquals(ImmutableSet.of(ep3, ep1), builder.getAddressEndpointKeys());
+        RendererEndpoints rendererEps = builder.buildRendererEndpoints();
+        Assert.assertEquals(1, rendererEps.getRendererEndpoint().size());
+        RendererEndpoint rendererEp = rendererEps.getRendererEndpoint().get(0);
+        Assert.assertEquals(AddressEndpointUtils.toRendererEpKey(ep3), rendererEp.getKey());
+        Assert.assertEquals(AddressEndpointUtils.toPeerEpKey(ep1), rendererEp.getPeerEndpoint().get(0).getKey());
+        Assert.assertEquals(
+                ImmutableList.of(RendererConfigurationBuilder.toRuleGroupWithRendererEndpointParticipation(RULE_GRP_1,
+                        EndpointPolicyParticipation.CONSUMER)),
+                rendererEp.getPeerEndpoint().get(0).getRuleGroupWithRendererEndpointParticipation());
+    }
+
+    @Test
+    public void testRemoveRendererEndpoint_unreferencedRuleGroupCodesReleased() {
+        AddressEndpointKey ep1 = TestDataFactory.defaultAdrEp("adr_1", EPG_BLUE).build().getKey();
+        AddressEndpointKey ep2 = TestDataFactory.defaultAdrEp("adr_2", EPG_BLUE).build().getKey();
+        AddressEndpointKey ep3 = TestDataFactory.defaultAdrEp("adr_3", EPG_BLUE).build().getKey();
+        RendererConfigurationBuilder builder = new RendererConfigurationBuilder();
+        builder.add(AddressEndpointUtils.toRendererEpKey(ep1), AddressEndpointUtils.toPeerEpKey(ep2), RULE_GRP_1,
+                EndpointPolicyParticipation.CONSUMER);
+        builder.add(AddressEndpointUtils.toRendererEpKey(ep3), AddressEndpointUtils.toPeerEpKey(ep2), RULE_GRP_1,
+                EndpointPolicyParticipation.CONSUMER);
+        builder.add(AddressEndpointUtils.toRendererEpKey(ep2), AddressEndpointUtils.toPeerEpKey(ep1), RULE_GRP_1,
+                EndpointPolicyParticipation.PROVIDER);
+        builder.add(AddressEndpointUtils.toRendererEpKey(ep2), AddressEndpointUtils.toPeerEpKey(ep1), RULE_GRP_2,
+                EndpointPolicyParticipation.PROVIDER);
+        // [RULE_GRP_1 consumer] shared by two peers, [RULE_GRP_1 provider, RULE_GRP_2 provider]
+        Assert.assertEquals(2, builder.getCanonicalCodesCount());
+
+        Assert.assertTrue(builder.removeRendererEndpoint(AddressEndpointUtils.toRendererEpKey(ep2)));
+        Assert.assertEquals(1, builder.getCanonicalCodesCount());
+        Assert.assertTrue(builder.removeRendererEndpoint(AddressEndpointUtils.toRendererEpKey(ep1)));
+        Assert.assertEquals(1, builder.getCanonicalCodesCount());
+        Assert.assertTrue(builder.removeRendererEndpoint(AddressEndpointUtils.toRendererEpKey(ep3)));
+        Assert.assertEquals(0, builder.getCanonicalCodesCount());
+    }
+
+    @Test
+    public void testBuildRendererEndpoints_fullMesh() {
+        int epCount = 30;
+        List<AddressEndpointKey> epKeys = new ArrayList<>();
+        for (int i = 0; i < epCount; i++) {
+            epKeys.add(TestDataFactory.defaultAdrEp("adr_" + i, EPG_BLUE).build().getKey());
+        }
+        RendererConfigurationBuilder builder = new RendererConfigurationBuilder();
+        for (AddressEndpointKey rendererEpKey : epKeys) {
+            for (AddressEndpointKey peerEpKey : epKeys) {
+                if (!rendererEpKey.equals(peerEpKey)) {
+                    builder.add(AddressEndpointUtils.toRendererEpKey(rendererEpKey),
+                            AddressEndpointUtils.toPeerEpKey(peerEpKey), RULE_GRP_1,
+                            EndpointPolicyParticipation.CONSUMER);
+                    builder.add(AddressEndpointUtils.toRendererEpKey(rendererEpKey),
+                            AddressEndpointUtils.toPeerEpKey(peerEpKey), RULE_GRP_1,
+                            EndpointPolicyParticipation.PROVIDER);
+                    builder.add(AddressEndpointUtils.toRendererEpKey(rendererEpKey),
+                            AddressEndpointUtils.toPeerEpKey(peerEpKey), RULE_GRP_1,
+                            EndpointPolicyParticipation.CONSUMER);
+                }
+            }
+        }
+
+        RendererEndpoints rendererEps = builder.buildRendererEndpoints();
+        Assert.assertEquals(epCount, rendererEps.getRendererEndpoint().size());
+        Assert.assertEquals(epCount, builder.getPoliciesByEpAndPeerEp().rowKeySet().size());
+        List<?> firstRuleGrps = rendererEps.getRendererEndpoint()
+            .get(0)
+            .getPeerEndpoint()
+            .get(0)
+            .getRuleGroupWithRendererEndpointParticipation();
+        Assert.assertEquals(2, firstRuleGrps.size());
+        for (RendererEndpoint rendererEp : rendererEps.getRendererEndpoint()) {
+            Assert.assertEquals(epCount - 1, rendererEp.getPeerEndpoint().size());
+            for (PeerEndpoint peerEp : rendererEp.getPeerEndpoint()) {
+                Assert.assertNotEquals(rendererEp.getKey().getAddress(), peerEp.getKey().getAddress());
+                Assert.assertEquals(firstRuleGrps, peerEp.getRuleGroupWithRendererEndpointParticipation());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2016 Cisco Systems, Inc. and others. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.opendaylight.groupbasedpolicy.renderer;
+
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.Endpoints;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.EndpointsBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.forwarding.rev160427.Forwarding;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.forwarding.rev160427.ForwardingBuilder;
+
+public class RendererInputCoalescerTest {
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private RendererManager rendererManager;
+    private RendererInputCoalescer coalescer;
+
+    @Before
+    public void init() {
+        rendererManager = Mockito.mock(RendererManager.class);
+    }
+
+    @After
+    public void close() {
+        coalescer.close();
+    }
+
+    @Test
+    public void testMaxBatchSize_pendingUpdatesMergedIntoOneBatch() {
+        coalescer = new RendererInputCoalescer(rendererManager, Executors.newSingleThreadScheduledExecutor(),
+                TIMEOUT_MILLIS * 10, 3);
+        Endpoints endpoints1 = new EndpointsBuilder().build();
+        Endpoints endpoints2 = new EndpointsBuilder().build();
+        Forwarding forwarding = new ForwardingBuilder().build();
+
+        coalescer.endpointsUpdated(endpoints1);
+        coalescer.forwardingUpdated(forwarding);
+        coalescer.endpointsUpdated(endpoints2);
+
+        ArgumentCaptor<RendererInputCoalescer.PendingInputs> acInputs =
+                ArgumentCaptor.forClass(RendererInputCoalescer.PendingInputs.class);
+        Mockito.verify(rendererManager, Mockito.timeout(TIMEOUT_MILLIS)).inputsUpdated(acInputs.capture());
+        RendererInputCoalescer.PendingInputs inputs = acInputs.getValue();
+        Assert.assertEquals(3, inputs.getEventCount());
+        Assert.assertTrue(inputs.isEndpointsUpdated());
+        Assert.assertSame(endpoints2, inputs.getEndpoints());
+        Assert.assertTrue(inputs.isForwardingUpdated());
+        Assert.assertSame(forwarding, inputs.getForwarding());
+        Assert.assertFalse(inputs.isEndpointLocationsUpdated());
+        Assert.assertFalse(inputs.isResolvedPoliciesUpdated());
+        Assert.assertFalse(inputs.isRenderersUpdated());
+        Assert.assertEquals(3, coalescer.getReceivedEvents());
+        Assert.assertEquals(1, coalescer.getProcessedBatches());
+        Assert.assertEquals(2, coalescer.getCoalescedEvents());
+    }
+
+    @Test
+    public void testMaxDelay_pendingUpdatesProcessedAfterDelay() {
+        coalescer = new RendererInputCoalescer(rendererManager, Executors.newSingleThreadScheduledExecutor(), 10,
+                Integer.MAX_VALUE);
+
+        coalescer.endpointsUpdated(null);
+
+        ArgumentCaptor<RendererInputCoalescer.PendingInputs> acInputs =
+                ArgumentCaptor.forClass(RendererInputCoalescer.PendingInputs.class);
+        Mockito.verify(rendererManager, Mockito.timeout(TIMEOUT_MILLIS)).inputsUpdated(acInputs.capture());
+        Assert.assertTrue(acInputs.getValue().isEndpointsUpdated());
+        Assert.assertNull(acInputs.getValue().getEndpoints());
+        Assert.assertEquals(0, coalescer.getCoalescedEvents());
+    }
+
+}
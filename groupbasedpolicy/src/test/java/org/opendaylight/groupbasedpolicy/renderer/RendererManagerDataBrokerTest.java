@@ -8,8 +8,10 @@
 
 package org.opendaylight.groupbasedpolicy.renderer;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -25,6 +27,7 @@ import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
 import org.opendaylight.controller.md.sal.common.api.data.TransactionCommitFailedException;
 import org.opendaylight.groupbasedpolicy.base_endpoint.EndpointAugmentorRegistryImpl;
 import org.opendaylight.groupbasedpolicy.forwarding.NetworkDomainAugmentorRegistryImpl;
+import org.opendaylight.groupbasedpolicy.util.IidFactory;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.EndpointLocations;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.EndpointLocationsBuilder;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.base_endpoint.rev160427.EndpointsBuilder;
@@ -45,6 +48,7 @@ import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.common.rev
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.common.rev140421.RuleName;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.common.rev140421.SubjectName;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.forwarding.rev160427.ContextType;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.forwarding.rev160427.Forwarding;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.forwarding.rev160427.ForwardingBuilder;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.forwarding.rev160427.forwarding.ForwardingByTenantBuilder;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.forwarding.rev160427.forwarding.forwarding.by.tenant.ForwardingContextBuilder;
@@ -63,6 +67,7 @@ import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.r
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.RendererEndpoints;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.RendererForwarding;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.RuleGroups;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.renderer.endpoints.RendererEndpoint;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.resolved.policy.rev150828.ResolvedPolicies;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.resolved.policy.rev150828.ResolvedPoliciesBuilder;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.resolved.policy.rev150828.has.resolved.rules.ResolvedRule;
@@ -78,6 +83,7 @@ import com.google.common.util.concurrent.CheckedFuture;
 public class RendererManagerDataBrokerTest {
 
     private static final RendererName RENDERER_NAME_R1 = new RendererName("R1");
+    private static final RendererName RENDERER_NAME_R2 = new RendererName("R2");
     private static final EndpointGroupId EPG_BLUE = new EndpointGroupId("blue_epg");
     private static final EndpointGroupId EPG_PURPLE = new EndpointGroupId("purple_epg");
     private static final ContractId CONTRACT_1 = new ContractId("contract_1");
@@ -85,11 +91,15 @@ public class RendererManagerDataBrokerTest {
     private static final RuleName RULE_1 = new RuleName("rule_1");
     private static final String ADR_1 = "adr_1";
     private static final String ADR_2 = "adr_2";
+    private static final String ADR_3 = "adr_3";
     private static final InstanceIdentifier<?> NODE_PATH_1 = InstanceIdentifier.create(Tenants.class);
     private static final InternalLocationCase INT_LOC_CASE_NODE_PATH_1 =
             new InternalLocationCaseBuilder().setInternalNode(NODE_PATH_1).build();
     private static final InternalLocation INT_LOC_NODE_PATH_1 =
             new InternalLocationBuilder().setInternalNode(NODE_PATH_1).build();
+    private static final InstanceIdentifier<?> NODE_PATH_2 = InstanceIdentifier.create(ResolvedPolicies.class);
+    private static final InternalLocationCase INT_LOC_CASE_NODE_PATH_2 =
+            new InternalLocationCaseBuilder().setInternalNode(NODE_PATH_2).build();
     private static final ExternalLocationCase EXT_LOC_CASE_NODE_PATH_1 =
             new ExternalLocationCaseBuilder().setExternalNodeMountPoint(NODE_PATH_1).build();
 
@@ -380,4 +390,271 @@ public class RendererManagerDataBrokerTest {
         Assert.assertEquals(1, ruleGroups.getRuleGroup().size());
     }
 
+    /**
+     * EP1--EPG_BLUE---SUBJECT_1---(P)EPG_PURPLE--EP2
+     * EP3--EPG_BLUE is added after the first version is dispatched
+     */
+    @Test
+    public void testProcessState_incrementalMode_onlyAffectedRendererEndpointsWritten() throws Exception {
+        rendererManager = new RendererManager(dataProvider, netDomainAugmentorRegistry, epAugmentorRegistry, true);
+        ResolvedRule rule1 = TestDataFactory.defaultResolvedRule(RULE_1).build();
+        PolicyRuleGroup ruleGrp1 = TestDataFactory.defaultPolicyRuleGrp(CONTRACT_1, SUBJECT_1, rule1).build();
+        ResolvedPolicy resolvedPolicy = TestDataFactory.defaultResolvedPolicy(EPG_BLUE, EPG_PURPLE, ruleGrp1).build();
+        rendererManager.resolvedPoliciesUpdated(
+                new ResolvedPoliciesBuilder().setResolvedPolicy(ImmutableList.of(resolvedPolicy)).build());
+
+        AddressEndpoint ep1 = TestDataFactory.defaultAdrEp(ADR_1, EPG_BLUE).build();
+        AddressEndpoint ep2 = TestDataFactory.defaultAdrEp(ADR_2, EPG_PURPLE).build();
+        rendererManager.endpointsUpdated(new EndpointsBuilder()
+            .setAddressEndpoints(new AddressEndpointsBuilder().setAddressEndpoint(ImmutableList.of(ep1, ep2)).build())
+            .build());
+
+        AddressEndpoint ep3 = TestDataFactory.defaultAdrEp(ADR_3, EPG_BLUE).build();
+        AddressEndpointLocation ep1Loc =
+                TestDataFactory.defaultAdrEpLoc(ep1.getKey(), INT_LOC_CASE_NODE_PATH_1).build();
+        AddressEndpointLocation ep2Loc =
+                TestDataFactory.defaultAdrEpLoc(ep2.getKey(), INT_LOC_CASE_NODE_PATH_1).build();
+        AddressEndpointLocation ep3Loc =
+                TestDataFactory.defaultAdrEpLoc(ep3.getKey(), INT_LOC_CASE_NODE_PATH_1).build();
+        rendererManager.endpointLocationsUpdated(new EndpointLocationsBuilder()
+            .setAddressEndpointLocation(ImmutableList.of(ep1Loc, ep2Loc, ep3Loc))
+            .build());
+
+        rendererManager.forwardingUpdated(createForwarding());
+
+        rendererManager.renderersUpdated(new RenderersBuilder()
+            .setRenderer(Arrays.asList(new RendererBuilder().setName(RENDERER_NAME_R1)
+                .setRendererNodes(new RendererNodesBuilder()
+                    .setRendererNode(Arrays.asList(new RendererNodeBuilder().setNodePath(NODE_PATH_1).build())).build())
+                .build()))
+            .build());
+        Assert.assertEquals(1, rendererManager.getProcessingRenderers().size());
+        Mockito.verify(wTx).put(Mockito.eq(LogicalDatastoreType.CONFIGURATION),
+                Mockito.eq(InstanceIdentifier.create(Renderers.class)), Mockito.any(Renderers.class));
+
+        rendererManager.renderersUpdated(new RenderersBuilder()
+            .setRenderer(Arrays.asList(new RendererBuilder().setName(RENDERER_NAME_R1)
+                .setRendererNodes(new RendererNodesBuilder()
+                    .setRendererNode(Arrays.asList(new RendererNodeBuilder().setNodePath(NODE_PATH_1).build())).build())
+                .setRendererPolicy(new RendererPolicyBuilder().setVersion(1L).build())
+                .build()))
+            .build());
+        Assert.assertEquals(0, rendererManager.getProcessingRenderers().size());
+
+        rendererManager.endpointsUpdated(new EndpointsBuilder()
+            .setAddressEndpoints(
+                    new AddressEndpointsBuilder().setAddressEndpoint(ImmutableList.of(ep1, ep2, ep3)).build())
+            .build());
+
+        Assert.assertEquals(1, rendererManager.getProcessingRenderers().size());
+        // whole configuration is not rewritten
+        Mockito.verify(wTx).put(Mockito.eq(LogicalDatastoreType.CONFIGURATION),
+                Mockito.eq(InstanceIdentifier.create(Renderers.class)), Mockito.any(Renderers.class));
+        Mockito.verify(wTx).merge(LogicalDatastoreType.CONFIGURATION, IidFactory.rendererPolicyIid(RENDERER_NAME_R1),
+                new RendererPolicyBuilder().setVersion(2L).build());
+        // EP3 is new and EP2 is its peer
+        Mockito.verify(wTx).put(Mockito.eq(LogicalDatastoreType.CONFIGURATION),
+                Mockito.eq(IidFactory.rendererEndpointIid(RENDERER_NAME_R1,
+                        AddressEndpointUtils.toRendererEpKey(ep3.getKey()))),
+                Mockito.any(RendererEndpoint.class));
+        Mockito.verify(wTx).put(Mockito.eq(LogicalDatastoreType.CONFIGURATION),
+                Mockito.eq(IidFactory.rendererEndpointIid(RENDERER_NAME_R1,
+                        AddressEndpointUtils.toRendererEpKey(ep2.getKey()))),
+                Mockito.any(RendererEndpoint.class));
+        Mockito.verify(wTx, Mockito.never()).put(Mockito.eq(LogicalDatastoreType.CONFIGURATION),
+                Mockito.eq(IidFactory.rendererEndpointIid(RENDERER_NAME_R1,
+                        AddressEndpointUtils.toRendererEpKey(ep1.getKey()))),
+                Mockito.any(RendererEndpoint.class));
+    }
+
+    /**
+     * EP1,EP3--EPG_BLUE---SUBJECT_1---(P)EPG_PURPLE--EP2
+     * EP1 and EP3 are on R1, EP2 is on R2; R2 does not acknowledge version 1 in time
+     */
+    @Test
+    public void testProcessState_slowRenderer_otherRendererReceivesNextVersion() throws Exception {
+        ResolvedRule rule1 = TestDataFactory.defaultResolvedRule(RULE_1).build();
+        PolicyRuleGroup ruleGrp1 = TestDataFactory.defaultPolicyRuleGrp(CONTRACT_1, SUBJECT_1, rule1).build();
+        ResolvedPolicy resolvedPolicy = TestDataFactory.defaultResolvedPolicy(EPG_BLUE, EPG_PURPLE, ruleGrp1).build();
+        rendererManager.resolvedPoliciesUpdated(
+                new ResolvedPoliciesBuilder().setResolvedPolicy(ImmutableList.of(resolvedPolicy)).build());
+
+        AddressEndpoint ep1 = TestDataFactory.defaultAdrEp(ADR_1, EPG_BLUE).build();
+        AddressEndpoint ep2 = TestDataFactory.defaultAdrEp(ADR_2, EPG_PURPLE).build();
+        AddressEndpoint ep3 = TestDataFactory.defaultAdrEp(ADR_3, EPG_BLUE).build();
+        rendererManager.endpointsUpdated(new EndpointsBuilder()
+            .setAddressEndpoints(new AddressEndpointsBuilder().setAddressEndpoint(ImmutableList.of(ep1, ep2)).build())
+            .build());
+        rendererManager.endpointLocationsUpdated(new EndpointLocationsBuilder()
+            .setAddressEndpointLocation(ImmutableList.of(
+                    TestDataFactory.defaultAdrEpLoc(ep1.getKey(), INT_LOC_CASE_NODE_PATH_1).build(),
+                    TestDataFactory.defaultAdrEpLoc(ep2.getKey(), INT_LOC_CASE_NODE_PATH_2).build(),
+                    TestDataFactory.defaultAdrEpLoc(ep3.getKey(), INT_LOC_CASE_NODE_PATH_1).build()))
+            .build());
+
+        rendererManager.forwardingUpdated(createForwarding());
+
+        rendererManager.renderersUpdated(createRenderers(null, null));
+        Assert.assertEquals(2, rendererManager.getProcessingRenderers().size());
+
+        // R1 acknowledges version 1, R2 is still processing
+        rendererManager.renderersUpdated(createRenderers(1L, null));
+        Assert.assertEquals(1, rendererManager.getProcessingRenderers().size());
+
+        rendererManager.endpointsUpdated(new EndpointsBuilder()
+            .setAddressEndpoints(
+                    new AddressEndpointsBuilder().setAddressEndpoint(ImmutableList.of(ep1, ep2, ep3)).build())
+            .build());
+
+        // version 2 is dispatched only to R1
+        ArgumentCaptor<RendererPolicy> acRendererPolicy = ArgumentCaptor.forClass(RendererPolicy.class);
+        Mockito.verify(wTx).put(Mockito.eq(LogicalDatastoreType.CONFIGURATION),
+                Mockito.eq(IidFactory.rendererPolicyIid(RENDERER_NAME_R1)), acRendererPolicy.capture(),
+                Mockito.eq(true));
+        Assert.assertEquals(2, acRendererPolicy.getValue().getVersion().longValue());
+        Mockito.verify(wTx, Mockito.never()).put(Mockito.eq(LogicalDatastoreType.CONFIGURATION),
+                Mockito.eq(IidFactory.rendererPolicyIid(RENDERER_NAME_R2)), Mockito.any(RendererPolicy.class),
+                Mockito.anyBoolean());
+        Assert.assertEquals(2, rendererManager.getProcessingRenderers().size());
+
+        // R2 acknowledges version 1 and receives the latest version
+        rendererManager.renderersUpdated(createRenderers(2L, 1L));
+        Mockito.verify(wTx).put(Mockito.eq(LogicalDatastoreType.CONFIGURATION),
+                Mockito.eq(IidFactory.rendererPolicyIid(RENDERER_NAME_R2)), acRendererPolicy.capture(),
+                Mockito.eq(true));
+        RendererPolicy r2Policy = acRendererPolicy.getValue();
+        Assert.assertEquals(2, r2Policy.getVersion().longValue());
+        Assert.assertEquals(3, r2Policy.getConfiguration().getEndpoints().getAddressEndpointWithLocation().size());
+        Assert.assertEquals(1, rendererManager.getProcessingRenderers().size());
+        Assert.assertEquals(0, rendererManager.getVersionLag(RENDERER_NAME_R1));
+        Assert.assertEquals(1, rendererManager.getVersionLag(RENDERER_NAME_R2));
+    }
+
+    /**
+     * EP1,EP3--EPG_BLUE---SUBJECT_1---(P)EPG_PURPLE--EP2
+     * EP1 and EP3 are on R1, EP2 is on R2; dispatching of the latest version to R2 fails once
+     */
+    @Test
+    public void testProcessState_staleRendererDispatchFails_versionNotRecordedAndRetried() throws Exception {
+        ResolvedRule rule1 = TestDataFactory.defaultResolvedRule(RULE_1).build();
+        PolicyRuleGroup ruleGrp1 = TestDataFactory.defaultPolicyRuleGrp(CONTRACT_1, SUBJECT_1, rule1).build();
+        ResolvedPolicy resolvedPolicy = TestDataFactory.defaultResolvedPolicy(EPG_BLUE, EPG_PURPLE, ruleGrp1).build();
+        rendererManager.resolvedPoliciesUpdated(
+                new ResolvedPoliciesBuilder().setResolvedPolicy(ImmutableList.of(resolvedPolicy)).build());
+
+        AddressEndpoint ep1 = TestDataFactory.defaultAdrEp(ADR_1, EPG_BLUE).build();
+        AddressEndpoint ep2 = TestDataFactory.defaultAdrEp(ADR_2, EPG_PURPLE).build();
+        AddressEndpoint ep3 = TestDataFactory.defaultAdrEp(ADR_3, EPG_BLUE).build();
+        rendererManager.endpointsUpdated(new EndpointsBuilder()
+            .setAddressEndpoints(new AddressEndpointsBuilder().setAddressEndpoint(ImmutableList.of(ep1, ep2)).build())
+            .build());
+        rendererManager.endpointLocationsUpdated(new EndpointLocationsBuilder()
+            .setAddressEndpointLocation(ImmutableList.of(
+                    TestDataFactory.defaultAdrEpLoc(ep1.getKey(), INT_LOC_CASE_NODE_PATH_1).build(),
+                    TestDataFactory.defaultAdrEpLoc(ep2.getKey(), INT_LOC_CASE_NODE_PATH_2).build(),
+                    TestDataFactory.defaultAdrEpLoc(ep3.getKey(), INT_LOC_CASE_NODE_PATH_1).build()))
+            .build());
+        rendererManager.forwardingUpdated(createForwarding());
+        rendererManager.renderersUpdated(createRenderers(null, null));
+        rendererManager.renderersUpdated(createRenderers(1L, null));
+        rendererManager.endpointsUpdated(new EndpointsBuilder()
+            .setAddressEndpoints(
+                    new AddressEndpointsBuilder().setAddressEndpoint(ImmutableList.of(ep1, ep2, ep3)).build())
+            .build());
+        Assert.assertEquals(1, rendererManager.getVersionLag(RENDERER_NAME_R2));
+
+        // R2 acknowledges version 1 but the latest version cannot be written
+        Mockito.doThrow(new TransactionCommitFailedException("test")).doReturn(null).when(submitFuture).checkedGet();
+        rendererManager.renderersUpdated(createRenderers(2L, 1L));
+        Assert.assertFalse(rendererManager.getProcessingRenderers().contains(RENDERER_NAME_R2));
+        Assert.assertEquals(1, rendererManager.getVersionLag(RENDERER_NAME_R2));
+
+        rendererManager.retryDispatchToStaleRenderers();
+        ArgumentCaptor<RendererPolicy> acRendererPolicy = ArgumentCaptor.forClass(RendererPolicy.class);
+        Mockito.verify(wTx, Mockito.times(2)).put(Mockito.eq(LogicalDatastoreType.CONFIGURATION),
+                Mockito.eq(IidFactory.rendererPolicyIid(RENDERER_NAME_R2)), acRendererPolicy.capture(),
+                Mockito.eq(true));
+        Assert.assertEquals(2, acRendererPolicy.getValue().getVersion().longValue());
+        Assert.assertTrue(rendererManager.getProcessingRenderers().contains(RENDERER_NAME_R2));
+        rendererManager.close();
+    }
+
+    /**
+     * EP0..EP19--EPG_BLUE/EPG_PURPLE---SUBJECT_1---(P)EPG_PURPLE/EPG_BLUE
+     * EPs are spread over R1 and R2
+     */
+    @Test
+    public void testProcessState_parallelConfigBuilding_sameRenderersAsSerial() throws Exception {
+        RendererManager parallelRendererManager = new RendererManager(dataProvider, netDomainAugmentorRegistry,
+                epAugmentorRegistry, false, 0, 0, 4);
+        Renderers serialRenderers = dispatchManyEndpoints(rendererManager);
+        RendererManager.resetVersion();
+        Renderers parallelRenderers = dispatchManyEndpoints(parallelRendererManager);
+        parallelRendererManager.close();
+
+        Assert.assertEquals(2, serialRenderers.getRenderer().size());
+        Assert.assertEquals(serialRenderers, parallelRenderers);
+    }
+
+    private Renderers dispatchManyEndpoints(RendererManager rendererManager) {
+        Mockito.reset(wTx);
+        Mockito.when(wTx.submit()).thenReturn(submitFuture);
+        ResolvedRule rule1 = TestDataFactory.defaultResolvedRule(RULE_1).build();
+        PolicyRuleGroup ruleGrp1 = TestDataFactory.defaultPolicyRuleGrp(CONTRACT_1, SUBJECT_1, rule1).build();
+        rendererManager.resolvedPoliciesUpdated(new ResolvedPoliciesBuilder()
+            .setResolvedPolicy(ImmutableList.of(
+                    TestDataFactory.defaultResolvedPolicy(EPG_BLUE, EPG_PURPLE, ruleGrp1).build(),
+                    TestDataFactory.defaultResolvedPolicy(EPG_PURPLE, EPG_BLUE, ruleGrp1).build()))
+            .build());
+        List<AddressEndpoint> eps = new ArrayList<>();
+        List<AddressEndpointLocation> epLocs = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            AddressEndpoint ep = TestDataFactory.defaultAdrEp("adr_" + i, i % 2 == 0 ? EPG_BLUE : EPG_PURPLE).build();
+            eps.add(ep);
+            epLocs.add(TestDataFactory
+                .defaultAdrEpLoc(ep.getKey(), i % 3 == 0 ? INT_LOC_CASE_NODE_PATH_2 : INT_LOC_CASE_NODE_PATH_1)
+                .build());
+        }
+        rendererManager.endpointsUpdated(new EndpointsBuilder()
+            .setAddressEndpoints(new AddressEndpointsBuilder().setAddressEndpoint(eps).build())
+            .build());
+        rendererManager
+            .endpointLocationsUpdated(new EndpointLocationsBuilder().setAddressEndpointLocation(epLocs).build());
+        rendererManager.forwardingUpdated(createForwarding());
+        rendererManager.renderersUpdated(createRenderers(null, null));
+
+        ArgumentCaptor<Renderers> acRenderers = ArgumentCaptor.forClass(Renderers.class);
+        Mockito.verify(wTx).put(Mockito.eq(LogicalDatastoreType.CONFIGURATION),
+                Mockito.eq(InstanceIdentifier.create(Renderers.class)), acRenderers.capture());
+        return acRenderers.getValue();
+    }
+
+    private static Forwarding createForwarding() {
+        return new ForwardingBuilder()
+            .setForwardingByTenant(Arrays.asList(new ForwardingByTenantBuilder().setTenantId(TestDataFactory.TENANT_ID)
+                .setForwardingContext(Arrays.asList(new ForwardingContextBuilder().setContextType(ContextType.class)
+                    .setContextId(TestDataFactory.CTX_1)
+                    .build()))
+                .build()))
+            .build();
+    }
+
+    private static Renderers createRenderers(Long r1Version, Long r2Version) {
+        RendererBuilder r1 = new RendererBuilder().setName(RENDERER_NAME_R1)
+            .setRendererNodes(new RendererNodesBuilder()
+                .setRendererNode(Arrays.asList(new RendererNodeBuilder().setNodePath(NODE_PATH_1).build()))
+                .build());
+        if (r1Version != null) {
+            r1.setRendererPolicy(new RendererPolicyBuilder().setVersion(r1Version).build());
+        }
+        RendererBuilder r2 = new RendererBuilder().setName(RENDERER_NAME_R2)
+            .setRendererNodes(new RendererNodesBuilder()
+                .setRendererNode(Arrays.asList(new RendererNodeBuilder().setNodePath(NODE_PATH_2).build()))
+                .build());
+        if (r2Version != null) {
+            r2.setRendererPolicy(new RendererPolicyBuilder().setVersion(r2Version).build());
+        }
+        return new RenderersBuilder().setRenderer(Arrays.asList(r1.build(), r2.build())).build();
+    }
+
 }
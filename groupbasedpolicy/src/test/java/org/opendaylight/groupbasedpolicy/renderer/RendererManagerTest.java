@@ -10,9 +10,11 @@ package org.opendaylight.groupbasedpolicy.renderer;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableTable;
 import java.util.Collections;
 import java.util.Set;
@@ -41,6 +43,10 @@ import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.common.rev
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.policy.rev140421.Tenants;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.EndpointPolicyParticipation;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.has.rule.group.with.renderer.endpoint.participation.RuleGroupWithRendererEndpointParticipation;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.EndpointGroupPolicies;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.RendererEndpoints;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.endpoint.group.policies.EndpointGroupPolicy;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.renderer.endpoints.RendererEndpoint;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.renderer.endpoints.RendererEndpointKey;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.renderer.policy.configuration.renderer.endpoints.renderer.endpoint.PeerEndpointKey;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.resolved.policy.rev150828.ResolvedPolicies;
@@ -273,4 +279,56 @@ public class RendererManagerTest {
             .toRuleGroupWithRendererEndpointParticipation(ruleGrp2.getKey(), EndpointPolicyParticipation.CONSUMER)));
     }
 
+    /**
+     * EP1,EP3--EPG_BLUE---SUBJECT_1---(P)EPG_PURPLE--EP2,EP4
+     */
+    @Test
+    public void testResolveRendererPolicyForEndpoint_endpointGroupPolicyForm() {
+        ResolvedRule rule1 = TestDataFactory.defaultResolvedRule(RULE_1).build();
+        PolicyRuleGroup ruleGrp1 = TestDataFactory.defaultPolicyRuleGrp(CONTRACT_1, SUBJECT_1, rule1).build();
+        ResolvedPolicy resolvedPolicy = TestDataFactory.defaultResolvedPolicy(EPG_BLUE, EPG_PURPLE, ruleGrp1).build();
+        ResolvedPolicies resolvedPolicies =
+                new ResolvedPoliciesBuilder().setResolvedPolicy(ImmutableList.of(resolvedPolicy)).build();
+        rendererManager.resolvedPoliciesUpdated(resolvedPolicies);
+
+        AddressEndpoint ep1 = TestDataFactory.defaultAdrEp(ADR_1, EPG_BLUE).build();
+        AddressEndpoint ep2 = TestDataFactory.defaultAdrEp(ADR_2, EPG_PURPLE).build();
+        AddressEndpoint ep3 = TestDataFactory.defaultAdrEp(ADR_3, EPG_BLUE).build();
+        AddressEndpoint ep4 = TestDataFactory.defaultAdrEp(ADR_4, EPG_PURPLE).build();
+        Endpoints endpoints = new EndpointsBuilder()
+            .setAddressEndpoints(
+                    new AddressEndpointsBuilder().setAddressEndpoint(ImmutableList.of(ep1, ep2, ep3, ep4)).build())
+            .build();
+        rendererManager.endpointsUpdated(endpoints);
+
+        AddressEndpointLocation ep1Loc = TestDataFactory.defaultAdrEpLoc(ep1.getKey(), REG_LOC_NODE_PATH_1).build();
+        AddressEndpointLocation ep2Loc = TestDataFactory.defaultAdrEpLoc(ep2.getKey(), REG_LOC_NODE_PATH_1).build();
+        AddressEndpointLocation ep3Loc = TestDataFactory.defaultAdrEpLoc(ep3.getKey(), REG_LOC_NODE_PATH_1).build();
+        EndpointLocations endpointLocations = new EndpointLocationsBuilder()
+            .setAddressEndpointLocation(ImmutableList.of(ep1Loc, ep2Loc, ep3Loc)).build();
+        rendererManager.endpointLocationsUpdated(endpointLocations);
+
+        RendererConfigurationBuilder rendererPolicyBuilder = new RendererConfigurationBuilder(true);
+        rendererManager.resolveRendererConfigForEndpoint(ep1, rendererPolicyBuilder);
+        rendererManager.resolveRendererConfigForEndpoint(ep3, rendererPolicyBuilder);
+        assertTrue(rendererPolicyBuilder.getPoliciesByEpAndPeerEp().isEmpty());
+        // EP4 without location is not a peer
+        assertEquals(ImmutableSet.of(ep1.getKey(), ep3.getKey(), ep2.getKey()),
+                rendererPolicyBuilder.getAddressEndpointKeys());
+        assertEquals(ImmutableSet.of(ruleGrp1.getKey()), rendererPolicyBuilder.getPolicyRuleGroupKeys());
+
+        RendererEndpoints rendererEps = rendererPolicyBuilder.buildRendererEndpoints();
+        assertEquals(2, rendererEps.getRendererEndpoint().size());
+        for (RendererEndpoint rendererEp : rendererEps.getRendererEndpoint()) {
+            assertNull(rendererEp.getPeerEndpoint());
+        }
+        EndpointGroupPolicies epgPolicies = rendererPolicyBuilder.buildEndpointGroupPolicies();
+        assertEquals(1, epgPolicies.getEndpointGroupPolicy().size());
+        EndpointGroupPolicy epgPolicy = epgPolicies.getEndpointGroupPolicy().get(0);
+        assertEquals(EPG_BLUE, epgPolicy.getConsumerEpgId());
+        assertEquals(EPG_PURPLE, epgPolicy.getProviderEpgId());
+        assertEquals(1, epgPolicy.getEndpointGroupPolicyRuleGroup().size());
+        assertEquals(SUBJECT_1, epgPolicy.getEndpointGroupPolicyRuleGroup().get(0).getSubjectName());
+    }
+
 }
@@ -7,6 +7,9 @@
  */
 package org.opendaylight.groupbasedpolicy.resolver;
 
+import java.util.Collections;
+import java.util.List;
+
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -16,8 +19,12 @@ import org.opendaylight.controller.md.sal.binding.api.DataBroker;
 import org.opendaylight.controller.md.sal.binding.api.ReadOnlyTransaction;
 import org.opendaylight.controller.md.sal.binding.api.WriteTransaction;
 import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.controller.md.sal.common.api.data.TransactionCommitFailedException;
 import org.opendaylight.groupbasedpolicy.test.GbpDataBrokerTest;
 import org.opendaylight.groupbasedpolicy.util.IidFactory;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.common.rev140421.ContractId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.common.rev140421.EndpointGroupId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.common.rev140421.SelectorName;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.common.rev140421.TenantId;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.policy.rev140421.Tenants;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.policy.rev140421.TenantsBuilder;
@@ -25,13 +32,30 @@ import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.policy.rev
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.policy.rev140421.tenants.TenantBuilder;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.policy.rev140421.tenants.tenant.Policy;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.policy.rev140421.tenants.tenant.PolicyBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.policy.rev140421.tenants.tenant.policy.Contract;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.policy.rev140421.tenants.tenant.policy.ContractBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.policy.rev140421.tenants.tenant.policy.EndpointGroup;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.policy.rev140421.tenants.tenant.policy.EndpointGroupBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.policy.rev140421.tenants.tenant.policy.SubjectFeatureInstancesBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.policy.rev140421.tenants.tenant.policy.contract.Clause;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.policy.rev140421.tenants.tenant.policy.contract.Subject;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.policy.rev140421.tenants.tenant.policy.endpoint.group.ConsumerNamedSelectorBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.policy.rev140421.tenants.tenant.policy.endpoint.group.ProviderNamedSelectorBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.resolved.policy.rev150828.ResolvedPolicies;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.resolved.policy.rev150828.resolved.policies.ResolvedPolicy;
 import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
 
 import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Futures;
 
 public class PolicyResolverTest extends GbpDataBrokerTest {
 
     private static final TenantId TENANT_ID_1 = new TenantId("tenant_1");
+    private static final TenantId TENANT_ID_2 = new TenantId("tenant_2");
+    private static final ContractId CONTRACT_ID = new ContractId("contract");
+    private static final EndpointGroupId CONSUMER_EPG_ID = new EndpointGroupId("consumer_epg");
+    private static final EndpointGroupId PROVIDER_EPG_ID = new EndpointGroupId("provider_epg");
 
     private DataBroker dataProvider;
     private PolicyResolver policyResolver;
@@ -93,4 +117,63 @@ public class PolicyResolverTest extends GbpDataBrokerTest {
         Assert.assertFalse(potentialTenant.isPresent());
     }
 
+    @Test
+    public void testUpdateTenant_onlyChangedTenantPoliciesRewritten() throws Exception {
+        policyResolver.updateTenant(TENANT_ID_1, createTenantWithContract(TENANT_ID_1));
+        policyResolver.updateTenant(TENANT_ID_2, createTenantWithContract(TENANT_ID_2));
+        Assert.assertEquals(2, readResolvedPolicies().size());
+
+        policyResolver.updateTenant(TENANT_ID_1, null);
+        List<ResolvedPolicy> resolvedPolicies = readResolvedPolicies();
+        Assert.assertEquals(1, resolvedPolicies.size());
+        Assert.assertEquals(TENANT_ID_2, resolvedPolicies.get(0).getConsumerTenantId());
+        Assert.assertEquals(TENANT_ID_2, resolvedPolicies.get(0).getProviderTenantId());
+    }
+
+    @Test
+    public void testUpdateTenant_failedSubmitNotCached() throws Exception {
+        DataBroker spyDataProvider = Mockito.spy(dataProvider);
+        WriteTransaction failingWTx = Mockito.mock(WriteTransaction.class);
+        Mockito.when(failingWTx.submit()).thenReturn(
+                Futures.<Void, TransactionCommitFailedException>immediateFailedCheckedFuture(
+                        new TransactionCommitFailedException("test")));
+        Mockito.doReturn(failingWTx).doCallRealMethod().when(spyDataProvider).newWriteOnlyTransaction();
+        PolicyResolver other = new PolicyResolver(spyDataProvider);
+
+        other.updateTenant(TENANT_ID_1, createTenantWithContract(TENANT_ID_1));
+        other.updateTenant(TENANT_ID_1, createTenantWithContract(TENANT_ID_1));
+        Assert.assertEquals(1, readResolvedPolicies().size());
+        other.close();
+    }
+
+    private List<ResolvedPolicy> readResolvedPolicies() throws Exception {
+        ReadOnlyTransaction rTx = getDataBroker().newReadOnlyTransaction();
+        Optional<ResolvedPolicies> potentialResolvedPolicies =
+                rTx.read(LogicalDatastoreType.OPERATIONAL, IidFactory.resolvedPoliciesIid()).get();
+        Assert.assertTrue(potentialResolvedPolicies.isPresent());
+        List<ResolvedPolicy> resolvedPolicies = potentialResolvedPolicies.get().getResolvedPolicy();
+        return resolvedPolicies == null ? Collections.<ResolvedPolicy>emptyList() : resolvedPolicies;
+    }
+
+    private static Tenant createTenantWithContract(TenantId tenantId) {
+        Contract contract = new ContractBuilder().setId(CONTRACT_ID)
+            .setClause(Collections.<Clause>emptyList())
+            .setSubject(Collections.<Subject>emptyList())
+            .build();
+        EndpointGroup consumer = new EndpointGroupBuilder().setId(CONSUMER_EPG_ID)
+            .setConsumerNamedSelector(ImmutableList.of(new ConsumerNamedSelectorBuilder()
+                .setName(new SelectorName("cns")).setContract(ImmutableList.of(CONTRACT_ID)).build()))
+            .build();
+        EndpointGroup provider = new EndpointGroupBuilder().setId(PROVIDER_EPG_ID)
+            .setProviderNamedSelector(ImmutableList.of(new ProviderNamedSelectorBuilder()
+                .setName(new SelectorName("pns")).setContract(ImmutableList.of(CONTRACT_ID)).build()))
+            .build();
+        return new TenantBuilder().setId(tenantId)
+            .setPolicy(new PolicyBuilder().setContract(ImmutableList.of(contract))
+                .setEndpointGroup(ImmutableList.of(consumer, provider))
+                .setSubjectFeatureInstances(new SubjectFeatureInstancesBuilder().build())
+                .build())
+            .build();
+    }
+
 }
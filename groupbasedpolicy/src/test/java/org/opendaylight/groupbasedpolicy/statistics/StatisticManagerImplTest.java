@@ -12,18 +12,15 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
 
 import com.google.common.base.Optional;
-import com.google.common.util.concurrent.CheckedFuture;
+import com.google.common.util.concurrent.Futures;
 import org.junit.Assert;
 import org.junit.Before;
-import org.junit.Rule;
 import org.junit.Test;
-import org.junit.rules.ExpectedException;
 import org.opendaylight.controller.md.sal.binding.api.DataBroker;
 import org.opendaylight.controller.md.sal.binding.api.ReadOnlyTransaction;
 import org.opendaylight.controller.md.sal.binding.api.WriteTransaction;
@@ -63,11 +60,6 @@ import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
 
 public class StatisticManagerImplTest {
 
-    @Rule
-    public ExpectedException thrown = ExpectedException.none();
-
-    private static final String READING_EXCEPTION_MSG = "Reading throws exception";
-
     private DataBroker dataBroker;
     private StatisticsManagerImpl manager;
     private WriteTransaction wtx;
@@ -107,6 +99,8 @@ public class StatisticManagerImplTest {
         rtx = mock(ReadOnlyTransaction.class);
         when(dataBroker.newWriteOnlyTransaction()).thenReturn(wtx);
         when(dataBroker.newReadOnlyTransaction()).thenReturn(rtx);
+        when(wtx.submit()).thenReturn(Futures.<Void, TransactionCommitFailedException>immediateCheckedFuture(null));
+        mockReadStatisticsStore(null);
 
         manager = new StatisticsManagerImpl(dataBroker);
     }
@@ -117,67 +111,95 @@ public class StatisticManagerImplTest {
         StatisticRecordKey key = new StatisticRecordKey(new RecordId(0l));
         StatisticRecord output = outputForWriting(key);
 
-        CheckedFuture<Void, TransactionCommitFailedException> future = mock(CheckedFuture.class);
-        when(wtx.submit()).thenReturn(future);
-        when(dataBroker.newWriteOnlyTransaction()).thenReturn(wtx);
 
         manager.writeStat(input);
         verify(wtx).put(LogicalDatastoreType.OPERATIONAL, IidFactory.statisticRecordIid(key), output, true);
     }
 
     @Test
-    public void testReadStats() throws Exception {
-        List<StatisticRecord> stats = inputForReading();
+    public void testReadStats() {
         StatRecords statRecords = outputForReading();
 
-        CheckedFuture<Optional<StatisticsStore>, ReadFailedException> future = mock(CheckedFuture.class);
-        when(future.get()).thenReturn(Optional.of(new StatisticsStoreBuilder().setStatisticRecord(stats).build()));
-        when(rtx.read(LogicalDatastoreType.OPERATIONAL, InstanceIdentifier.builder(StatisticsStore.class).build()))
-            .thenReturn(future);
-
+        manager.writeStat(inputForWriting());
+        manager.writeStat(inputForWriting());
         StatRecords read = manager.readStats();
 
         Assert.assertEquals(statRecords, read);
     }
 
     @Test
-    public void testReadStats_throwsException() throws ExecutionException, InterruptedException {
-        CheckedFuture<Optional<StatisticsStore>, ReadFailedException> future = mock(CheckedFuture.class);
-        when(future.get()).thenThrow(new RuntimeException(READING_EXCEPTION_MSG));
+    public void testReadStats_replacedRecordsSubtracted() {
+        manager = new StatisticsManagerImpl(dataBroker, 1);
+
+        manager.writeStat(inputForWriting());
+        manager.writeStat(inputForWriting());
+        StatRecords read = manager.readStats();
+
+        Assert.assertEquals(inputForWriting(), read);
+        StatisticRecordKey key0 = new StatisticRecordKey(new RecordId(0l));
+        StatisticRecordKey key1 = new StatisticRecordKey(new RecordId(1l));
+        verify(wtx).put(LogicalDatastoreType.OPERATIONAL, IidFactory.statisticRecordIid(key0),
+                outputForWriting(key0), true);
+        verify(wtx).put(LogicalDatastoreType.OPERATIONAL, IidFactory.statisticRecordIid(key1),
+                outputForWriting(key1), true);
+        verify(wtx).delete(LogicalDatastoreType.OPERATIONAL, IidFactory.statisticRecordIid(key0));
+    }
+
+    @Test
+    public void testWriteStat_failedSubmitNotCounted() {
+        when(wtx.submit()).thenReturn(Futures.<Void, TransactionCommitFailedException>immediateFailedCheckedFuture(
+                new TransactionCommitFailedException("test")));
+
+        Assert.assertFalse(manager.writeStat(inputForWriting()));
+        Assert.assertEquals(0, manager.getCountersSize());
+        Assert.assertTrue(manager.readStats().getEpToEpStatistic().isEmpty());
+    }
+
+    @Test
+    public void testInit_existingRecordsLoaded() {
+        StatisticRecordKey key5 = new StatisticRecordKey(new RecordId(5l));
+        StatisticRecordKey key7 = new StatisticRecordKey(new RecordId(7l));
+        mockReadStatisticsStore(new StatisticsStoreBuilder()
+            .setStatisticRecord(Arrays.asList(outputForWriting(key7), outputForWriting(key5)))
+            .build());
+
+        manager = new StatisticsManagerImpl(dataBroker, 1);
+        // only the newest record fits to the ring
+        verify(wtx).delete(LogicalDatastoreType.OPERATIONAL, IidFactory.statisticRecordIid(key5));
+        Assert.assertEquals(inputForWriting(), manager.readStats());
+
+        manager.writeStat(inputForWriting());
+        StatisticRecordKey key8 = new StatisticRecordKey(new RecordId(8l));
+        verify(wtx).put(LogicalDatastoreType.OPERATIONAL, IidFactory.statisticRecordIid(key8),
+                outputForWriting(key8), true);
+        verify(wtx).delete(LogicalDatastoreType.OPERATIONAL, IidFactory.statisticRecordIid(key7));
+        Assert.assertEquals(inputForWriting(), manager.readStats());
+    }
+
+    private void mockReadStatisticsStore(StatisticsStore store) {
         when(rtx.read(LogicalDatastoreType.OPERATIONAL, InstanceIdentifier.builder(StatisticsStore.class).build()))
-            .thenReturn(future);
+            .thenReturn(Futures.<Optional<StatisticsStore>, ReadFailedException>immediateCheckedFuture(
+                    Optional.fromNullable(store)));
+    }
+
+    @Test
+    public void testWriteStat_countersOfReplacedRecordsRemoved() {
+        manager = new StatisticsManagerImpl(dataBroker, 1);
 
-        thrown.expect(RuntimeException.class);
-        thrown.expectMessage(READING_EXCEPTION_MSG);
-        manager.readStats();
+        manager.writeStat(inputForWriting());
+        Assert.assertEquals(1, manager.getCountersSize());
+        srcMac = new MacAddress("00:00:00:00:00:03");
+        manager.writeStat(inputForWriting());
+        Assert.assertEquals(1, manager.getCountersSize());
+
+        Assert.assertEquals(inputForWriting(), manager.readStats());
     }
 
-    private List<StatisticRecord> inputForReading() {
-        SrcEndpointBuilder srcBuilder = new SrcEndpointBuilder();
-        DstEndpointBuilder dstBuilder = new DstEndpointBuilder();
-        srcBuilder.setMacAddress(srcMac).setL2Context(srcL2C).setTenant(srcTenant);
-        dstBuilder.setMacAddress(dstMac).setL2Context(dstL2C).setTenant(dstTenant);
-        srcBuilder.setEndpointGroup(srcEPG);
-        dstBuilder.setEndpointGroup(dstEPG);
-        StatisticBuilder statBuilder = new StatisticBuilder().setKey(new StatisticKey(contract, rule, subject))
-            .setContract(contract)
-            .setRule(rule)
-            .setSubject(subject)
-            .setClassifier(Collections.singletonList(classifier))
-            .setAction(Collections.singletonList(action))
-            .setByteCount(25l)
-            .setPacketCount(5l);
-        StatisticRecordKey key = new StatisticRecordKey(new RecordId(0l));
-        StatisticRecordBuilder statRecord = new StatisticRecordBuilder().setKey(key)
-            .setStatistic(Collections.singletonList(statBuilder.build()))
-            .setSrcEndpoint(srcBuilder.build())
-            .setDstEndpoint(dstBuilder.build());
-        List<StatisticRecord> stats = new ArrayList<>();
-        stats.add(statRecord.build());
-        statRecord.setKey(new StatisticRecordKey(new RecordId(1l)));
-        stats.add(statRecord.build());
+    @Test
+    public void testReadStats_empty() {
+        StatRecords read = manager.readStats();
 
-        return stats;
+        Assert.assertTrue(read.getEpToEpStatistic().isEmpty());
     }
 
     private StatRecords outputForReading() {
@@ -45,6 +45,7 @@ public class OfContext {
     private final EndpointManager epManager;
     private final Map<TenantId, IndexedTenant> resolvedTenants = new HashMap<>();
     private PolicyInfo policyInfo;
+    private long policyVersion = -1;
 
     private final ScheduledExecutorService executor;
 
@@ -72,12 +73,28 @@ public class OfContext {
         }
     }
 
+    /**
+     * Creates context with tenants and policy of the snapshot. Nothing is read from datastore.
+     */
+    public OfContext(DataBroker dataBroker, PolicyManager policyManager, SwitchManager switchManager,
+            EndpointManager endpointManager, ScheduledExecutorService executor, PolicyInfoCache.Snapshot snapshot) {
+        this.dataBroker = dataBroker;
+        this.policyManager = policyManager;
+        this.switchManager = switchManager;
+        this.epManager = endpointManager;
+        this.executor = executor;
+        this.resolvedTenants.putAll(snapshot.getResolvedTenants());
+        this.policyInfo = snapshot.getPolicyInfo();
+        this.policyVersion = snapshot.getVersion();
+    }
+
     @VisibleForTesting
     void addTenantAndResolvePolicy(Tenant unresolvedTenant) {
         Tenant t = InheritanceUtils.resolveTenant(unresolvedTenant);
         IndexedTenant it = new IndexedTenant(t);
         resolvedTenants.put(unresolvedTenant.getId(), it);
         policyInfo = resolvePolicy(resolvedTenants);
+        policyVersion = -1;
     }
 
     private static PolicyInfo resolvePolicy(Map<TenantId, IndexedTenant> resolvedTenants) {
@@ -127,6 +144,14 @@ public class OfContext {
         return policyInfo;
     }
 
+    /**
+     * @return version of {@link PolicyInfoCache} the policy was resolved for or -1 if the policy
+     *         was not taken from the cache
+     */
+    public long getPolicyVersion() {
+        return policyVersion;
+    }
+
     public ScheduledExecutorService getExecutor() {
         return this.executor;
     }
@@ -15,6 +15,8 @@ import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -35,12 +37,16 @@ import org.opendaylight.controller.md.sal.binding.api.ReadWriteTransaction;
 import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
 import org.opendaylight.controller.md.sal.common.api.data.TransactionCommitFailedException;
 import org.opendaylight.groupbasedpolicy.renderer.ofoverlay.equivalence.EquivalenceFabric;
+import org.opendaylight.groupbasedpolicy.renderer.ofoverlay.equivalence.HashedWrapper;
 import org.opendaylight.groupbasedpolicy.renderer.ofoverlay.flow.FlowUtils;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.FlowCapableNode;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.FlowId;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.tables.Table;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.tables.TableBuilder;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.tables.table.Flow;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.tables.table.FlowBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.tables.table.FlowKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.types.rev131026.flow.Match;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.types.rev131026.flow.MatchBuilder;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.group.types.rev131018.GroupId;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.group.types.rev131018.GroupTypes;
@@ -55,7 +61,7 @@ import org.slf4j.LoggerFactory;
 
 public class OfWriter {
 
-    private final ConcurrentMap<InstanceIdentifier<Table>, TableBuilder> flowMap =
+    private final ConcurrentMap<InstanceIdentifier<Table>, TableFlows> flowMap =
             new ConcurrentHashMap<>();
     private final ConcurrentMap<InstanceIdentifier<Group>, GroupBuilder> groupByIid =
             new ConcurrentHashMap<>();
@@ -63,17 +69,68 @@ public class OfWriter {
 
     private static final Logger LOG = LoggerFactory.getLogger(OfWriter.class);
 
+    /**
+     * Maximal number of flow deletes and puts submitted in one transaction
+     */
+    static final int MAX_FLOW_OPERATIONS_PER_TX = 1000;
+
+    /**
+     * Flows of one table indexed by flow equivalence in order in which they were written. Hash of
+     * each flow is computed only once, when the flow is written. Flow IDs are checked for
+     * collisions - one ID used by flows with different matches.
+     */
+    private static final class TableFlows {
+
+        private final short tableId;
+        private final Set<HashedWrapper<Flow>> wrappedFlows = new LinkedHashSet<>();
+        private final Map<FlowId, Match> matchByFlowId = new HashMap<>();
+
+        private TableFlows(short tableId) {
+            this.tableId = tableId;
+        }
+
+        /**
+         * @return {@code false} if an equivalent flow already exists in the table
+         */
+        private boolean add(Flow flow) {
+            if (!wrappedFlows.add(HashedWrapper.wrap(EquivalenceFabric.FLOW_EQUIVALENCE, flow))) {
+                return false;
+            }
+            if (flow.getId() != null) {
+                Match previousMatch = matchByFlowId.put(flow.getId(), flow.getMatch());
+                if (previousMatch != null
+                        && !EquivalenceFabric.MATCH_EQUIVALENCE.equivalent(previousMatch, flow.getMatch())) {
+                    LOG.warn("Flow id {} in table {} is used by flows with different matches: {} and {}",
+                            flow.getId().getValue(), tableId, previousMatch, flow.getMatch());
+                }
+            }
+            return true;
+        }
+
+        private TableBuilder toTableBuilder() {
+            List<Flow> flows = new ArrayList<>(wrappedFlows.size());
+            for (HashedWrapper<Flow> wrappedFlow : wrappedFlows) {
+                flows.add(wrappedFlow.get());
+            }
+            return new TableBuilder().setId(tableId).setFlow(flows);
+        }
+    }
+
     public Table getTableForNode(NodeId nodeId, short tableId) {
-        return getTableBuilderForNode(nodeId, tableId).build();
+        return getTableFlowsForNode(nodeId, tableId).toTableBuilder().build();
     }
 
-    private TableBuilder getTableBuilderForNode(NodeId nodeId, short tableId) {
+    private TableFlows getTableFlowsForNode(NodeId nodeId, short tableId) {
         InstanceIdentifier<Table> tableIid = FlowUtils.createTablePath(nodeId, tableId);
-        if (this.flowMap.get(tableIid) == null) {
-            this.flowMap.put(tableIid,
-                    new TableBuilder().setId(tableId).setFlow(new ArrayList<Flow>()));
+        TableFlows tableFlows = flowMap.get(tableIid);
+        if (tableFlows == null) {
+            TableFlows newTableFlows = new TableFlows(tableId);
+            tableFlows = flowMap.putIfAbsent(tableIid, newTableFlows);
+            if (tableFlows == null) {
+                tableFlows = newTableFlows;
+            }
         }
-        return this.flowMap.get(tableIid);
+        return tableFlows;
     }
 
     public boolean groupExists(NodeId nodeId, long groupId) {
@@ -173,17 +230,8 @@ public class OfWriter {
         if (flow.getMatch() == null) {
             flow = new FlowBuilder(flow).setMatch(new MatchBuilder().build()).build();
         }
-        TableBuilder tableBuilder = this.getTableBuilderForNode(nodeId, tableId);
-        // transforming List<Flow> to Set (with customized equals/hashCode) to eliminate duplicate entries
-        List<Flow> flows = tableBuilder.getFlow();
-        Set<Equivalence.Wrapper<Flow>> wrappedFlows = new HashSet<>(
-                Collections2.transform(flows, EquivalenceFabric.FLOW_WRAPPER_FUNCTION));
-
-        Equivalence.Wrapper<Flow> wFlow = EquivalenceFabric.FLOW_EQUIVALENCE.wrap(flow);
-
-        if (!wrappedFlows.contains(wFlow)) {
-            tableBuilder.getFlow().add(flow);
-        } else {
+        // table index uses customized equals/hashCode to eliminate duplicate entries
+        if (!getTableFlowsForNode(nodeId, tableId).add(flow)) {
             LOG.debug("Flow already exists in OfData - {}", flow);
         }
     }
@@ -192,14 +240,27 @@ public class OfWriter {
      * Update groups and flows on every node
      * Only flows created by gbp - which are present in actualFlowMap - can be removed. It ensures no other flows
      * are deleted
-     * Newly created flows are returned and will be used as actual in next update
+     * Newly created flows are returned and will be used as actual in next update. Flows are wrapped
+     * together with their hash by {@link EquivalenceFabric#FLOW_EQUIVALENCE}.
+     * A flow is written only if there was no flow with the same id in the table or if the flow with
+     * the same id is not equivalent. Hashes are compared first and the equivalence is evaluated only
+     * when they are equal, so a hash collision cannot hide a changed flow. Flows of tables which are
+     * not written anymore are deleted. Deletes and puts of all tables are submitted in transactions
+     * of at most {@link #MAX_FLOW_OPERATIONS_PER_TX} operations. The transactions are independent,
+     * so only operations of committed transactions are applied to the returned flows. Flows of a
+     * failed transaction stay as they were in actualFlowMap and are written or deleted again by next
+     * update.
      *
-     * @param actualFlowMap map of flows which are currently present on all nodes
-     * @return map of newly created flows. These flows will be "actual" in next update
+     * @param actualFlowMap flows by flow id which are currently present in tables
+     * @return flows present in tables after the commit. These flows will be "actual" in next update
      */
-    public Map<InstanceIdentifier<Table>, TableBuilder> commitToDataStore(DataBroker dataBroker,
-                                                                          Map<InstanceIdentifier<Table>, TableBuilder> actualFlowMap) {
-        Map<InstanceIdentifier<Table>, TableBuilder> actualFlows = new HashMap<>();
+    public Map<InstanceIdentifier<Table>, Map<FlowId, HashedWrapper<Flow>>> commitToDataStore(DataBroker dataBroker,
+            Map<InstanceIdentifier<Table>, Map<FlowId, HashedWrapper<Flow>>> actualFlowMap) {
+        Map<InstanceIdentifier<Table>, Map<FlowId, HashedWrapper<Flow>>> actualFlows = new HashMap<>();
+        for (Map.Entry<InstanceIdentifier<Table>, Map<FlowId, HashedWrapper<Flow>>> actualEntry : actualFlowMap
+            .entrySet()) {
+            actualFlows.put(actualEntry.getKey(), new HashMap<>(actualEntry.getValue()));
+        }
         if (dataBroker != null) {
 
             for (NodeId nodeId : groupIdsByNode.keySet()) {
@@ -210,86 +271,155 @@ public class OfWriter {
                 }
             }
 
-            for (Map.Entry<InstanceIdentifier<Table>, TableBuilder> newEntry : flowMap.entrySet()) {
-                try {
-                    // Get actual flows on the same node/table
-                    Map.Entry<InstanceIdentifier<Table>, TableBuilder> actualEntry = null;
-                    for (Map.Entry<InstanceIdentifier<Table>, TableBuilder> a : actualFlowMap.entrySet()) {
-                        if (a.getKey().equals(newEntry.getKey())) {
-                            actualEntry = a;
-                        }
-                    }
-                    // Get the currently configured flows for this table
-                    updateFlowTable(dataBroker, newEntry, actualEntry);
-                    actualFlows.put(newEntry.getKey(), newEntry.getValue());
-                } catch (Exception e) {
-                    LOG.warn("Couldn't read flow table {}", newEntry.getKey());
+            FlowTxBatch txBatch = new FlowTxBatch(dataBroker);
+            for (Map.Entry<InstanceIdentifier<Table>, Map<FlowId, HashedWrapper<Flow>>> actualEntry : actualFlowMap
+                .entrySet()) {
+                if (!flowMap.containsKey(actualEntry.getKey())) {
+                    updateFlowTable(txBatch, actualEntry.getKey(), null, actualEntry.getValue());
                 }
             }
+            for (Map.Entry<InstanceIdentifier<Table>, TableFlows> newEntry : flowMap.entrySet()) {
+                Map<FlowId, HashedWrapper<Flow>> actualTable = actualFlowMap.get(newEntry.getKey());
+                updateFlowTable(txBatch, newEntry.getKey(), newEntry.getValue(), actualTable);
+            }
+            txBatch.submitAndApply(actualFlows);
+        }
+        Iterator<Map<FlowId, HashedWrapper<Flow>>> tableIterator = actualFlows.values().iterator();
+        while (tableIterator.hasNext()) {
+            if (tableIterator.next().isEmpty()) {
+                tableIterator.remove();
+            }
         }
         return actualFlows;
     }
 
-    private void updateFlowTable(DataBroker dataBroker, Map.Entry<InstanceIdentifier<Table>, TableBuilder> desiredFlowMap,
-                                 Map.Entry<InstanceIdentifier<Table>, TableBuilder> actualFlowMap)
-            throws ExecutionException, InterruptedException {
+    /**
+     * Adds deletes of actual flows which are not desired anymore and puts of desired flows which
+     * are new or changed.
+     */
+    private static void updateFlowTable(FlowTxBatch txBatch, InstanceIdentifier<Table> tableIid,
+            @Nullable TableFlows desiredTableFlows, @Nullable Map<FlowId, HashedWrapper<Flow>> actualTable) {
+        Set<FlowId> desiredFlowIds = new HashSet<>();
+        if (desiredTableFlows != null) {
+            for (HashedWrapper<Flow> wrappedFlow : desiredTableFlows.wrappedFlows) {
+                FlowId flowId = wrappedFlow.get().getId();
+                desiredFlowIds.add(flowId);
+                HashedWrapper<Flow> actualFlow = actualTable == null ? null : actualTable.get(flowId);
+                // hashes cached when the flows were written are compared before flow equivalence
+                if (actualFlow == null || !actualFlow.equals(wrappedFlow)) {
+                    txBatch.put(tableIid, wrappedFlow);
+                }
+            }
+        }
+        if (actualTable != null) {
+            // All gbp flows which are not updated will be removed
+            for (FlowId flowId : actualTable.keySet()) {
+                if (!desiredFlowIds.contains(flowId)) {
+                    txBatch.delete(tableIid, flowId);
+                }
+            }
+        }
+    }
+
+    /**
+     * Collects flow deletes and puts to transactions. Transaction is submitted when it contains
+     * {@link OfWriter#MAX_FLOW_OPERATIONS_PER_TX} operations. Operations of each transaction are
+     * remembered so they can be applied to actual flows once the transaction is committed.
+     */
+    private static final class FlowTxBatch {
 
-        // Actual state
-        List<Flow> actualFlows = new ArrayList<>();
-        if (actualFlowMap != null && actualFlowMap.getValue() != null) {
-            actualFlows = actualFlowMap.getValue().getFlow();
+        private final DataBroker dataBroker;
+        private final List<SubmittedFlowTx> submittedTxs = new ArrayList<>();
+        private ReadWriteTransaction tx;
+        // written flows by flow path, null stands for deleted flow
+        private Map<InstanceIdentifier<Flow>, HashedWrapper<Flow>> operations = new HashMap<>();
+
+        private FlowTxBatch(DataBroker dataBroker) {
+            this.dataBroker = dataBroker;
         }
-        // New state
-        List<Flow> desiredFlows = new ArrayList<>(desiredFlowMap.getValue().getFlow());
 
-        // Sets with custom equivalence rules
-        Set<Equivalence.Wrapper<Flow>> wrappedActualFlows = new HashSet<>(
-                Collections2.transform(actualFlows, EquivalenceFabric.FLOW_WRAPPER_FUNCTION));
-        Set<Equivalence.Wrapper<Flow>> wrappedDesiredFlows = new HashSet<>(
-                Collections2.transform(desiredFlows, EquivalenceFabric.FLOW_WRAPPER_FUNCTION));
+        private void put(InstanceIdentifier<Table> tableIid, HashedWrapper<Flow> wrappedFlow) {
+            InstanceIdentifier<Flow> flowIid = FlowUtils.createFlowPath(tableIid, wrappedFlow.get().getId());
+            getTx().put(LogicalDatastoreType.CONFIGURATION, flowIid, wrappedFlow.get(), true);
+            operations.put(flowIid, wrappedFlow);
+            submitIfFull();
+        }
 
-        // All gbp flows which are not updated will be removed
-        Sets.SetView<Equivalence.Wrapper<Flow>> deletions = Sets.difference(wrappedActualFlows, wrappedDesiredFlows);
-        // New flows (they were not there before)
-        Sets.SetView<Equivalence.Wrapper<Flow>> additions = Sets.difference(wrappedDesiredFlows, wrappedActualFlows);
+        private void delete(InstanceIdentifier<Table> tableIid, FlowId flowId) {
+            InstanceIdentifier<Flow> flowIid = FlowUtils.createFlowPath(tableIid, flowId);
+            getTx().delete(LogicalDatastoreType.CONFIGURATION, flowIid);
+            operations.put(flowIid, null);
+            submitIfFull();
+        }
 
-        final InstanceIdentifier<Table> tableIid = desiredFlowMap.getKey();
-        ReadWriteTransaction t = dataBroker.newReadWriteTransaction();
+        private ReadWriteTransaction getTx() {
+            if (tx == null) {
+                tx = dataBroker.newReadWriteTransaction();
+            }
+            return tx;
+        }
 
-        if (!deletions.isEmpty()) {
-            for (Equivalence.Wrapper<Flow> wf : deletions) {
-                Flow f = wf.get();
-                if (f != null) {
-                    t.delete(LogicalDatastoreType.CONFIGURATION,
-                            FlowUtils.createFlowPath(tableIid, f.getId()));
-                }
+        private void submitIfFull() {
+            if (operations.size() >= MAX_FLOW_OPERATIONS_PER_TX) {
+                submit();
             }
         }
-        if (!additions.isEmpty()) {
-            for (Equivalence.Wrapper<Flow> wf : additions) {
-                Flow f = wf.get();
-                if (f != null) {
-                    if (f.getMatch() == null) {
-                        f = new FlowBuilder(f).setMatch(new MatchBuilder().build()).build();
+
+        private void submit() {
+            if (tx == null) {
+                return;
+            }
+            submittedTxs.add(new SubmittedFlowTx(tx.submit(), operations));
+            tx = null;
+            operations = new HashMap<>();
+        }
+
+        /**
+         * Submits the last transaction, waits for all submitted transactions and applies operations
+         * of committed transactions to actual flows.
+         */
+        private void submitAndApply(Map<InstanceIdentifier<Table>, Map<FlowId, HashedWrapper<Flow>>> actualFlows) {
+            submit();
+            for (int txNumber = 0; txNumber < submittedTxs.size(); txNumber++) {
+                SubmittedFlowTx submittedTx = submittedTxs.get(txNumber);
+                try {
+                    submittedTx.future.checkedGet();
+                } catch (TransactionCommitFailedException e) {
+                    LOG.error("Could not write {} flow operations in transaction {}: {}",
+                            submittedTx.operations.size(), txNumber + 1, e);
+                    continue;
+                }
+                LOG.debug("{} flow operations written in transaction {}.", submittedTx.operations.size(),
+                        txNumber + 1);
+                for (Map.Entry<InstanceIdentifier<Flow>, HashedWrapper<Flow>> operation : submittedTx.operations
+                    .entrySet()) {
+                    InstanceIdentifier<Table> tableIid = operation.getKey().firstIdentifierOf(Table.class);
+                    FlowId flowId = operation.getKey().firstKeyOf(Flow.class, FlowKey.class).getId();
+                    Map<FlowId, HashedWrapper<Flow>> actualTable = actualFlows.get(tableIid);
+                    if (actualTable == null) {
+                        actualTable = new HashMap<>();
+                        actualFlows.put(tableIid, actualTable);
+                    }
+                    if (operation.getValue() == null) {
+                        actualTable.remove(flowId);
+                    } else {
+                        actualTable.put(flowId, operation.getValue());
                     }
-                    t.put(LogicalDatastoreType.CONFIGURATION,
-                            FlowUtils.createFlowPath(tableIid, f.getId()), f, true);
                 }
             }
         }
-        CheckedFuture<Void, TransactionCommitFailedException> f = t.submit();
-        Futures.addCallback(f, new FutureCallback<Void>() {
+    }
 
-            @Override
-            public void onFailure(Throwable t) {
-                LOG.error("Could not write flow table {}: {}", tableIid, t);
-            }
+    private static final class SubmittedFlowTx {
 
-            @Override
-            public void onSuccess(Void result) {
-                LOG.debug("Flow table {} updated.", tableIid);
-            }
-        });
+        private final CheckedFuture<Void, TransactionCommitFailedException> future;
+        private final Map<InstanceIdentifier<Flow>, HashedWrapper<Flow>> operations;
+
+        private SubmittedFlowTx(CheckedFuture<Void, TransactionCommitFailedException> future,
+                Map<InstanceIdentifier<Flow>, HashedWrapper<Flow>> operations) {
+            this.future = future;
+            this.operations = operations;
+        }
     }
 
     private void updateGroups(DataBroker dataBroker, final NodeId nodeId)
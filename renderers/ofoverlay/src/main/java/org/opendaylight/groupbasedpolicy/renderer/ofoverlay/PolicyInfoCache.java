@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2016 Cisco Systems, Inc. and others. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.opendaylight.groupbasedpolicy.renderer.ofoverlay;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import org.opendaylight.controller.md.sal.binding.api.DataBroker;
+import org.opendaylight.controller.md.sal.binding.api.DataObjectModification;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeIdentifier;
+import org.opendaylight.controller.md.sal.binding.api.ReadOnlyTransaction;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.groupbasedpolicy.dto.IndexedTenant;
+import org.opendaylight.groupbasedpolicy.dto.PolicyInfo;
+import org.opendaylight.groupbasedpolicy.util.DataStoreHelper;
+import org.opendaylight.groupbasedpolicy.util.DataTreeChangeHandler;
+import org.opendaylight.groupbasedpolicy.util.PolicyResolverUtils;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.common.rev140421.TenantId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.policy.rev140421.Tenants;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.policy.rev140421.tenants.Tenant;
+import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Keeps resolved tenants from OPERATIONAL datastore and policy resolved from them. Tenants are
+ * read from datastore only once and then updated from tenant changes. Each change of tenants or of
+ * resolved policy creates a new version. Policy is resolved lazily, at most once per version, and
+ * the {@link Snapshot} of the version is shared read-only by all flow updates.
+ */
+public class PolicyInfoCache extends DataTreeChangeHandler<Tenant> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PolicyInfoCache.class);
+    private static final InstanceIdentifier<Tenants> TENANTS_IID = InstanceIdentifier.builder(Tenants.class).build();
+
+    // guarded by this
+    private final Map<TenantId, IndexedTenant> resolvedTenants = new HashMap<>();
+    private boolean tenantsRead;
+    private long version;
+    private Snapshot snapshot;
+
+    /**
+     * Immutable tenants and policy of one version of {@link PolicyInfoCache}
+     */
+    public static final class Snapshot {
+
+        private final long version;
+        private final ImmutableMap<TenantId, IndexedTenant> resolvedTenants;
+        private final PolicyInfo policyInfo;
+
+        private Snapshot(long version, ImmutableMap<TenantId, IndexedTenant> resolvedTenants,
+                @Nullable PolicyInfo policyInfo) {
+            this.version = version;
+            this.resolvedTenants = resolvedTenants;
+            this.policyInfo = policyInfo;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public ImmutableMap<TenantId, IndexedTenant> getResolvedTenants() {
+            return resolvedTenants;
+        }
+
+        /**
+         * @return resolved policy or {@code null} if there are no tenants
+         */
+        public @Nullable PolicyInfo getPolicyInfo() {
+            return policyInfo;
+        }
+    }
+
+    public PolicyInfoCache(DataBroker dataProvider) {
+        super(dataProvider);
+        registerDataTreeChangeListener(new DataTreeIdentifier<>(LogicalDatastoreType.OPERATIONAL,
+                InstanceIdentifier.builder(Tenants.class).child(Tenant.class).build()));
+    }
+
+    /**
+     * @return snapshot of current version, policy is resolved if it was not resolved for the
+     *         version yet
+     */
+    public synchronized Snapshot getSnapshot() {
+        if (!tenantsRead) {
+            readTenants();
+        }
+        if (snapshot == null) {
+            ImmutableMap<TenantId, IndexedTenant> tenants = ImmutableMap.copyOf(resolvedTenants);
+            PolicyInfo policyInfo = null;
+            if (!tenants.isEmpty()) {
+                policyInfo = PolicyResolverUtils.resolvePolicyInfo(ImmutableSet.copyOf(tenants.values()));
+            }
+            snapshot = new Snapshot(version, tenants, policyInfo);
+            LOG.debug("Policy resolved for version {} from {} tenants", version, tenants.size());
+        }
+        return snapshot;
+    }
+
+    private void readTenants() {
+        ReadOnlyTransaction rTx = dataProvider.newReadOnlyTransaction();
+        Optional<Tenants> potentialTenants = DataStoreHelper.readFromDs(LogicalDatastoreType.OPERATIONAL, TENANTS_IID, rTx);
+        rTx.close();
+        resolvedTenants.clear();
+        if (potentialTenants.isPresent() && potentialTenants.get().getTenant() != null) {
+            for (Tenant tenant : potentialTenants.get().getTenant()) {
+                resolvedTenants.put(tenant.getId(), new IndexedTenant(tenant));
+            }
+        }
+        tenantsRead = true;
+        invalidate();
+    }
+
+    /**
+     * Creates a new version, policy will be resolved again for the version
+     */
+    public synchronized void invalidate() {
+        version++;
+        snapshot = null;
+    }
+
+    @Override
+    protected synchronized void onWrite(DataObjectModification<Tenant> rootNode,
+            InstanceIdentifier<Tenant> rootIdentifier) {
+        Tenant tenant = rootNode.getDataAfter();
+        resolvedTenants.put(tenant.getId(), new IndexedTenant(tenant));
+        invalidate();
+    }
+
+    @Override
+    protected synchronized void onDelete(DataObjectModification<Tenant> rootNode,
+            InstanceIdentifier<Tenant> rootIdentifier) {
+        resolvedTenants.remove(rootIdentifier.firstKeyOf(Tenant.class).getId());
+        invalidate();
+    }
+
+    @Override
+    protected synchronized void onSubtreeModified(DataObjectModification<Tenant> rootNode,
+            InstanceIdentifier<Tenant> rootIdentifier) {
+        onWrite(rootNode, rootIdentifier);
+    }
+
+    @Override
+    public void close() {
+        if (registeredListener != null) {
+            super.close();
+        }
+    }
+
+}
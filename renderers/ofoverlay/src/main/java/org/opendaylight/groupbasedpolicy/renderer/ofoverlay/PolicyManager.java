@@ -12,15 +12,28 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
 
 import org.opendaylight.controller.md.sal.binding.api.ClusteredDataTreeChangeListener;
 import org.opendaylight.controller.md.sal.binding.api.DataBroker;
@@ -31,10 +44,14 @@ import org.opendaylight.controller.md.sal.binding.api.WriteTransaction;
 import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
 import org.opendaylight.groupbasedpolicy.dto.EgKey;
 import org.opendaylight.groupbasedpolicy.dto.EpKey;
+import org.opendaylight.groupbasedpolicy.dto.Policy;
+import org.opendaylight.groupbasedpolicy.dto.PolicyInfo;
 import org.opendaylight.groupbasedpolicy.renderer.ofoverlay.endpoint.EndpointManager;
+import org.opendaylight.groupbasedpolicy.renderer.ofoverlay.equivalence.HashedWrapper;
 import org.opendaylight.groupbasedpolicy.renderer.ofoverlay.flow.FlowUtils;
 import org.opendaylight.groupbasedpolicy.renderer.ofoverlay.flow.GroupTable;
 import org.opendaylight.groupbasedpolicy.renderer.ofoverlay.flow.OfTable;
+import org.opendaylight.groupbasedpolicy.renderer.ofoverlay.flow.OrdinalFactory;
 import org.opendaylight.groupbasedpolicy.renderer.ofoverlay.mapper.destination.DestinationMapper;
 import org.opendaylight.groupbasedpolicy.renderer.ofoverlay.mapper.egressnat.EgressNatMapper;
 import org.opendaylight.groupbasedpolicy.renderer.ofoverlay.mapper.external.ExternalMapper;
@@ -50,8 +67,10 @@ import org.opendaylight.groupbasedpolicy.util.IidFactory;
 import org.opendaylight.groupbasedpolicy.util.SingletonTask;
 import org.opendaylight.yang.gen.v1.urn.ericsson.params.xml.ns.yang.sfc.of.renderer.rev151123.SfcOfRendererConfig;
 import org.opendaylight.yang.gen.v1.urn.ericsson.params.xml.ns.yang.sfc.of.renderer.rev151123.SfcOfRendererConfigBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.FlowId;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.tables.Table;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.tables.TableBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.tables.table.Flow;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.common.rev140421.TenantId;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.endpoint.rev140421.endpoints.Endpoint;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.ofoverlay.rev140528.OfOverlayConfig.LearningMode;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.renderer.rev151103.renderers.renderer.interests.followed.tenants.followed.tenant.FollowedEndpointGroup;
@@ -65,9 +84,11 @@ import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Table.Cell;
 import com.google.common.util.concurrent.AsyncFunction;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -82,7 +103,29 @@ public class PolicyManager
 
     private static final Logger LOG = LoggerFactory.getLogger(PolicyManager.class);
 
-    private Map<InstanceIdentifier<Table>, TableBuilder> previousGbpFlows  = new HashMap<>();
+    /*
+     * Flows committed to each switch by last flow update, written only by the
+     * switch's task
+     */
+    private final ConcurrentMap<NodeId, Map<InstanceIdentifier<Table>, Map<FlowId, HashedWrapper<Flow>>>>
+            previousGbpFlowsByNode = new ConcurrentHashMap<>();
+
+    /*
+     * Dirty state accumulated from events since last flow update. Only flows of dirty nodes and of
+     * nodes with endpoints of dirty tenants are recomputed, unless full update is requested.
+     */
+    private final Set<NodeId> dirtyNodes = Collections.newSetFromMap(new ConcurrentHashMap<NodeId, Boolean>());
+    private final Set<TenantId> dirtyTenants = Collections.newSetFromMap(new ConcurrentHashMap<TenantId, Boolean>());
+    // tenant of each known endpoint, to find out which tenant is affected when the endpoint is removed
+    private final ConcurrentMap<EpKey, TenantId> tenantByEpKey = new ConcurrentHashMap<>();
+    private final AtomicBoolean fullUpdateRequested = new AtomicBoolean(true);
+
+    // flow update metrics
+    private final AtomicLong flowUpdateCount = new AtomicLong();
+    private final AtomicLong fullFlowUpdateCount = new AtomicLong();
+    private final AtomicLong totalRecomputedFlows = new AtomicLong();
+    private volatile int lastRecomputedNodes;
+    private volatile int lastRecomputedFlows;
 
     private short tableOffset;
     private static final short TABLEID_PORTSECURITY = 0;
@@ -99,6 +142,7 @@ public class PolicyManager
     private final EndpointManager endpointManager;
 
     private final ListenerRegistration<PolicyManager> registerDataTreeChangeListener;
+    private final PolicyInfoCache policyInfoCache;
 
     private final ScheduledExecutorService executor;
     private final SingletonTask flowUpdateTask;
@@ -110,6 +154,13 @@ public class PolicyManager
      */
     private final static int FLOW_UPDATE_DELAY = 250;
 
+    /**
+     * The period of full flow update on all switches in minutes. Full update reconciles flows
+     * which could be missed by incremental updates.
+     */
+    private final static int FULL_RECONCILE_PERIOD = 5;
+    private final ScheduledFuture<?> fullReconcileTask;
+
     public PolicyManager(DataBroker dataBroker, SwitchManager switchManager, EndpointManager endpointManager,
             ScheduledExecutorService executor, short tableOffset) {
         super();
@@ -130,8 +181,10 @@ public class PolicyManager
                     new DataTreeIdentifier<>(LogicalDatastoreType.OPERATIONAL,
                             InstanceIdentifier.builder(ResolvedPolicies.class).child(ResolvedPolicy.class).build()),
                     this);
+            policyInfoCache = new PolicyInfoCache(dataBroker);
         } else {
             registerDataTreeChangeListener = null;
+            policyInfoCache = null;
             LOG.error("DataBroker is null. Listener for {} was not registered.",
                     ResolvedPolicy.class.getCanonicalName());
         }
@@ -145,6 +198,13 @@ public class PolicyManager
         }
         flowUpdateTask = new SingletonTask(executor, new FlowUpdateTask());
         scheduleUpdate();
+        fullReconcileTask = executor.scheduleWithFixedDelay(new Runnable() {
+
+            @Override
+            public void run() {
+                scheduleFullUpdate();
+            }
+        }, FULL_RECONCILE_PERIOD, FULL_RECONCILE_PERIOD, TimeUnit.MINUTES);
 
         LOG.debug("Initialized OFOverlay policy manager");
     }
@@ -191,7 +251,7 @@ public class PolicyManager
 
             @Override
             public Void apply(Void tablesRemoved) {
-                scheduleUpdate();
+                scheduleFullUpdate();
                 return null;
             }
         });
@@ -293,18 +353,18 @@ public class PolicyManager
 
     @Override
     public void switchReady(final NodeId nodeId) {
-        scheduleUpdate();
+        scheduleUpdateOfReadySwitches(nodeId);
     }
 
     @Override
     public void switchRemoved(NodeId sw) {
         // XXX TODO purge switch flows
-        scheduleUpdate();
+        scheduleUpdateOfReadySwitches(sw);
     }
 
     @Override
     public void switchUpdated(NodeId sw) {
-        scheduleUpdate();
+        scheduleUpdateOfReadySwitches(sw);
     }
 
     // ****************
@@ -313,12 +373,29 @@ public class PolicyManager
 
     @Override
     public void endpointUpdated(EpKey epKey) {
+        Endpoint endpoint = endpointManager.getEndpoint(epKey);
+        if (endpoint == null || endpoint.getTenant() == null) {
+            TenantId removedTenant = tenantByEpKey.remove(epKey);
+            if (removedTenant != null) {
+                dirtyTenants.add(removedTenant);
+                scheduleUpdate();
+            } else {
+                // tenant of the endpoint is not known, any switch could have its flows
+                scheduleUpdateOfReadySwitches(null);
+            }
+            return;
+        }
+        TenantId previousTenant = tenantByEpKey.put(epKey, endpoint.getTenant());
+        if (previousTenant != null) {
+            dirtyTenants.add(previousTenant);
+        }
+        dirtyTenants.add(endpoint.getTenant());
         scheduleUpdate();
     }
 
     @Override
     public void nodeEndpointUpdated(NodeId nodeId, EpKey epKey) {
-        scheduleUpdate();
+        scheduleUpdate(nodeId);
     }
 
     @Override
@@ -333,6 +410,7 @@ public class PolicyManager
         wTx.put(LogicalDatastoreType.OPERATIONAL, IidFactory.followedEndpointgroupIid(OFOverlayRenderer.RENDERER_NAME,
                 egKey.getTenantId(), egKey.getEgId()), followedEpg, true);
         DataStoreHelper.submitToDs(wTx);
+        dirtyTenants.add(egKey.getTenantId());
         scheduleUpdate();
     }
 
@@ -342,9 +420,28 @@ public class PolicyManager
 
     @Override
     public void onDataTreeChanged(Collection<DataTreeModification<ResolvedPolicy>> changes) {
+        for (DataTreeModification<ResolvedPolicy> change : changes) {
+            addDirtyTenants(change.getRootNode().getDataBefore());
+            addDirtyTenants(change.getRootNode().getDataAfter());
+        }
+        if (policyInfoCache != null) {
+            policyInfoCache.invalidate();
+        }
         scheduleUpdate();
     }
 
+    private void addDirtyTenants(@Nullable ResolvedPolicy policy) {
+        if (policy == null) {
+            return;
+        }
+        if (policy.getConsumerTenantId() != null) {
+            dirtyTenants.add(policy.getConsumerTenantId());
+        }
+        if (policy.getProviderTenantId() != null) {
+            dirtyTenants.add(policy.getProviderTenantId());
+        }
+    }
+
     // *************
     // PolicyManager
     // *************
@@ -362,6 +459,30 @@ public class PolicyManager
     // Implementation
     // **************
 
+    private void scheduleUpdate(NodeId nodeId) {
+        dirtyNodes.add(nodeId);
+        scheduleUpdate();
+    }
+
+    /**
+     * Flows of other switches depend on the tunnel of the switch, therefore all ready switches are
+     * updated together with the switch.
+     */
+    private void scheduleUpdateOfReadySwitches(@Nullable NodeId nodeId) {
+        if (nodeId != null) {
+            dirtyNodes.add(nodeId);
+        }
+        if (switchManager != null) {
+            dirtyNodes.addAll(switchManager.getReadySwitches());
+        }
+        scheduleUpdate();
+    }
+
+    private void scheduleFullUpdate() {
+        fullUpdateRequested.set(true);
+        scheduleUpdate();
+    }
+
     private void scheduleUpdate() {
         if (switchManager != null) {
             LOG.trace("Scheduling flow update task");
@@ -370,41 +491,64 @@ public class PolicyManager
     }
 
     /**
-     * Update the flows on a particular switch
+     * Update the flows on a particular switch. Flows of the switch are written to its own
+     * {@link OfWriter} shard which is committed as soon as the pipeline is finished, independently
+     * of other switches.
      */
-    private class SwitchFlowUpdateTask implements Callable<Void> {
+    private class SwitchFlowUpdateTask implements Callable<Integer> {
 
-        private final OfWriter ofWriter;
+        private final OfContext ofCtx;
+        private final NodeId nodeId;
+        private final List<Endpoint> endpoints;
 
-        public SwitchFlowUpdateTask(OfWriter ofWriter) {
-            this.ofWriter = ofWriter;
+        public SwitchFlowUpdateTask(OfContext ofCtx, NodeId nodeId, List<Endpoint> endpoints) {
+            this.ofCtx = ofCtx;
+            this.nodeId = nodeId;
+            this.endpoints = endpoints;
         }
 
+        /**
+         * @return number of flows computed for the switch
+         */
         @Override
-        public Void call() throws Exception {
-            OfContext ofCtx = new OfContext(dataBroker, PolicyManager.this, switchManager, endpointManager, executor);
-            if (ofCtx.getCurrentPolicy() == null)
-                return null;
+        public Integer call() throws Exception {
+            OfWriter ofWriter = new OfWriter();
             List<? extends OfTable> flowPipeline = createFlowPipeline(ofCtx);
             for (OfTable table : flowPipeline) {
                 try {
-                    for (Endpoint endpoint : endpointManager.getEndpoints()) {
-                        if (switchManager.getReadySwitches().contains(endpointManager.getEndpointNodeId(endpoint))) {
-                            table.sync(endpoint, ofWriter);
-                        }
+                    for (Endpoint endpoint : endpoints) {
+                        table.sync(endpoint, ofWriter);
                     }
                 } catch (Exception e) {
-                    LOG.error("Failed to write Openflow table {}", table.getClass().getSimpleName(), e);
+                    LOG.error("Failed to write Openflow table {} on node {}", table.getClass().getSimpleName(),
+                            nodeId.getValue(), e);
                 }
             }
-
-            return null;
+            Map<InstanceIdentifier<Table>, Map<FlowId, HashedWrapper<Flow>>> previousGbpFlows =
+                    previousGbpFlowsByNode.get(nodeId);
+            if (previousGbpFlows == null) {
+                previousGbpFlows = new HashMap<>();
+            }
+            Map<InstanceIdentifier<Table>, Map<FlowId, HashedWrapper<Flow>>> gbpFlows =
+                    ofWriter.commitToDataStore(dataBroker, previousGbpFlows);
+            if (gbpFlows.isEmpty()) {
+                previousGbpFlowsByNode.remove(nodeId);
+            } else {
+                previousGbpFlowsByNode.put(nodeId, gbpFlows);
+            }
+            int flowCount = 0;
+            for (Map<FlowId, HashedWrapper<Flow>> table : gbpFlows.values()) {
+                flowCount += table.size();
+            }
+            return flowCount;
         }
     }
 
     /**
-     * Update all flows on all switches as needed. Note that this will block
-     * one of the threads on the executor.
+     * Update flows on switches affected by events since last update, or on all switches if full
+     * update was requested. Flows of each switch are computed and committed by a separate task.
+     * Note that this will block one of the threads on the executor until tasks of all switches are
+     * finished.
      */
     private class FlowUpdateTask implements Runnable {
 
@@ -412,31 +556,196 @@ public class PolicyManager
         public void run() {
             LOG.debug("Beginning flow update task");
 
-            CompletionService<Void> ecs = new ExecutorCompletionService<>(executor);
+            boolean fullUpdate = fullUpdateRequested.getAndSet(false);
+            Set<NodeId> updatedNodes = drain(dirtyNodes);
+            Set<TenantId> updatedTenants = drain(dirtyTenants);
+            OfContext ofCtx;
+            if (policyInfoCache != null) {
+                ofCtx = new OfContext(dataBroker, PolicyManager.this, switchManager, endpointManager, executor,
+                        policyInfoCache.getSnapshot());
+            } else {
+                ofCtx = new OfContext(dataBroker, PolicyManager.this, switchManager, endpointManager, executor);
+            }
+            if (ofCtx.getCurrentPolicy() == null) {
+                LOG.debug("Flow update skipped, there is no policy");
+                // nothing was computed therefore everything has to be computed once there is policy
+                fullUpdateRequested.set(true);
+                return;
+            }
+            addPeerTenants(updatedTenants, ofCtx.getCurrentPolicy());
+            Map<NodeId, List<Endpoint>> endpointsByNode = new HashMap<>();
+            // immutable snapshot with constant time lookup
+            Collection<NodeId> readySwitches = switchManager.getReadySwitches();
+            for (Endpoint endpoint : endpointManager.getEndpoints()) {
+                NodeId nodeId = endpointManager.getEndpointNodeId(endpoint);
+                if (nodeId == null || !readySwitches.contains(nodeId)) {
+                    continue;
+                }
+                if (endpoint.getTenant() != null && updatedTenants.contains(endpoint.getTenant())) {
+                    updatedNodes.add(nodeId);
+                }
+                List<Endpoint> nodeEndpoints = endpointsByNode.get(nodeId);
+                if (nodeEndpoints == null) {
+                    nodeEndpoints = new ArrayList<>();
+                    endpointsByNode.put(nodeId, nodeEndpoints);
+                }
+                nodeEndpoints.add(endpoint);
+            }
+            // flows of switches without endpoints are removed
+            for (NodeId nodeId : previousGbpFlowsByNode.keySet()) {
+                if (!endpointsByNode.containsKey(nodeId)) {
+                    endpointsByNode.put(nodeId, Collections.<Endpoint>emptyList());
+                    updatedNodes.add(nodeId);
+                }
+            }
+            // ordinals not used by flows computed in this epoch are released after full update
+            long ordinalEpoch = fullUpdate ? OrdinalFactory.startEpoch() : 0;
+
+            CompletionService<Integer> ecs = new ExecutorCompletionService<>(executor);
+            Map<Future<Integer>, NodeId> nodeIdByTask = new HashMap<>();
+            for (Entry<NodeId, List<Endpoint>> entry : endpointsByNode.entrySet()) {
+                if (!fullUpdate && !updatedNodes.contains(entry.getKey())) {
+                    continue;
+                }
+                nodeIdByTask.put(ecs.submit(new SwitchFlowUpdateTask(ofCtx, entry.getKey(), entry.getValue())),
+                        entry.getKey());
+            }
+            int recomputedFlows = 0;
+            boolean failed = false;
+            for (int i = 0; i < nodeIdByTask.size(); i++) {
+                Future<Integer> task = null;
+                try {
+                    task = ecs.take();
+                    recomputedFlows += task.get();
+                } catch (InterruptedException e) {
+                    LOG.error("Interrupted while updating flow tables", e);
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (ExecutionException e) {
+                    NodeId nodeId = nodeIdByTask.get(task);
+                    LOG.error("Failed to update flow tables on node {}", nodeId, e);
+                    // previous flows of the node are kept so that flows which are not desired
+                    // anymore are still removed when the node is recomputed by next update
+                    dirtyNodes.add(nodeId);
+                    failed = true;
+                }
+            }
+            flowUpdateCount.incrementAndGet();
+            if (fullUpdate) {
+                fullFlowUpdateCount.incrementAndGet();
+                if (!failed) {
+                    OrdinalFactory.releaseUnusedOrdinals(ordinalEpoch);
+                }
+            }
+            totalRecomputedFlows.addAndGet(recomputedFlows);
+            lastRecomputedNodes = nodeIdByTask.size();
+            lastRecomputedFlows = recomputedFlows;
+            LOG.debug("Flow update completed, full update: {}, recomputed {} flows on {} of {} nodes", fullUpdate,
+                    recomputedFlows, nodeIdByTask.size(), endpointsByNode.size());
+        }
+    }
+
+    /**
+     * Runs flow update in the calling thread
+     */
+    @VisibleForTesting
+    void updateFlows() {
+        new FlowUpdateTask().run();
+    }
 
-            OfWriter ofWriter = new OfWriter();
+    @VisibleForTesting
+    Map<NodeId, Map<InstanceIdentifier<Table>, Map<FlowId, HashedWrapper<Flow>>>> getPreviousGbpFlowsByNode() {
+        return previousGbpFlowsByNode;
+    }
+
+    @VisibleForTesting
+    Set<NodeId> getDirtyNodes() {
+        return dirtyNodes;
+    }
 
-            SwitchFlowUpdateTask swut = new SwitchFlowUpdateTask(ofWriter);
-            ecs.submit(swut);
-
-            try {
-                ecs.take().get();
-                // Current gbp flow must be independent, find out where this run() ends,
-                // set flows to one field and reset another
-                Map<InstanceIdentifier<Table>, TableBuilder> actualGbpFlows = new HashMap<>();
-                actualGbpFlows.putAll(ofWriter.commitToDataStore(dataBroker, previousGbpFlows));
-                previousGbpFlows = actualGbpFlows;
-            } catch (InterruptedException | ExecutionException e) {
-                LOG.error("Failed to update flow tables", e);
+    @VisibleForTesting
+    Set<TenantId> getDirtyTenants() {
+        return dirtyTenants;
+    }
+
+    /**
+     * Adds tenants which consume or provide contracts of endpoint groups of the given tenants, as
+     * flows of their endpoints depend on endpoints of the given tenants.
+     */
+    @VisibleForTesting
+    static void addPeerTenants(Set<TenantId> tenants, PolicyInfo policyInfo) {
+        if (tenants.isEmpty()) {
+            return;
+        }
+        Set<TenantId> peerTenants = new HashSet<>();
+        for (Cell<EgKey, EgKey, Policy> cell : policyInfo.getPolicyMap().cellSet()) {
+            TenantId consumerTenant = cell.getRowKey().getTenantId();
+            TenantId providerTenant = cell.getColumnKey().getTenantId();
+            if (tenants.contains(consumerTenant)) {
+                peerTenants.add(providerTenant);
             }
-            LOG.debug("Flow update completed");
+            if (tenants.contains(providerTenant)) {
+                peerTenants.add(consumerTenant);
+            }
+        }
+        tenants.addAll(peerTenants);
+    }
+
+    private static <T> Set<T> drain(Set<T> dirtySet) {
+        Set<T> drained = new HashSet<>();
+        Iterator<T> iterator = dirtySet.iterator();
+        while (iterator.hasNext()) {
+            drained.add(iterator.next());
+            iterator.remove();
         }
+        return drained;
+    }
+
+    /**
+     * @return number of flow updates since start
+     */
+    public long getFlowUpdateCount() {
+        return flowUpdateCount.get();
+    }
+
+    /**
+     * @return number of flow updates on all switches since start
+     */
+    public long getFullFlowUpdateCount() {
+        return fullFlowUpdateCount.get();
+    }
+
+    /**
+     * @return number of flows recomputed by all flow updates since start
+     */
+    public long getTotalRecomputedFlows() {
+        return totalRecomputedFlows.get();
+    }
+
+    /**
+     * @return number of switches whose flows were recomputed by last flow update
+     */
+    public int getLastRecomputedNodes() {
+        return lastRecomputedNodes;
+    }
+
+    /**
+     * @return number of flows recomputed by last flow update
+     */
+    public int getLastRecomputedFlows() {
+        return lastRecomputedFlows;
     }
 
     @Override
     public void close() throws IOException {
+        if (fullReconcileTask != null) {
+            fullReconcileTask.cancel(false);
+        }
         if (registerDataTreeChangeListener != null)
             registerDataTreeChangeListener.close();
+        if (policyInfoCache != null) {
+            policyInfoCache.close();
+        }
         // TODO unregister classifier and action instance validators
     }
 
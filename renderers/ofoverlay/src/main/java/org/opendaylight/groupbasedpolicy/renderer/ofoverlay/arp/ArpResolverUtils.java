@@ -12,10 +12,35 @@ import org.opendaylight.controller.liblldp.EtherTypes;
 import org.opendaylight.controller.liblldp.Ethernet;
 import org.opendaylight.controller.liblldp.NetUtils;
 import org.opendaylight.controller.liblldp.PacketException;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.Ipv4Address;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.yang.types.rev130715.MacAddress;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.service.rev130709.PacketReceived;
 
 public class ArpResolverUtils {
 
+    // offsets in Ethernet frame
+    private static final int ETHER_TYPE_OFFSET = 12;
+    private static final int ETHERNET_HEADER_LENGTH = 14;
+    private static final int ETHER_TYPE_LENGTH = 2;
+    private static final int VLAN_TAG_LENGTH = 4;
+    // tag protocol identifiers of 802.1Q, 802.1ad (QinQ) and pre-standard QinQ VLAN tags
+    private static final int TPID_8021Q = 0x8100;
+    private static final int TPID_8021AD = 0x88a8;
+    private static final int TPID_QINQ = 0x9100;
+    // offsets in ARP packet with IPv4 protocol address and MAC hardware address
+    private static final int HTYPE_OFFSET = 0;
+    private static final int PTYPE_OFFSET = 2;
+    private static final int HLEN_OFFSET = 4;
+    private static final int PLEN_OFFSET = 5;
+    private static final int OPERATION_OFFSET = 6;
+    private static final int SHA_OFFSET = 8;
+    private static final int SPA_OFFSET = 14;
+    private static final int ARP_LENGTH = 28;
+    private static final int ETHERNET_HW_TYPE = 1;
+    private static final int MAC_LENGTH = 6;
+    private static final int IPV4_LENGTH = 4;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
     static {
         Ethernet.etherTypeClassMap.put(EtherTypes.ARP.shortValue(), Arp.class);
     }
@@ -30,6 +55,10 @@ public class ArpResolverUtils {
      */
     public static Arp getArpFrom(PacketReceived potentialArp) throws PacketException {
         byte[] payload = potentialArp.getPayload();
+        if (payload == null || payload.length < ETHERNET_HEADER_LENGTH
+                || readUnsignedShort(payload, ETHER_TYPE_OFFSET) != EtherTypes.ARP.intValue()) {
+            throw new PacketException("Packet is not ARP: " + potentialArp);
+        }
         Ethernet ethPkt = new Ethernet();
         ethPkt.deserialize(payload, 0, payload.length * NetUtils.NumBitsInAByte);
         if (ethPkt.getPayload() instanceof Arp) {
@@ -37,4 +66,87 @@ public class ArpResolverUtils {
         }
         throw new PacketException("Packet is not ARP: " + potentialArp);
     }
+
+    /**
+     * Finds ARP packet with IPv4 protocol address and MAC hardware address in Ethernet frame.
+     * VLAN tags (802.1Q, QinQ) in front of the ethertype are skipped. Fields of the ARP packet
+     * are read directly from the frame at fixed offsets, nothing is allocated.
+     *
+     * @param frame Ethernet frame
+     * @return offset of ARP packet in the frame or {@code -1} if the frame does not contain ARP
+     *         packet with IPv4 protocol address and MAC hardware address
+     */
+    public static int getArpOffset(byte[] frame) {
+        if (frame == null || frame.length < ETHERNET_HEADER_LENGTH + ARP_LENGTH) {
+            return -1;
+        }
+        int etherTypeOffset = ETHER_TYPE_OFFSET;
+        while (isVlanTpid(readUnsignedShort(frame, etherTypeOffset))) {
+            etherTypeOffset += VLAN_TAG_LENGTH;
+            if (frame.length < etherTypeOffset + ETHER_TYPE_LENGTH + ARP_LENGTH) {
+                return -1;
+            }
+        }
+        if (readUnsignedShort(frame, etherTypeOffset) != EtherTypes.ARP.intValue()) {
+            return -1;
+        }
+        int arpOffset = etherTypeOffset + ETHER_TYPE_LENGTH;
+        if (readUnsignedShort(frame, arpOffset + HTYPE_OFFSET) != ETHERNET_HW_TYPE
+                || readUnsignedShort(frame, arpOffset + PTYPE_OFFSET) != EtherTypes.IPv4.intValue()
+                || frame[arpOffset + HLEN_OFFSET] != MAC_LENGTH || frame[arpOffset + PLEN_OFFSET] != IPV4_LENGTH) {
+            return -1;
+        }
+        return arpOffset;
+    }
+
+    /**
+     * @param frame Ethernet frame
+     * @param arpOffset offset of ARP packet returned by {@link #getArpOffset(byte[])}
+     * @return operation of the ARP packet
+     */
+    public static int getArpOperation(byte[] frame, int arpOffset) {
+        return readUnsignedShort(frame, arpOffset + OPERATION_OFFSET);
+    }
+
+    /**
+     * @param frame Ethernet frame
+     * @param arpOffset offset of ARP packet returned by {@link #getArpOffset(byte[])}
+     * @return sender hardware address of the ARP packet
+     */
+    public static MacAddress getSenderHardwareAddress(byte[] frame, int arpOffset) {
+        char[] mac = new char[MAC_LENGTH * 3 - 1];
+        for (int i = 0; i < MAC_LENGTH; i++) {
+            int b = frame[arpOffset + SHA_OFFSET + i] & 0xff;
+            if (i > 0) {
+                mac[i * 3 - 1] = ':';
+            }
+            mac[i * 3] = HEX_DIGITS[b >>> 4];
+            mac[i * 3 + 1] = HEX_DIGITS[b & 0xf];
+        }
+        return new MacAddress(new String(mac));
+    }
+
+    /**
+     * @param frame Ethernet frame
+     * @param arpOffset offset of ARP packet returned by {@link #getArpOffset(byte[])}
+     * @return sender protocol address of the ARP packet
+     */
+    public static Ipv4Address getSenderProtocolAddress(byte[] frame, int arpOffset) {
+        StringBuilder ip = new StringBuilder(15);
+        for (int i = 0; i < IPV4_LENGTH; i++) {
+            if (i > 0) {
+                ip.append('.');
+            }
+            ip.append(frame[arpOffset + SPA_OFFSET + i] & 0xff);
+        }
+        return new Ipv4Address(ip.toString());
+    }
+
+    private static boolean isVlanTpid(int etherType) {
+        return etherType == TPID_8021Q || etherType == TPID_8021AD || etherType == TPID_QINQ;
+    }
+
+    private static int readUnsignedShort(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xff) << 8) | (bytes[offset + 1] & 0xff);
+    }
 }
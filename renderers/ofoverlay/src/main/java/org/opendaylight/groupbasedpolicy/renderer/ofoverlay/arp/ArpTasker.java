@@ -11,8 +11,18 @@ package org.opendaylight.groupbasedpolicy.renderer.ofoverlay.arp;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.Nullable;
 
@@ -20,6 +30,7 @@ import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.commons.net.util.SubnetUtils;
 import org.apache.commons.net.util.SubnetUtils.SubnetInfo;
+import org.opendaylight.controller.liblldp.PacketException;
 import org.opendaylight.controller.md.sal.binding.api.DataBroker;
 import org.opendaylight.controller.md.sal.binding.api.ReadOnlyTransaction;
 import org.opendaylight.controller.md.sal.binding.api.ReadTransaction;
@@ -43,6 +54,7 @@ import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.AddF
 import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.AddFlowOutput;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.RemoveFlowInput;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.RemoveFlowInputBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.RemoveFlowOutput;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.SalFlowService;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.types.rev131026.FlowModFlags;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.types.rev131026.FlowRef;
@@ -97,6 +109,7 @@ import com.google.common.base.Optional;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSetMultimap;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Multimaps;
@@ -113,10 +126,28 @@ public class ArpTasker implements PacketProcessingListener {
     private static final String ARP_REPLY_TO_CONTROLLER_FLOW_NAME = "arpReplyToController";
     private static final int ARP_REPLY_TO_CONTROLLER_FLOW_PRIORITY = 10000;
     private static final Instruction SEND_TO_CONTROLLER_INSTRUCTION;
+    /**
+     * ARP replies received from one node during this time are resolved in one batch
+     */
+    static final long ARP_REPLY_BATCH_DELAY_MS = 50;
     private final ArpSender arpSender;
     private final SalFlowService flowService;
     private final DataBroker dataProvider;
+    private final ScheduledExecutorService executor;
     private final ListMultimap<String, Pair<RemoveFlowInput, EndpointL3Key>> requestInfoByKey = Multimaps.synchronizedListMultimap(ArrayListMultimap.<String, Pair<RemoveFlowInput, EndpointL3Key>>create());
+    /*
+     * L3 endpoints waiting for MAC. They are kept up to date by EndpointManager so ARP replies are
+     * resolved without reading the endpoints from datastore.
+     */
+    private final ConcurrentMap<EndpointL3Key, PendingL3Endpoint> pendingL3EpByKey = new ConcurrentHashMap<>();
+    // ARP replies waiting for batch - sender MAC by sender IP by node; guarded by this
+    private final Map<NodeId, Map<Ipv4Address, MacAddress>> arpRepliesByNode = new HashMap<>();
+
+    // ARP resolution metrics
+    private final AtomicInteger queuedArpReplies = new AtomicInteger();
+    private final AtomicLong resolvedL3EpCount = new AtomicLong();
+    private final AtomicLong totalResolveTimeMillis = new AtomicLong();
+    private volatile long lastResolveTimeMillis;
 
     static {
         ApplyActions applyActions = new ApplyActionsBuilder().setAction(
@@ -126,59 +157,179 @@ public class ArpTasker implements PacketProcessingListener {
             .build();
     }
 
+    private static final class PendingL3Endpoint {
+
+        private final EndpointL3 l3Ep;
+        private final Set<NodeId> nodeIds;
+        private final long requestTimeMillis;
+
+        private PendingL3Endpoint(EndpointL3 l3Ep, Set<NodeId> nodeIds, long requestTimeMillis) {
+            this.l3Ep = l3Ep;
+            this.nodeIds = nodeIds;
+            this.requestTimeMillis = requestTimeMillis;
+        }
+    }
+
+    /**
+     * @param executor ARP replies are resolved in batches scheduled on this executor; if
+     *        {@code null} each ARP reply is resolved immediately
+     */
     public ArpTasker(DataBroker dataProvider, PacketProcessingService packetProcessingService,
-            SalFlowService flowService) {
+            SalFlowService flowService, @Nullable ScheduledExecutorService executor) {
         this.dataProvider = checkNotNull(dataProvider);
         this.arpSender = new ArpSender(packetProcessingService);
         this.flowService = flowService;
+        this.executor = executor;
     }
 
     @Override
     public void onPacketReceived(PacketReceived potentialArp) {
-        Arp arp = null;
-        try {
-            arp = ArpResolverUtils.getArpFrom(potentialArp);
-        } catch (Exception e) {
-            LOG.trace(
-                    "Failed to decode potential ARP packet. This could occur when other than ARP packet was received.",
-                    e);
+        byte[] frame = potentialArp.getPayload();
+        int arpOffset = ArpResolverUtils.getArpOffset(frame);
+        if (arpOffset < 0) {
+            LOG.trace("Received packet is not ARP packet with IPv4 protocol address and MAC hardware address.");
             return;
         }
-        if (arp.getOperation() != ArpOperation.REPLY.intValue()) {
+        if (ArpResolverUtils.getArpOperation(frame, arpOffset) != ArpOperation.REPLY.intValue()) {
             LOG.trace("ARP packet is not REPLY.");
             return;
         }
         if (LOG.isTraceEnabled()) {
-            LOG.trace("ARP REPLY received - {}", ArpUtils.getArpToStringFormat(arp));
+            try {
+                LOG.trace("ARP REPLY received - {}",
+                        ArpUtils.getArpToStringFormat(ArpResolverUtils.getArpFrom(potentialArp)));
+            } catch (PacketException e) {
+                LOG.trace("Failed to decode ARP packet.", e);
+            }
         }
         NodeKey nodeKey = potentialArp.getIngress().getValue().firstKeyOf(Node.class, NodeKey.class);
         if (nodeKey == null) {
             LOG.info("Unknown source node of ARP packet: {}", potentialArp);
             return;
         }
-        Ipv4Address spa = ArpUtils.bytesToIp(arp.getSenderProtocolAddress());
-        MacAddress sha = ArpUtils.bytesToMac(arp.getSenderHardwareAddress());
-        List<Pair<RemoveFlowInput, EndpointL3Key>> removeFlowInputsAndL3EpKeys = requestInfoByKey.get(createKey(nodeKey.getId(), spa));
-        for (Pair<RemoveFlowInput, EndpointL3Key> removeFlowInputAndL3EpKey : removeFlowInputsAndL3EpKeys) {
-            flowService.removeFlow(removeFlowInputAndL3EpKey.getLeft());
+        final NodeId nodeId = nodeKey.getId();
+        Ipv4Address spa = ArpResolverUtils.getSenderProtocolAddress(frame, arpOffset);
+        MacAddress sha = ArpResolverUtils.getSenderHardwareAddress(frame, arpOffset);
+        if (!requestInfoByKey.containsKey(createKey(nodeId, spa))) {
+            LOG.trace("ARP REPLY from {} on node {} was not requested.", spa.getValue(), nodeId.getValue());
+            return;
+        }
+        boolean scheduleBatch;
+        synchronized (this) {
+            Map<Ipv4Address, MacAddress> arpReplies = arpRepliesByNode.get(nodeId);
+            scheduleBatch = (arpReplies == null);
+            if (scheduleBatch) {
+                arpReplies = new HashMap<>();
+                arpRepliesByNode.put(nodeId, arpReplies);
+            }
+            if (arpReplies.put(spa, sha) == null) {
+                queuedArpReplies.incrementAndGet();
+            }
+        }
+        if (!scheduleBatch) {
+            return;
+        }
+        if (executor == null) {
+            resolveArpReplies(nodeId);
+            return;
+        }
+        executor.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                resolveArpReplies(nodeId);
+            }
+        }, ARP_REPLY_BATCH_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Resolves all ARP replies queued for the node. ARP Reply to Controller flows of resolved
+     * requests are removed and L3 endpoints with MAC and new endpoints are written in one
+     * transaction. L3 endpoints are taken from the pending index, not read from datastore.
+     */
+    private void resolveArpReplies(NodeId nodeId) {
+        Map<Ipv4Address, MacAddress> arpReplies;
+        synchronized (this) {
+            arpReplies = arpRepliesByNode.remove(nodeId);
+        }
+        if (arpReplies == null) {
+            return;
         }
-        // each L3EpKey on right-side part of Pair is same
-        final EndpointL3Key l3EpKey = removeFlowInputsAndL3EpKeys.get(0).getRight();
+        queuedArpReplies.addAndGet(-arpReplies.size());
+        List<ListenableFuture<RpcResult<RemoveFlowOutput>>> removeFlowFutures = new ArrayList<>();
         ReadWriteTransaction rwTx = dataProvider.newReadWriteTransaction();
-        InstanceIdentifier<EndpointL3> l3EpIid = IidFactory.l3EndpointIid(l3EpKey.getL3Context(),
-                l3EpKey.getIpAddress());
-        Optional<EndpointL3> potentialL3Ep = DataStoreHelper.readFromDs(LogicalDatastoreType.OPERATIONAL, l3EpIid, rwTx);
-        if (!potentialL3Ep.isPresent()) {
-            LOG.info("L3 endpoint {} where MAC should be added does not exist anymore.", l3EpKey);
+        Map<Pair<TenantId, NetworkDomainId>, Optional<L2BridgeDomainId>> l2BdIdByNetworkContainment = new HashMap<>();
+        boolean isWritten = false;
+        for (Entry<Ipv4Address, MacAddress> arpReply : arpReplies.entrySet()) {
+            List<Pair<RemoveFlowInput, EndpointL3Key>> removeFlowInputsAndL3EpKeys =
+                    requestInfoByKey.removeAll(createKey(nodeId, arpReply.getKey()));
+            if (removeFlowInputsAndL3EpKeys.isEmpty()) {
+                // already resolved by ARP reply from other node
+                continue;
+            }
+            removeArpReplyToControllerFlows(removeFlowInputsAndL3EpKeys, removeFlowFutures);
+            // each L3EpKey on right-side part of Pair is same
+            EndpointL3Key l3EpKey = removeFlowInputsAndL3EpKeys.get(0).getRight();
+            PendingL3Endpoint pendingL3Ep = pendingL3EpByKey.remove(l3EpKey);
+            if (pendingL3Ep == null) {
+                LOG.info("L3 endpoint {} where MAC should be added does not exist anymore.", l3EpKey);
+                continue;
+            }
+            // requests on other nodes are not needed anymore
+            for (NodeId otherNodeId : pendingL3Ep.nodeIds) {
+                if (!otherNodeId.equals(nodeId)) {
+                    removeArpReplyToControllerFlows(
+                            requestInfoByKey.removeAll(createKey(otherNodeId, arpReply.getKey())), removeFlowFutures);
+                }
+            }
+            writeMacForL3EpAndCreateEp(pendingL3Ep.l3Ep, arpReply.getValue(), l2BdIdByNetworkContainment, rwTx);
+            isWritten = true;
+            long resolveTimeMillis = System.currentTimeMillis() - pendingL3Ep.requestTimeMillis;
+            resolvedL3EpCount.incrementAndGet();
+            totalResolveTimeMillis.addAndGet(resolveTimeMillis);
+            lastResolveTimeMillis = resolveTimeMillis;
+        }
+        if (isWritten) {
+            rwTx.submit();
+        } else {
             rwTx.cancel();
-            return;
         }
-        final EndpointL3Builder updatedL3EpBuilder = new EndpointL3Builder(potentialL3Ep.get()).setMacAddress(sha)
-            .setTimestamp(System.currentTimeMillis());
-        EndpointL3 updatedL3Ep = updatedL3EpBuilder.build();
-        L2BridgeDomainId l2BdId = resolveL2BridgeDomainId(updatedL3Ep, rwTx);
-        if (l2BdId != null) {
-            updatedL3Ep = updatedL3EpBuilder.setL2Context(l2BdId).build();
+        if (!removeFlowFutures.isEmpty()) {
+            Futures.addCallback(Futures.allAsList(removeFlowFutures), logRemoveFlowsResult(nodeId));
+        }
+    }
+
+    private void removeArpReplyToControllerFlows(List<Pair<RemoveFlowInput, EndpointL3Key>> removeFlowInputsAndL3EpKeys,
+            List<ListenableFuture<RpcResult<RemoveFlowOutput>>> removeFlowFutures) {
+        for (Pair<RemoveFlowInput, EndpointL3Key> removeFlowInputAndL3EpKey : removeFlowInputsAndL3EpKeys) {
+            removeFlowFutures.add(JdkFutureAdapters.listenInPoolThread(
+                    flowService.removeFlow(removeFlowInputAndL3EpKey.getLeft())));
+        }
+    }
+
+    /**
+     * Only MAC, L2 context and timestamp are merged to the L3 endpoint so other changes done since
+     * the ARP request are not overwritten.
+     */
+    private void writeMacForL3EpAndCreateEp(EndpointL3 l3Ep, MacAddress sha,
+            Map<Pair<TenantId, NetworkDomainId>, Optional<L2BridgeDomainId>> l2BdIdByNetworkContainment,
+            ReadWriteTransaction rwTx) {
+        long timestamp = System.currentTimeMillis();
+        final EndpointL3Builder l3EpMacBuilder =
+                new EndpointL3Builder().setKey(l3Ep.getKey()).setMacAddress(sha).setTimestamp(timestamp);
+        // endpoints from one subnet are usually resolved together
+        Pair<TenantId, NetworkDomainId> networkContainment =
+                new ImmutablePair<>(l3Ep.getTenant(), l3Ep.getNetworkContainment());
+        Optional<L2BridgeDomainId> potentialL2BdId = l2BdIdByNetworkContainment.get(networkContainment);
+        if (potentialL2BdId == null) {
+            potentialL2BdId = Optional.fromNullable(resolveL2BridgeDomainId(l3Ep, rwTx));
+            l2BdIdByNetworkContainment.put(networkContainment, potentialL2BdId);
+        }
+        if (potentialL2BdId.isPresent()) {
+            L2BridgeDomainId l2BdId = potentialL2BdId.get();
+            l3EpMacBuilder.setL2Context(l2BdId);
+            EndpointL3 updatedL3Ep =
+                    new EndpointL3Builder(l3Ep).setMacAddress(sha).setL2Context(l2BdId).setTimestamp(timestamp).build();
             EndpointBuilder newEpBuilder = new EndpointBuilder(updatedL3Ep).setKey(new EndpointKey(l2BdId, sha));
             OfOverlayL3Context augmentation = updatedL3Ep.getAugmentation(OfOverlayL3Context.class);
             if (augmentation != null) {
@@ -188,9 +339,83 @@ public class ArpTasker implements PacketProcessingListener {
             rwTx.put(LogicalDatastoreType.OPERATIONAL, IidFactory.endpointIid(l2BdId, sha), newEp);
             LOG.trace("Endpoint was created {}", newEp);
         }
-        rwTx.put(LogicalDatastoreType.OPERATIONAL, l3EpIid, updatedL3Ep);
-        LOG.trace("MAC was added to L3 endpoint {}", updatedL3Ep);
-        rwTx.submit();
+        EndpointL3 l3EpMac = l3EpMacBuilder.build();
+        rwTx.merge(LogicalDatastoreType.OPERATIONAL,
+                IidFactory.l3EndpointIid(l3Ep.getL3Context(), l3Ep.getIpAddress()), l3EpMac);
+        LOG.trace("MAC was added to L3 endpoint {}", l3EpMac);
+    }
+
+    /**
+     * Updates L3 endpoint waiting for MAC. Has to be called when the L3 endpoint is changed in
+     * datastore.
+     *
+     * @param l3Ep the updated L3 endpoint
+     */
+    public void l3EndpointUpdated(EndpointL3 l3Ep) {
+        PendingL3Endpoint pendingL3Ep = pendingL3EpByKey.get(l3Ep.getKey());
+        while (pendingL3Ep != null && !pendingL3EpByKey.replace(l3Ep.getKey(), pendingL3Ep,
+                new PendingL3Endpoint(l3Ep, pendingL3Ep.nodeIds, pendingL3Ep.requestTimeMillis))) {
+            pendingL3Ep = pendingL3EpByKey.get(l3Ep.getKey());
+        }
+    }
+
+    /**
+     * Stops waiting for MAC of the L3 endpoint and removes its ARP Reply to Controller flows. Has
+     * to be called when the L3 endpoint is removed from datastore.
+     *
+     * @param l3EpKey key of the removed L3 endpoint
+     */
+    public void l3EndpointRemoved(EndpointL3Key l3EpKey) {
+        PendingL3Endpoint pendingL3Ep = pendingL3EpByKey.remove(l3EpKey);
+        if (pendingL3Ep != null) {
+            removeArpRequests(l3EpKey, pendingL3Ep);
+        }
+    }
+
+    private void removeArpRequests(EndpointL3Key l3EpKey, PendingL3Endpoint pendingL3Ep) {
+        Ipv4Address tpa = l3EpKey.getIpAddress().getIpv4Address();
+        for (NodeId nodeId : pendingL3Ep.nodeIds) {
+            List<ListenableFuture<RpcResult<RemoveFlowOutput>>> removeFlowFutures = new ArrayList<>();
+            removeArpReplyToControllerFlows(requestInfoByKey.removeAll(createKey(nodeId, tpa)), removeFlowFutures);
+            if (!removeFlowFutures.isEmpty()) {
+                Futures.addCallback(Futures.allAsList(removeFlowFutures), logRemoveFlowsResult(nodeId));
+            }
+        }
+    }
+
+    /**
+     * @return number of ARP replies waiting for resolution
+     */
+    public int getQueuedArpReplies() {
+        return queuedArpReplies.get();
+    }
+
+    /**
+     * @return number of L3 endpoints waiting for ARP reply
+     */
+    public int getPendingL3Endpoints() {
+        return pendingL3EpByKey.size();
+    }
+
+    /**
+     * @return number of L3 endpoints which obtained MAC from ARP reply since start
+     */
+    public long getResolvedL3EpCount() {
+        return resolvedL3EpCount.get();
+    }
+
+    /**
+     * @return sum of times from ARP request to resolved ARP reply of all resolved L3 endpoints
+     */
+    public long getTotalResolveTimeMillis() {
+        return totalResolveTimeMillis.get();
+    }
+
+    /**
+     * @return time from ARP request to resolved ARP reply of last resolved L3 endpoint
+     */
+    public long getLastResolveTimeMillis() {
+        return lastResolveTimeMillis;
     }
 
     private @Nullable L2BridgeDomainId resolveL2BridgeDomainId(EndpointL3 l3Ep, ReadTransaction rTx) {
@@ -250,6 +475,11 @@ public class ArpTasker implements PacketProcessingListener {
         }
         rTx.close();
 
+        ImmutableSet.Builder<NodeId> nodeIds = ImmutableSet.builder();
+        for (Node node : extNcWithMacByNode.keySet()) {
+            nodeIds.add(node.getId());
+        }
+        pendingL3EpByKey.put(l3Ep.getKey(), new PendingL3Endpoint(l3Ep, nodeIds.build(), System.currentTimeMillis()));
         for (final Node node : extNcWithMacByNode.keySet()) {
             final InstanceIdentifier<Node> nodeIid = InstanceIdentifier.builder(Nodes.class)
                 .child(Node.class, node.getKey())
@@ -422,6 +652,26 @@ public class ArpTasker implements PacketProcessingListener {
             .build();
     }
 
+    private FutureCallback<List<RpcResult<RemoveFlowOutput>>> logRemoveFlowsResult(final NodeId nodeId) {
+        return new FutureCallback<List<RpcResult<RemoveFlowOutput>>>() {
+
+            @Override
+            public void onSuccess(List<RpcResult<RemoveFlowOutput>> result) {
+                for (RpcResult<RemoveFlowOutput> removeFlowResult : result) {
+                    if (!removeFlowResult.isSuccessful()) {
+                        LOG.warn("An ARP Reply to Controller flow was not removed on node {} \nErrors: {}",
+                                nodeId.getValue(), removeFlowResult.getErrors());
+                    }
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                LOG.warn("Removal of ARP Reply to Controller flows on node {} failed.", nodeId.getValue(), t);
+            }
+        };
+    }
+
     private FutureCallback<RpcResult<Void>> logResult(final Ipv4Address tpa,
             final InstanceIdentifier<NodeConnector> ncIid) {
         return new FutureCallback<RpcResult<Void>>() {
@@ -14,6 +14,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -64,12 +65,12 @@ import org.opendaylight.yangtools.concepts.ListenerRegistration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 
@@ -90,6 +91,8 @@ public class EndpointManager implements AutoCloseable {
     private final OfOverlayL3ContextListener ofOverlayL3ContextListener;
     private final ConcurrentMap<EpKey, Endpoint> endpoints = new ConcurrentHashMap<>();
     private final ConcurrentMap<EpKey, Endpoint> externalEndpointsWithoutLocation = new ConcurrentHashMap<>();
+    // guarded by this
+    private final Map<EndpointGroupId, Set<EpKey>> extEpsNoLocByGroup = new HashMap<>();
     private final ConcurrentMap<NodeId, ConcurrentMap<EgKey, Set<EpKey>>> endpointsByGroupByNode =
             new ConcurrentHashMap<>();
     private final ConcurrentMap<NodeId, Set<EpKey>> endpointsByNode = new ConcurrentHashMap<>();
@@ -99,13 +102,42 @@ public class EndpointManager implements AutoCloseable {
     private final ArpTasker arpTasker;
     private final ListenerRegistration<ArpTasker> notificationListenerRegistration;
     private List<EndpointListener> listeners = new CopyOnWriteArrayList<>();
-    private Function<EpKey, Endpoint> indexTransform = new Function<EpKey, Endpoint>() {
+    /*
+     * Immutable snapshot of the indexes above. Every change of endpoints publishes a new snapshot
+     * which shares all buckets not touched by the change with the previous one.
+     */
+    private volatile EndpointIndex index = EndpointIndex.EMPTY;
 
-        @Override
-        public Endpoint apply(EpKey input) {
-            return endpoints.get(input);
+    /**
+     * Immutable snapshot of endpoint indexes. Readers iterate the collections directly without
+     * locking or copying.
+     */
+    private static final class EndpointIndex {
+
+        private static final EndpointIndex EMPTY = new EndpointIndex(
+                ImmutableMap.<NodeId, ImmutableList<Endpoint>>of(),
+                ImmutableMap.<NodeId, ImmutableMap<EgKey, ImmutableList<Endpoint>>>of(),
+                ImmutableMap.<EgKey, ImmutableList<Endpoint>>of(), ImmutableMap.<EgKey, ImmutableSet<NodeId>>of(),
+                ImmutableMap.<EndpointGroupId, ImmutableSet<Endpoint>>of());
+
+        private final ImmutableMap<NodeId, ImmutableList<Endpoint>> endpointsByNode;
+        private final ImmutableMap<NodeId, ImmutableMap<EgKey, ImmutableList<Endpoint>>> endpointsByGroupByNode;
+        private final ImmutableMap<EgKey, ImmutableList<Endpoint>> endpointsByGroup;
+        private final ImmutableMap<EgKey, ImmutableSet<NodeId>> nodesByGroup;
+        private final ImmutableMap<EndpointGroupId, ImmutableSet<Endpoint>> extEpsNoLocByGroup;
+
+        private EndpointIndex(ImmutableMap<NodeId, ImmutableList<Endpoint>> endpointsByNode,
+                ImmutableMap<NodeId, ImmutableMap<EgKey, ImmutableList<Endpoint>>> endpointsByGroupByNode,
+                ImmutableMap<EgKey, ImmutableList<Endpoint>> endpointsByGroup,
+                ImmutableMap<EgKey, ImmutableSet<NodeId>> nodesByGroup,
+                ImmutableMap<EndpointGroupId, ImmutableSet<Endpoint>> extEpsNoLocByGroup) {
+            this.endpointsByNode = endpointsByNode;
+            this.endpointsByGroupByNode = endpointsByGroupByNode;
+            this.endpointsByGroup = endpointsByGroup;
+            this.nodesByGroup = nodesByGroup;
+            this.extEpsNoLocByGroup = extEpsNoLocByGroup;
         }
-    };
+    }
 
     public EndpointManager(DataBroker dataProvider,PacketProcessingService packetProcessingService,
             SalFlowService flowService, NotificationService notificationService,
@@ -113,7 +145,7 @@ public class EndpointManager implements AutoCloseable {
         this.executor = executor;
         this.dataProvider = dataProvider;
             if (notificationService != null && dataProvider != null) {
-                this.arpTasker = new ArpTasker(dataProvider, packetProcessingService, flowService);
+                this.arpTasker = new ArpTasker(dataProvider, packetProcessingService, flowService, executor);
                 notificationListenerRegistration = notificationService.registerNotificationListener(arpTasker);
             } else {
                 LOG.info("Missing service {}", NotificationService.class.getSimpleName());
@@ -147,11 +179,11 @@ public class EndpointManager implements AutoCloseable {
      * @param nodeId - the nodeId of the switch to get endpoints for
      * @return a collection of {@link Endpoint} objects.
      */
-    public synchronized Set<EgKey> getGroupsForNode(NodeId nodeId) {
-        Map<EgKey, Set<EpKey>> nodeEps = endpointsByGroupByNode.get(nodeId);
+    public Set<EgKey> getGroupsForNode(NodeId nodeId) {
+        ImmutableMap<EgKey, ImmutableList<Endpoint>> nodeEps = index.endpointsByGroupByNode.get(nodeId);
         if (nodeEps == null)
             return Collections.emptySet();
-        return ImmutableSet.copyOf(nodeEps.keySet());
+        return nodeEps.keySet();
     }
 
     /**
@@ -160,16 +192,11 @@ public class EndpointManager implements AutoCloseable {
      * @param egKey - the egKey of the endpoint group to get nodes for
      * @return a collection of {@link NodeId} objects.
      */
-    public synchronized Set<NodeId> getNodesForGroup(final EgKey egKey) {
-        return ImmutableSet.copyOf(Sets.filter(endpointsByGroupByNode.keySet(), new Predicate<NodeId>() {
-
-            @Override
-            public boolean apply(NodeId input) {
-                Map<EgKey, Set<EpKey>> nodeEps = endpointsByGroupByNode.get(input);
-                return (nodeEps != null && nodeEps.containsKey(egKey));
-            }
-
-        }));
+    public Set<NodeId> getNodesForGroup(final EgKey egKey) {
+        ImmutableSet<NodeId> nodes = index.nodesByGroup.get(egKey);
+        if (nodes == null)
+            return Collections.emptySet();
+        return nodes;
     }
 
     /**
@@ -179,17 +206,17 @@ public class EndpointManager implements AutoCloseable {
      * @param eg - the group to look up
      * @return the endpoints
      */
-    public synchronized Collection<Endpoint> getEndpointsForNode(NodeId nodeId, EgKey eg) {
+    public Collection<Endpoint> getEndpointsForNode(NodeId nodeId, EgKey eg) {
         // TODO: alagalah Create method findEndpointsByNode() that uses
         // data store
 
-        Map<EgKey, Set<EpKey>> nodeEps = endpointsByGroupByNode.get(nodeId);
+        ImmutableMap<EgKey, ImmutableList<Endpoint>> nodeEps = index.endpointsByGroupByNode.get(nodeId);
         if (nodeEps == null)
             return Collections.emptyList();
-        Collection<EpKey> ebn = nodeEps.get(eg);
+        Collection<Endpoint> ebn = nodeEps.get(eg);
         if (ebn == null)
             return Collections.emptyList();
-        return ImmutableList.copyOf(Collections2.transform(ebn, indexTransform));
+        return ebn;
     }
 
     /**
@@ -198,14 +225,14 @@ public class EndpointManager implements AutoCloseable {
      * @param nodeId - the node ID to look up
      * @return the endpoints
      */
-    public synchronized Collection<Endpoint> getEndpointsForNode(final NodeId nodeId) {
+    public Collection<Endpoint> getEndpointsForNode(final NodeId nodeId) {
         // TODO: alagalah Create method findEndpointsByNode() that uses
         // data store. See commented code below.
 
-        Collection<EpKey> ebn = endpointsByNode.get(nodeId);
+        Collection<Endpoint> ebn = index.endpointsByNode.get(nodeId);
         if (ebn == null)
             return Collections.emptyList();
-        return ImmutableList.copyOf(Collections2.transform(ebn, indexTransform));
+        return ebn;
     }
 
     /**
@@ -222,8 +249,8 @@ public class EndpointManager implements AutoCloseable {
      * Get all endpoint objects
      * @return the {@link Endpoint} corresponding to the key
      */
-    public HashSet<Endpoint> getEndpoints() {
-        return new HashSet<>(endpoints.values());
+    public Set<Endpoint> getEndpoints() {
+        return ImmutableSet.copyOf(endpoints.values());
     }
 
     /**
@@ -232,41 +259,155 @@ public class EndpointManager implements AutoCloseable {
      * @param eg - Endpoint group key (contains endpoint group and tenant ID)
      * @return a collection of {@link Endpoint} objects.
      */
-    public synchronized Collection<Endpoint> getEndpointsForGroup(EgKey eg) {
-        Collection<EpKey> ebg = endpointsByGroup.get(eg);
+    public Collection<Endpoint> getEndpointsForGroup(EgKey eg) {
+        Collection<Endpoint> ebg = index.endpointsByGroup.get(eg);
         if (ebg == null)
             return Collections.emptyList();
-        return ImmutableList.copyOf(Collections2.transform(ebg, indexTransform));
+        return ebg;
     }
 
     /**
-     * Return set of external endpoints without location belonging to a particular endpoint group
-     *
-     * @param eg - Endpoint group key (contains endpoint group and tenant ID)
-     * @return a collection of {@link Endpoint} objects.
+     * Publish a new index snapshot. Only the buckets of the given nodes and endpoint groups are
+     * built again, all other buckets are taken from the current snapshot.
      */
-    public synchronized Collection<Endpoint> getExtEpsNoLocForGroup(final EgKey eg) {
+    private void updateIndex(Set<NodeId> nodeIds, Set<EgKey> egKeys, Set<EndpointGroupId> extEpgIds) {
+        EndpointIndex oldIndex = index;
+        Map<NodeId, ImmutableList<Endpoint>> byNode = new HashMap<>();
+        Map<NodeId, ImmutableMap<EgKey, ImmutableList<Endpoint>>> byGroupByNode = new HashMap<>();
+        for (NodeId nodeId : nodeIds) {
+            Set<EpKey> nodeEps = endpointsByNode.get(nodeId);
+            byNode.put(nodeId, (nodeEps == null) ? null : toEndpoints(nodeEps));
+            Map<EgKey, Set<EpKey>> nodeGroups = endpointsByGroupByNode.get(nodeId);
+            byGroupByNode.put(nodeId, (nodeGroups == null) ? null : toGroupIndex(nodeGroups,
+                    oldIndex.endpointsByGroupByNode.get(nodeId), egKeys));
+        }
+        Map<EgKey, ImmutableList<Endpoint>> byGroup = new HashMap<>();
+        Map<EgKey, ImmutableSet<NodeId>> nodesByGroup = new HashMap<>();
+        for (EgKey egKey : egKeys) {
+            Set<EpKey> groupEps = endpointsByGroup.get(egKey);
+            byGroup.put(egKey, (groupEps == null) ? null : toEndpoints(groupEps));
+            // group can appear on or disappear from the changed nodes only
+            ImmutableSet<NodeId> oldNodes = oldIndex.nodesByGroup.get(egKey);
+            Set<NodeId> nodes = (oldNodes == null) ? new HashSet<NodeId>() : new HashSet<>(oldNodes);
+            for (NodeId nodeId : nodeIds) {
+                Map<EgKey, Set<EpKey>> nodeGroups = endpointsByGroupByNode.get(nodeId);
+                Set<EpKey> eps = (nodeGroups == null) ? null : nodeGroups.get(egKey);
+                if (eps == null || eps.isEmpty()) {
+                    nodes.remove(nodeId);
+                } else {
+                    nodes.add(nodeId);
+                }
+            }
+            nodesByGroup.put(egKey, nodes.isEmpty() ? null : ImmutableSet.copyOf(nodes));
+        }
+        Map<EndpointGroupId, ImmutableSet<Endpoint>> extEpsByGroup = new HashMap<>();
+        for (EndpointGroupId epgId : extEpgIds) {
+            Set<EpKey> extEpKeys = extEpsNoLocByGroup.get(epgId);
+            if (extEpKeys == null) {
+                extEpsByGroup.put(epgId, null);
+                continue;
+            }
+            ImmutableSet.Builder<Endpoint> extEps = ImmutableSet.builder();
+            for (EpKey epKey : extEpKeys) {
+                Endpoint ep = externalEndpointsWithoutLocation.get(epKey);
+                if (ep != null) {
+                    extEps.add(ep);
+                }
+            }
+            extEpsByGroup.put(epgId, extEps.build());
+        }
+        index = new EndpointIndex(replaceBuckets(oldIndex.endpointsByNode, byNode),
+                replaceBuckets(oldIndex.endpointsByGroupByNode, byGroupByNode),
+                replaceBuckets(oldIndex.endpointsByGroup, byGroup),
+                replaceBuckets(oldIndex.nodesByGroup, nodesByGroup),
+                replaceBuckets(oldIndex.extEpsNoLocByGroup, extEpsByGroup));
+    }
 
-        return ImmutableSet
-            .copyOf(Collections2.filter(externalEndpointsWithoutLocation.values(), new Predicate<Endpoint>() {
+    private ImmutableMap<EgKey, ImmutableList<Endpoint>> toGroupIndex(Map<EgKey, Set<EpKey>> nodeGroups,
+            @Nullable ImmutableMap<EgKey, ImmutableList<Endpoint>> oldNodeGroups, Set<EgKey> changedEgKeys) {
+        ImmutableMap.Builder<EgKey, ImmutableList<Endpoint>> groupIndex = ImmutableMap.builder();
+        for (Entry<EgKey, Set<EpKey>> entry : nodeGroups.entrySet()) {
+            if (entry.getValue().isEmpty()) {
+                continue;
+            }
+            ImmutableList<Endpoint> eps = null;
+            if (oldNodeGroups != null && !changedEgKeys.contains(entry.getKey())) {
+                eps = oldNodeGroups.get(entry.getKey());
+            }
+            groupIndex.put(entry.getKey(), (eps != null) ? eps : toEndpoints(entry.getValue()));
+        }
+        return groupIndex.build();
+    }
 
-                @Override
-                public boolean apply(Endpoint input) {
-                    Set<EndpointGroupId> epgIds = new HashSet<>();
-                    if (input.getEndpointGroup() != null) {
-                        epgIds.add(input.getEndpointGroup());
-                    }
-                    if (input.getEndpointGroups() != null) {
-                        epgIds.addAll(input.getEndpointGroups());
-                    }
-                    if (epgIds.isEmpty()) {
-                        LOG.error("No EPGs for {}. This is not a valid Endpoint.", input.getKey());
-                        return false;
-                    }
-                    return (epgIds.contains(eg.getEgId()));
+    /**
+     * Copy of {@code buckets} with {@code changedBuckets} applied. A {@code null} value removes the bucket.
+     */
+    private static <K, V> ImmutableMap<K, V> replaceBuckets(ImmutableMap<K, V> buckets, Map<K, V> changedBuckets) {
+        if (changedBuckets.isEmpty()) {
+            return buckets;
+        }
+        Map<K, V> result = new HashMap<>(buckets);
+        for (Entry<K, V> entry : changedBuckets.entrySet()) {
+            if (entry.getValue() == null) {
+                result.remove(entry.getKey());
+            } else {
+                result.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return ImmutableMap.copyOf(result);
+    }
+
+    private ImmutableList<Endpoint> toEndpoints(Collection<EpKey> epKeys) {
+        ImmutableList.Builder<Endpoint> eps = ImmutableList.builder();
+        for (EpKey epKey : epKeys) {
+            Endpoint ep = endpoints.get(epKey);
+            if (ep != null) {
+                eps.add(ep);
+            }
+        }
+        return eps.build();
+    }
+
+    private void putExternalEndpoint(EpKey epKey, Endpoint ep) {
+        removeExternalEndpoint(epKey);
+        externalEndpointsWithoutLocation.put(epKey, ep);
+        for (EndpointGroupId epgId : getEndpointGroupsFromEndpoint(ep)) {
+            Set<EpKey> extEps = extEpsNoLocByGroup.get(epgId);
+            if (extEps == null) {
+                extEps = new HashSet<>();
+                extEpsNoLocByGroup.put(epgId, extEps);
+            }
+            extEps.add(epKey);
+        }
+    }
+
+    private void removeExternalEndpoint(EpKey epKey) {
+        Endpoint ep = externalEndpointsWithoutLocation.remove(epKey);
+        if (ep == null) {
+            return;
+        }
+        for (EndpointGroupId epgId : getEndpointGroupsFromEndpoint(ep)) {
+            Set<EpKey> extEps = extEpsNoLocByGroup.get(epgId);
+            if (extEps != null) {
+                extEps.remove(epKey);
+                if (extEps.isEmpty()) {
+                    extEpsNoLocByGroup.remove(epgId);
                 }
+            }
+        }
+    }
 
-            }));
+    /**
+     * Return set of external endpoints without location belonging to a particular endpoint group
+     *
+     * @param eg - Endpoint group key (contains endpoint group and tenant ID)
+     * @return a collection of {@link Endpoint} objects.
+     */
+    public Collection<Endpoint> getExtEpsNoLocForGroup(final EgKey eg) {
+        ImmutableSet<Endpoint> extEps = index.extEpsNoLocByGroup.get(eg.getEgId());
+        if (extEps == null)
+            return Collections.emptySet();
+        return extEps;
     }
 
     /**
@@ -316,6 +457,7 @@ public class EndpointManager implements AutoCloseable {
         Set<EndpointGroupId> oldEpgIds = getEndpointGroupsFromEndpoint(oldEp);
         Set<EndpointGroupId> newEpgIds = getEndpointGroupsFromEndpoint(newEp);
 
+        EpKey updatedEpKey = null;
         boolean notifyOldLoc = false;
         boolean notifyNewLoc = false;
         boolean notifyOldEg = false;
@@ -326,11 +468,11 @@ public class EndpointManager implements AutoCloseable {
             if (newLoc != null) {
                 createEndpoint(newLoc, newEpKey, newEpgIds, tenantId);
                 endpoints.put(newEpKey, newEp);
-                notifyEndpointUpdated(newEpKey);
+                updatedEpKey = newEpKey;
                 notifyNewLoc = true;
                 notifyNewEg = true;
             } else {
-                externalEndpointsWithoutLocation.put(newEpKey, newEp);
+                putExternalEndpoint(newEpKey, newEp);
             }
         }
 
@@ -339,18 +481,18 @@ public class EndpointManager implements AutoCloseable {
             // endpoint is not external anymore
             if (newLoc != null && oldLoc == null) {
                 createEndpoint(newLoc, newEpKey, newEpgIds, tenantId);
-                externalEndpointsWithoutLocation.remove(oldEpKey);
+                removeExternalEndpoint(oldEpKey);
                 endpoints.put(newEpKey, newEp);
-                notifyEndpointUpdated(newEpKey);
+                updatedEpKey = newEpKey;
                 notifyNewLoc = true;
                 notifyNewEg = true;
             }
             // endpoint changed to external
             else if (newLoc == null && oldLoc != null) {
                 removeEndpoint(oldEp, oldLoc, oldEpKey, oldEpgIds);
-                externalEndpointsWithoutLocation.put(newEpKey, newEp);
+                putExternalEndpoint(newEpKey, newEp);
                 endpoints.remove(oldEpKey);
-                notifyEndpointUpdated(oldEpKey);
+                updatedEpKey = oldEpKey;
                 notifyOldLoc = true;
                 notifyOldEg = true;
             // endpoint might have changed location, EPGs or it's properties
@@ -367,7 +509,7 @@ public class EndpointManager implements AutoCloseable {
                     }
                     removeEndpoint(oldEp, oldLoc, oldEpKey, oldEpgIds);
                     createEndpoint(newLoc, newEpKey, newEpgIds, tenantId);
-                    notifyEndpointUpdated(newEpKey);
+                    updatedEpKey = newEpKey;
             }
         }
 
@@ -376,15 +518,29 @@ public class EndpointManager implements AutoCloseable {
             if (oldLoc != null) {
                 removeEndpoint(oldEp, oldLoc, oldEpKey, oldEpgIds);
                 endpoints.remove(oldEpKey);
-                notifyEndpointUpdated(oldEpKey);
+                updatedEpKey = oldEpKey;
                 notifyOldLoc = true;
                 notifyOldEg = true;
             } else {
-                externalEndpointsWithoutLocation.remove(oldEpKey);
+                removeExternalEndpoint(oldEpKey);
             }
         }
 
+        Set<NodeId> changedNodeIds = new HashSet<>();
+        if (oldLoc != null)
+            changedNodeIds.add(oldLoc);
+        if (newLoc != null)
+            changedNodeIds.add(newLoc);
+        Set<EgKey> changedEgKeys = new HashSet<>();
+        for (EndpointGroupId oldEpgId : oldEpgIds)
+            changedEgKeys.add(new EgKey(oldEp.getTenant(), oldEpgId));
+        for (EndpointGroupId newEpgId : newEpgIds)
+            changedEgKeys.add(new EgKey(tenantId, newEpgId));
+        updateIndex(changedNodeIds, changedEgKeys, Sets.union(oldEpgIds, newEpgIds));
+
         // notifications
+        if (updatedEpKey != null)
+            notifyEndpointUpdated(updatedEpKey);
         if (notifyOldLoc)
             notifyNodeEndpointUpdated(oldLoc, oldEpKey);
         if (notifyNewLoc)
@@ -495,6 +651,9 @@ public class EndpointManager implements AutoCloseable {
 
     private void updateL3Endpoint(EndpointL3 newL3Ep) {
         LOG.trace("Updating L3 Endpoint {}");
+        if (arpTasker != null) {
+            arpTasker.l3EndpointUpdated(newL3Ep);
+        }
         notifyEndpointUpdated(new EpKey(newL3Ep.getL2Context(), newL3Ep.getMacAddress()));
         if (newL3Ep.getAugmentation(OfOverlayL3Context.class) == null) {
             LOG.info("L3Endpoint updated but no augmentation information");
@@ -503,6 +662,9 @@ public class EndpointManager implements AutoCloseable {
 
     private void removeL3Endpoint(EndpointL3 oldL3Ep) {
         LOG.trace("Removing L3 Endpoint {}");
+        if (arpTasker != null) {
+            arpTasker.l3EndpointRemoved(oldL3Ep.getKey());
+        }
         notifyEndpointUpdated(new EpKey(oldL3Ep.getL2Context(), oldL3Ep.getMacAddress()));
 
     }
@@ -49,6 +49,29 @@ public class FlowEquivalence extends Equivalence<Flow> {
             return false;
         }
 
+        if (!Objects.equals(a.getOutGroup(), b.getOutGroup())) {
+            return false;
+        }
+        if (!Objects.equals(a.getOutPort(), b.getOutPort())) {
+            return false;
+        }
+        if (!Objects.equals(a.getPriority(), b.getPriority())) {
+            return false;
+        }
+        if (!Objects.equals(a.getTableId(), b.getTableId())) {
+            return false;
+        }
+        if (!Objects.equals(a.isBarrier(), b.isBarrier())) {
+            return false;
+        }
+        if (!Objects.equals(a.isInstallHw(), b.isInstallHw())) {
+            return false;
+        }
+        if (!Objects.equals(a.isStrict(), b.isStrict())) {
+            return false;
+        }
+
+        // instructions and match are compared last, they are the most expensive
         List<Instruction> listA = new ArrayList<>();
         if (a.getInstructions() != null) {
             listA = a.getInstructions().getInstruction();
@@ -73,27 +96,6 @@ public class FlowEquivalence extends Equivalence<Flow> {
                 .equivalent(a.getMatch(), b.getMatch())) {
             return false;
         }
-        if (!Objects.equals(a.getOutGroup(), b.getOutGroup())) {
-            return false;
-        }
-        if (!Objects.equals(a.getOutPort(), b.getOutPort())) {
-            return false;
-        }
-        if (!Objects.equals(a.getPriority(), b.getPriority())) {
-            return false;
-        }
-        if (!Objects.equals(a.getTableId(), b.getTableId())) {
-            return false;
-        }
-        if (!Objects.equals(a.isBarrier(), b.isBarrier())) {
-            return false;
-        }
-        if (!Objects.equals(a.isInstallHw(), b.isInstallHw())) {
-            return false;
-        }
-        if (!Objects.equals(a.isStrict(), b.isStrict())) {
-            return false;
-        }
 
         return true;
     }
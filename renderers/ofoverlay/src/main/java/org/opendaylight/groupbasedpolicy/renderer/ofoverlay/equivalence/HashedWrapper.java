@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2016 Cisco Systems, Inc. and others. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.opendaylight.groupbasedpolicy.renderer.ofoverlay.equivalence;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Equivalence;
+import com.google.common.base.Preconditions;
+
+/**
+ * Wraps a reference together with its hash by an {@link Equivalence}. Unlike
+ * {@link Equivalence.Wrapper} the hash is computed only once, when the wrapper is created, and
+ * the equivalence is evaluated only for references with equal hashes.
+ *
+ * @param <T> type of the wrapped reference
+ */
+public final class HashedWrapper<T> {
+
+    private final Equivalence<? super T> equivalence;
+    private final T reference;
+    private final int hash;
+
+    private HashedWrapper(Equivalence<? super T> equivalence, @Nullable T reference) {
+        this.equivalence = Preconditions.checkNotNull(equivalence);
+        this.reference = reference;
+        this.hash = equivalence.hash(reference);
+    }
+
+    public static <T> HashedWrapper<T> wrap(Equivalence<? super T> equivalence, @Nullable T reference) {
+        return new HashedWrapper<>(equivalence, reference);
+    }
+
+    public @Nullable T get() {
+        return reference;
+    }
+
+    /**
+     * @return hash of the wrapped reference by the equivalence
+     */
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof HashedWrapper)) {
+            return false;
+        }
+        HashedWrapper<?> other = (HashedWrapper<?>) obj;
+        if (hash != other.hash || !equivalence.equals(other.equivalence)) {
+            return false;
+        }
+        @SuppressWarnings("unchecked")
+        Equivalence<Object> objEquivalence = (Equivalence<Object>) equivalence;
+        return objEquivalence.equivalent(reference, other.reference);
+    }
+
+    @Override
+    public String toString() {
+        return "HashedWrapper [hash=" + hash + ", reference=" + reference + "]";
+    }
+
+}
@@ -8,27 +8,58 @@
 
 package org.opendaylight.groupbasedpolicy.renderer.ofoverlay.flow;
 
-import com.google.common.base.Joiner;
-import com.google.common.base.Strings;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.primitives.UnsignedBytes;
 
 import org.apache.commons.lang3.StringUtils;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.FlowId;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.types.rev131026.flow.Match;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.openflowplugin.extension.general.rev140714.GeneralAugMatchNodesNodeTableFlow;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.openflowplugin.extension.general.rev140714.general.extension.grouping.Extension;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.openflowplugin.extension.general.rev140714.general.extension.list.grouping.ExtensionList;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.openflowplugin.extension.nicira.match.rev140714.NxAugMatchNodesNodeTableFlow;
-
+import org.opendaylight.yangtools.yang.binding.DataContainer;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.List;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class FlowIdUtils {
 
     private static final String TABLE_ID_PREFIX = "t";
     private static final String FLOWID_SEPARATOR = "|";
-    private static final String MATCH_PREFIX = "match[";
-    private static final String MATCH_SUFFIX = "]";
-    private static final String MATCH_SEPARATOR = ", ";
+
+    // Match is identified by 128-bit hash of its canonical encoding. The encoding consists only of
+    // values, names of enum constants, names of classes and names of getters, so it is the same
+    // after restart.
+    private static final HashFunction MATCH_HASH_FUNCTION = Hashing.murmur3_128();
+    private static final byte NULL_VALUE = 0;
+    private static final byte CONTAINER_VALUE = 1;
+    private static final byte LIST_VALUE = 2;
+    private static final byte STRING_VALUE = 3;
+    private static final byte NUMBER_VALUE = 4;
+    private static final byte BOOLEAN_VALUE = 5;
+    private static final byte OTHER_VALUE = 6;
+    private static final ConcurrentMap<Class<?>, Method[]> GETTERS_BY_TYPE = new ConcurrentHashMap<>();
+    private static final Comparator<Method> METHOD_NAME_COMPARATOR = new Comparator<Method>() {
+
+        @Override
+        public int compare(Method a, Method b) {
+            return a.getName().compareTo(b.getName());
+        }
+    };
 
     // *** flow from FlowTable (abstract parent) ***
 
@@ -44,7 +75,8 @@ public class FlowIdUtils {
     }
 
     /**
-     * FlowId based on match (with prefix like "t2|localL3|")
+     * FlowId based on match (with prefix like "t2|localL3|"). Match is represented by its hash
+     * which is computed from values in the match (order of extensions is ignored).
      *
      * @param tableId Short
      * @param prefix String
@@ -62,146 +94,117 @@ public class FlowIdUtils {
         if (match == null) {
             return StringUtils.EMPTY;
         }
-        StringBuilder builder = new StringBuilder(MATCH_PREFIX);
-        boolean first = true;
-        if (match.getEthernetMatch() != null) {
-            if (first) {
-                first = false;
-            } else {
-                builder.append(MATCH_SEPARATOR);
-            }
-            builder.append(match.getEthernetMatch());
-        }
-        if (match.getIcmpv4Match() != null) {
-            if (first) {
-                first = false;
-            } else {
-                builder.append(MATCH_SEPARATOR);
-            }
-            builder.append(match.getIcmpv4Match());
-        }
-        if (match.getIcmpv6Match() != null) {
-            if (first) {
-                first = false;
-            } else {
-                builder.append(MATCH_SEPARATOR);
-            }
-            builder.append(match.getIcmpv6Match());
-        }
-        if (match.getInPhyPort() != null) {
-            if (first) {
-                first = false;
-            } else {
-                builder.append(MATCH_SEPARATOR);
-            }
-            builder.append("inPhyPort=").append(match.getInPhyPort());
-        }
-        if (match.getInPort() != null) {
-            if (first) {
-                first = false;
-            } else {
-                builder.append(MATCH_SEPARATOR);
-            }
-            builder.append("inPort=").append(match.getInPort());
-        }
-        if (match.getIpMatch() != null) {
-            if (first) {
-                first = false;
-            } else {
-                builder.append(MATCH_SEPARATOR);
-            }
-            builder.append(match.getIpMatch());
-        }
-        if (match.getLayer3Match() != null) {
-            if (first) {
-                first = false;
-            } else {
-                builder.append(MATCH_SEPARATOR);
-            }
-            builder.append(match.getLayer3Match());
-        }
-        if (match.getLayer4Match() != null) {
-            if (first) {
-                first = false;
-            } else {
-                builder.append(MATCH_SEPARATOR);
-            }
-            builder.append(match.getLayer4Match());
-        }
-        if (match.getMetadata() != null) {
-            if (first) {
-                first = false;
-            } else {
-                builder.append(MATCH_SEPARATOR);
-            }
-            builder.append(match.getMetadata());
-        }
-        if (match.getProtocolMatchFields() != null) {
-            if (first) {
-                first = false;
-            } else {
-                builder.append(MATCH_SEPARATOR);
-            }
-            builder.append(match.getProtocolMatchFields());
-        }
-        if (match.getTcpFlagsMatch() != null) {
-            if (first) {
-                first = false;
-            } else {
-                builder.append(MATCH_SEPARATOR);
-            }
-            builder.append(match.getTcpFlagsMatch());
-        }
-        if (match.getTunnel() != null) {
-            if (first) {
-                first = false;
-            } else {
-                builder.append(MATCH_SEPARATOR);
-            }
-            builder.append(match.getTunnel());
-        }
-        if (match.getVlanMatch() != null) {
-            if (first) {
-                first = false;
-            } else {
-                builder.append(MATCH_SEPARATOR);
-            }
-            builder.append(match.getVlanMatch());
-        }
+        return hashMatch(match).toString();
+    }
+
+    static HashCode hashMatch(Match match) {
+        Hasher hasher = MATCH_HASH_FUNCTION.newHasher();
+        putValue(hasher, match);
 
         // only one augmentation is used in Match at the moment;
         // if in the future there will be more of them, similar handling has to be implemented
         GeneralAugMatchNodesNodeTableFlow generalAug = match.getAugmentation(GeneralAugMatchNodesNodeTableFlow.class);
-        if(generalAug != null && generalAug.getExtensionList() != null) {
-            TreeSet<String> extensionAugmentationStrings = new TreeSet<>(new Comparator<String>() {
-                @Override
-                public int compare(String a, String b) {
-                    return Strings.nullToEmpty(a).compareTo(Strings.nullToEmpty(b));
-                }
-            });
+        if (generalAug != null && generalAug.getExtensionList() != null) {
+            // extensions are hashed one by one and sorted to ignore their order and duplicates
+            TreeSet<byte[]> extensionHashes = new TreeSet<>(UnsignedBytes.lexicographicalComparator());
             for (ExtensionList e : generalAug.getExtensionList()) {
-                Extension ext = e.getExtension();
                 // only one augmentation is used in Extension at the moment;
-                // if in the future there will be more of them, similar handling has to be implemented,
-                // probing augmentations one by one and adding their toString results to our TreeSet
-                // (and every List<> in them needs to be cast to Set<> to avoid non-equivalence
-                // due to different element order, and possible element duplication)
-                NxAugMatchNodesNodeTableFlow nxAug = ext.getAugmentation(NxAugMatchNodesNodeTableFlow.class);
+                // if in the future there will be more of them, similar handling has to be implemented
+                if (e.getExtension() == null) {
+                    continue;
+                }
+                NxAugMatchNodesNodeTableFlow nxAug = e.getExtension().getAugmentation(NxAugMatchNodesNodeTableFlow.class);
                 if (nxAug != null) {
-                    extensionAugmentationStrings.add(nxAug.toString());
+                    Hasher extensionHasher = MATCH_HASH_FUNCTION.newHasher();
+                    putValue(extensionHasher, nxAug);
+                    extensionHashes.add(extensionHasher.hash().asBytes());
                 }
             }
+            hasher.putInt(extensionHashes.size());
+            for (byte[] extensionHash : extensionHashes) {
+                hasher.putBytes(extensionHash);
+            }
+        }
+        return hasher.hash();
+    }
 
-            if (!first) {
-                builder.append(MATCH_SEPARATOR);
+    private static void putValue(Hasher hasher, Object value) {
+        if (value == null) {
+            hasher.putByte(NULL_VALUE);
+        } else if (value instanceof DataContainer) {
+            Class<? extends DataContainer> type = ((DataContainer) value).getImplementedInterface();
+            hasher.putByte(CONTAINER_VALUE).putUnencodedChars(type.getName());
+            putGetterValues(hasher, type, value);
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            hasher.putByte(LIST_VALUE).putInt(list.size());
+            for (Object item : list) {
+                putValue(hasher, item);
             }
-            builder.append("GeneralAugMatchNodesNodeTableFlow[<ExtensionList>=")
-                    .append(Joiner.on(", ").skipNulls().join(extensionAugmentationStrings))
-                    .append(']');
+        } else if (value instanceof String) {
+            String string = (String) value;
+            hasher.putByte(STRING_VALUE).putInt(string.length()).putUnencodedChars(string);
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short
+                || value instanceof Byte) {
+            hasher.putByte(NUMBER_VALUE).putLong(((Number) value).longValue());
+        } else if (value instanceof BigInteger) {
+            byte[] bytes = ((BigInteger) value).toByteArray();
+            hasher.putByte(NUMBER_VALUE).putInt(bytes.length).putBytes(bytes);
+        } else if (value instanceof BigDecimal) {
+            BigDecimal decimal = (BigDecimal) value;
+            putValue(hasher, decimal.unscaledValue());
+            hasher.putInt(decimal.scale());
+        } else if (value instanceof Boolean) {
+            hasher.putByte(BOOLEAN_VALUE).putBoolean((Boolean) value);
+        } else if (value instanceof Enum) {
+            hasher.putByte(OTHER_VALUE).putUnencodedChars(((Enum<?>) value).name());
+        } else if (value instanceof Class) {
+            hasher.putByte(OTHER_VALUE).putUnencodedChars(((Class<?>) value).getName());
+        } else if (value instanceof char[]) {
+            char[] chars = (char[]) value;
+            hasher.putByte(OTHER_VALUE).putInt(chars.length).putUnencodedChars(CharBuffer.wrap(chars));
+        } else {
+            // typedef or union
+            hasher.putByte(CONTAINER_VALUE).putUnencodedChars(value.getClass().getName());
+            putGetterValues(hasher, value.getClass(), value);
         }
-        builder.append(MATCH_SUFFIX);
+    }
+
+    private static void putGetterValues(Hasher hasher, Class<?> type, Object value) {
+        for (Method getter : getGetters(type)) {
+            Object getterValue;
+            try {
+                getterValue = getter.invoke(value);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new IllegalStateException("Cannot read " + getter.getName() + " of " + type.getName(), e);
+            }
+            if (getterValue != null) {
+                hasher.putUnencodedChars(getter.getName());
+                putValue(hasher, getterValue);
+            }
+        }
+    }
 
-        return builder.toString();
+    /**
+     * @return public getters of the type sorted by name
+     */
+    private static Method[] getGetters(Class<?> type) {
+        Method[] getters = GETTERS_BY_TYPE.get(type);
+        if (getters == null) {
+            List<Method> getterList = new ArrayList<>();
+            for (Method method : type.getMethods()) {
+                if (method.getParameterTypes().length == 0 && !Modifier.isStatic(method.getModifiers())
+                        && method.getReturnType() != Void.TYPE && method.getDeclaringClass() != Object.class
+                        && (method.getName().startsWith("get") || method.getName().startsWith("is"))
+                        && !"getImplementedInterface".equals(method.getName())) {
+                    getterList.add(method);
+                }
+            }
+            getters = getterList.toArray(new Method[getterList.size()]);
+            Arrays.sort(getters, METHOD_NAME_COMPARATOR);
+            GETTERS_BY_TYPE.putIfAbsent(type, getters);
+        }
+        return getters;
     }
 
 }
@@ -7,12 +7,17 @@
  */
 package org.opendaylight.groupbasedpolicy.renderer.ofoverlay.flow;
 
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.Objects;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.google.common.annotations.VisibleForTesting;
 
@@ -47,10 +52,86 @@ public class OrdinalFactory {
      */
     private final static AtomicInteger policyOrdinal = new AtomicInteger(1);
 
-    private final static ConcurrentMap<String, Integer> ordinals = new ConcurrentHashMap<>();
+    /*
+     * Ordinals are reclaimed in epochs. Each ordinal remembers the last epoch in which it was
+     * used. After a full flow update, ordinals not used in the epoch of the update are released.
+     * Flows with released ordinals may still be present on switches until the flows are replaced
+     * by next flow updates, therefore released ordinals are reused only after the next release.
+     */
+    private final static AtomicLong epoch = new AtomicLong();
+    private final static Queue<Integer> releasedOrdinals = new ConcurrentLinkedQueue<>();
+    private final static Queue<Integer> freeOrdinals = new ConcurrentLinkedQueue<>();
+
+    private final static ConcurrentMap<Object, Ordinal> ordinals = new ConcurrentHashMap<>();
+
+    private final static ConcurrentMap<ConditionGroup, Ordinal> cgOrdinals = new ConcurrentHashMap<>();
 
-    // XXX - need to garbage collect
-    private final static ConcurrentMap<ConditionGroup, Integer> cgOrdinals = new ConcurrentHashMap<>();
+    private static final Comparator<EndpointGroupId> EPG_ID_COMPARATOR = new Comparator<EndpointGroupId>() {
+
+        @Override
+        public int compare(EndpointGroupId o1, EndpointGroupId o2) {
+            return o1.getValue().compareTo(o2.getValue());
+        }
+    };
+
+    private static final class Ordinal {
+
+        private final int value;
+        private volatile long lastUsedEpoch;
+
+        private Ordinal(int value, long lastUsedEpoch) {
+            this.value = value;
+            this.lastUsedEpoch = lastUsedEpoch;
+        }
+
+        private int use() {
+            long currentEpoch = epoch.get();
+            // avoids volatile write when the ordinal is used repeatedly in the same epoch
+            if (lastUsedEpoch != currentEpoch) {
+                lastUsedEpoch = currentEpoch;
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Key of the context ordinal of an endpoint. Endpoint groups are sorted so the key does not
+     * depend on the order of endpoint groups of the endpoint.
+     */
+    private static final class EndpointContextKey {
+
+        private final TenantId tenantId;
+        private final EndpointGroupId[] epgIds;
+        private final NetworkDomainId networkContainment;
+        private final int hashCode;
+
+        private EndpointContextKey(TenantId tenantId, EndpointGroupId[] epgIds, NetworkDomainId networkContainment) {
+            this.tenantId = tenantId;
+            this.epgIds = epgIds;
+            this.networkContainment = networkContainment;
+            this.hashCode = 31 * (31 * Objects.hashCode(tenantId) + Arrays.hashCode(epgIds))
+                    + Objects.hashCode(networkContainment);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof EndpointContextKey)) {
+                return false;
+            }
+            EndpointContextKey other = (EndpointContextKey) obj;
+            return hashCode == other.hashCode && Objects.equals(tenantId, other.tenantId)
+                    && Arrays.equals(epgIds, other.epgIds)
+                    && Objects.equals(networkContainment, other.networkContainment);
+        }
+    }
 
     /**
      * Creates an ordinal for the OfOverlay pipeline comparison, based on @TenantId and a
@@ -63,7 +144,7 @@ public class OrdinalFactory {
     public static int getContextOrdinal(final TenantId tenantId, final UniqueId id) {
         if (tenantId == null || id == null)
             return 0;
-        return getContextOrdinalFromString(tenantId.getValue() + "|" + id.getValue());
+        return getContextOrdinalFromKey(tenantId.getValue() + "|" + id.getValue());
     }
 
     /**
@@ -77,14 +158,7 @@ public class OrdinalFactory {
     public static int getCondGroupOrdinal(final ConditionGroup cg) {
         if (cg == null)
             return 0;
-        Integer ord = cgOrdinals.get(cg);
-        if (ord == null) {
-            ord = policyOrdinal.getAndIncrement();
-            Integer old = cgOrdinals.putIfAbsent(cg, ord);
-            if (old != null)
-                ord = old;
-        }
-        return ord.intValue();
+        return getOrdinal(cgOrdinals, cg);
     }
 
     /**
@@ -98,79 +172,119 @@ public class OrdinalFactory {
      */
 
     public static int getContextOrdinal(NodeId destNode) throws Exception {
-        return getContextOrdinalFromString(destNode.getValue());
+        return getContextOrdinalFromKey(destNode.getValue());
     }
 
     public static int getContextOrdinal(Endpoint ep, NetworkDomainId networkContainment) {
+        return getContextOrdinalFromKey(
+                new EndpointContextKey(ep.getTenant(), getSortedEpgIds(ep), networkContainment));
+    }
 
-        Set<String> epgs = new TreeSet<>();
+    public static int getContextOrdinal(Endpoint ep) {
+        return getContextOrdinalFromKey(new EndpointContextKey(ep.getTenant(), getSortedEpgIds(ep), null));
+    }
 
-        // Get EPGs and add to ordered Set
-        if (ep.getEndpointGroup() != null) {
-            epgs.add(ep.getEndpointGroup().getValue());
+    /**
+     * @return distinct EPGs of the endpoint sorted by value
+     */
+    private static EndpointGroupId[] getSortedEpgIds(Endpoint ep) {
+        List<EndpointGroupId> epgIds = ep.getEndpointGroups();
+        EndpointGroupId epgId = ep.getEndpointGroup();
+        if (epgIds == null || epgIds.isEmpty()) {
+            return epgId == null ? new EndpointGroupId[0] : new EndpointGroupId[] {epgId};
         }
-        if (ep.getEndpointGroups() != null) {
-            for (EndpointGroupId epgId : ep.getEndpointGroups()) {
-                epgs.add(epgId.getValue());
-            }
+        if (epgId == null && epgIds.size() == 1) {
+            return new EndpointGroupId[] {epgIds.get(0)};
         }
-
-        StringBuilder key = new StringBuilder(ep.getTenant().getValue());
-
-        for (String epg : epgs) {
-            key.append('|');
-            key.append(epg);
+        EndpointGroupId[] sortedEpgIds = new EndpointGroupId[epgIds.size() + (epgId == null ? 0 : 1)];
+        int count = 0;
+        if (epgId != null) {
+            sortedEpgIds[count++] = epgId;
         }
-
-        key.append("|").append(networkContainment);
-
-        return getContextOrdinalFromString(key.toString());
-
-    }
-
-    public static int getContextOrdinal(Endpoint ep) {
-
-        Set<String> epgs = new TreeSet<>();
-
-        // Get EPGs and add to ordered Set
-        if (ep.getEndpointGroup() != null) {
-            epgs.add(ep.getEndpointGroup().getValue());
+        for (EndpointGroupId id : epgIds) {
+            sortedEpgIds[count++] = id;
         }
-        if (ep.getEndpointGroups() != null) {
-            for (EndpointGroupId epgId : ep.getEndpointGroups()) {
-                epgs.add(epgId.getValue());
+        Arrays.sort(sortedEpgIds, EPG_ID_COMPARATOR);
+        // remove duplicates
+        int distinct = 1;
+        for (int i = 1; i < count; i++) {
+            if (!sortedEpgIds[i].equals(sortedEpgIds[distinct - 1])) {
+                sortedEpgIds[distinct++] = sortedEpgIds[i];
             }
         }
-
-        StringBuilder key = new StringBuilder(ep.getTenant().getValue());
-
-        for (String epg : epgs) {
-            key.append('|');
-            key.append(epg);
-        }
-
-        return getContextOrdinalFromString(key.toString());
-
+        return distinct == count ? sortedEpgIds : Arrays.copyOf(sortedEpgIds, distinct);
     }
 
     /**
      * Get a 32-bit context ordinal suitable for use in the OF data plane for
      * the given policy item.
      *
-     * @param id
-     *        the unique ID for the element
+     * @param key
+     *        the unique key for the element
      * @return the 32-bit ordinal value
      */
-    private static int getContextOrdinalFromString(final String id) {
+    private static int getContextOrdinalFromKey(final Object key) {
+        return getOrdinal(ordinals, key);
+    }
 
-        Integer ord = ordinals.get(id);
+    private static <K> int getOrdinal(ConcurrentMap<K, Ordinal> ordinalsByKey, K key) {
+        Ordinal ord = ordinalsByKey.get(key);
         if (ord == null) {
-            ord = policyOrdinal.getAndIncrement();
-            Integer old = ordinals.putIfAbsent(id, ord);
-            if (old != null)
-                ord = old;
+            Integer value = freeOrdinals.poll();
+            Ordinal newOrd = new Ordinal(value != null ? value : policyOrdinal.getAndIncrement(), epoch.get());
+            ord = ordinalsByKey.putIfAbsent(key, newOrd);
+            if (ord == null) {
+                ord = newOrd;
+            } else {
+                // value was not used
+                freeOrdinals.add(newOrd.value);
+            }
+        }
+        return ord.use();
+    }
+
+    /**
+     * Starts a new epoch of ordinals. Ordinals used from now on are marked as used in the new
+     * epoch. Should be called before full flow update.
+     *
+     * @return the new epoch
+     */
+    public static long startEpoch() {
+        return epoch.incrementAndGet();
+    }
+
+    /**
+     * Releases ordinals which were not used since the given epoch started. Ordinals released by
+     * previous call of this method can be reused from now on. Should be called only after flows
+     * of all switches were recomputed and committed in the epoch, so the released ordinals are
+     * not used by any desired flow.
+     *
+     * @param fullUpdateEpoch epoch returned by {@link #startEpoch()} before full flow update
+     * @return number of released ordinals
+     */
+    public static int releaseUnusedOrdinals(long fullUpdateEpoch) {
+        // ordinals released last time are not present in flows anymore
+        Integer value;
+        while ((value = releasedOrdinals.poll()) != null) {
+            freeOrdinals.add(value);
+        }
+        return releaseUnusedOrdinals(ordinals, fullUpdateEpoch) + releaseUnusedOrdinals(cgOrdinals, fullUpdateEpoch);
+    }
+
+    private static <K> int releaseUnusedOrdinals(ConcurrentMap<K, Ordinal> ordinalsByKey, long fullUpdateEpoch) {
+        int released = 0;
+        for (Iterator<Ordinal> iterator = ordinalsByKey.values().iterator(); iterator.hasNext();) {
+            Ordinal ord = iterator.next();
+            if (ord.lastUsedEpoch < fullUpdateEpoch) {
+                iterator.remove();
+                releasedOrdinals.add(ord.value);
+                released++;
+            }
+        }
+        if (released > 0) {
+            LOG.debug("{} ordinals unused since epoch {} released", released, fullUpdateEpoch);
         }
-        return ord.intValue();
+        return released;
     }
 
     public static final EndpointFwdCtxOrdinals getEndpointFwdCtxOrdinals(OfContext ctx,
@@ -278,5 +392,7 @@ public class OrdinalFactory {
     // Used only for unit testing
     public static void resetPolicyOrdinalValue() {
         policyOrdinal.set(1);
+        releasedOrdinals.clear();
+        freeOrdinals.clear();
     }
 }
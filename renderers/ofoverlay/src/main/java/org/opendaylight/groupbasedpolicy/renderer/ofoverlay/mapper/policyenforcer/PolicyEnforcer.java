@@ -22,7 +22,11 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.opendaylight.groupbasedpolicy.api.sf.AllowActionDefinition;
 import org.opendaylight.groupbasedpolicy.api.sf.ChainActionDefinition;
@@ -30,6 +34,7 @@ import org.opendaylight.groupbasedpolicy.dto.EgKey;
 import org.opendaylight.groupbasedpolicy.dto.EndpointConstraint;
 import org.opendaylight.groupbasedpolicy.dto.IndexedTenant;
 import org.opendaylight.groupbasedpolicy.dto.Policy;
+import org.opendaylight.groupbasedpolicy.dto.PolicyInfo;
 import org.opendaylight.groupbasedpolicy.dto.RuleGroup;
 import org.opendaylight.groupbasedpolicy.renderer.ofoverlay.OfContext;
 import org.opendaylight.groupbasedpolicy.renderer.ofoverlay.OfWriter;
@@ -89,8 +94,13 @@ import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.overlay.
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ComparisonChain;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Ordering;
 import com.google.common.collect.Table.Cell;
 
@@ -148,6 +158,11 @@ public class PolicyEnforcer extends FlowTable {
     private static short TABLE_ID;
     private static Instruction gotoEgressNatInstruction;
     private static Instruction gotoExternalInstruction;
+    // templates shared by all flow updates with the same policy snapshot; version numbers are not
+    // used as the key since they start again from 0 when the renderer is restarted
+    private static final AtomicReference<FlowTemplates> sharedTemplates =
+            new AtomicReference<>(new FlowTemplates(null));
+    private FlowTemplates localTemplates;
 
     public PolicyEnforcer(OfContext ctx, short tableId) {
         super(ctx);
@@ -180,6 +195,7 @@ public class PolicyEnforcer extends FlowTable {
             LOG.debug("Method getEndpointFwdCtxOrdinals returned null for EP {}", endpoint);
             return;
         }
+        ConcurrentMap<EpgPairKey, List<RuleFlowTemplate>> flowTemplates = getFlowTemplates();
         for (EgKey sourceEpg : ctx.getEndpointManager().getEgKeysForEndpoint(endpoint)) {
             for (EgKey destEpg : ctx.getCurrentPolicy().getPeers(sourceEpg)) {
                 Collection<Endpoint> destinationEndpoints = getEndpointsForGroup(destEpg);
@@ -194,14 +210,17 @@ public class PolicyEnforcer extends FlowTable {
                     NetworkElements netElements =
                             new NetworkElements(endpoint, destinationEndpoint, sourceEpg, destEpg, nodeId, ctx);
 
-                    // Get policy in both directions
-                    Policy sourceEpgPolicy = ctx.getCurrentPolicy().getPolicy(destEpg, sourceEpg);
-                    Policy destinationEpgPolicy = ctx.getCurrentPolicy().getPolicy(sourceEpg, destEpg);
-
-                    // Resolve flows in both directions if possible according to policy. Get back
-                    // status
-                    // of resolution
-                    resolveSourceEpgPolicy(ofWriter, netElements, sourceEpgPolicy, destinationEpgPolicy);
+                    // Rules resolved in both directions are the same for all endpoints of the EPG
+                    // pair with the same conditions, only endpoint specific fields are filled in
+                    EpgPairKey epgPairKey = new EpgPairKey(sourceEpg, destEpg, endpoint, destinationEndpoint);
+                    List<RuleFlowTemplate> ruleFlowTemplates = flowTemplates.get(epgPairKey);
+                    if (ruleFlowTemplates == null) {
+                        ruleFlowTemplates = resolveRuleFlowTemplates(sourceEpg, destEpg, endpoint, destinationEndpoint);
+                        flowTemplates.putIfAbsent(epgPairKey, ruleFlowTemplates);
+                    }
+                    for (RuleFlowTemplate ruleFlowTemplate : ruleFlowTemplates) {
+                        createFlowsForRule(ruleFlowTemplate, netElements, ofWriter);
+                    }
 
                     ofWriter.writeFlow(nodeId, TABLE_ID, createArpFlow(srcEpFwdCxtOrdinals.getFdId()));
                 }
@@ -218,19 +237,51 @@ public class PolicyEnforcer extends FlowTable {
         return destinationEndpoints;
     }
 
-    private void resolveSourceEpgPolicy(OfWriter ofWriter, NetworkElements netElements, Policy directPolicy,
-            Policy reversedPolicy) {
+    /**
+     * @return templates of rule flows for the current policy of the context, templates of policy
+     *         taken from {@link org.opendaylight.groupbasedpolicy.renderer.ofoverlay.PolicyInfoCache}
+     *         are shared by all flow updates using the same {@link PolicyInfo} instance
+     */
+    @VisibleForTesting
+    ConcurrentMap<EpgPairKey, List<RuleFlowTemplate>> getFlowTemplates() {
+        PolicyInfo policyInfo = ctx.getCurrentPolicy();
+        if (ctx.getPolicyVersion() >= 0) {
+            FlowTemplates shared = sharedTemplates.get();
+            if (shared.policyInfo != policyInfo) {
+                sharedTemplates.compareAndSet(shared, new FlowTemplates(policyInfo));
+                shared = sharedTemplates.get();
+            }
+            if (shared.policyInfo == policyInfo) {
+                return shared.templates;
+            }
+        }
+        // policy is not cached or other policy was shared concurrently so templates are kept only
+        // by this table
+        if (localTemplates == null || localTemplates.policyInfo != policyInfo) {
+            localTemplates = new FlowTemplates(policyInfo);
+        }
+        return localTemplates.templates;
+    }
+
+    private List<RuleFlowTemplate> resolveRuleFlowTemplates(EgKey sourceEpg, EgKey destEpg, Endpoint srcEp,
+            Endpoint dstEp) {
+        // Get policy in both directions
+        Policy directPolicy = ctx.getCurrentPolicy().getPolicy(destEpg, sourceEpg);
+        Policy reversedPolicy = ctx.getCurrentPolicy().getPolicy(sourceEpg, destEpg);
 
         List<Cell<EndpointConstraint, EndpointConstraint, List<RuleGroup>>> providedRules =
-                getActiveRulesBetweenEps(directPolicy, netElements.getDstEp(), netElements.getSrcEp());
+                getActiveRulesBetweenEps(directPolicy, dstEp, srcEp);
         List<Cell<EndpointConstraint, EndpointConstraint, List<RuleGroup>>> consumedRules =
-                getActiveRulesBetweenEps(reversedPolicy, netElements.getSrcEp(), netElements.getDstEp());
+                getActiveRulesBetweenEps(reversedPolicy, srcEp, dstEp);
         List<Cell<EndpointConstraint, EndpointConstraint, List<RuleGroup>>> activeRules;
         if (!providedRules.isEmpty()) {
             activeRules = providedRules;
         } else {
             activeRules = consumedRules;
         }
+        List<Rule> allProvidedRules = getRules(providedRules);
+        List<Rule> allConsumedRules = getRules(consumedRules);
+        ImmutableList.Builder<RuleFlowTemplate> ruleFlowTemplates = ImmutableList.builder();
         int priority = 65000;
         for (Cell<EndpointConstraint, EndpointConstraint, List<RuleGroup>> activeRulesByConstraints : activeRules) {
             Set<IpPrefix> sIpPrefixes;
@@ -249,19 +300,20 @@ public class PolicyEnforcer extends FlowTable {
                 for (Direction direction : new Direction[] {Direction.In, Direction.Out}) {
                     List<Rule> sameDirectionRules;
                     if (providedRules.contains(activeRulesByConstraints)) {
-                        sameDirectionRules = uniteRulesByDirection(direction, rg.getRules(), getRules(consumedRules));
+                        sameDirectionRules = uniteRulesByDirection(direction, rg.getRules(), allConsumedRules);
                     } else {
                         sameDirectionRules = uniteRulesByDirection(direction, null, rg.getRules());
                     }
                     for (Rule rule : Ordering.from(TenantUtils.RULE_COMPARATOR)
                         .immutableSortedCopy(sameDirectionRules)) {
-                        createFlowsForRule(rule, getRules(providedRules), getRules(consumedRules), direction,
-                                netElements, ofWriter, tenant, sIpPrefixes, dIpPrefixes, priority);
+                        ruleFlowTemplates.add(createRuleFlowTemplate(rule, allProvidedRules, allConsumedRules,
+                                direction, tenant, sIpPrefixes, dIpPrefixes, priority));
                         priority--;
                     }
                 }
             }
         }
+        return ruleFlowTemplates.build();
     }
 
 
@@ -272,34 +324,43 @@ public class PolicyEnforcer extends FlowTable {
         return sameDirectionRules;
     }
 
-    private void createFlowsForRule(Rule rule, List<Rule> providedRules, List<Rule> consumedRules,
-            Direction direction, NetworkElements netElements,OfWriter ofWriter, IndexedTenant tenant, Set<IpPrefix> sIpPrefixes,
-            Set<IpPrefix> dIpPrefixes, int priority) {
-        List<Rule> reverseProvidedRules = findRulesInDirection(reverse(direction), providedRules);
-        List<String> resolvedSymmetricChains =
-                resolveSymetricChainActions(direction, rule, tenant, reverseProvidedRules, consumedRules);
+    private RuleFlowTemplate createRuleFlowTemplate(final Rule rule, List<Rule> providedRules,
+            final List<Rule> consumedRules, final Direction direction, final IndexedTenant tenant,
+            final Set<IpPrefix> sIpPrefixes, final Set<IpPrefix> dIpPrefixes, int priority) {
+        // Matches are created when first needed, rule can be skipped for all endpoints
+        Supplier<List<Match>> matches = Suppliers.memoize(new Supplier<List<Match>>() {
+
+            @Override
+            public List<Match> get() {
+                if (consumedRules.contains(rule)) {
+                    return createMatches(direction, reverse(direction), tenant, rule, sIpPrefixes, dIpPrefixes);
+                }
+                return createMatches(direction, direction, tenant, rule, sIpPrefixes, dIpPrefixes);
+            }
+        });
+        List<ActionTemplate> actions = createActionTemplates(tenant, rule);
+        return new RuleFlowTemplate(rule, direction, tenant, providedRules, consumedRules, matches, actions, priority);
+    }
+
+    private void createFlowsForRule(RuleFlowTemplate template, NetworkElements netElements, OfWriter ofWriter) {
+        List<Rule> reverseProvidedRules = findRulesInDirection(reverse(template.direction), template.providedRules);
+        List<String> resolvedSymmetricChains = resolveSymetricChainActions(template.direction, template.rule,
+                template.tenant, reverseProvidedRules, template.consumedRules);
         if (resolvedSymmetricChains == null) {
-            LOG.debug("Rule {} skipped. Reason: asymmetric use of symmetric chain", rule);
+            LOG.debug("Rule {} skipped. Reason: asymmetric use of symmetric chain", template.rule);
             return;
         }
         // Create list of matches/actions. Also creates chain flows when
         // specific action requires it
-        List<MatchBuilder> matches = null;
-        if (consumedRules.contains(rule)) {
-            matches = createMatches(direction, reverse(direction), netElements, tenant, rule,
-                    sIpPrefixes, dIpPrefixes);
-        } else {
-            matches = createMatches(direction, direction, netElements, tenant, rule, sIpPrefixes,
-                    dIpPrefixes);
-        }
-        List<ActionBuilder> actions = createActions(ofWriter, netElements, direction, tenant, rule,
+        List<MatchBuilder> matches = createMatches(template.matches.get(), template.direction, netElements);
+        List<ActionBuilder> actions = createActions(ofWriter, netElements, template.direction, template.actions,
                 resolvedSymmetricChains);
         if (actions == null) {
             return;
         }
 
         // Compose flows
-        createFlows(matches, actions, netElements, ofWriter, priority);
+        createFlows(matches, actions, netElements, ofWriter, template.priority);
     }
 
     private List<String> resolveSymetricChainActions(Direction direction, Rule rule, IndexedTenant tenant,
@@ -474,9 +535,12 @@ public class PolicyEnforcer extends FlowTable {
 
     }
 
-    private List<MatchBuilder> createMatches(Direction flowDirection, Direction classifierDirection,
-            NetworkElements netElements, IndexedTenant contractTenant, Rule rule, Set<IpPrefix> sIpPrefixes,
-            Set<IpPrefix> dIpPrefixes) {
+    /**
+     * @return matches of the rule without endpoint specific fields or {@code null} if the rule
+     *         cannot be classified
+     */
+    private List<Match> createMatches(Direction flowDirection, Direction classifierDirection,
+            IndexedTenant contractTenant, Rule rule, Set<IpPrefix> sIpPrefixes, Set<IpPrefix> dIpPrefixes) {
         Map<String, ParameterValue> paramsFromClassifier = new HashMap<>();
         Set<ClassifierDefinitionId> classifiers = new HashSet<>();
         for (ClassifierRef cr : rule.getClassifierRef()) {
@@ -521,23 +585,23 @@ public class PolicyEnforcer extends FlowTable {
         }
         List<Map<String, ParameterValue>> derivedParamsByName =
                 ParamDerivator.ETHER_TYPE_DERIVATOR.deriveParameter(paramsFromClassifier);
-        List<MatchBuilder> flowMatchBuilders = new ArrayList<>();
+        List<Match> flowMatches = new ArrayList<>();
         for (Map<String, ParameterValue> params : derivedParamsByName) {
             List<MatchBuilder> matchBuildersToResolve = new ArrayList<>();
             if (sIpPrefixes.isEmpty() && dIpPrefixes.isEmpty()) {
-                matchBuildersToResolve.add(createBaseMatch(flowDirection, netElements, null, null));
+                matchBuildersToResolve.add(createBaseMatch(flowDirection, null, null));
             } else if (!sIpPrefixes.isEmpty() && dIpPrefixes.isEmpty()) {
                 for (IpPrefix sIpPrefix : sIpPrefixes) {
-                    matchBuildersToResolve.add(createBaseMatch(flowDirection, netElements, sIpPrefix, null));
+                    matchBuildersToResolve.add(createBaseMatch(flowDirection, sIpPrefix, null));
                 }
             } else if (sIpPrefixes.isEmpty() && !dIpPrefixes.isEmpty()) {
                 for (IpPrefix dIpPrefix : dIpPrefixes) {
-                    matchBuildersToResolve.add(createBaseMatch(flowDirection, netElements, null, dIpPrefix));
+                    matchBuildersToResolve.add(createBaseMatch(flowDirection, null, dIpPrefix));
                 }
             } else {
                 for (IpPrefix sIpPrefix : sIpPrefixes) {
                     for (IpPrefix dIpPrefix : dIpPrefixes) {
-                        matchBuildersToResolve.add(createBaseMatch(flowDirection, netElements, sIpPrefix, dIpPrefix));
+                        matchBuildersToResolve.add(createBaseMatch(flowDirection, sIpPrefix, dIpPrefix));
                     }
                 }
             }
@@ -551,14 +615,35 @@ public class PolicyEnforcer extends FlowTable {
                 }
                 matchBuildersToResolve = new ArrayList<>(result.getMatchBuilders());
             }
-            flowMatchBuilders.addAll(matchBuildersToResolve);
+            for (MatchBuilder mb : matchBuildersToResolve) {
+                flowMatches.add(mb.build());
+            }
+        }
+        return ImmutableList.copyOf(flowMatches);
+    }
+
+    private List<MatchBuilder> createMatches(List<Match> matchTemplates, Direction direction,
+            NetworkElements netElements) {
+        if (matchTemplates == null) {
+            return null;
+        }
+        List<MatchBuilder> flowMatchBuilders = new ArrayList<>(matchTemplates.size());
+        for (Match matchTemplate : matchTemplates) {
+            MatchBuilder mb = new MatchBuilder(matchTemplate);
+            addEpgRegMatches(mb, direction, netElements);
+            // register matches replace extension matches of classifiers, e.g. masked L4 ports
+            FlowUtils.addNxExtensionMatches(mb, matchTemplate);
+            flowMatchBuilders.add(mb);
         }
         return flowMatchBuilders;
     }
 
-    private List<ActionBuilder> createActions(OfWriter ofWriter, NetworkElements netElements, Direction direction,
-            IndexedTenant contractTenant, Rule rule, List<String> resolvedSymmetricChains) {
-        List<ActionBuilder> actionBuilderList = new ArrayList<>();
+    /**
+     * @return actions of the rule in order of application or {@code null} if some action cannot
+     *         be resolved
+     */
+    private List<ActionTemplate> createActionTemplates(IndexedTenant contractTenant, Rule rule) {
+        List<ActionTemplate> actionTemplates = new ArrayList<>();
         if (rule.getActionRef() != null) {
 
             // Pre-sort by references using order, then name
@@ -591,22 +676,41 @@ public class PolicyEnforcer extends FlowTable {
                         }
                     }
                 }
-                if (action instanceof ChainAction) {
-                    ((ChainAction) action).setResolvedSymmetricChains(resolvedSymmetricChains);
-                }
+                actionTemplates.add(new ActionTemplate(action, Collections.unmodifiableMap(params),
+                        actionRef.getOrder()));
+            }
+        }
+        return ImmutableList.copyOf(actionTemplates);
+    }
 
-                // Convert the GBP Action to one or more OpenFlow Actions
-                if ((!(actionRefList.indexOf(actionRef) == (actionRefList.size() - 1)
-                        && action.equals(SubjectFeatures.getAction(AllowActionDefinition.DEFINITION.getId()))))
-                        && actionBuilderList != null) {
-                    if (ctx.getDataBroker() != null) {
-                        actionBuilderList =
-                            action.updateAction(actionBuilderList, params, actionRef.getOrder(), netElements, ofWriter, ctx, direction);
+    private List<ActionBuilder> createActions(OfWriter ofWriter, NetworkElements netElements, Direction direction,
+            List<ActionTemplate> actionTemplates, List<String> resolvedSymmetricChains) {
+        if (actionTemplates == null) {
+            return null;
+        }
+        List<ActionBuilder> actionBuilderList = new ArrayList<>();
+        Action allowAction = SubjectFeatures.getAction(AllowActionDefinition.DEFINITION.getId());
+        for (int i = 0; i < actionTemplates.size(); i++) {
+            ActionTemplate actionTemplate = actionTemplates.get(i);
+            Action action = actionTemplate.action;
+
+            // Convert the GBP Action to one or more OpenFlow Actions
+            if ((!(i == (actionTemplates.size() - 1) && action.equals(allowAction)))
+                    && actionBuilderList != null) {
+                if (ctx.getDataBroker() != null) {
+                    if (action instanceof ChainAction) {
+                        // action instances are shared by switch tasks, chains are passed per call
+                        actionBuilderList = ((ChainAction) action).updateAction(actionBuilderList,
+                                actionTemplate.params, actionTemplate.order, netElements, ofWriter, ctx, direction,
+                                resolvedSymmetricChains);
                     } else {
-                        LOG.error("DataBroket is null. Cannot update action {}",
-                            action.getActionDef().getName().getValue());
-                        return null;
+                        actionBuilderList = action.updateAction(actionBuilderList, actionTemplate.params,
+                                actionTemplate.order, netElements, ofWriter, ctx, direction);
                     }
+                } else {
+                    LOG.error("DataBroket is null. Cannot update action {}",
+                        action.getActionDef().getName().getValue());
+                    return null;
                 }
             }
         }
@@ -671,14 +775,9 @@ public class PolicyEnforcer extends FlowTable {
         }
     }
 
-    private MatchBuilder createBaseMatch(Direction direction, NetworkElements netElements, IpPrefix sIpPrefix,
-            IpPrefix dIpPrefix) {
+    private MatchBuilder createBaseMatch(Direction direction, IpPrefix sIpPrefix, IpPrefix dIpPrefix) {
         MatchBuilder baseMatch = new MatchBuilder();
         if (direction.equals(Direction.In)) {
-            addNxRegMatch(baseMatch, RegMatch.of(NxmNxReg0.class, (long) netElements.getDstEpOrdinals().getEpgId()),
-                    RegMatch.of(NxmNxReg1.class, (long) netElements.getDstEpOrdinals().getCgId()),
-                    RegMatch.of(NxmNxReg2.class, (long) netElements.getSrcEpOrdinals().getEpgId()),
-                    RegMatch.of(NxmNxReg3.class, (long) netElements.getSrcEpOrdinals().getCgId()));
             if (sIpPrefix != null) {
                 baseMatch.setLayer3Match(createLayer3Match(sIpPrefix, true));
             }
@@ -686,10 +785,6 @@ public class PolicyEnforcer extends FlowTable {
                 baseMatch.setLayer3Match(createLayer3Match(dIpPrefix, false));
             }
         } else {
-            addNxRegMatch(baseMatch, RegMatch.of(NxmNxReg0.class, (long) netElements.getSrcEpOrdinals().getEpgId()),
-                    RegMatch.of(NxmNxReg1.class, (long) netElements.getSrcEpOrdinals().getCgId()),
-                    RegMatch.of(NxmNxReg2.class, (long) netElements.getDstEpOrdinals().getEpgId()),
-                    RegMatch.of(NxmNxReg3.class, (long) netElements.getDstEpOrdinals().getCgId()));
             if (sIpPrefix != null) {
                 baseMatch.setLayer3Match(createLayer3Match(sIpPrefix, false));
             }
@@ -700,6 +795,20 @@ public class PolicyEnforcer extends FlowTable {
         return baseMatch;
     }
 
+    private void addEpgRegMatches(MatchBuilder match, Direction direction, NetworkElements netElements) {
+        if (direction.equals(Direction.In)) {
+            addNxRegMatch(match, RegMatch.of(NxmNxReg0.class, (long) netElements.getDstEpOrdinals().getEpgId()),
+                    RegMatch.of(NxmNxReg1.class, (long) netElements.getDstEpOrdinals().getCgId()),
+                    RegMatch.of(NxmNxReg2.class, (long) netElements.getSrcEpOrdinals().getEpgId()),
+                    RegMatch.of(NxmNxReg3.class, (long) netElements.getSrcEpOrdinals().getCgId()));
+        } else {
+            addNxRegMatch(match, RegMatch.of(NxmNxReg0.class, (long) netElements.getSrcEpOrdinals().getEpgId()),
+                    RegMatch.of(NxmNxReg1.class, (long) netElements.getSrcEpOrdinals().getCgId()),
+                    RegMatch.of(NxmNxReg2.class, (long) netElements.getDstEpOrdinals().getEpgId()),
+                    RegMatch.of(NxmNxReg3.class, (long) netElements.getDstEpOrdinals().getCgId()));
+        }
+    }
+
     private Layer3Match createLayer3Match(IpPrefix ipPrefix, boolean isSrc) {
         if (ipPrefix.getIpv4Prefix() != null) {
             if (isSrc) {
@@ -770,4 +879,104 @@ public class PolicyEnforcer extends FlowTable {
         }
 
     }
+
+    /**
+     * Rule flow templates resolved for one policy
+     */
+    private static final class FlowTemplates {
+
+        private final PolicyInfo policyInfo;
+        private final ConcurrentMap<EpgPairKey, List<RuleFlowTemplate>> templates = new ConcurrentHashMap<>();
+
+        private FlowTemplates(PolicyInfo policyInfo) {
+            this.policyInfo = policyInfo;
+        }
+    }
+
+    /**
+     * Source and destination EPG together with conditions of source and destination endpoint.
+     * Active rules between two endpoints depend only on these.
+     */
+    private static final class EpgPairKey {
+
+        private final EgKey sourceEpg;
+        private final EgKey destEpg;
+        private final Set<ConditionName> srcConditions;
+        private final Set<ConditionName> dstConditions;
+
+        private EpgPairKey(EgKey sourceEpg, EgKey destEpg, Endpoint srcEp, Endpoint dstEp) {
+            this.sourceEpg = sourceEpg;
+            this.destEpg = destEpg;
+            this.srcConditions = getConditions(srcEp);
+            this.dstConditions = getConditions(dstEp);
+        }
+
+        private static Set<ConditionName> getConditions(Endpoint ep) {
+            if (ep.getCondition() == null) {
+                return Collections.emptySet();
+            }
+            return ImmutableSet.copyOf(ep.getCondition());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(sourceEpg, destEpg, srcConditions, dstConditions);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            EpgPairKey other = (EpgPairKey) obj;
+            return Objects.equals(sourceEpg, other.sourceEpg) && Objects.equals(destEpg, other.destEpg)
+                    && Objects.equals(srcConditions, other.srcConditions)
+                    && Objects.equals(dstConditions, other.dstConditions);
+        }
+    }
+
+    /**
+     * Everything needed to create flows of a rule between two endpoints except endpoint specific
+     * fields
+     */
+    private static final class RuleFlowTemplate {
+
+        private final Rule rule;
+        private final Direction direction;
+        private final IndexedTenant tenant;
+        private final List<Rule> providedRules;
+        private final List<Rule> consumedRules;
+        private final Supplier<List<Match>> matches;
+        private final List<ActionTemplate> actions;
+        private final int priority;
+
+        private RuleFlowTemplate(Rule rule, Direction direction, IndexedTenant tenant, List<Rule> providedRules,
+                List<Rule> consumedRules, Supplier<List<Match>> matches, List<ActionTemplate> actions,
+                int priority) {
+            this.rule = rule;
+            this.direction = direction;
+            this.tenant = tenant;
+            this.providedRules = providedRules;
+            this.consumedRules = consumedRules;
+            this.matches = matches;
+            this.actions = actions;
+            this.priority = priority;
+        }
+    }
+
+    private static final class ActionTemplate {
+
+        private final Action action;
+        private final Map<String, Object> params;
+        private final Integer order;
+
+        private ActionTemplate(Action action, Map<String, Object> params, Integer order) {
+            this.action = action;
+            this.params = params;
+            this.order = order;
+        }
+    }
 }
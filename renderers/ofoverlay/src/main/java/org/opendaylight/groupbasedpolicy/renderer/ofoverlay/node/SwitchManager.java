@@ -48,12 +48,8 @@ import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.base.Function;
 import com.google.common.base.Objects;
-import com.google.common.base.Predicate;
-import com.google.common.collect.Collections2;
-import com.google.common.collect.FluentIterable;
-import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
 
@@ -65,7 +61,9 @@ public class SwitchManager implements AutoCloseable {
 
     private static final Logger LOG = LoggerFactory.getLogger(SwitchManager.class);
 
+    // guarded by SwitchManager.class
     protected static Map<NodeId, SwitchState> switches = new HashMap<>();
+    private static volatile SwitchesSnapshot snapshot = SwitchesSnapshot.EMPTY;
     protected List<SwitchListener> listeners = new CopyOnWriteArrayList<>();
 
     private final FlowCapableNodeListener nodeListener;
@@ -89,7 +87,7 @@ public class SwitchManager implements AutoCloseable {
     }
 
     // When first endpoint is attached to switch, it can be ready
-    public static void activatingSwitch(NodeId nodeId) {
+    public static synchronized void activatingSwitch(NodeId nodeId) {
         SwitchState state = switches.get(nodeId);
         if (state == null) {
             state = new SwitchState(nodeId);
@@ -97,10 +95,11 @@ public class SwitchManager implements AutoCloseable {
         }
         state.setHasEndpoints(true);
         state.updateStatus();
+        publishSwitchesSnapshot();
     }
 
     // When last endpoint is removed from switch, it is no longer ready
-    public static void deactivatingSwitch(NodeId nodeId) {
+    public static synchronized void deactivatingSwitch(NodeId nodeId) {
         SwitchState state = switches.get(nodeId);
         if (state == null) {
             LOG.error("No SwitchState for {} in deactivatingSwitch. This should not happen.",nodeId);
@@ -108,22 +107,19 @@ public class SwitchManager implements AutoCloseable {
         }
         state.setHasEndpoints(false);
         state.updateStatus();
+        publishSwitchesSnapshot();
     }
 
-    public synchronized InstanceIdentifier<NodeConnector> getNodeConnectorIidForPortName(Name portName) {
-        for (SwitchState sw : switches.values()) {
-            if (sw.fcncByNcIid == null) {
-                continue;
-            }
-            for (Entry<InstanceIdentifier<NodeConnector>, FlowCapableNodeConnector> fcncByNcIidEntry : sw.fcncByNcIid
-                .entrySet()) {
-                FlowCapableNodeConnector fcnc = fcncByNcIidEntry.getValue();
-                if (portName.getValue().equals(fcnc.getName())) {
-                    return fcncByNcIidEntry.getKey();
-                }
-            }
-        }
-        return null;
+    /**
+     * Publishes immutable snapshot of current state of {@link #switches}. Getters read only the
+     * snapshot so they do not need any lock. Has to be called after each change of switches.
+     */
+    protected static synchronized void publishSwitchesSnapshot() {
+        snapshot = SwitchesSnapshot.create(switches);
+    }
+
+    public InstanceIdentifier<NodeConnector> getNodeConnectorIidForPortName(Name portName) {
+        return snapshot.ncIidByPortName.get(portName.getValue());
     }
 
     /**
@@ -132,33 +128,18 @@ public class SwitchManager implements AutoCloseable {
      *
      * @return A {@link Collection} containing the switches that are ready.
      */
-    public synchronized Collection<NodeId> getReadySwitches() {
-        ImmutableList<NodeId> readySwitches = FluentIterable.from(switches.values())
-            .filter(new Predicate<SwitchState>() {
-
-                @Override
-                public boolean apply(SwitchState input) {
-                    return input.status == SwitchStatus.READY;
-                }
-            })
-            .transform(new Function<SwitchState, NodeId>() {
-
-                @Override
-                public NodeId apply(SwitchState input) {
-                    return input.nodeId;
-                }
-            })
-            .toList();
+    public Collection<NodeId> getReadySwitches() {
+        ImmutableSet<NodeId> readySwitches = snapshot.readySwitches;
         LOG.trace("Get ready switches: {}", readySwitches);
         return readySwitches;
     }
 
-    public synchronized Set<NodeConnectorId> getExternalPorts(NodeId nodeId) {
-        SwitchState state = switches.get(nodeId);
-        if (state == null) {
+    public Set<NodeConnectorId> getExternalPorts(NodeId nodeId) {
+        ImmutableSet<NodeConnectorId> externalPorts = snapshot.externalPortsByNode.get(nodeId);
+        if (externalPorts == null) {
             return Collections.emptySet();
         }
-        return ImmutableSet.copyOf(state.externalPorts);
+        return externalPorts;
     }
 
     public Set<Long> getExternalPortNumbers(NodeId nodeId) {
@@ -176,44 +157,30 @@ public class SwitchManager implements AutoCloseable {
         return extPortNumbers;
     }
 
-    public synchronized Collection<NodeConnectorId> getTunnelPorts(NodeId nodeId) {
-        Collection<NodeConnectorId> ncIds = new HashSet<>();
-        SwitchState state = switches.get(nodeId);
-        if (state == null ) {
+    public Collection<NodeConnectorId> getTunnelPorts(NodeId nodeId) {
+        ImmutableMap<Class<? extends TunnelTypeBase>, NodeConnectorId> tunnelPortByType =
+                snapshot.tunnelPortByTypeByNode.get(nodeId);
+        if (tunnelPortByType == null) {
             return Collections.emptySet();
         }
-        ncIds = Collections2.transform(state.tunnelBuilderByType.values(),new Function<TunnelBuilder, NodeConnectorId>() {
-
-            @Override
-            public NodeConnectorId apply(TunnelBuilder input) {
-                return input.getNodeConnectorId();
-            }
-        });
-
-        return ncIds;
+        return tunnelPortByType.values();
     }
-    public synchronized NodeConnectorId getTunnelPort(NodeId nodeId, Class<? extends TunnelTypeBase> tunnelType) {
-        SwitchState state = switches.get(nodeId);
-        if (state == null) {
-            return null;
-        }
-        TunnelBuilder tunnel = state.tunnelBuilderByType.get(tunnelType);
-        if (tunnel == null) {
+
+    public NodeConnectorId getTunnelPort(NodeId nodeId, Class<? extends TunnelTypeBase> tunnelType) {
+        ImmutableMap<Class<? extends TunnelTypeBase>, NodeConnectorId> tunnelPortByType =
+                snapshot.tunnelPortByTypeByNode.get(nodeId);
+        if (tunnelPortByType == null) {
             return null;
         }
-        return tunnel.getNodeConnectorId();
+        return tunnelPortByType.get(tunnelType);
     }
 
-    public synchronized IpAddress getTunnelIP(NodeId nodeId, Class<? extends TunnelTypeBase> tunnelType) {
-        SwitchState state = switches.get(nodeId);
-        if (state == null) {
+    public IpAddress getTunnelIP(NodeId nodeId, Class<? extends TunnelTypeBase> tunnelType) {
+        ImmutableMap<Class<? extends TunnelTypeBase>, IpAddress> tunnelIpByType = snapshot.tunnelIpByTypeByNode.get(nodeId);
+        if (tunnelIpByType == null) {
             return null;
         }
-        TunnelBuilder tunnel = state.tunnelBuilderByType.get(tunnelType);
-        if (tunnel == null) {
-            return null;
-        }
-        return tunnel.getIp();
+        return tunnelIpByType.get(tunnelType);
     }
 
     /**
@@ -234,27 +201,33 @@ public class SwitchManager implements AutoCloseable {
         // No-op for now
     }
 
-    synchronized void updateSwitch(NodeId nodeId, @Nullable FlowCapableNode fcNode) {
-        SwitchState state = getSwitchState(checkNotNull(nodeId));
-        SwitchStatus oldStatus = state.status;
-        state.setFlowCapableNode(fcNode);
-        handleSwitchState(state, oldStatus);
+    void updateSwitch(NodeId nodeId, @Nullable FlowCapableNode fcNode) {
+        synchronized (SwitchManager.class) {
+            SwitchState state = getSwitchState(checkNotNull(nodeId));
+            SwitchStatus oldStatus = state.status;
+            state.setFlowCapableNode(fcNode);
+            handleSwitchState(state, oldStatus);
+        }
     }
 
-    synchronized void updateSwitchNodeConnectorConfig(InstanceIdentifier<NodeConnector> ncIid,
+    void updateSwitchNodeConnectorConfig(InstanceIdentifier<NodeConnector> ncIid,
             @Nullable FlowCapableNodeConnector fcnc) {
         NodeId nodeId = ncIid.firstKeyOf(Node.class, NodeKey.class).getId();
-        SwitchState state = getSwitchState(nodeId);
-        SwitchStatus oldStatus = state.status;
-        state.setNodeConnectorConfig(ncIid, fcnc);
-        handleSwitchState(state, oldStatus);
+        synchronized (SwitchManager.class) {
+            SwitchState state = getSwitchState(nodeId);
+            SwitchStatus oldStatus = state.status;
+            state.setNodeConnectorConfig(ncIid, fcnc);
+            handleSwitchState(state, oldStatus);
+        }
     }
 
-    synchronized void updateSwitchConfig(NodeId nodeId, @Nullable OfOverlayNodeConfig config) {
-        SwitchState state = getSwitchState(checkNotNull(nodeId));
-        SwitchStatus oldStatus = state.status;
-        state.setConfig(config);
-        handleSwitchState(state, oldStatus);
+    void updateSwitchConfig(NodeId nodeId, @Nullable OfOverlayNodeConfig config) {
+        synchronized (SwitchManager.class) {
+            SwitchState state = getSwitchState(checkNotNull(nodeId));
+            SwitchStatus oldStatus = state.status;
+            state.setConfig(config);
+            handleSwitchState(state, oldStatus);
+        }
     }
 
     private SwitchState getSwitchState(NodeId id) {
@@ -268,6 +241,12 @@ public class SwitchManager implements AutoCloseable {
     }
 
     private void handleSwitchState(SwitchState state, SwitchStatus oldStatus) {
+        if (state.status == SwitchStatus.DISCONNECTED && state.isConfigurationEmpty()) {
+            switches.remove(state.nodeId);
+            LOG.trace("Switch {} removed from switches {}", state.nodeId, switches.keySet());
+        }
+        // listeners have to see the change
+        publishSwitchesSnapshot();
         if (oldStatus == SwitchStatus.READY && state.status != SwitchStatus.READY) {
             LOG.info("Switch {} removed", state.nodeId.getValue());
             notifySwitchRemoved(state.nodeId);
@@ -279,10 +258,6 @@ public class SwitchManager implements AutoCloseable {
             LOG.debug("Switch {} updated", state.nodeId.getValue());
             notifySwitchUpdated(state.nodeId);
         }
-        if (state.status == SwitchStatus.DISCONNECTED && state.isConfigurationEmpty()) {
-            switches.remove(state.nodeId);
-            LOG.trace("Switch {} removed from switches {}", state.nodeId, switches.keySet());
-        }
     }
 
     private void notifySwitchRemoved(NodeId nodeId) {
@@ -486,6 +461,86 @@ public class SwitchManager implements AutoCloseable {
 
     }
 
+    /**
+     * Immutable view of switches - ready switches and tunnel and external ports of each switch
+     */
+    private static final class SwitchesSnapshot {
+
+        private static final SwitchesSnapshot EMPTY = create(Collections.<NodeId, SwitchState>emptyMap());
+
+        private final ImmutableSet<NodeId> readySwitches;
+        private final ImmutableMap<NodeId, ImmutableSet<NodeConnectorId>> externalPortsByNode;
+        private final ImmutableMap<NodeId, ImmutableMap<Class<? extends TunnelTypeBase>, NodeConnectorId>> tunnelPortByTypeByNode;
+        private final ImmutableMap<NodeId, ImmutableMap<Class<? extends TunnelTypeBase>, IpAddress>> tunnelIpByTypeByNode;
+        private final ImmutableMap<String, InstanceIdentifier<NodeConnector>> ncIidByPortName;
+
+        private SwitchesSnapshot(ImmutableSet<NodeId> readySwitches,
+                ImmutableMap<NodeId, ImmutableSet<NodeConnectorId>> externalPortsByNode,
+                ImmutableMap<NodeId, ImmutableMap<Class<? extends TunnelTypeBase>, NodeConnectorId>> tunnelPortByTypeByNode,
+                ImmutableMap<NodeId, ImmutableMap<Class<? extends TunnelTypeBase>, IpAddress>> tunnelIpByTypeByNode,
+                ImmutableMap<String, InstanceIdentifier<NodeConnector>> ncIidByPortName) {
+            this.readySwitches = readySwitches;
+            this.externalPortsByNode = externalPortsByNode;
+            this.tunnelPortByTypeByNode = tunnelPortByTypeByNode;
+            this.tunnelIpByTypeByNode = tunnelIpByTypeByNode;
+            this.ncIidByPortName = ncIidByPortName;
+        }
+
+        private static SwitchesSnapshot create(Map<NodeId, SwitchState> switchStateByNode) {
+            ImmutableSet.Builder<NodeId> readySwitches = ImmutableSet.builder();
+            ImmutableMap.Builder<NodeId, ImmutableSet<NodeConnectorId>> externalPortsByNode = ImmutableMap.builder();
+            ImmutableMap.Builder<NodeId, ImmutableMap<Class<? extends TunnelTypeBase>, NodeConnectorId>> tunnelPortByTypeByNode =
+                    ImmutableMap.builder();
+            ImmutableMap.Builder<NodeId, ImmutableMap<Class<? extends TunnelTypeBase>, IpAddress>> tunnelIpByTypeByNode =
+                    ImmutableMap.builder();
+            // first node connector with the name wins
+            Map<String, InstanceIdentifier<NodeConnector>> ncIidByPortName = new HashMap<>();
+            for (Entry<NodeId, SwitchState> switchStateByNodeEntry : switchStateByNode.entrySet()) {
+                NodeId nodeId = switchStateByNodeEntry.getKey();
+                SwitchState state = switchStateByNodeEntry.getValue();
+                if (state == null) {
+                    continue;
+                }
+                if (state.status == SwitchStatus.READY) {
+                    readySwitches.add(nodeId);
+                }
+                if (state.externalPorts != null) {
+                    externalPortsByNode.put(nodeId, ImmutableSet.copyOf(state.externalPorts));
+                }
+                ImmutableMap.Builder<Class<? extends TunnelTypeBase>, NodeConnectorId> tunnelPortByType =
+                        ImmutableMap.builder();
+                ImmutableMap.Builder<Class<? extends TunnelTypeBase>, IpAddress> tunnelIpByType = ImmutableMap.builder();
+                for (Entry<Class<? extends TunnelTypeBase>, TunnelBuilder> tunnelBuilderByTypeEntry : state.tunnelBuilderByType
+                    .entrySet()) {
+                    Class<? extends TunnelTypeBase> tunnelType = tunnelBuilderByTypeEntry.getKey();
+                    TunnelBuilder tunnel = tunnelBuilderByTypeEntry.getValue();
+                    if (tunnelType == null || tunnel == null) {
+                        continue;
+                    }
+                    if (tunnel.getNodeConnectorId() != null) {
+                        tunnelPortByType.put(tunnelType, tunnel.getNodeConnectorId());
+                    }
+                    if (tunnel.getIp() != null) {
+                        tunnelIpByType.put(tunnelType, tunnel.getIp());
+                    }
+                }
+                tunnelPortByTypeByNode.put(nodeId, tunnelPortByType.build());
+                tunnelIpByTypeByNode.put(nodeId, tunnelIpByType.build());
+                if (state.fcncByNcIid != null) {
+                    for (Entry<InstanceIdentifier<NodeConnector>, FlowCapableNodeConnector> fcncByNcIidEntry : state.fcncByNcIid
+                        .entrySet()) {
+                        String portName = fcncByNcIidEntry.getValue().getName();
+                        if (portName != null && !ncIidByPortName.containsKey(portName)) {
+                            ncIidByPortName.put(portName, fcncByNcIidEntry.getKey());
+                        }
+                    }
+                }
+            }
+            return new SwitchesSnapshot(readySwitches.build(), externalPortsByNode.build(),
+                    tunnelPortByTypeByNode.build(), tunnelIpByTypeByNode.build(), ImmutableMap.copyOf(ncIidByPortName));
+        }
+    }
+
     protected enum SwitchStatus {
         /**
          * The switch is not currently connected
@@ -78,6 +78,13 @@ public class ChainAction extends Action {
     private static final Logger LOG = LoggerFactory.getLogger(ChainAction.class);
     private List<String> resolvedSymmetricChains = new ArrayList<>();;
 
+    /**
+     * Sets symmetric chains used by
+     * {@link #updateAction(List, Map, Integer, NetworkElements, OfWriter, OfContext, Direction)}.
+     * The action is shared, so callers which update actions concurrently have to use
+     * {@link #updateAction(List, Map, Integer, NetworkElements, OfWriter, OfContext, Direction, List)}
+     * instead.
+     */
     public void setResolvedSymmetricChains(List<String> resolvedSymmetricChains) {
         this.resolvedSymmetricChains = resolvedSymmetricChains;
     }
@@ -96,6 +103,17 @@ public class ChainAction extends Action {
     public List<ActionBuilder> updateAction(List<ActionBuilder> actions, Map<String, Object> params, Integer order,
                                             NetworkElements netElements, OfWriter ofWriter,
                                             OfContext ctx, Direction direction) {
+        return updateAction(actions, params, order, netElements, ofWriter, ctx, direction, resolvedSymmetricChains);
+    }
+
+    /**
+     * @param resolvedSymmetricChains names of chains resolved as symmetric for the rule, reverse
+     *        RSP is used for these chains
+     * @see #updateAction(List, Map, Integer, NetworkElements, OfWriter, OfContext, Direction)
+     */
+    public List<ActionBuilder> updateAction(List<ActionBuilder> actions, Map<String, Object> params, Integer order,
+                                            NetworkElements netElements, OfWriter ofWriter,
+                                            OfContext ctx, Direction direction, List<String> resolvedSymmetricChains) {
         /*
          * Get the named chain
          */
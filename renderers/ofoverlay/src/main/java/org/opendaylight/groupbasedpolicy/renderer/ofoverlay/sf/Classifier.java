@@ -34,6 +34,7 @@ public abstract class Classifier {
     public static final String MSG_NOT_SUPPORTED = "not supported";
     public static final String MSG_IS_MISSING = "is missing";
     public static final String MSG_NOT_PRESENT = "not present";
+    public static final String MSG_EXCEEDS_LIMIT = "exceeds limit";
 
     protected final Classifier parent;
 
@@ -9,15 +9,18 @@
 package org.opendaylight.groupbasedpolicy.renderer.ofoverlay.sf;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
+import javax.annotation.Nullable;
+
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 
 import org.opendaylight.groupbasedpolicy.api.sf.IpProtoClassifierDefinition;
 import org.opendaylight.groupbasedpolicy.api.sf.L4ClassifierDefinition;
+import org.opendaylight.groupbasedpolicy.renderer.ofoverlay.flow.FlowUtils;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.PortNumber;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.types.rev131026.flow.MatchBuilder;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.common.rev140421.ClassifierDefinitionId;
@@ -42,10 +45,21 @@ import org.opendaylight.yang.gen.v1.urn.opendaylight.model.match.types.rev131026
 import org.opendaylight.yang.gen.v1.urn.opendaylight.model.match.types.rev131026.match.layer._4.match.UdpMatchBuilder;
 
 /**
- * Match against TCP or UDP, and source and/or destination ports
+ * Match against TCP or UDP, and source and/or destination ports. Port ranges of TCP and UDP are
+ * matched by port/mask prefixes, SCTP port ranges are matched port by port.
  */
 public class L4Classifier extends Classifier {
 
+    /**
+     * Maximum number of SCTP port matches created from port ranges of one classifier. SCTP ports
+     * cannot be masked, so every port of a range needs its own match.
+     */
+    @VisibleForTesting
+    static final int MAX_SCTP_PORT_MATCHES = 4096;
+    private static final int EXACT_PORT_MASK = 0xffff;
+    private static final long MIN_PORT = 1;
+    private static final long MAX_PORT = 65535;
+
     protected L4Classifier(Classifier parent) {
         super(parent);
     }
@@ -63,9 +77,9 @@ public class L4Classifier extends Classifier {
     @Override
     public List<SupportedParameterValues> getSupportedParameterValues() {
         List<SupportedIntValueInRange> allPossiblePortsIntInRange =
-                ImmutableList.of(new SupportedIntValueInRangeBuilder().setMin(1L).setMax(65535L).build());
+                ImmutableList.of(new SupportedIntValueInRangeBuilder().setMin(MIN_PORT).setMax(MAX_PORT).build());
         List<SupportedRangeValue> allPossiblePortsRange =
-                ImmutableList.of(new SupportedRangeValueBuilder().setMin(1L).setMax(65535L).build());
+                ImmutableList.of(new SupportedRangeValueBuilder().setMin(MIN_PORT).setMax(MAX_PORT).build());
 
         SupportedParameterValues srcPorts = new SupportedParameterValuesBuilder()
             .setParameterName(new ParameterName(L4ClassifierDefinition.SRC_PORT_PARAM))
@@ -135,34 +149,126 @@ public class L4Classifier extends Classifier {
 
     @Override
     public List<MatchBuilder> update(List<MatchBuilder> matches, Map<String, ParameterValue> params) {
-        Set<Long> sPorts = new HashSet<>();
-        Set<Long> dPorts = new HashSet<>();
-        addToPortSet(params, L4ClassifierDefinition.SRC_PORT_PARAM, L4ClassifierDefinition.SRC_PORT_RANGE_PARAM,
-                sPorts);
-        addToPortSet(params, L4ClassifierDefinition.DST_PORT_PARAM, L4ClassifierDefinition.DST_PORT_RANGE_PARAM,
-                dPorts);
+        List<PortMask> sPorts = getPortMasks(params, L4ClassifierDefinition.SRC_PORT_PARAM,
+                L4ClassifierDefinition.SRC_PORT_RANGE_PARAM);
+        List<PortMask> dPorts = getPortMasks(params, L4ClassifierDefinition.DST_PORT_PARAM,
+                L4ClassifierDefinition.DST_PORT_RANGE_PARAM);
+        boolean anyPort = isAnyPortRange(params.get(L4ClassifierDefinition.SRC_PORT_RANGE_PARAM))
+                || isAnyPortRange(params.get(L4ClassifierDefinition.DST_PORT_RANGE_PARAM));
         List<MatchBuilder> newMatches = new ArrayList<>();
         for (MatchBuilder matchBuilder : matches) {
             Layer4Match l4Match = matchBuilder.getLayer4Match();
-            Set<? extends Layer4Match> l4Matches = null;
             if (l4Match == null) {
                 l4Match = resolveL4Match(params);
             }
-            l4Matches = createL4Matches(l4Match, sPorts, dPorts);
-            for (Layer4Match newL4Match : l4Matches) {
-                newMatches.add(new MatchBuilder(matchBuilder.build()).setLayer4Match(newL4Match));
+            if (sPorts.isEmpty() && dPorts.isEmpty()) {
+                if (anyPort) {
+                    // no port is matched, only protocol
+                    newMatches.add(new MatchBuilder(matchBuilder.build()).setLayer4Match(l4Match));
+                }
+                continue;
+            }
+            List<PortMask> l4SPorts = sPorts;
+            List<PortMask> l4DPorts = dPorts;
+            if (l4Match instanceof SctpMatch) {
+                // there is no masked match on SCTP ports
+                long sctpMatchCount = Math.max(countPorts(sPorts), 1) * Math.max(countPorts(dPorts), 1);
+                if (sctpMatchCount > MAX_SCTP_PORT_MATCHES) {
+                    throw new IllegalArgumentException("SCTP port parameters result in " + sctpMatchCount
+                            + " matches which " + Classifier.MSG_EXCEEDS_LIMIT + " of " + MAX_SCTP_PORT_MATCHES
+                            + " matches. SCTP ports are matched one by one, use smaller port ranges.");
+                }
+                l4SPorts = toExactPortMasks(sPorts);
+                l4DPorts = toExactPortMasks(dPorts);
+            }
+            for (PortMask sPort : orNull(l4SPorts)) {
+                for (PortMask dPort : orNull(l4DPorts)) {
+                    MatchBuilder newMatch = new MatchBuilder(matchBuilder.build());
+                    newMatch.setLayer4Match(createL4Match(newMatch, l4Match, sPort, dPort));
+                    newMatches.add(newMatch);
+                }
             }
         }
         return newMatches;
     }
 
-    private void addToPortSet(Map<String, ParameterValue> params, String portParam, String portRangeParam,
-            Set<Long> portSet) {
+    /**
+     * @return port masks matching the port or the port range parameter, empty list if the
+     *         parameter is not present or the range contains all ports
+     */
+    private static List<PortMask> getPortMasks(Map<String, ParameterValue> params, String portParam,
+            String portRangeParam) {
         if (params.get(portParam) != null) {
-            portSet.add(params.get(portParam).getIntValue());
-        } else if (params.get(portRangeParam) != null) {
-            portSet.addAll(createSetFromRange(params.get(portRangeParam).getRangeValue()));
+            return Collections.singletonList(new PortMask(params.get(portParam).getIntValue(), EXACT_PORT_MASK));
+        }
+        ParameterValue portRange = params.get(portRangeParam);
+        if (portRange == null || portRange.getRangeValue() == null || isAnyPortRange(portRange)) {
+            return Collections.emptyList();
+        }
+        return createPortMasks(portRange.getRangeValue().getMin(), portRange.getRangeValue().getMax());
+    }
+
+    /**
+     * Decomposes the port range to the smallest list of port/mask prefixes covering exactly the
+     * range. A range is covered by at most 2 * 16 - 2 prefixes.
+     *
+     * @param min the first port of the range
+     * @param max the last port of the range
+     * @return port masks ordered by port
+     */
+    @VisibleForTesting
+    static List<PortMask> createPortMasks(long min, long max) {
+        List<PortMask> portMasks = new ArrayList<>();
+        long port = min;
+        while (port <= max) {
+            // the biggest block aligned to the port which does not exceed the range
+            long blockSize = port == 0 ? EXACT_PORT_MASK + 1 : Long.lowestOneBit(port);
+            while (port + blockSize - 1 > max) {
+                blockSize >>= 1;
+            }
+            portMasks.add(new PortMask(port, (int) (EXACT_PORT_MASK & ~(blockSize - 1))));
+            port += blockSize;
+        }
+        return portMasks;
+    }
+
+    private static long countPorts(List<PortMask> portMasks) {
+        long count = 0;
+        for (PortMask portMask : portMasks) {
+            count += (~portMask.getMask() & EXACT_PORT_MASK) + 1;
+        }
+        return count;
+    }
+
+    private static List<PortMask> toExactPortMasks(List<PortMask> portMasks) {
+        List<PortMask> exactPortMasks = new ArrayList<>();
+        for (PortMask portMask : portMasks) {
+            long blockSize = (~portMask.getMask() & EXACT_PORT_MASK) + 1;
+            for (long port = portMask.getPort(); port < portMask.getPort() + blockSize; port++) {
+                exactPortMasks.add(new PortMask(port, EXACT_PORT_MASK));
+            }
+        }
+        return exactPortMasks;
+    }
+
+    /**
+     * @return the port masks or list containing {@code null} which stands for no port match
+     */
+    private static List<PortMask> orNull(List<PortMask> portMasks) {
+        if (portMasks.isEmpty()) {
+            return Collections.singletonList(null);
+        }
+        return portMasks;
+    }
+
+    /**
+     * Range containing all ports including port 0 is the same as no match on port.
+     */
+    private static boolean isAnyPortRange(ParameterValue portRange) {
+        if (portRange == null || portRange.getRangeValue() == null) {
+            return false;
         }
+        return portRange.getRangeValue().getMin() == 0 && portRange.getRangeValue().getMax() >= MAX_PORT;
     }
 
     private Layer4Match resolveL4Match(Map<String, ParameterValue> params) {
@@ -181,118 +287,76 @@ public class L4Classifier extends Classifier {
                 + " is " + Classifier.MSG_NOT_SUPPORTED);
     }
 
-    private Set<Long> createSetFromRange(RangeValue rangeValueParam) {
-        Set<Long> res = new HashSet<>();
-        if (rangeValueParam != null) {
-            final Long min = rangeValueParam.getMin();
-            final Long max = rangeValueParam.getMax();
-            for (long val = min; val <= max; val++) {
-                res.add(val);
-            }
-        }
-        return res;
-    }
-
-    private Set<? extends Layer4Match> createL4Matches(Layer4Match l4Match, Set<Long> sPorts, Set<Long> dPorts) {
-        Set<? extends Layer4Match> l4Matches = null;
+    /**
+     * Exact ports are set to the layer 4 match, masked ports are added to the match builder as
+     * Nicira extension matches.
+     *
+     * @param match the match builder the masked port matches are added to
+     * @param sPort source port or {@code null} if source port is not matched
+     * @param dPort destination port or {@code null} if destination port is not matched
+     * @return the layer 4 match with exact ports
+     */
+    private Layer4Match createL4Match(MatchBuilder match, Layer4Match l4Match, @Nullable PortMask sPort,
+            @Nullable PortMask dPort) {
         if (l4Match instanceof UdpMatch) {
-            l4Matches = createUdpMatches((UdpMatch) l4Match, sPorts, dPorts);
-        } else if (l4Match instanceof TcpMatch) {
-            l4Matches = createTcpMatches((TcpMatch) l4Match, sPorts, dPorts);
-        } else if (l4Match instanceof SctpMatch) {
-            l4Matches = createSctpMatches((SctpMatch) l4Match, sPorts, dPorts);
-        }
-        return l4Matches;
-    }
-
-    private Set<UdpMatch> createUdpMatches(UdpMatch udpMatch, Set<Long> sPorts, Set<Long> dPorts) {
-        Set<UdpMatch> udpMatches = new HashSet<>();
-        if (!sPorts.isEmpty() && dPorts.isEmpty()) {
-            for (Long srcPort : sPorts) {
-                equalOrNotSetValidation(udpMatch.getUdpSourcePort(), srcPort.longValue());
-                udpMatches
-                    .add(new UdpMatchBuilder(udpMatch).setUdpSourcePort(new PortNumber(srcPort.intValue())).build());
-            }
-        } else if (sPorts.isEmpty() && !dPorts.isEmpty()) {
-            for (Long dstPort : dPorts) {
-                equalOrNotSetValidation(udpMatch.getUdpDestinationPort(), dstPort.longValue());
-                udpMatches.add(new UdpMatchBuilder(udpMatch).setUdpDestinationPort(new PortNumber(dstPort.intValue()))
-                    .build());
-            }
-        } else if (!sPorts.isEmpty() && !dPorts.isEmpty()) {
-            for (Long srcPort : sPorts) {
-                for (Long dstPort : dPorts) {
-                    equalOrNotSetValidation(udpMatch.getUdpSourcePort(), srcPort.longValue());
-                    equalOrNotSetValidation(udpMatch.getUdpDestinationPort(), dstPort.longValue());
-                    udpMatches.add(new UdpMatchBuilder(udpMatch).setUdpSourcePort(new PortNumber(srcPort.intValue()))
-                        .setUdpDestinationPort(new PortNumber(dstPort.intValue()))
-                        .build());
+            UdpMatch udpMatch = (UdpMatch) l4Match;
+            UdpMatchBuilder udpMatchBuilder = new UdpMatchBuilder(udpMatch);
+            if (sPort != null) {
+                equalOrNotSetValidation(udpMatch.getUdpSourcePort(), sPort);
+                if (sPort.isExact()) {
+                    udpMatchBuilder.setUdpSourcePort(sPort.getPortNumber());
+                } else {
+                    FlowUtils.addNxUdpSrcMatch(match, sPort.getPortNumber(), sPort.getMask());
                 }
             }
-        }
-        return udpMatches;
-    }
-
-    private Set<TcpMatch> createTcpMatches(TcpMatch tcpMatch, Set<Long> sPorts, Set<Long> dPorts) {
-        Set<TcpMatch> tcpMatches = new HashSet<>();
-        if (!sPorts.isEmpty() && dPorts.isEmpty()) {
-            for (Long srcPort : sPorts) {
-                equalOrNotSetValidation(tcpMatch.getTcpSourcePort(), srcPort.longValue());
-                tcpMatches
-                    .add(new TcpMatchBuilder(tcpMatch).setTcpSourcePort(new PortNumber(srcPort.intValue())).build());
-            }
-        } else if (sPorts.isEmpty() && !dPorts.isEmpty()) {
-            for (Long dstPort : dPorts) {
-                equalOrNotSetValidation(tcpMatch.getTcpDestinationPort(), dstPort.longValue());
-                tcpMatches.add(new TcpMatchBuilder(tcpMatch).setTcpDestinationPort(new PortNumber(dstPort.intValue()))
-                    .build());
+            if (dPort != null) {
+                equalOrNotSetValidation(udpMatch.getUdpDestinationPort(), dPort);
+                if (dPort.isExact()) {
+                    udpMatchBuilder.setUdpDestinationPort(dPort.getPortNumber());
+                } else {
+                    FlowUtils.addNxUdpDstMatch(match, dPort.getPortNumber(), dPort.getMask());
+                }
             }
-        } else if (!sPorts.isEmpty() && !dPorts.isEmpty()) {
-            for (Long srcPort : sPorts) {
-                for (Long dstPort : dPorts) {
-                    equalOrNotSetValidation(tcpMatch.getTcpSourcePort(), srcPort.longValue());
-                    equalOrNotSetValidation(tcpMatch.getTcpDestinationPort(), dstPort.longValue());
-                    tcpMatches.add(new TcpMatchBuilder(tcpMatch).setTcpSourcePort(new PortNumber(srcPort.intValue()))
-                        .setTcpDestinationPort(new PortNumber(dstPort.intValue()))
-                        .build());
+            return udpMatchBuilder.build();
+        } else if (l4Match instanceof TcpMatch) {
+            TcpMatch tcpMatch = (TcpMatch) l4Match;
+            TcpMatchBuilder tcpMatchBuilder = new TcpMatchBuilder(tcpMatch);
+            if (sPort != null) {
+                equalOrNotSetValidation(tcpMatch.getTcpSourcePort(), sPort);
+                if (sPort.isExact()) {
+                    tcpMatchBuilder.setTcpSourcePort(sPort.getPortNumber());
+                } else {
+                    FlowUtils.addNxTcpSrcMatch(match, sPort.getPortNumber(), sPort.getMask());
                 }
             }
-        }
-        return tcpMatches;
-    }
-
-    private Set<SctpMatch> createSctpMatches(SctpMatch sctpMatch, Set<Long> sPorts, Set<Long> dPorts) {
-        Set<SctpMatch> sctpMatches = new HashSet<>();
-        if (!sPorts.isEmpty() && dPorts.isEmpty()) {
-            for (Long srcPort : sPorts) {
-                equalOrNotSetValidation(sctpMatch.getSctpSourcePort(), srcPort.longValue());
-                sctpMatches
-                    .add(new SctpMatchBuilder(sctpMatch).setSctpSourcePort(new PortNumber(srcPort.intValue())).build());
+            if (dPort != null) {
+                equalOrNotSetValidation(tcpMatch.getTcpDestinationPort(), dPort);
+                if (dPort.isExact()) {
+                    tcpMatchBuilder.setTcpDestinationPort(dPort.getPortNumber());
+                } else {
+                    FlowUtils.addNxTcpDstMatch(match, dPort.getPortNumber(), dPort.getMask());
+                }
             }
-        } else if (sPorts.isEmpty() && !dPorts.isEmpty()) {
-            for (Long dstPort : dPorts) {
-                equalOrNotSetValidation(sctpMatch.getSctpDestinationPort(), dstPort.longValue());
-                sctpMatches.add(new SctpMatchBuilder(sctpMatch)
-                    .setSctpDestinationPort(new PortNumber(dstPort.intValue())).build());
+            return tcpMatchBuilder.build();
+        } else if (l4Match instanceof SctpMatch) {
+            SctpMatch sctpMatch = (SctpMatch) l4Match;
+            SctpMatchBuilder sctpMatchBuilder = new SctpMatchBuilder(sctpMatch);
+            if (sPort != null) {
+                equalOrNotSetValidation(sctpMatch.getSctpSourcePort(), sPort);
+                sctpMatchBuilder.setSctpSourcePort(sPort.getPortNumber());
             }
-        } else if (!sPorts.isEmpty() && !dPorts.isEmpty()) {
-            for (Long srcPort : sPorts) {
-                for (Long dstPort : dPorts) {
-                    equalOrNotSetValidation(sctpMatch.getSctpSourcePort(), srcPort.longValue());
-                    equalOrNotSetValidation(sctpMatch.getSctpDestinationPort(), dstPort.longValue());
-                    sctpMatches
-                        .add(new SctpMatchBuilder(sctpMatch).setSctpSourcePort(new PortNumber(srcPort.intValue()))
-                            .setSctpDestinationPort(new PortNumber(dstPort.intValue()))
-                            .build());
-                }
+            if (dPort != null) {
+                equalOrNotSetValidation(sctpMatch.getSctpDestinationPort(), dPort);
+                sctpMatchBuilder.setSctpDestinationPort(dPort.getPortNumber());
             }
+            return sctpMatchBuilder.build();
         }
-        return sctpMatches;
+        return l4Match;
     }
 
-    private void equalOrNotSetValidation(PortNumber portInMatch, long paramValue) {
+    private void equalOrNotSetValidation(PortNumber portInMatch, PortMask paramValue) {
         if (portInMatch != null) {
-            if (paramValue != portInMatch.getValue().longValue()) {
+            if (!paramValue.isExact() || paramValue.getPort() != portInMatch.getValue().longValue()) {
                 throw new IllegalArgumentException(Classifier.MSG_CLASSIFICATION_CONFLICT_DETECTED + " for port values "
                         + portInMatch.getValue().longValue() + " and " + paramValue + ". It is not allowed "
                         + "to assign different values to the same parameter among all the classifiers within one rule.");
@@ -318,4 +382,40 @@ public class L4Classifier extends Classifier {
             }
         }
     }
+
+    /**
+     * Port prefix matching all ports which are equal to the port in bits set in the mask
+     */
+    @VisibleForTesting
+    static final class PortMask {
+
+        private final long port;
+        private final int mask;
+
+        private PortMask(long port, int mask) {
+            this.port = port;
+            this.mask = mask;
+        }
+
+        long getPort() {
+            return port;
+        }
+
+        PortNumber getPortNumber() {
+            return new PortNumber((int) port);
+        }
+
+        int getMask() {
+            return mask;
+        }
+
+        boolean isExact() {
+            return mask == EXACT_PORT_MASK;
+        }
+
+        @Override
+        public String toString() {
+            return isExact() ? String.valueOf(port) : port + "/0x" + Integer.toHexString(mask);
+        }
+    }
 }
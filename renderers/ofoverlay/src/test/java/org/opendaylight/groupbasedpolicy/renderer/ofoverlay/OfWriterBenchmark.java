@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2016 Cisco Systems, Inc. and others. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.opendaylight.groupbasedpolicy.renderer.ofoverlay;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.opendaylight.groupbasedpolicy.renderer.ofoverlay.equivalence.EquivalenceFabric;
+import org.opendaylight.groupbasedpolicy.renderer.ofoverlay.equivalence.HashedWrapper;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.FlowId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.tables.table.Flow;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.tables.table.FlowBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.types.rev131026.flow.MatchBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeId;
+
+import com.google.common.base.Equivalence;
+import com.google.common.base.Stopwatch;
+
+/**
+ * Measures time of filling one table of {@link OfWriter} with distinct flows where every flow is
+ * written twice. Time of indexing and fingerprinting the flows with {@link HashedWrapper} is
+ * compared with {@link Equivalence.Wrapper} which computes the hash of a flow on each use. It is
+ * not run as a part of the build.
+ * <p>
+ * Usage: {@code OfWriterBenchmark [flow-count...]}, the default is tables of 1000, 10000 and
+ * 100000 flows.
+ */
+public class OfWriterBenchmark {
+
+    private static final NodeId NODE_ID = new NodeId("openflow:1");
+    private static final short TABLE_ID = 4;
+    private static final int WARMUP_ROUNDS = 3;
+
+    public static void main(String[] args) {
+        List<Integer> flowCounts = new ArrayList<>();
+        for (String arg : args) {
+            flowCounts.add(Integer.parseInt(arg));
+        }
+        if (flowCounts.isEmpty()) {
+            flowCounts.add(1000);
+            flowCounts.add(10000);
+            flowCounts.add(100000);
+        }
+        for (int flowCount : flowCounts) {
+            List<Flow> flows = createFlows(flowCount);
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                fillTable(flows);
+            }
+            Stopwatch stopwatch = Stopwatch.createStarted();
+            int tableSize = fillTable(flows);
+            System.out.printf("%d flows written twice in %d ms, table has %d flows%n", flowCount,
+                    stopwatch.elapsed(TimeUnit.MILLISECONDS), tableSize);
+
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                indexWithWrapper(flows);
+                indexWithHashedWrapper(flows);
+            }
+            stopwatch.reset().start();
+            indexWithWrapper(flows);
+            long wrapperMillis = stopwatch.elapsed(TimeUnit.MILLISECONDS);
+            stopwatch.reset().start();
+            indexWithHashedWrapper(flows);
+            long hashedWrapperMillis = stopwatch.elapsed(TimeUnit.MILLISECONDS);
+            System.out.printf("%d flows indexed and fingerprinted in %d ms with Equivalence.Wrapper, in %d ms with"
+                    + " HashedWrapper%n", flowCount, wrapperMillis, hashedWrapperMillis);
+        }
+    }
+
+    private static Map<FlowId, Integer> indexWithWrapper(List<Flow> flows) {
+        Set<Equivalence.Wrapper<Flow>> wrappedFlows = new LinkedHashSet<>();
+        for (Flow flow : flows) {
+            wrappedFlows.add(EquivalenceFabric.FLOW_EQUIVALENCE.wrap(flow));
+        }
+        for (Flow flow : flows) {
+            wrappedFlows.add(EquivalenceFabric.FLOW_EQUIVALENCE.wrap(flow));
+        }
+        Map<FlowId, Integer> fingerprints = new HashMap<>();
+        for (Equivalence.Wrapper<Flow> wrappedFlow : wrappedFlows) {
+            fingerprints.put(wrappedFlow.get().getId(), wrappedFlow.hashCode());
+        }
+        return fingerprints;
+    }
+
+    private static Map<FlowId, Integer> indexWithHashedWrapper(List<Flow> flows) {
+        Set<HashedWrapper<Flow>> wrappedFlows = new LinkedHashSet<>();
+        for (Flow flow : flows) {
+            wrappedFlows.add(HashedWrapper.wrap(EquivalenceFabric.FLOW_EQUIVALENCE, flow));
+        }
+        for (Flow flow : flows) {
+            wrappedFlows.add(HashedWrapper.wrap(EquivalenceFabric.FLOW_EQUIVALENCE, flow));
+        }
+        Map<FlowId, Integer> fingerprints = new HashMap<>();
+        for (HashedWrapper<Flow> wrappedFlow : wrappedFlows) {
+            fingerprints.put(wrappedFlow.get().getId(), wrappedFlow.hashCode());
+        }
+        return fingerprints;
+    }
+
+    private static int fillTable(List<Flow> flows) {
+        OfWriter ofWriter = new OfWriter();
+        for (Flow flow : flows) {
+            ofWriter.writeFlow(NODE_ID, TABLE_ID, flow);
+        }
+        for (Flow flow : flows) {
+            ofWriter.writeFlow(NODE_ID, TABLE_ID, flow);
+        }
+        return ofWriter.getTableForNode(NODE_ID, TABLE_ID).getFlow().size();
+    }
+
+    private static List<Flow> createFlows(int flowCount) {
+        List<Flow> flows = new ArrayList<>(flowCount);
+        for (int i = 0; i < flowCount; i++) {
+            flows.add(new FlowBuilder().setId(new FlowId("flow" + i))
+                .setTableId(TABLE_ID)
+                .setPriority(i % 65536)
+                .setFlowName("flow" + i)
+                .setMatch(new MatchBuilder().build())
+                .build());
+        }
+        return flows;
+    }
+
+}
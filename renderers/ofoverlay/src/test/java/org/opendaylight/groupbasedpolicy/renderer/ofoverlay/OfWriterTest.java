@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2016 Cisco Systems, Inc. and others. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.opendaylight.groupbasedpolicy.renderer.ofoverlay;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.opendaylight.controller.md.sal.binding.api.DataBroker;
+import org.opendaylight.controller.md.sal.binding.api.ReadWriteTransaction;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.controller.md.sal.common.api.data.TransactionCommitFailedException;
+import org.opendaylight.groupbasedpolicy.renderer.ofoverlay.equivalence.EquivalenceFabric;
+import org.opendaylight.groupbasedpolicy.renderer.ofoverlay.equivalence.HashedWrapper;
+import org.opendaylight.groupbasedpolicy.renderer.ofoverlay.flow.FlowUtils;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.FlowId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.tables.Table;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.tables.table.Flow;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.tables.table.FlowBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.types.rev131026.flow.MatchBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeId;
+import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
+
+import com.google.common.util.concurrent.Futures;
+
+public class OfWriterTest {
+
+    private static final NodeId NODE_ID = new NodeId("openflow:1");
+    private static final short TABLE_ID = 4;
+
+    @Test
+    public void testWriteFlow_duplicatesIgnored() {
+        OfWriter ofWriter = new OfWriter();
+        Flow flow1 = newFlow("flow1", 1);
+        Flow flow2 = newFlow("flow2", 2);
+        ofWriter.writeFlow(NODE_ID, TABLE_ID, flow1);
+        ofWriter.writeFlow(NODE_ID, TABLE_ID, flow2);
+        // equivalent to flow1
+        ofWriter.writeFlow(NODE_ID, TABLE_ID, newFlow("flow1", 1));
+
+        List<Flow> flows = ofWriter.getTableForNode(NODE_ID, TABLE_ID).getFlow();
+        assertEquals(2, flows.size());
+        assertEquals(flow1, flows.get(0));
+        assertEquals(flow2, flows.get(1));
+    }
+
+    @Test
+    public void testWriteFlow_matchAdded() {
+        OfWriter ofWriter = new OfWriter();
+        ofWriter.writeFlow(NODE_ID, TABLE_ID,
+                new FlowBuilder().setId(new FlowId("flow1")).setTableId(TABLE_ID).setPriority(1).build());
+
+        List<Flow> flows = ofWriter.getTableForNode(NODE_ID, TABLE_ID).getFlow();
+        assertEquals(1, flows.size());
+        assertEquals(new MatchBuilder().build(), flows.get(0).getMatch());
+    }
+
+    @Test
+    public void testCommitToDataStore_onlyChangedFlowsWritten() {
+        DataBroker dataBroker = mock(DataBroker.class);
+        ReadWriteTransaction rwTx = newTransaction(dataBroker);
+        InstanceIdentifier<Table> tableIid = FlowUtils.createTablePath(NODE_ID, TABLE_ID);
+        Flow flow1 = newFlow("flow1", 1);
+        Flow flow2 = newFlow("flow2", 2);
+        OfWriter ofWriter = new OfWriter();
+        ofWriter.writeFlow(NODE_ID, TABLE_ID, flow1);
+        ofWriter.writeFlow(NODE_ID, TABLE_ID, flow2);
+        Map<InstanceIdentifier<Table>, Map<FlowId, HashedWrapper<Flow>>> actualFlows = ofWriter
+            .commitToDataStore(dataBroker, new HashMap<InstanceIdentifier<Table>, Map<FlowId, HashedWrapper<Flow>>>());
+        assertEquals(2, actualFlows.get(tableIid).size());
+        verify(rwTx).put(LogicalDatastoreType.CONFIGURATION, FlowUtils.createFlowPath(tableIid, flow1.getId()),
+                flow1, true);
+        verify(rwTx).put(LogicalDatastoreType.CONFIGURATION, FlowUtils.createFlowPath(tableIid, flow2.getId()),
+                flow2, true);
+
+        // flow1 unchanged, flow2 removed, flow3 added, flow1 with new priority in other table
+        rwTx = newTransaction(dataBroker);
+        Flow flow3 = newFlow("flow3", 3);
+        ofWriter = new OfWriter();
+        ofWriter.writeFlow(NODE_ID, TABLE_ID, flow1);
+        ofWriter.writeFlow(NODE_ID, TABLE_ID, flow3);
+        actualFlows = ofWriter.commitToDataStore(dataBroker, actualFlows);
+        assertEquals(2, actualFlows.get(tableIid).size());
+        verify(rwTx, never()).put(eq(LogicalDatastoreType.CONFIGURATION),
+                eq(FlowUtils.createFlowPath(tableIid, flow1.getId())), any(Flow.class), any(Boolean.class));
+        verify(rwTx).put(LogicalDatastoreType.CONFIGURATION, FlowUtils.createFlowPath(tableIid, flow3.getId()),
+                flow3, true);
+        verify(rwTx).delete(LogicalDatastoreType.CONFIGURATION, FlowUtils.createFlowPath(tableIid, flow2.getId()));
+        verify(rwTx).submit();
+
+        // changed flow1 is written again, flows of table which is not written anymore are deleted
+        rwTx = newTransaction(dataBroker);
+        short otherTableId = 5;
+        InstanceIdentifier<Table> otherTableIid = FlowUtils.createTablePath(NODE_ID, otherTableId);
+        Flow changedFlow1 = newFlow("flow1", 10);
+        ofWriter = new OfWriter();
+        ofWriter.writeFlow(NODE_ID, otherTableId, changedFlow1);
+        Map<InstanceIdentifier<Table>, Map<FlowId, HashedWrapper<Flow>>> previousFlows = new HashMap<>(actualFlows);
+        previousFlows.put(otherTableIid, actualFlows.get(tableIid));
+        actualFlows = ofWriter.commitToDataStore(dataBroker, previousFlows);
+        assertEquals(1, actualFlows.size());
+        verify(rwTx).put(LogicalDatastoreType.CONFIGURATION,
+                FlowUtils.createFlowPath(otherTableIid, changedFlow1.getId()), changedFlow1, true);
+        verify(rwTx).delete(LogicalDatastoreType.CONFIGURATION, FlowUtils.createFlowPath(tableIid, flow1.getId()));
+        verify(rwTx).delete(LogicalDatastoreType.CONFIGURATION, FlowUtils.createFlowPath(tableIid, flow3.getId()));
+        verify(rwTx).delete(LogicalDatastoreType.CONFIGURATION,
+                FlowUtils.createFlowPath(otherTableIid, flow3.getId()));
+    }
+
+    @Test
+    public void testCommitToDataStore_boundedTransactions() {
+        DataBroker dataBroker = mock(DataBroker.class);
+        ReadWriteTransaction rwTx = newTransaction(dataBroker);
+        OfWriter ofWriter = new OfWriter();
+        for (int i = 0; i <= OfWriter.MAX_FLOW_OPERATIONS_PER_TX; i++) {
+            ofWriter.writeFlow(NODE_ID, TABLE_ID, newFlow("flow" + i, i));
+        }
+        ofWriter.commitToDataStore(dataBroker,
+                new HashMap<InstanceIdentifier<Table>, Map<FlowId, HashedWrapper<Flow>>>());
+        verify(dataBroker, times(2)).newReadWriteTransaction();
+        verify(rwTx, times(2)).submit();
+    }
+
+    @Test
+    public void testCommitToDataStore_changedFlowWithSameHashWritten() {
+        DataBroker dataBroker = mock(DataBroker.class);
+        newTransaction(dataBroker);
+        InstanceIdentifier<Table> tableIid = FlowUtils.createTablePath(NODE_ID, TABLE_ID);
+        // "Aa" and "BB" have the same hash code
+        Flow flow = new FlowBuilder(newFlow("flow1", 1)).setFlowName("Aa").build();
+        Flow changedFlow = new FlowBuilder(newFlow("flow1", 1)).setFlowName("BB").build();
+        assertEquals(EquivalenceFabric.FLOW_EQUIVALENCE.hash(flow),
+                EquivalenceFabric.FLOW_EQUIVALENCE.hash(changedFlow));
+        OfWriter ofWriter = new OfWriter();
+        ofWriter.writeFlow(NODE_ID, TABLE_ID, flow);
+        Map<InstanceIdentifier<Table>, Map<FlowId, HashedWrapper<Flow>>> actualFlows = ofWriter
+            .commitToDataStore(dataBroker, new HashMap<InstanceIdentifier<Table>, Map<FlowId, HashedWrapper<Flow>>>());
+
+        ReadWriteTransaction rwTx = newTransaction(dataBroker);
+        ofWriter = new OfWriter();
+        ofWriter.writeFlow(NODE_ID, TABLE_ID, changedFlow);
+        ofWriter.commitToDataStore(dataBroker, actualFlows);
+        verify(rwTx).put(LogicalDatastoreType.CONFIGURATION, FlowUtils.createFlowPath(tableIid, flow.getId()),
+                changedFlow, true);
+    }
+
+    @Test
+    public void testCommitToDataStore_failedTransactionNotApplied() {
+        DataBroker dataBroker = mock(DataBroker.class);
+        ReadWriteTransaction failingTx = mock(ReadWriteTransaction.class);
+        when(failingTx.submit()).thenReturn(Futures
+            .<Void, TransactionCommitFailedException>immediateFailedCheckedFuture(
+                    new TransactionCommitFailedException("test")));
+        when(dataBroker.newReadWriteTransaction()).thenReturn(failingTx);
+        InstanceIdentifier<Table> tableIid = FlowUtils.createTablePath(NODE_ID, TABLE_ID);
+        Flow flow1 = newFlow("flow1", 1);
+        Flow flow2 = newFlow("flow2", 2);
+        Map<FlowId, HashedWrapper<Flow>> previousTable = new HashMap<>();
+        previousTable.put(flow1.getId(), HashedWrapper.wrap(EquivalenceFabric.FLOW_EQUIVALENCE, flow1));
+        Map<InstanceIdentifier<Table>, Map<FlowId, HashedWrapper<Flow>>> previousFlows = new HashMap<>();
+        previousFlows.put(tableIid, previousTable);
+        OfWriter ofWriter = new OfWriter();
+        ofWriter.writeFlow(NODE_ID, TABLE_ID, flow2);
+        Map<InstanceIdentifier<Table>, Map<FlowId, HashedWrapper<Flow>>> actualFlows =
+                ofWriter.commitToDataStore(dataBroker, previousFlows);
+        // flow1 was not deleted and flow2 was not written
+        assertEquals(previousFlows, actualFlows);
+
+        // both operations are retried by next update
+        ReadWriteTransaction rwTx = newTransaction(dataBroker);
+        actualFlows = ofWriter.commitToDataStore(dataBroker, actualFlows);
+        verify(rwTx).put(LogicalDatastoreType.CONFIGURATION, FlowUtils.createFlowPath(tableIid, flow2.getId()),
+                flow2, true);
+        verify(rwTx).delete(LogicalDatastoreType.CONFIGURATION, FlowUtils.createFlowPath(tableIid, flow1.getId()));
+        assertEquals(1, actualFlows.get(tableIid).size());
+        assertEquals(flow2, actualFlows.get(tableIid).get(flow2.getId()).get());
+    }
+
+    private static ReadWriteTransaction newTransaction(DataBroker dataBroker) {
+        ReadWriteTransaction rwTx = mock(ReadWriteTransaction.class);
+        when(rwTx.submit()).thenReturn(Futures.<Void, TransactionCommitFailedException>immediateCheckedFuture(null));
+        when(dataBroker.newReadWriteTransaction()).thenReturn(rwTx);
+        return rwTx;
+    }
+
+    private static Flow newFlow(String id, int priority) {
+        return new FlowBuilder().setId(new FlowId(id))
+            .setTableId(TABLE_ID)
+            .setPriority(priority)
+            .setMatch(new MatchBuilder().build())
+            .build();
+    }
+
+}
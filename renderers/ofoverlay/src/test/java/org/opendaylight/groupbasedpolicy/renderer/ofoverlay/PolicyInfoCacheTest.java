@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2016 Cisco Systems, Inc. and others. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.opendaylight.groupbasedpolicy.renderer.ofoverlay;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.opendaylight.controller.md.sal.binding.api.DataBroker;
+import org.opendaylight.controller.md.sal.binding.api.DataObjectModification;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeIdentifier;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeModification;
+import org.opendaylight.controller.md.sal.binding.api.ReadOnlyTransaction;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.controller.md.sal.common.api.data.ReadFailedException;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.common.rev140421.TenantId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.policy.rev140421.Tenants;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.policy.rev140421.TenantsBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.policy.rev140421.tenants.Tenant;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.policy.rev140421.tenants.TenantBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.policy.rev140421.tenants.TenantKey;
+import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
+
+import com.google.common.base.Optional;
+import com.google.common.util.concurrent.CheckedFuture;
+import com.google.common.util.concurrent.Futures;
+
+public class PolicyInfoCacheTest {
+
+    private static final TenantId TENANT_1 = new TenantId("tenant_1");
+    private static final TenantId TENANT_2 = new TenantId("tenant_2");
+
+    private DataBroker dataBroker;
+    private ReadOnlyTransaction rTx;
+    private PolicyInfoCache cache;
+
+    @SuppressWarnings("unchecked")
+    @Before
+    public void init() {
+        dataBroker = mock(DataBroker.class);
+        rTx = mock(ReadOnlyTransaction.class);
+        when(dataBroker.newReadOnlyTransaction()).thenReturn(rTx);
+        Tenants tenants = new TenantsBuilder()
+            .setTenant(Collections.singletonList(new TenantBuilder().setId(TENANT_1).build()))
+            .build();
+        CheckedFuture<Optional<Tenants>, ReadFailedException> future =
+                Futures.immediateCheckedFuture(Optional.of(tenants));
+        when(rTx.read(eq(LogicalDatastoreType.OPERATIONAL), any(InstanceIdentifier.class))).thenReturn(future);
+        cache = new PolicyInfoCache(dataBroker);
+    }
+
+    @Test
+    public void testGetSnapshot_resolvedOncePerVersion() {
+        PolicyInfoCache.Snapshot snapshot = cache.getSnapshot();
+        Assert.assertNotNull(snapshot.getPolicyInfo());
+        Assert.assertTrue(snapshot.getResolvedTenants().containsKey(TENANT_1));
+        Assert.assertSame(snapshot, cache.getSnapshot());
+        verify(dataBroker, times(1)).newReadOnlyTransaction();
+
+        cache.invalidate();
+        PolicyInfoCache.Snapshot nextSnapshot = cache.getSnapshot();
+        Assert.assertNotSame(snapshot, nextSnapshot);
+        Assert.assertTrue(nextSnapshot.getVersion() > snapshot.getVersion());
+        verify(dataBroker, times(1)).newReadOnlyTransaction();
+    }
+
+    @Test
+    public void testOnDataTreeChanged_tenantsUpdated() {
+        long version = cache.getSnapshot().getVersion();
+
+        cache.onDataTreeChanged(Collections.singleton(
+                tenantChange(DataObjectModification.ModificationType.WRITE, TENANT_2)));
+        PolicyInfoCache.Snapshot snapshot = cache.getSnapshot();
+        Assert.assertTrue(snapshot.getVersion() > version);
+        Assert.assertEquals(2, snapshot.getResolvedTenants().size());
+
+        cache.onDataTreeChanged(Collections.singleton(
+                tenantChange(DataObjectModification.ModificationType.DELETE, TENANT_1)));
+        cache.onDataTreeChanged(Collections.singleton(
+                tenantChange(DataObjectModification.ModificationType.DELETE, TENANT_2)));
+        snapshot = cache.getSnapshot();
+        Assert.assertTrue(snapshot.getResolvedTenants().isEmpty());
+        Assert.assertNull(snapshot.getPolicyInfo());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static DataTreeModification<Tenant> tenantChange(DataObjectModification.ModificationType type,
+            TenantId tenantId) {
+        InstanceIdentifier<Tenant> tenantIid =
+                InstanceIdentifier.builder(Tenants.class).child(Tenant.class, new TenantKey(tenantId)).build();
+        DataObjectModification<Tenant> rootNode = mock(DataObjectModification.class);
+        when(rootNode.getModificationType()).thenReturn(type);
+        when(rootNode.getDataAfter()).thenReturn(new TenantBuilder().setId(tenantId).build());
+        DataTreeModification<Tenant> change = mock(DataTreeModification.class);
+        when(change.getRootNode()).thenReturn(rootNode);
+        when(change.getRootPath()).thenReturn(new DataTreeIdentifier<>(LogicalDatastoreType.OPERATIONAL, tenantIid));
+        return change;
+    }
+
+}
@@ -11,41 +11,63 @@ package org.opendaylight.groupbasedpolicy.renderer.ofoverlay;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ScheduledExecutorService;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InOrder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.opendaylight.controller.md.sal.binding.api.DataBroker;
+import org.opendaylight.controller.md.sal.binding.api.ReadTransaction;
 import org.opendaylight.controller.md.sal.binding.api.ReadWriteTransaction;
 import org.opendaylight.controller.md.sal.binding.api.WriteTransaction;
 import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
 import org.opendaylight.controller.md.sal.common.api.data.ReadFailedException;
 import org.opendaylight.controller.md.sal.common.api.data.TransactionCommitFailedException;
 import org.opendaylight.groupbasedpolicy.dto.EgKey;
+import org.opendaylight.groupbasedpolicy.dto.ConditionSet;
 import org.opendaylight.groupbasedpolicy.dto.EpKey;
+import org.opendaylight.groupbasedpolicy.dto.Policy;
+import org.opendaylight.groupbasedpolicy.dto.PolicyInfo;
 import org.opendaylight.groupbasedpolicy.renderer.ofoverlay.endpoint.EndpointManager;
+import org.opendaylight.groupbasedpolicy.renderer.ofoverlay.equivalence.EquivalenceFabric;
+import org.opendaylight.groupbasedpolicy.renderer.ofoverlay.equivalence.HashedWrapper;
+import org.opendaylight.groupbasedpolicy.renderer.ofoverlay.flow.FlowUtils;
 import org.opendaylight.groupbasedpolicy.renderer.ofoverlay.node.SwitchManager;
 import org.opendaylight.groupbasedpolicy.util.DataStoreHelper;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.yang.types.rev130715.MacAddress;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.FlowId;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.tables.Table;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.tables.TableBuilder;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.tables.table.Flow;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.tables.table.FlowBuilder;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.common.rev140421.EndpointGroupId;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.common.rev140421.L2ContextId;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.common.rev140421.TenantId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.endpoint.rev140421.endpoints.Endpoint;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.endpoint.rev140421.endpoints.EndpointBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.policy.rev140421.Tenants;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.policy.rev140421.TenantsBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.policy.rev140421.tenants.TenantBuilder;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeId;
 import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
 
 import com.google.common.base.Optional;
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.util.concurrent.CheckedFuture;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
@@ -119,7 +141,8 @@ public class PolicyManagerTest {
         CheckedFuture<Void, TransactionCommitFailedException> submitFuture = mock(CheckedFuture.class);
         when(readWriteTransaction.submit()).thenReturn(submitFuture);
 
-        flowMap.commitToDataStore(dataBroker, new HashMap<InstanceIdentifier<Table>, TableBuilder>());
+        flowMap.commitToDataStore(dataBroker,
+                new HashMap<InstanceIdentifier<Table>, Map<FlowId, HashedWrapper<Flow>>>());
 
         InOrder orderCheck = inOrder(readWriteTransaction);
         orderCheck.verify(readWriteTransaction).put(any(LogicalDatastoreType.class), any(InstanceIdentifier.class),
@@ -145,6 +168,115 @@ public class PolicyManagerTest {
         // TODO finish this test
     }
 
+    @Test
+    public void updateFlowsTest_failedNodeKeepsPreviousFlows() throws Exception {
+        EndpointManager endpointManager = mock(EndpointManager.class);
+        ScheduledExecutorService executor = mock(ScheduledExecutorService.class);
+        // switch tasks run in the calling thread
+        doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                ((Runnable) invocation.getArguments()[0]).run();
+                return null;
+            }
+        }).when(executor).execute(any(Runnable.class));
+        Tenants tenants = new TenantsBuilder()
+            .setTenant(Collections.singletonList(new TenantBuilder().setId(new TenantId("tenant")).build()))
+            .build();
+        PowerMockito.stub(PowerMockito.method(DataStoreHelper.class, "readFromDs", LogicalDatastoreType.class,
+                InstanceIdentifier.class, ReadTransaction.class)).toReturn(Optional.of(tenants));
+        PolicyManager policyManager = new PolicyManager(dataBroker, switchManager, endpointManager, executor,
+                tableOffset);
+
+        NodeId failingNodeId = new NodeId("openflow:1");
+        Map<InstanceIdentifier<Table>, Map<FlowId, HashedWrapper<Flow>>> previousFlows = new HashMap<>();
+        previousFlows.put(FlowUtils.createTablePath(failingNodeId, tableId),
+                Collections.singletonMap(new FlowId("flow"), HashedWrapper.wrap(EquivalenceFabric.FLOW_EQUIVALENCE,
+                        new FlowBuilder().setId(new FlowId("flow")).build())));
+        policyManager.getPreviousGbpFlowsByNode().put(failingNodeId, previousFlows);
+        when(dataBroker.newReadWriteTransaction()).thenThrow(new IllegalStateException("test"));
+
+        policyManager.updateFlows();
+
+        assertEquals(previousFlows, policyManager.getPreviousGbpFlowsByNode().get(failingNodeId));
+        assertTrue(policyManager.getDirtyNodes().contains(failingNodeId));
+        policyManager.close();
+    }
+
+    @Test
+    public void switchEventsTest_allReadySwitchesDirty() throws Exception {
+        NodeId node1 = new NodeId("openflow:1");
+        NodeId node2 = new NodeId("openflow:2");
+        NodeId removedNode = new NodeId("openflow:3");
+        when(switchManager.getReadySwitches()).thenReturn(ImmutableSet.of(node1, node2));
+
+        manager.switchReady(node1);
+        assertEquals(ImmutableSet.of(node1, node2), manager.getDirtyNodes());
+        manager.getDirtyNodes().clear();
+
+        manager.switchUpdated(node2);
+        assertEquals(ImmutableSet.of(node1, node2), manager.getDirtyNodes());
+        manager.getDirtyNodes().clear();
+
+        manager.switchRemoved(removedNode);
+        assertEquals(ImmutableSet.of(node1, node2, removedNode), manager.getDirtyNodes());
+    }
+
+    @Test
+    public void endpointUpdatedTest_removedEndpointTenantDirty() throws Exception {
+        EndpointManager endpointManager = mock(EndpointManager.class);
+        PolicyManager policyManager = new PolicyManager(dataBroker, switchManager, endpointManager,
+                mock(ScheduledExecutorService.class), tableOffset);
+        TenantId tenantId = new TenantId("tenant");
+        EpKey epKey = new EpKey(new L2ContextId("l2context"), new MacAddress("00:00:00:00:00:01"));
+        Endpoint endpoint = new EndpointBuilder().setL2Context(epKey.getL2Context())
+            .setMacAddress(epKey.getMacAddress())
+            .setTenant(tenantId)
+            .build();
+        when(endpointManager.getEndpoint(epKey)).thenReturn(endpoint);
+        policyManager.endpointUpdated(epKey);
+        policyManager.getDirtyTenants().clear();
+
+        when(endpointManager.getEndpoint(epKey)).thenReturn(null);
+        policyManager.endpointUpdated(epKey);
+
+        assertEquals(Collections.singleton(tenantId), policyManager.getDirtyTenants());
+        policyManager.close();
+    }
+
+    @Test
+    public void endpointUpdatedTest_unknownRemovedEndpointAllReadySwitchesDirty() throws Exception {
+        NodeId node1 = new NodeId("openflow:1");
+        NodeId node2 = new NodeId("openflow:2");
+        when(switchManager.getReadySwitches()).thenReturn(ImmutableSet.of(node1, node2));
+
+        manager.endpointUpdated(new EpKey(new L2ContextId("l2context"), new MacAddress("00:00:00:00:00:01")));
+
+        assertEquals(ImmutableSet.of(node1, node2), manager.getDirtyNodes());
+    }
+
+    @Test
+    public void addPeerTenantsTest() {
+        TenantId consumerTenant = new TenantId("consumer");
+        TenantId providerTenant = new TenantId("provider");
+        TenantId otherTenant = new TenantId("other");
+        com.google.common.collect.Table<EgKey, EgKey, Policy> policyMap = HashBasedTable.create();
+        policyMap.put(new EgKey(consumerTenant, new EndpointGroupId("client")),
+                new EgKey(providerTenant, new EndpointGroupId("web")), Policy.EMPTY);
+        policyMap.put(new EgKey(otherTenant, new EndpointGroupId("client")),
+                new EgKey(otherTenant, new EndpointGroupId("web")), Policy.EMPTY);
+        PolicyInfo policyInfo = new PolicyInfo(policyMap, Collections.<EgKey, Set<ConditionSet>>emptyMap());
+
+        Set<TenantId> tenants = new HashSet<>(Collections.singleton(providerTenant));
+        PolicyManager.addPeerTenants(tenants, policyInfo);
+        assertEquals(ImmutableSet.of(consumerTenant, providerTenant), tenants);
+
+        tenants = new HashSet<>(Collections.singleton(consumerTenant));
+        PolicyManager.addPeerTenants(tenants, policyInfo);
+        assertEquals(ImmutableSet.of(consumerTenant, providerTenant), tenants);
+    }
+
     @Test
     public void verifyMaxTableIdTest() throws Exception {
         short tableOffset = 255 - TABLEID_EXTERNAL_MAPPER;
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2016 Cisco Systems, Inc. and others. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.opendaylight.groupbasedpolicy.renderer.ofoverlay.arp;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.opendaylight.controller.liblldp.EtherTypes;
+import org.opendaylight.controller.liblldp.Ethernet;
+import org.opendaylight.controller.liblldp.HexEncode;
+import org.opendaylight.controller.liblldp.NetUtils;
+import org.opendaylight.controller.liblldp.PacketException;
+
+import com.google.common.base.Stopwatch;
+
+/**
+ * Measures time of finding ARP replies in mixed packet-in traffic where one of ten packets is ARP
+ * reply and others are IPv4 packets. Decoding of each packet with {@link Ethernet} parser is
+ * compared with {@link ArpResolverUtils#getArpOffset(byte[])}. It is not run as a part of the
+ * build.
+ * <p>
+ * Usage: {@code ArpResolverUtilsBenchmark [packet-count...]}, the default is 100000 and 1000000
+ * packets.
+ */
+public class ArpResolverUtilsBenchmark {
+
+    private static final int ARP_PACKET_RATIO = 10;
+    private static final int IPV4_PACKET_LENGTH = 128;
+    private static final int WARMUP_ROUNDS = 3;
+
+    public static void main(String[] args) throws Exception {
+        List<Integer> packetCounts = new ArrayList<>();
+        for (String arg : args) {
+            packetCounts.add(Integer.parseInt(arg));
+        }
+        if (packetCounts.isEmpty()) {
+            packetCounts.add(100000);
+            packetCounts.add(1000000);
+        }
+        for (int packetCount : packetCounts) {
+            List<byte[]> frames = createFrames(packetCount);
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                countArpRepliesWithEthernetParser(frames);
+                countArpRepliesWithOffsets(frames);
+            }
+            Stopwatch stopwatch = Stopwatch.createStarted();
+            int parsedReplies = countArpRepliesWithEthernetParser(frames);
+            long parserMillis = stopwatch.elapsed(TimeUnit.MILLISECONDS);
+            stopwatch.reset().start();
+            int offsetReplies = countArpRepliesWithOffsets(frames);
+            long offsetMillis = stopwatch.elapsed(TimeUnit.MILLISECONDS);
+            System.out.printf("%d packets (%d and %d ARP replies) decoded in %d ms with Ethernet parser, in %d ms"
+                    + " with offsets%n", packetCount, parsedReplies, offsetReplies, parserMillis, offsetMillis);
+        }
+    }
+
+    private static int countArpRepliesWithEthernetParser(List<byte[]> frames) {
+        int arpReplies = 0;
+        for (byte[] frame : frames) {
+            try {
+                Ethernet ethPkt = new Ethernet();
+                ethPkt.deserialize(frame, 0, frame.length * NetUtils.NumBitsInAByte);
+                if (!(ethPkt.getPayload() instanceof Arp)) {
+                    throw new PacketException("Packet is not ARP");
+                }
+                Arp arp = (Arp) ethPkt.getPayload();
+                if (arp.getOperation() == ArpOperation.REPLY.intValue()
+                        && ArpUtils.bytesToIp(arp.getSenderProtocolAddress()) != null
+                        && ArpUtils.bytesToMac(arp.getSenderHardwareAddress()) != null) {
+                    arpReplies++;
+                }
+            } catch (PacketException e) {
+                // not ARP
+            }
+        }
+        return arpReplies;
+    }
+
+    private static int countArpRepliesWithOffsets(List<byte[]> frames) {
+        int arpReplies = 0;
+        for (byte[] frame : frames) {
+            int arpOffset = ArpResolverUtils.getArpOffset(frame);
+            if (arpOffset >= 0 && ArpResolverUtils.getArpOperation(frame, arpOffset) == ArpOperation.REPLY.intValue()
+                    && ArpResolverUtils.getSenderProtocolAddress(frame, arpOffset) != null
+                    && ArpResolverUtils.getSenderHardwareAddress(frame, arpOffset) != null) {
+                arpReplies++;
+            }
+        }
+        return arpReplies;
+    }
+
+    private static List<byte[]> createFrames(int packetCount) throws PacketException, UnknownHostException {
+        byte[] sha = HexEncode.bytesFromHexString("00:00:00:00:00:01");
+        byte[] tha = HexEncode.bytesFromHexString("00:00:00:00:00:02");
+        Arp arp = new Arp();
+        arp.setSenderHardwareAddress(sha);
+        arp.setSenderProtocolAddress(InetAddress.getByName("192.168.0.1").getAddress());
+        arp.setTargetHardwareAddress(tha);
+        arp.setTargetProtocolAddress(InetAddress.getByName("192.168.0.2").getAddress());
+        arp.setOperation(ArpOperation.REPLY.intValue());
+        Ethernet arpFrame = new Ethernet().setSourceMACAddress(sha)
+            .setDestinationMACAddress(tha)
+            .setEtherType(EtherTypes.ARP.shortValue());
+        arpFrame.setPayload(arp);
+        byte[] arpFrameBytes = arpFrame.serialize();
+
+        byte[] ipv4FrameBytes = new byte[IPV4_PACKET_LENGTH];
+        System.arraycopy(arpFrameBytes, 0, ipv4FrameBytes, 0, 12);
+        ipv4FrameBytes[12] = 0x08;
+        ipv4FrameBytes[14] = 0x45;
+
+        List<byte[]> frames = new ArrayList<>(packetCount);
+        for (int i = 0; i < packetCount; i++) {
+            frames.add(i % ARP_PACKET_RATIO == 0 ? arpFrameBytes : ipv4FrameBytes);
+        }
+        return frames;
+    }
+
+}
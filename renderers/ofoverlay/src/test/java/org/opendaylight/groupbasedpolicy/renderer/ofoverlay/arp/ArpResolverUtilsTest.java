@@ -18,6 +18,8 @@ import org.opendaylight.controller.liblldp.EtherTypes;
 import org.opendaylight.controller.liblldp.Ethernet;
 import org.opendaylight.controller.liblldp.HexEncode;
 import org.opendaylight.controller.liblldp.PacketException;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.Ipv4Address;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.yang.types.rev130715.MacAddress;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.service.rev130709.PacketReceived;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.service.rev130709.PacketReceivedBuilder;
 
@@ -56,6 +58,83 @@ public class ArpResolverUtilsTest {
         Assert.assertEquals(arp, arpOut);
     }
 
+    @Test
+    public void getArpOffsetTest() throws Exception {
+        byte[] sha = HexEncode.bytesFromHexString("00:00:00:00:0a:1f");
+        Arp arp = new Arp();
+        arp.setSenderHardwareAddress(sha);
+        arp.setSenderProtocolAddress(InetAddress.getByName("192.168.0.1").getAddress());
+        arp.setTargetHardwareAddress(HexEncode.bytesFromHexString("00:00:00:00:00:02"));
+        arp.setTargetProtocolAddress(InetAddress.getByName("192.168.0.2").getAddress());
+        arp.setOperation(ArpOperation.REPLY.intValue());
+        Ethernet arpFrame = new Ethernet().setSourceMACAddress(sha)
+            .setDestinationMACAddress(HexEncode.bytesFromHexString("00:00:00:00:00:02"))
+            .setEtherType(EtherTypes.ARP.shortValue());
+        arpFrame.setPayload(arp);
+        byte[] frame = arpFrame.serialize();
+
+        int arpOffset = ArpResolverUtils.getArpOffset(frame);
+        Assert.assertEquals(14, arpOffset);
+        Assert.assertEquals(ArpOperation.REPLY.intValue(), ArpResolverUtils.getArpOperation(frame, arpOffset));
+        Assert.assertEquals(new MacAddress("00:00:00:00:0a:1f"),
+                ArpResolverUtils.getSenderHardwareAddress(frame, arpOffset));
+        Assert.assertEquals(new Ipv4Address("192.168.0.1"), ArpResolverUtils.getSenderProtocolAddress(frame, arpOffset));
+
+        // 802.1Q tagged frame
+        byte[] taggedFrame = addVlanTag(frame, 0x8100, 10);
+        arpOffset = ArpResolverUtils.getArpOffset(taggedFrame);
+        Assert.assertEquals(18, arpOffset);
+        Assert.assertEquals(ArpOperation.REPLY.intValue(), ArpResolverUtils.getArpOperation(taggedFrame, arpOffset));
+        Assert.assertEquals(new MacAddress("00:00:00:00:0a:1f"),
+                ArpResolverUtils.getSenderHardwareAddress(taggedFrame, arpOffset));
+        Assert.assertEquals(new Ipv4Address("192.168.0.1"),
+                ArpResolverUtils.getSenderProtocolAddress(taggedFrame, arpOffset));
+
+        // QinQ frame - 802.1ad service tag in front of 802.1Q customer tag
+        byte[] qinqFrame = addVlanTag(taggedFrame, 0x88a8, 100);
+        arpOffset = ArpResolverUtils.getArpOffset(qinqFrame);
+        Assert.assertEquals(22, arpOffset);
+        Assert.assertEquals(new Ipv4Address("192.168.0.1"),
+                ArpResolverUtils.getSenderProtocolAddress(qinqFrame, arpOffset));
+    }
+
+    /**
+     * @return copy of the frame with VLAN tag inserted in front of the ethertype
+     */
+    private static byte[] addVlanTag(byte[] frame, int tpid, int vlanId) {
+        byte[] taggedFrame = new byte[frame.length + 4];
+        System.arraycopy(frame, 0, taggedFrame, 0, 12);
+        taggedFrame[12] = (byte) (tpid >>> 8);
+        taggedFrame[13] = (byte) tpid;
+        taggedFrame[14] = (byte) (vlanId >>> 8);
+        taggedFrame[15] = (byte) vlanId;
+        System.arraycopy(frame, 12, taggedFrame, 16, frame.length - 12);
+        return taggedFrame;
+    }
+
+    @Test
+    public void getArpOffsetTest_notArpPacket() {
+        Assert.assertEquals(-1, ArpResolverUtils.getArpOffset(null));
+        Assert.assertEquals(-1, ArpResolverUtils.getArpOffset(new byte[] {0xb, 0xe, 0xe, 0xf}));
+        byte[] ipv4Frame = new byte[64];
+        ipv4Frame[12] = 0x08;
+        Assert.assertEquals(-1, ArpResolverUtils.getArpOffset(ipv4Frame));
+        byte[] nonIpv4ArpFrame = new byte[64];
+        nonIpv4ArpFrame[12] = 0x08;
+        nonIpv4ArpFrame[13] = 0x06;
+        Assert.assertEquals(-1, ArpResolverUtils.getArpOffset(nonIpv4ArpFrame));
+        byte[] taggedIpv4Frame = new byte[64];
+        taggedIpv4Frame[12] = (byte) 0x81;
+        taggedIpv4Frame[16] = 0x08;
+        Assert.assertEquals(-1, ArpResolverUtils.getArpOffset(taggedIpv4Frame));
+        // frame full of VLAN tags
+        byte[] vlanTagsFrame = new byte[64];
+        for (int i = 12; i + 1 < vlanTagsFrame.length; i += 4) {
+            vlanTagsFrame[i] = (byte) 0x81;
+        }
+        Assert.assertEquals(-1, ArpResolverUtils.getArpOffset(vlanTagsFrame));
+    }
+
     @Rule public ExpectedException e = ExpectedException.none();
     @Test
     public void getArpFromTest_notArpPacket() throws PacketException {
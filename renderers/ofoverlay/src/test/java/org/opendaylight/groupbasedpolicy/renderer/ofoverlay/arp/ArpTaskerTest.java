@@ -13,6 +13,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assume.assumeNoException;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
@@ -21,6 +22,8 @@ import static org.mockito.Mockito.when;
 import java.net.InetAddress;
 import java.util.Collections;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -45,6 +48,8 @@ import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.Fl
 import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.FlowCapableNodeConnectorBuilder;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.AddFlowInput;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.AddFlowOutput;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.RemoveFlowInput;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.RemoveFlowOutput;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.SalFlowService;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.common.rev140421.L2BridgeDomainId;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.common.rev140421.L2ContextId;
@@ -94,6 +99,7 @@ import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.service.rev130709.Pa
 import org.opendaylight.yangtools.yang.binding.DataObject;
 import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
 import org.opendaylight.yangtools.yang.common.RpcResult;
+import org.opendaylight.yangtools.yang.common.RpcResultBuilder;
 
 import com.google.common.base.Optional;
 import com.google.common.util.concurrent.CheckedFuture;
@@ -106,12 +112,14 @@ public class ArpTaskerTest extends OfOverlayDataBrokerTest {
     private DataBroker broker;
     private PacketProcessingService packetService;
     private SalFlowService flowService;
+    private ScheduledExecutorService executor;
 
     @Before
     public void init() {
 
         packetService = mock(PacketProcessingService.class);
         flowService = mock(SalFlowService.class);
+        executor = mock(ScheduledExecutorService.class);
     }
 
     @SuppressWarnings("unchecked")
@@ -154,7 +162,7 @@ public class ArpTaskerTest extends OfOverlayDataBrokerTest {
         // test without key
         ReadOnlyTransaction rtx = mock(ReadOnlyTransaction.class);
         broker = mock(DataBroker.class);
-        arpTasker = new ArpTasker(broker, packetService, flowService);
+        arpTasker = new ArpTasker(broker, packetService, flowService, executor);
 
         epL3.setKey(new EndpointL3Key(mock(IpAddress.class), null));
         arpTasker.addMacForL3EpAndCreateEp(epL3.build());
@@ -174,7 +182,7 @@ public class ArpTaskerTest extends OfOverlayDataBrokerTest {
 
         // test correct
         broker = getDataBroker();
-        arpTasker = new ArpTasker(broker, packetService, flowService);
+        arpTasker = new ArpTasker(broker, packetService, flowService, executor);
         WriteTransaction wtx = broker.newWriteOnlyTransaction();
         wtx.put(LogicalDatastoreType.CONFIGURATION, InstanceIdentifier.builder(Nodes.class).build(),
                 new NodesBuilder().setNode(Collections.singletonList(node.build())).build(), true);
@@ -266,19 +274,108 @@ public class ArpTaskerTest extends OfOverlayDataBrokerTest {
             .child(L2BridgeDomain.class, new L2BridgeDomainKey(l2domainId))
             .build();
         wtx.put(LogicalDatastoreType.OPERATIONAL, l2domainIid, l2domain.build() ,true);
-        wtx.submit();
+        wtx.submit().get();
+        arpTasker.l3EndpointUpdated(epL3.build());
+        when(flowService.removeFlow(any(RemoveFlowInput.class))).thenReturn(
+                Futures.immediateFuture(RpcResultBuilder.<RemoveFlowOutput>success().build()));
+        assertEquals(1, arpTasker.getPendingL3Endpoints());
 
+        // ARP replies are resolved in batch
+        arpTasker.onPacketReceived(packet);
         arpTasker.onPacketReceived(packet);
+        ArgumentCaptor<Runnable> batch = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor).schedule(batch.capture(), eq(ArpTasker.ARP_REPLY_BATCH_DELAY_MS), eq(TimeUnit.MILLISECONDS));
+        assertEquals(1, arpTasker.getQueuedArpReplies());
+        batch.getValue().run();
+        assertEquals(0, arpTasker.getQueuedArpReplies());
+        assertEquals(0, arpTasker.getPendingL3Endpoints());
+        assertEquals(1, arpTasker.getResolvedL3EpCount());
+        verify(flowService).removeFlow(any(RemoveFlowInput.class));
         rtx = broker.newReadOnlyTransaction();
         Optional<EndpointL3> optional = rtx.read(LogicalDatastoreType.OPERATIONAL, epL3Iid).get();
         assertTrue(optional.isPresent());
         EndpointL3 epl3 = optional.get();
         assertArrayEquals(sha, HexEncode.bytesFromHexString(epl3.getMacAddress().getValue()));
         assertEquals(l2domain.getId(), epl3.getL2Context());
+        // MAC is merged to the L3 endpoint in datastore
+        assertEquals(tenantId, epl3.getTenant());
+        assertEquals(augment, epl3.getAugmentation(OfOverlayL3Context.class));
         Optional<Endpoint> optionalEp = rtx.read(LogicalDatastoreType.OPERATIONAL,
                 IidFactory.endpointIid(l2domainId, new MacAddress("00:00:00:00:00:01"))).get();
         assertTrue(optionalEp.isPresent());
         assertEquals(new OfOverlayContextBuilder(augment).build(),
                 optionalEp.get().getAugmentation(OfOverlayContext.class));
     }
+
+    @Test
+    public void l3EndpointRemovedTest_pendingL3EpEvicted() throws Exception {
+        EndpointL3 l3Ep = requestMacForL3Ep();
+        assertEquals(1, arpTasker.getPendingL3Endpoints());
+
+        arpTasker.l3EndpointRemoved(l3Ep.getKey());
+        assertEquals(0, arpTasker.getPendingL3Endpoints());
+        verify(flowService).removeFlow(any(RemoveFlowInput.class));
+        // second removal has nothing to evict
+        arpTasker.l3EndpointRemoved(l3Ep.getKey());
+        verify(flowService).removeFlow(any(RemoveFlowInput.class));
+    }
+
+    /**
+     * Writes node with external interface and subnet of L3 endpoint and sends ARP request for the
+     * L3 endpoint.
+     */
+    @SuppressWarnings("unchecked")
+    private EndpointL3 requestMacForL3Ep() throws Exception {
+        NodeConnectorId connectorId = new NodeConnectorId("nodeConnector");
+        NodeConnectorBuilder connector = new NodeConnectorBuilder().setKey(new NodeConnectorKey(connectorId))
+            .addAugmentation(FlowCapableNodeConnector.class, new FlowCapableNodeConnectorBuilder()
+                .setHardwareAddress(new MacAddress("00:00:00:00:00:01")).build());
+        NodeId nodeId = new NodeId("node");
+        OfOverlayNodeConfigBuilder ofOverNodeCfg = new OfOverlayNodeConfigBuilder().setExternalInterfaces(
+                Collections.singletonList(new ExternalInterfacesBuilder().setNodeConnectorId(connectorId).build()));
+        NodeBuilder node = new NodeBuilder().addAugmentation(OfOverlayNodeConfig.class, ofOverNodeCfg.build())
+            .setKey(new NodeKey(nodeId))
+            .setId(nodeId)
+            .setNodeConnector(Collections.singletonList(connector.build()));
+        NetworkDomainId domainId = new NetworkDomainId("domainId");
+        TenantId tenantId = new TenantId("tenant");
+        SubnetBuilder subnet = new SubnetBuilder().setId(new SubnetId(domainId))
+            .setIpPrefix(new IpPrefix(new Ipv4Prefix("192.168.0.0/24")))
+            .setParent(new L2ContextId("l2context"));
+        TenantsBuilder tenants =
+                new TenantsBuilder().setTenant(Collections.singletonList(new TenantBuilder().setId(tenantId)
+                    .setForwardingContext(
+                            new ForwardingContextBuilder().setSubnet(Collections.singletonList(subnet.build())).build())
+                    .build()));
+
+        broker = getDataBroker();
+        arpTasker = new ArpTasker(broker, packetService, flowService, executor);
+        WriteTransaction wtx = broker.newWriteOnlyTransaction();
+        wtx.put(LogicalDatastoreType.CONFIGURATION, InstanceIdentifier.builder(Nodes.class).build(),
+                new NodesBuilder().setNode(Collections.singletonList(node.build())).build(), true);
+        wtx.put(LogicalDatastoreType.OPERATIONAL, InstanceIdentifier.builder(Nodes.class)
+            .child(Node.class, node.getKey())
+            .child(NodeConnector.class, new NodeConnectorKey(connectorId))
+            .build(), connector.build(), true);
+        // ignoring a Windows-specific bug
+        try {
+            wtx.put(LogicalDatastoreType.CONFIGURATION, InstanceIdentifier.builder(Tenants.class).build(),
+                    tenants.build(), true);
+        } catch (UncheckedExecutionException e) {
+            assumeNoException(e);
+        }
+        wtx.submit().get();
+
+        when(flowService.addFlow(any(AddFlowInput.class))).thenReturn(mock(Future.class));
+        when(flowService.removeFlow(any(RemoveFlowInput.class))).thenReturn(
+                Futures.immediateFuture(RpcResultBuilder.<RemoveFlowOutput>success().build()));
+        EndpointL3 l3Ep = new EndpointL3Builder()
+            .setKey(new EndpointL3Key(new IpAddress(new Ipv4Address("192.168.0.1")), new L3ContextId("l3context")))
+            .setNetworkContainment(domainId)
+            .setTenant(tenantId)
+            .build();
+        arpTasker.addMacForL3EpAndCreateEp(l3Ep);
+        verify(flowService).addFlow(any(AddFlowInput.class));
+        return l3Ep;
+    }
 }
@@ -12,6 +12,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
@@ -195,6 +196,52 @@ public class EndpointManagerTest {
         assertTrue(nodesForGroup.isEmpty());
     }
 
+    @Test
+    public void getNodesForGroupTest_indexUpdated() {
+        EgKey egKey = new EgKey(tenantId, endpointGroupId);
+        manager.processEndpoint(null, endpoint1);
+        assertEquals(Collections.singleton(nodeId1), manager.getNodesForGroup(egKey));
+        Set<Endpoint> endpoints = manager.getEndpoints();
+
+        manager.processEndpoint(endpoint1, null);
+        assertTrue(manager.getNodesForGroup(egKey).isEmpty());
+        assertTrue(manager.getEndpoints().isEmpty());
+        // snapshot taken before the change is not affected
+        assertEquals(Collections.singleton(endpoint1), endpoints);
+    }
+
+    @Test
+    public void processEndpointTest_unchangedBucketsShared() {
+        EgKey egKey = new EgKey(tenantId, endpointGroupId);
+        EndpointGroupId otherEpgId = new EndpointGroupId("otherEpg");
+        EgKey otherEgKey = new EgKey(tenantId, otherEpgId);
+        when(endpoint2.getEndpointGroup()).thenReturn(otherEpgId);
+        when(endpoint2.getMacAddress()).thenReturn(new MacAddress("12:34:56:78:9a:bd"));
+        manager.processEndpoint(null, endpoint1);
+        Collection<Endpoint> endpointsForNode = manager.getEndpointsForNode(nodeId1);
+        Collection<Endpoint> endpointsForGroup = manager.getEndpointsForGroup(egKey);
+
+        manager.processEndpoint(null, endpoint2);
+        assertSame(endpointsForNode, manager.getEndpointsForNode(nodeId1));
+        assertSame(endpointsForGroup, manager.getEndpointsForGroup(egKey));
+        assertEquals(Collections.singletonList(endpoint2), manager.getEndpointsForNode(nodeId2, otherEgKey));
+        assertEquals(Collections.singleton(nodeId2), manager.getNodesForGroup(otherEgKey));
+        assertEquals(2, manager.getEndpoints().size());
+    }
+
+    @Test
+    public void getExtEpsNoLocForGroupTest_indexed() {
+        EgKey egKey = new EgKey(tenantId, endpointGroupId);
+        EgKey otherEgKey = new EgKey(tenantId, new EndpointGroupId("otherEpg"));
+        when(context1.getNodeId()).thenReturn(null);
+        manager.processEndpoint(null, endpoint1);
+        assertEquals(Collections.singleton(endpoint1), manager.getExtEpsNoLocForGroup(egKey));
+        assertTrue(manager.getExtEpsNoLocForGroup(otherEgKey).isEmpty());
+
+        manager.processEndpoint(endpoint1, null);
+        assertTrue(manager.getExtEpsNoLocForGroup(egKey).isEmpty());
+    }
+
     @Test
     public void getEndpointsForNodeTestNodeIdEgKey() {
         EgKey egKey = new EgKey(tenantId, endpointGroupId);
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2016 Cisco Systems, Inc. and others. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.opendaylight.groupbasedpolicy.renderer.ofoverlay.equivalence;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.FlowId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.tables.table.Flow;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.tables.table.FlowBuilder;
+
+public class HashedWrapperTest {
+
+    @Test
+    public void testHashCode_computedOnce() {
+        Flow flow = mock(Flow.class);
+        when(flow.getPriority()).thenReturn(5);
+        FlowEquivalence equivalence = spy(new FlowEquivalence());
+
+        HashedWrapper<Flow> wrapper = HashedWrapper.wrap(equivalence, flow);
+        Assert.assertEquals(EquivalenceFabric.FLOW_EQUIVALENCE.hash(flow), wrapper.hashCode());
+        Assert.assertEquals(wrapper.hashCode(), wrapper.hashCode());
+        verify(equivalence, times(1)).doHash(flow);
+        Assert.assertSame(flow, wrapper.get());
+    }
+
+    @Test
+    public void testEquals() {
+        Flow flowA = new FlowBuilder().setId(new FlowId("a")).setPriority(5).build();
+        Flow flowB = new FlowBuilder().setId(new FlowId("b")).setPriority(5).build();
+        Flow flowC = new FlowBuilder().setId(new FlowId("a")).setPriority(6).build();
+
+        HashedWrapper<Flow> wrapperA = HashedWrapper.wrap(EquivalenceFabric.FLOW_EQUIVALENCE, flowA);
+        // flow id is not a part of flow equivalence
+        Assert.assertEquals(wrapperA, HashedWrapper.wrap(EquivalenceFabric.FLOW_EQUIVALENCE, flowB));
+        Assert.assertNotEquals(wrapperA, HashedWrapper.wrap(EquivalenceFabric.FLOW_EQUIVALENCE, flowC));
+        Assert.assertNotEquals(wrapperA, HashedWrapper.wrap(EquivalenceFabric.GROUP_EQUIVALENCE, null));
+        Assert.assertNotEquals(wrapperA, EquivalenceFabric.FLOW_EQUIVALENCE.wrap(flowA));
+    }
+
+}
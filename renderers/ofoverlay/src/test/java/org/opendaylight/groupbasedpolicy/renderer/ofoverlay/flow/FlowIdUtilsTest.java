@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2016 Cisco Systems, Inc. and others. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.opendaylight.groupbasedpolicy.renderer.ofoverlay.flow;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.opendaylight.groupbasedpolicy.renderer.ofoverlay.flow.FlowUtils.RegMatch;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.yang.types.rev130715.MacAddress;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.FlowId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.types.rev131026.flow.Match;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.types.rev131026.flow.MatchBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.openflowjava.nx.match.rev140421.NxmNxReg0;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.openflowjava.nx.match.rev140421.NxmNxReg4;
+
+public class FlowIdUtilsTest {
+
+    private static final MacAddress SRC_MAC = new MacAddress("00:00:00:00:00:01");
+    private static final MacAddress DST_MAC = new MacAddress("00:00:00:00:00:02");
+
+    @Test
+    public void testNewFlowId_sameForEqualMatches() {
+        FlowId flowId1 = FlowIdUtils.newFlowId((short) 2, "prefix", createMatch(5L));
+        FlowId flowId2 = FlowIdUtils.newFlowId((short) 2, "prefix", createMatch(5L));
+
+        assertEquals(flowId1, flowId2);
+        assertTrue(flowId1.getValue().startsWith("t2|prefix|"));
+    }
+
+    @Test
+    public void testNewFlowId_differentForDifferentMatches() {
+        assertNotEquals(FlowIdUtils.newFlowId((short) 2, "prefix", createMatch(5L)),
+                FlowIdUtils.newFlowId((short) 2, "prefix", createMatch(6L)));
+        assertNotEquals(FlowIdUtils.newFlowId((short) 2, "prefix", createMatch(5L)),
+                FlowIdUtils.newFlowId((short) 3, "prefix", createMatch(5L)));
+    }
+
+    @Test
+    public void testNewFlowId_extensionOrderIgnored() {
+        MatchBuilder mb1 = new MatchBuilder();
+        FlowUtils.addNxRegMatch(mb1, RegMatch.of(NxmNxReg0.class, 1L), RegMatch.of(NxmNxReg4.class, 2L));
+        MatchBuilder mb2 = new MatchBuilder();
+        FlowUtils.addNxRegMatch(mb2, RegMatch.of(NxmNxReg4.class, 2L), RegMatch.of(NxmNxReg0.class, 1L));
+
+        assertEquals(FlowIdUtils.hashMatch(mb1.build()), FlowIdUtils.hashMatch(mb2.build()));
+    }
+
+    private static Match createMatch(Long etherType) {
+        MatchBuilder mb = new MatchBuilder().setEthernetMatch(FlowUtils.ethernetMatch(SRC_MAC, DST_MAC, etherType));
+        FlowUtils.addNxRegMatch(mb, RegMatch.of(NxmNxReg0.class, 1L));
+        return mb.build();
+    }
+}
@@ -15,6 +15,7 @@ import static org.mockito.Mockito.when;
 
 import java.math.BigInteger;
 import java.util.Arrays;
+import java.util.List;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -22,10 +23,12 @@ import org.junit.Test;
 import org.opendaylight.groupbasedpolicy.renderer.ofoverlay.flow.FlowUtils.RegMatch;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.Ipv4Address;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.Ipv6Address;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.PortNumber;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.yang.types.rev130715.MacAddress;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.action.types.rev131112.action.Action;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.action.types.rev131112.action.list.ActionBuilder;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.tables.Table;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.types.rev131026.flow.Match;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.types.rev131026.flow.MatchBuilder;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.group.types.rev131018.BucketId;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.group.types.rev131018.GroupId;
@@ -46,6 +49,8 @@ import org.opendaylight.yang.gen.v1.urn.opendaylight.openflowjava.nx.match.rev14
 import org.opendaylight.yang.gen.v1.urn.opendaylight.openflowplugin.extension.general.rev140714.GeneralAugMatchNodesNodeTableFlow;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.openflowplugin.extension.general.rev140714.general.extension.list.grouping.ExtensionList;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.openflowplugin.extension.nicira.action.rev140714.dst.choice.grouping.DstChoice;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.openflowplugin.extension.nicira.match.rev140714.NxmNxReg0Key;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.openflowplugin.extension.nicira.match.rev140714.NxmOfTcpDstKey;
 import org.opendaylight.yangtools.yang.binding.Augmentation;
 import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
 
@@ -314,6 +319,22 @@ public class FlowUtilsTest {
         verify(match).addAugmentation(any(Class.class), any(Augmentation.class));
     }
 
+    @Test
+    public void addNxExtensionMatchesTest() {
+        MatchBuilder classifierMatch = new MatchBuilder();
+        FlowUtils.addNxTcpDstMatch(classifierMatch, new PortNumber(8080), 0xfffe);
+        Match template = classifierMatch.build();
+        MatchBuilder mb = new MatchBuilder(template);
+        FlowUtils.addNxRegMatch(mb, RegMatch.of(NxmNxReg0.class, 5L));
+        Assert.assertEquals(1, mb.getAugmentation(GeneralAugMatchNodesNodeTableFlow.class).getExtensionList().size());
+
+        FlowUtils.addNxExtensionMatches(mb, template);
+        List<ExtensionList> extensions = mb.getAugmentation(GeneralAugMatchNodesNodeTableFlow.class).getExtensionList();
+        Assert.assertEquals(2, extensions.size());
+        Assert.assertEquals(NxmNxReg0Key.class, extensions.get(0).getExtensionKey());
+        Assert.assertEquals(NxmOfTcpDstKey.class, extensions.get(1).getExtensionKey());
+    }
+
     @SuppressWarnings("unchecked")
     @Test
     public void addNxNshc1RegMatchTest() {
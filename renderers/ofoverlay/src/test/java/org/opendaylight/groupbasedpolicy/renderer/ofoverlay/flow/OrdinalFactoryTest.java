@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2016 Cisco Systems, Inc. and others. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.opendaylight.groupbasedpolicy.renderer.ofoverlay.flow;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.common.rev140421.EndpointGroupId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.common.rev140421.L2BridgeDomainId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.common.rev140421.NetworkDomainId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.common.rev140421.TenantId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.endpoint.rev140421.endpoints.Endpoint;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.endpoint.rev140421.endpoints.EndpointBuilder;
+
+public class OrdinalFactoryTest {
+
+    private static final TenantId TENANT_ID = new TenantId("tenant");
+    private static final EndpointGroupId EPG_1 = new EndpointGroupId("epg_1");
+    private static final EndpointGroupId EPG_2 = new EndpointGroupId("epg_2");
+
+    @Before
+    public void init() {
+        // releases ordinals of other tests
+        OrdinalFactory.releaseUnusedOrdinals(OrdinalFactory.startEpoch());
+        OrdinalFactory.releaseUnusedOrdinals(OrdinalFactory.startEpoch());
+        OrdinalFactory.resetPolicyOrdinalValue();
+    }
+
+    @Test
+    public void testGetContextOrdinal_endpointGroupsOrderIgnored() {
+        Endpoint ep1 = new EndpointBuilder().setTenant(TENANT_ID)
+            .setEndpointGroup(EPG_1)
+            .setEndpointGroups(Arrays.asList(EPG_2, EPG_1))
+            .build();
+        Endpoint ep2 = new EndpointBuilder().setTenant(TENANT_ID)
+            .setEndpointGroups(Arrays.asList(EPG_1, EPG_2))
+            .build();
+        Endpoint ep3 = new EndpointBuilder().setTenant(TENANT_ID).setEndpointGroup(EPG_1).build();
+
+        assertEquals(OrdinalFactory.getContextOrdinal(ep1), OrdinalFactory.getContextOrdinal(ep2));
+        assertNotEquals(OrdinalFactory.getContextOrdinal(ep1), OrdinalFactory.getContextOrdinal(ep3));
+        NetworkDomainId networkContainment = new NetworkDomainId("subnet");
+        assertEquals(OrdinalFactory.getContextOrdinal(ep1, networkContainment),
+                OrdinalFactory.getContextOrdinal(ep2, networkContainment));
+        assertNotEquals(OrdinalFactory.getContextOrdinal(ep1), OrdinalFactory.getContextOrdinal(ep1, networkContainment));
+    }
+
+    @Test
+    public void testReleaseUnusedOrdinals_reusedAfterNextRelease() {
+        L2BridgeDomainId usedBd = new L2BridgeDomainId("used");
+        L2BridgeDomainId unusedBd = new L2BridgeDomainId("unused");
+        int usedOrdinal = OrdinalFactory.getContextOrdinal(TENANT_ID, usedBd);
+        int unusedOrdinal = OrdinalFactory.getContextOrdinal(TENANT_ID, unusedBd);
+
+        long epoch = OrdinalFactory.startEpoch();
+        assertEquals(usedOrdinal, OrdinalFactory.getContextOrdinal(TENANT_ID, usedBd));
+        assertEquals(1, OrdinalFactory.releaseUnusedOrdinals(epoch));
+        // released ordinal can still be present in flows
+        int newOrdinal = OrdinalFactory.getContextOrdinal(TENANT_ID, new L2BridgeDomainId("new"));
+        assertNotEquals(unusedOrdinal, newOrdinal);
+
+        epoch = OrdinalFactory.startEpoch();
+        assertEquals(usedOrdinal, OrdinalFactory.getContextOrdinal(TENANT_ID, usedBd));
+        assertEquals(newOrdinal, OrdinalFactory.getContextOrdinal(TENANT_ID, new L2BridgeDomainId("new")));
+        assertEquals(0, OrdinalFactory.releaseUnusedOrdinals(epoch));
+        assertEquals(unusedOrdinal, OrdinalFactory.getContextOrdinal(TENANT_ID, new L2BridgeDomainId("other")));
+    }
+
+}
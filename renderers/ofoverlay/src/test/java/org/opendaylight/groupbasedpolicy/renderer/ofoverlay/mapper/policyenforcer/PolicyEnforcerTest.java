@@ -10,7 +10,11 @@ package org.opendaylight.groupbasedpolicy.renderer.ofoverlay.mapper.policyenforc
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.when;
 import static org.opendaylight.groupbasedpolicy.renderer.ofoverlay.flow.FlowUtils.applyActionIns;
 import static org.opendaylight.groupbasedpolicy.renderer.ofoverlay.flow.FlowUtils.instructions;
@@ -33,6 +37,7 @@ import org.opendaylight.groupbasedpolicy.dto.EgKey;
 import org.opendaylight.groupbasedpolicy.dto.PolicyInfo;
 import org.opendaylight.groupbasedpolicy.renderer.ofoverlay.MockOfContext;
 import org.opendaylight.groupbasedpolicy.renderer.ofoverlay.MockPolicyManager;
+import org.opendaylight.groupbasedpolicy.renderer.ofoverlay.OfContext;
 import org.opendaylight.groupbasedpolicy.renderer.ofoverlay.OfWriter;
 import org.opendaylight.groupbasedpolicy.renderer.ofoverlay.PolicyManager;
 import org.opendaylight.groupbasedpolicy.renderer.ofoverlay.endpoint.MockEndpointManager;
@@ -427,6 +432,52 @@ public class PolicyEnforcerTest extends MapperUtilsTest {
         assertEquals(totalFlows, count);
     }
 
+    @Test
+    public void test_FlowTemplatesSharedForSamePolicy() throws Exception {
+        EndpointBuilder ep1Builder = buildEndpoint(IPV4_0, MAC_0, nodeConnector);
+        ep1Builder.setEndpointGroup(ENDPOINT_GROUP_0);
+        ep1Builder.setL2Context(L2BD_ID);
+        Endpoint ep1 = ep1Builder.build();
+        endpointManagerMock.addEndpoint(ep1);
+        EndpointBuilder ep2Builder = buildEndpoint(IPV4_1, MAC_1, nodeConnector);
+        ep2Builder.setEndpointGroup(ENDPOINT_GROUP_1);
+        ep2Builder.setL2Context(L2BD_ID);
+        endpointManagerMock.addEndpoint(ep2Builder.build());
+        EndpointBuilder ep3Builder = buildEndpoint(IPV4_2, MAC_2, nodeConnector);
+        ep3Builder.setEndpointGroup(ENDPOINT_GROUP_0);
+        ep3Builder.setL2Context(L2BD_ID);
+        ep3Builder.setCondition(ImmutableList.of(new ConditionName("cond1")));
+        Endpoint ep3 = ep3Builder.build();
+        endpointManagerMock.addEndpoint(ep3);
+        TenantBuilder tb = buildTenant().setPolicy(new PolicyBuilder(buildTenant().getPolicy())
+            .setContract(ImmutableList.of(baseContract(null).build())).build());
+        ctxMock.addTenant(tb.build());
+        // policy taken from policy info cache
+        OfContext versionedCtx = spy(ctxMock);
+        doReturn(1L).when(versionedCtx).getPolicyVersion();
+        short tableId = ctxMock.getPolicyManager().getTABLEID_POLICY_ENFORCER();
+
+        PolicyEnforcer enforcer1 = new PolicyEnforcer(versionedCtx, tableId);
+        enforcer1.sync(ep1, new OfWriter());
+        Map<?, ?> templates = enforcer1.getFlowTemplates();
+        assertEquals(1, templates.size());
+
+        // endpoint of the same EPG with different conditions uses the same templates
+        PolicyEnforcer enforcer2 = new PolicyEnforcer(versionedCtx, tableId);
+        enforcer2.sync(ep3, new OfWriter());
+        enforcer2.sync(ep1, new OfWriter());
+        assertSame(templates, enforcer2.getFlowTemplates());
+        assertEquals(2, templates.size());
+
+        // changed policy with the same version, e.g. after restart, does not reuse templates
+        ctxMock.addTenant(tb.build());
+        OfContext changedCtx = spy(ctxMock);
+        doReturn(1L).when(changedCtx).getPolicyVersion();
+        PolicyEnforcer enforcer3 = new PolicyEnforcer(changedCtx, tableId);
+        assertNotSame(templates, enforcer3.getFlowTemplates());
+        assertTrue(enforcer3.getFlowTemplates().isEmpty());
+    }
+
     private boolean isAllowSameEpg(Flow flow) {
         // flow has to have exactly 2 registers set, namely NxmNxReg0 and NxmNxReg2
         // (these register values don't have to be equal)
@@ -34,6 +34,7 @@ public class MockSwitchManager extends SwitchManager {
         state.status = SwitchStatus.READY;
         state.setHasEndpoints(true);
         switches.put(node, state);
+        publishSwitchesSnapshot();
         for (SwitchListener listener : listeners) {
             listener.switchReady(node);
         }
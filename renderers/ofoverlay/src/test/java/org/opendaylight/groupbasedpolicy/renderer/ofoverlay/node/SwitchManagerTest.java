@@ -34,6 +34,7 @@ import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.PortNumber;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.FlowCapableNode;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.FlowCapableNodeConnector;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.common.rev140421.Name;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.ofoverlay.rev140528.OfOverlayNodeConfig;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.ofoverlay.rev140528.nodes.node.ExternalInterfaces;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.ofoverlay.rev140528.nodes.node.Tunnel;
@@ -160,6 +161,7 @@ public class SwitchManagerTest {
         sReady.status = SwitchStatus.READY;
         SwitchManager.switches.put(nIdDisconected, sDisconected);
         SwitchManager.switches.put(nIdReady, sReady);
+        SwitchManager.publishSwitchesSnapshot();
 
         Collection<NodeId> readySwitches = switchManager.getReadySwitches();
         Assert.assertFalse(readySwitches.contains(nIdDisconected));
@@ -174,8 +176,10 @@ public class SwitchManagerTest {
         switchState.externalPorts = externalPorts;
 
         SwitchManager.switches.put(nodeId, null);
+        SwitchManager.publishSwitchesSnapshot();
         Assert.assertTrue(switchManager.getExternalPorts(nodeId).isEmpty());
         SwitchManager.switches.put(nodeId, switchState);
+        SwitchManager.publishSwitchesSnapshot();
         Assert.assertEquals(externalPorts, switchManager.getExternalPorts(nodeId));
     }
 
@@ -185,6 +189,7 @@ public class SwitchManagerTest {
         Assert.assertTrue(switchManager.getTunnelPorts(nodeId).isEmpty());
 
         SwitchManager.switches.put(nodeId, switchState);
+        SwitchManager.publishSwitchesSnapshot();
         Assert.assertFalse(switchManager.getTunnelPorts(nodeId).isEmpty());
     }
 
@@ -195,12 +200,14 @@ public class SwitchManagerTest {
 
         SwitchState switchState = new SwitchState(nodeId);
         SwitchManager.switches.put(nodeId, switchState);
+        SwitchManager.publishSwitchesSnapshot();
         Assert.assertNull(switchManager.getTunnelPort(nodeId, TunnelTypeVxlan.class));
 
         NodeConnectorId nodeConnectorId = mock(NodeConnectorId.class);
         TunnelBuilder tunnelBuilder = mock(TunnelBuilder.class);
         when(tunnelBuilder.getNodeConnectorId()).thenReturn(nodeConnectorId);
         switchState.tunnelBuilderByType.put(TunnelTypeVxlan.class, tunnelBuilder);
+        SwitchManager.publishSwitchesSnapshot();
         Assert.assertEquals(nodeConnectorId, switchManager.getTunnelPort(nodeId, TunnelTypeVxlan.class));
     }
 
@@ -211,15 +218,29 @@ public class SwitchManagerTest {
 
         SwitchState switchState = new SwitchState(nodeId);
         SwitchManager.switches.put(nodeId, switchState);
+        SwitchManager.publishSwitchesSnapshot();
         Assert.assertNull(switchManager.getTunnelIP(nodeId, TunnelTypeVxlan.class));
 
         IpAddress ipAddress = mock(IpAddress.class);
         TunnelBuilder tunnelBuilder = mock(TunnelBuilder.class);
         when(tunnelBuilder.getIp()).thenReturn(ipAddress);
         switchState.tunnelBuilderByType.put(TunnelTypeVxlan.class, tunnelBuilder);
+        SwitchManager.publishSwitchesSnapshot();
         Assert.assertEquals(ipAddress, switchManager.getTunnelIP(nodeId, TunnelTypeVxlan.class));
     }
 
+    @Test
+    public void getNodeConnectorIidForPortNameTest() {
+        when(fcnc.getName()).thenReturn("port");
+        Assert.assertNull(switchManager.getNodeConnectorIidForPortName(new Name("port")));
+
+        switchManager.updateSwitchNodeConnectorConfig(ncIid, fcnc);
+        Assert.assertEquals(ncIid, switchManager.getNodeConnectorIidForPortName(new Name("port")));
+
+        switchManager.updateSwitchNodeConnectorConfig(ncIid, null);
+        Assert.assertNull(switchManager.getNodeConnectorIidForPortName(new Name("port")));
+    }
+
      @Test
     public void updateSwitchTestStateNull() {
         NodeId nodeId = mock(NodeId.class);
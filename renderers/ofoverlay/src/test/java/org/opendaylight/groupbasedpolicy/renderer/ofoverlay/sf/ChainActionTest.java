@@ -12,6 +12,7 @@ import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.Collections;
@@ -146,6 +147,26 @@ public class ChainActionTest {
         Assert.assertNull(result);
     }
 
+    @Test
+    public void testUpdateAction_resolvedSymmetricChainsPassedPerCall() {
+        ActionBuilder actionBuilder = mock(ActionBuilder.class);
+        List<ActionBuilder> actions = Collections.singletonList(actionBuilder);
+        Map<String, Object> params = new HashMap<>();
+        String chainName = "chainName";
+        params.put(ChainActionDefinition.SFC_CHAIN_NAME, chainName);
+        Integer order = 0;
+        OfWriter ofWriter = mock(OfWriter.class);
+
+        PowerMockito.mockStatic(ChainAction.class);
+        when(ChainAction.getSfcPath(eq(new SfcName(chainName)))).thenReturn(sfcPath);
+
+        // shared action has no symmetric chains set, reverse RSP is resolved from the passed chains
+        List<ActionBuilder> result = chainAction.updateAction(actions, params, order, netElements, ofWriter, ctx,
+                Direction.Out, Collections.singletonList(chainName));
+        Assert.assertNull(result);
+        verify(netElements).getDstEpOrdinals();
+    }
+
     @Test
     public void testUpdateAction_ParamsNull() {
         ActionBuilder actionBuilder = mock(ActionBuilder.class);
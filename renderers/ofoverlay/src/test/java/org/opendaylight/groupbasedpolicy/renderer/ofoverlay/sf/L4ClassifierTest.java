@@ -13,6 +13,7 @@ import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -20,21 +21,27 @@ import java.util.Map;
 import java.util.Set;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import org.apache.commons.lang3.tuple.Pair;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.opendaylight.groupbasedpolicy.api.sf.IpProtoClassifierDefinition;
 import org.opendaylight.groupbasedpolicy.api.sf.L4ClassifierDefinition;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.PortNumber;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.types.rev131026.flow.MatchBuilder;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.policy.rev140421.subject.feature.instance.ParameterValue;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.groupbasedpolicy.policy.rev140421.subject.feature.instance.ParameterValueBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.model.match.types.rev131026.match.Layer4Match;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.model.match.types.rev131026.match.layer._4.match.SctpMatch;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.model.match.types.rev131026.match.layer._4.match.SctpMatchBuilder;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.model.match.types.rev131026.match.layer._4.match.TcpMatch;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.model.match.types.rev131026.match.layer._4.match.TcpMatchBuilder;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.model.match.types.rev131026.match.layer._4.match.UdpMatch;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.model.match.types.rev131026.match.layer._4.match.UdpMatchBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.openflowplugin.extension.general.rev140714.GeneralAugMatchNodesNodeTableFlow;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.openflowplugin.extension.general.rev140714.general.extension.list.grouping.ExtensionList;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.openflowplugin.extension.nicira.match.rev140714.NxAugMatchNodesNodeTableFlow;
 
 public class L4ClassifierTest {
 
@@ -111,18 +118,16 @@ public class L4ClassifierTest {
 
         List<MatchBuilder> updated = Classifier.L4_CL.update(matches, params);
 
+        // 8079 and 8080/0xfffe
+        assertEquals(2, updated.size());
         Set<Long> dstPorts = new HashSet<>();
         for (MatchBuilder match : updated) {
             assertEquals(ClassifierTestUtils.IPV4_ETH_TYPE, match.getEthernetMatch().getEthernetType());
             assertEquals(srcPort,
                     Long.valueOf(new TcpMatchBuilder((TcpMatch) match.getLayer4Match()).getTcpSourcePort().getValue()));
-            dstPorts.add(new TcpMatchBuilder((TcpMatch) match.getLayer4Match()).getTcpDestinationPort()
-                .getValue()
-                .longValue());
-        }
-        for (Long port = dstRangeStart; port <= dstRangeEnd; port++) {
-            assertTrue(dstPorts.contains((port)));
+            dstPorts.addAll(getMatchedPorts(match, false));
         }
+        assertEquals(createPortSet(dstRangeStart, dstRangeEnd), dstPorts);
     }
 
     @Test
@@ -163,7 +168,7 @@ public class L4ClassifierTest {
 
         List<MatchBuilder> updated = Classifier.L4_CL.update(matches, params);
 
-        assertEquals(3, updated.size());
+        assertEquals(2, updated.size());
         Set<Long> srcPorts = new HashSet<>();
         for (MatchBuilder match : updated) {
             assertEquals(ClassifierTestUtils.IPV4_ETH_TYPE, match.getEthernetMatch().getEthernetType());
@@ -172,14 +177,9 @@ public class L4ClassifierTest {
             assertEquals(SINGLE_PORT_INT, new UdpMatchBuilder((UdpMatch) match.getLayer4Match()).getUdpDestinationPort()
                 .getValue()
                 .longValue());
-            srcPorts
-                .add(new UdpMatchBuilder((UdpMatch) match.getLayer4Match()).getUdpSourcePort()
-                        .getValue()
-                        .longValue());
-        }
-        for (Long port = srcRangeStart; port <= srcRangeEnd; port++) {
-            assertTrue(srcPorts.contains((port)));
+            srcPorts.addAll(getMatchedPorts(match, true));
         }
+        assertEquals(createPortSet(srcRangeStart, srcRangeEnd), srcPorts);
     }
 
     @Test
@@ -201,21 +201,16 @@ public class L4ClassifierTest {
 
         List<MatchBuilder> updated = Classifier.L4_CL.update(matches, params);
 
-        assertEquals(3, updated.size());
+        assertEquals(2, updated.size());
         Set<Long> srcPorts = new HashSet<>();
         for (MatchBuilder match : updated) {
             assertEquals(ClassifierTestUtils.IPV6_ETH_TYPE, match.getEthernetMatch().getEthernetType());
             assertSame(dPort, new UdpMatchBuilder((UdpMatch) match.getLayer4Match()).getUdpDestinationPort()
                 .getValue()
                 .longValue());
-            srcPorts
-                .add(new UdpMatchBuilder((UdpMatch) match.getLayer4Match()).getUdpSourcePort()
-                        .getValue()
-                        .longValue());
-        }
-        for (Long port = srcRangeStart; port <= srcRangeEnd; port++) {
-            assertTrue(srcPorts.contains((port)));
+            srcPorts.addAll(getMatchedPorts(match, true));
         }
+        assertEquals(createPortSet(srcRangeStart, srcRangeEnd), srcPorts);
     }
 
     @Test
@@ -405,6 +400,203 @@ public class L4ClassifierTest {
         Classifier.L4_CL.update(matches, params);
     }
 
+    @Test
+    public void testUpdate_AnyPortRange() {
+        List<MatchBuilder> matches = new ArrayList<>();
+        Map<String, ParameterValue> params = new HashMap<>();
+        matches.add(new MatchBuilder());
+        params.putAll(ClassifierTestUtils.createIntValueParam(IpProtoClassifierDefinition.PROTO_PARAM,
+                ClassifierTestUtils.TCP));
+        params.putAll(ClassifierTestUtils.createRangeValueParam(L4ClassifierDefinition.SRC_PORT_RANGE_PARAM, 0L,
+                65535L));
+        params.putAll(ClassifierTestUtils.createIntValueParam(L4ClassifierDefinition.DST_PORT_PARAM, SINGLE_PORT));
+
+        List<MatchBuilder> updated = Classifier.L4_CL.update(matches, params);
+
+        assertEquals(1, updated.size());
+        TcpMatch match = (TcpMatch) updated.get(0).getLayer4Match();
+        assertNull(match.getTcpSourcePort());
+        assertEquals(SINGLE_PORT, match.getTcpDestinationPort().getValue().longValue());
+
+        params.remove(L4ClassifierDefinition.DST_PORT_PARAM);
+        updated = Classifier.L4_CL.update(matches, params);
+
+        assertEquals(1, updated.size());
+        match = (TcpMatch) updated.get(0).getLayer4Match();
+        assertNull(match.getTcpSourcePort());
+        assertNull(match.getTcpDestinationPort());
+    }
+
+    @Test
+    public void testUpdate_AllPortsExceptZeroRange() {
+        List<MatchBuilder> matches = new ArrayList<>();
+        Map<String, ParameterValue> params = new HashMap<>();
+        matches.add(new MatchBuilder());
+        params.putAll(ClassifierTestUtils.createIntValueParam(IpProtoClassifierDefinition.PROTO_PARAM,
+                ClassifierTestUtils.TCP));
+        params.putAll(ClassifierTestUtils.createRangeValueParam(L4ClassifierDefinition.SRC_PORT_RANGE_PARAM, 1L,
+                65535L));
+
+        List<MatchBuilder> updated = Classifier.L4_CL.update(matches, params);
+
+        // port 0 is not matched
+        assertEquals(16, updated.size());
+        Set<Long> srcPorts = new HashSet<>();
+        for (MatchBuilder match : updated) {
+            srcPorts.addAll(getMatchedPorts(match, true));
+        }
+        assertEquals(createPortSet(1L, 65535L), srcPorts);
+    }
+
+    @Test
+    public void testUpdate_SctpWidePortRange() {
+        List<MatchBuilder> matches = new ArrayList<>();
+        Map<String, ParameterValue> params = new HashMap<>();
+        matches.add(new MatchBuilder());
+        params.putAll(ClassifierTestUtils.createIntValueParam(IpProtoClassifierDefinition.PROTO_PARAM,
+                ClassifierTestUtils.SCTP));
+        params.putAll(ClassifierTestUtils.createRangeValueParam(L4ClassifierDefinition.DST_PORT_RANGE_PARAM, 1L,
+                60000L));
+
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage(Classifier.MSG_EXCEEDS_LIMIT);
+        Classifier.L4_CL.update(matches, params);
+    }
+
+    @Test
+    public void testUpdate_SctpPortRangeAtLimit() {
+        List<MatchBuilder> matches = new ArrayList<>();
+        Map<String, ParameterValue> params = new HashMap<>();
+        matches.add(new MatchBuilder());
+        params.putAll(ClassifierTestUtils.createIntValueParam(IpProtoClassifierDefinition.PROTO_PARAM,
+                ClassifierTestUtils.SCTP));
+        params.putAll(ClassifierTestUtils.createRangeValueParam(L4ClassifierDefinition.DST_PORT_RANGE_PARAM, 1L,
+                (long) L4Classifier.MAX_SCTP_PORT_MATCHES));
+
+        List<MatchBuilder> updated = Classifier.L4_CL.update(matches, params);
+
+        assertEquals(L4Classifier.MAX_SCTP_PORT_MATCHES, updated.size());
+    }
+
+    @Test
+    public void testUpdate_UdpWideSrcPortRange_DstPortRange() {
+        List<MatchBuilder> matches = new ArrayList<>();
+        Map<String, ParameterValue> params = new HashMap<>();
+        matches.add(new MatchBuilder());
+        params.putAll(ClassifierTestUtils.createIntValueParam(IpProtoClassifierDefinition.PROTO_PARAM,
+                ClassifierTestUtils.UDP));
+        params.putAll(ClassifierTestUtils.createRangeValueParam(L4ClassifierDefinition.SRC_PORT_RANGE_PARAM, 1024L,
+                65535L));
+        params.putAll(ClassifierTestUtils.createRangeValueParam(L4ClassifierDefinition.DST_PORT_RANGE_PARAM, 8000L,
+                8100L));
+
+        List<MatchBuilder> updated = Classifier.L4_CL.update(matches, params);
+
+        Set<Pair<Integer, Integer>> expectedSrcMasks = ImmutableSet.of(Pair.of(1024, 0xfc00), Pair.of(2048, 0xf800),
+                Pair.of(4096, 0xf000), Pair.of(8192, 0xe000), Pair.of(16384, 0xc000), Pair.of(32768, 0x8000));
+        Set<Pair<Integer, Integer>> expectedDstMasks =
+                ImmutableSet.of(Pair.of(8000, 0xffc0), Pair.of(8064, 0xffe0), Pair.of(8096, 0xfffc));
+        assertEquals(expectedSrcMasks.size() * (expectedDstMasks.size() + 1), updated.size());
+        Set<Pair<Integer, Integer>> srcMasks = new HashSet<>();
+        Set<Pair<Integer, Integer>> dstMasks = new HashSet<>();
+        Set<Long> dstPorts = new HashSet<>();
+        for (MatchBuilder match : updated) {
+            UdpMatch udpMatch = (UdpMatch) match.getLayer4Match();
+            assertNull(udpMatch.getUdpSourcePort());
+            for (NxAugMatchNodesNodeTableFlow nxMatch : getNxMatches(match)) {
+                if (nxMatch.getNxmOfUdpSrc() != null) {
+                    srcMasks.add(Pair.of(nxMatch.getNxmOfUdpSrc().getPort().getValue(),
+                            nxMatch.getNxmOfUdpSrc().getMask()));
+                }
+                if (nxMatch.getNxmOfUdpDst() != null) {
+                    dstMasks.add(Pair.of(nxMatch.getNxmOfUdpDst().getPort().getValue(),
+                            nxMatch.getNxmOfUdpDst().getMask()));
+                }
+            }
+            dstPorts.addAll(getMatchedPorts(match, false));
+        }
+        assertEquals(expectedSrcMasks, srcMasks);
+        assertEquals(expectedDstMasks, dstMasks);
+        // last port of destination range is matched exactly
+        assertEquals(createPortSet(8000L, 8100L), dstPorts);
+    }
+
+    @Test
+    public void testCreatePortMasks() {
+        long[][] ranges = {{1, 1}, {0, 65535}, {1, 65535}, {1024, 65535}, {8079, 8081}, {2, 65534}, {32767, 32768}};
+        for (long[] range : ranges) {
+            List<L4Classifier.PortMask> portMasks = L4Classifier.createPortMasks(range[0], range[1]);
+            assertTrue(portMasks.size() <= 2 * 16 - 2);
+            Set<Long> ports = new HashSet<>();
+            for (L4Classifier.PortMask portMask : portMasks) {
+                ports.addAll(createMaskedPortSet(portMask.getPort(), portMask.getMask()));
+            }
+            assertEquals(createPortSet(range[0], range[1]), ports);
+        }
+        List<L4Classifier.PortMask> portMasks = L4Classifier.createPortMasks(8079, 8081);
+        assertEquals(2, portMasks.size());
+        assertEquals(8079, portMasks.get(0).getPort());
+        assertTrue(portMasks.get(0).isExact());
+        assertEquals(8080, portMasks.get(1).getPort());
+        assertEquals(0xfffe, portMasks.get(1).getMask());
+    }
+
+    /**
+     * @return ports matched by exact port of layer 4 match or by Nicira masked port match
+     */
+    private static Set<Long> getMatchedPorts(MatchBuilder match, boolean source) {
+        Layer4Match l4Match = match.getLayer4Match();
+        PortNumber exactPort = null;
+        if (l4Match instanceof TcpMatch) {
+            exactPort = source ? ((TcpMatch) l4Match).getTcpSourcePort() : ((TcpMatch) l4Match).getTcpDestinationPort();
+        } else if (l4Match instanceof UdpMatch) {
+            exactPort = source ? ((UdpMatch) l4Match).getUdpSourcePort() : ((UdpMatch) l4Match).getUdpDestinationPort();
+        }
+        if (exactPort != null) {
+            return Collections.singleton(exactPort.getValue().longValue());
+        }
+        Set<Long> ports = new HashSet<>();
+        for (NxAugMatchNodesNodeTableFlow nxMatch : getNxMatches(match)) {
+            if (source && nxMatch.getNxmOfTcpSrc() != null) {
+                ports.addAll(createMaskedPortSet(nxMatch.getNxmOfTcpSrc().getPort().getValue().longValue(),
+                        nxMatch.getNxmOfTcpSrc().getMask()));
+            } else if (!source && nxMatch.getNxmOfTcpDst() != null) {
+                ports.addAll(createMaskedPortSet(nxMatch.getNxmOfTcpDst().getPort().getValue().longValue(),
+                        nxMatch.getNxmOfTcpDst().getMask()));
+            } else if (source && nxMatch.getNxmOfUdpSrc() != null) {
+                ports.addAll(createMaskedPortSet(nxMatch.getNxmOfUdpSrc().getPort().getValue().longValue(),
+                        nxMatch.getNxmOfUdpSrc().getMask()));
+            } else if (!source && nxMatch.getNxmOfUdpDst() != null) {
+                ports.addAll(createMaskedPortSet(nxMatch.getNxmOfUdpDst().getPort().getValue().longValue(),
+                        nxMatch.getNxmOfUdpDst().getMask()));
+            }
+        }
+        return ports;
+    }
+
+    private static List<NxAugMatchNodesNodeTableFlow> getNxMatches(MatchBuilder match) {
+        List<NxAugMatchNodesNodeTableFlow> nxMatches = new ArrayList<>();
+        GeneralAugMatchNodesNodeTableFlow generalMatch = match.getAugmentation(GeneralAugMatchNodesNodeTableFlow.class);
+        if (generalMatch != null && generalMatch.getExtensionList() != null) {
+            for (ExtensionList extension : generalMatch.getExtensionList()) {
+                nxMatches.add(extension.getExtension().getAugmentation(NxAugMatchNodesNodeTableFlow.class));
+            }
+        }
+        return nxMatches;
+    }
+
+    private static Set<Long> createMaskedPortSet(long port, int mask) {
+        return createPortSet(port, port + (~mask & 0xffff));
+    }
+
+    private static Set<Long> createPortSet(long min, long max) {
+        Set<Long> ports = new HashSet<>();
+        for (long port = min; port <= max; port++) {
+            ports.add(port);
+        }
+        return ports;
+    }
+
     @Test
     public void testCheckPresenceOfRequiredParameters_SrcPortNotSet() {
         Map<String, ParameterValue> params = new HashMap<>();